@@ -52,7 +52,8 @@ exports.handleEvent = async (event) => {
             };
         }
         case "SEND_TO_NEXT_WEEK": {
-            const exceed = event.fixed.numberOfShipments - event.fixed.weeklyPrintCapacity;
+            const numberOfShipments = utils.sumPrintCounterShards(event.fixed.numberOfShipments, event.fixed.numberOfShipmentsShards);
+            const exceed = numberOfShipments - event.fixed.weeklyPrintCapacity;
             const toSendToNextWeek = exceed - event.fixed.sentToNextWeek - event.variable.sendToNextWeekCounter;
             if (toSendToNextWeek > 0) {
                 console.log(`To send to next week: ${toSendToNextWeek}`);
@@ -53,8 +53,17 @@ function buildSk(workflowStepEnum, paperDelivery) {
   }
 }
 
+/**
+ * Somma al numberOfShipments dell'item PRINT / deliveryWeek quelli degli item shard PRINT / deliveryWeek~shard,
+ * letti dalla state machine nel formato DynamoDB ({ numberOfShipments: { N: "..." } }).
+ */
+function sumPrintCounterShards(numberOfShipments, shards) {
+  return (shards || []).reduce((total, shard) => total + (parseInt(shard?.numberOfShipments?.N, 10) || 0), numberOfShipments || 0);
+}
+
 module.exports = {
     chunkArray,
     mapToPaperDeliveryForGivenStep,
-    buildSk
+    buildSk,
+    sumPrintCounterShards
 }
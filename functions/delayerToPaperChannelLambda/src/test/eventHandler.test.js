@@ -198,6 +198,46 @@ describe('handleEvent', () => {
     });
   });
 
+  it('should execute SEND_TO_NEXT_WEEK adding the print counter shards to numberOfShipments', async () => {
+    retrieveStub
+      .onCall(0).resolves({
+        Items: [{ id: 1 }, { id: 2 }],
+        LastEvaluatedKey: null
+      });
+
+    const result = await handler.handleEvent({
+      processType: 'SEND_TO_NEXT_WEEK',
+      executionDate: '2025-07-01T00:00:00Z',
+      fixed: {
+        dailyPrintCapacity: 4,
+        weeklyPrintCapacity: 28,
+        numberOfShipments: 20,
+        numberOfShipmentsShards: [
+          { sk: { S: '2025-06-30~0' }, numberOfShipments: { N: '6' } },
+          { sk: { S: '2025-06-30~1' }, numberOfShipments: { N: '4' } }
+        ],
+        sentToNextWeek: 0,
+        dailyExecutionCounter: 0,
+        dailyExecutions: 17,
+      },
+      variable: {
+        lastEvaluatedKeyPhase2: {},
+        sendToNextStepCounter: 0,
+        lastEvaluatedKeyNextWeek: {},
+        sendToNextWeekCounter: 0,
+        stopSendToPhaseTwo: false,
+      }
+    });
+
+    expect(retrieveStub.calledOnce).to.be.true;
+    expect(retrieveStub.firstCall.args[3]).to.equal(2);
+    expect(insertStub.calledOnce).to.be.true;
+    expect(result).to.deep.include({
+      sendToNextWeekCounter: 2,
+      lastEvaluatedKeyNextWeek: null
+    });
+  });
+
   it('should execute SEND_TO_NEXT_WEEK and process items recursively', async () => {
     retrieveStub
       .onCall(0).resolves({
@@ -4,7 +4,8 @@ const { expect } = require('chai');
 const {
   chunkArray,
   mapToPaperDeliveryForGivenStep,
-  buildSk
+  buildSk,
+  sumPrintCounterShards
 } = require('../../app/lib/utils'); // modifica il path se necessario
 
 describe('chunkArray', () => {
@@ -112,3 +113,18 @@ describe('buildSortKey', () => {
     expect(() => buildSk('UNKNOWN_STEP', paperDelivery)).to.throw('Unsupported workflow step: UNKNOWN_STEP');
   });
 });
+
+describe('sumPrintCounterShards', () => {
+  it('should add the shard items to the base numberOfShipments', () => {
+    const shards = [
+      { sk: { S: '2025-07-07~0' }, numberOfShipments: { N: '10' } },
+      { sk: { S: '2025-07-07~1' }, numberOfShipments: { N: '5' } }
+    ];
+    expect(sumPrintCounterShards(100, shards)).to.equal(115);
+  });
+
+  it('should return the base numberOfShipments without shard items', () => {
+    expect(sumPrintCounterShards(100, [])).to.equal(100);
+    expect(sumPrintCounterShards(100, undefined)).to.equal(100);
+  });
+});
@@ -42,6 +42,34 @@ limite AS (
       AND deliveryDate = '<YYYY-MM-DD-LAST-WEEK>'
 ),
 
+-- spedizioni rinviate dalla settimana precedente tramite cursore: restano nelle partizioni dei job di capacità
+-- della settimana precedente senza essere passate alla stampa
+carried_over_in AS (
+    SELECT DISTINCT requestId, attempt, productType, senderPaId, province
+    FROM pn_delayer_paper_delivery_json_view
+    WHERE <QUERY_CONDITION_CARRIED_OVER_IN>
+
+    EXCEPT
+
+    SELECT DISTINCT requestId, attempt, productType, senderPaId, province
+    FROM pn_delayer_paper_delivery_json_view
+    WHERE p_year = '<YYYY-LAST-WEEK>'
+      AND p_month = '<MM-LAST-WEEK>'
+      AND p_day = '<DD-LAST-WEEK>'
+      AND pk = '<YYYY-MM-DD-LAST-WEEK>~EVALUATE_PRINT_CAPACITY'
+),
+
+cutoff AS (
+    SELECT DISTINCT requestId, attempt, productType, senderPaId, province
+    FROM pn_delayer_paper_delivery_json_view
+    WHERE <QUERY_CONDITION_Q1>
+
+    UNION
+
+    SELECT requestId, attempt, productType, senderPaId, province
+    FROM carried_over_in
+),
+
 total AS (
     SELECT
         senderPaId,
@@ -50,8 +78,7 @@ total AS (
         COUNT(DISTINCT requestId) AS spedizioni,
         COUNT(DISTINCT IF(productType = 'RS', requestId, NULL)) AS rs,
         COUNT(DISTINCT IF(attempt = '1', requestId, NULL)) AS secondi_tentativi
-    FROM pn_delayer_paper_delivery_json_view
-    WHERE <QUERY_CONDITION_Q1>
+    FROM cutoff
     GROUP BY senderPaId, province, productType
 ),
 
@@ -69,6 +96,34 @@ passed AS (
     GROUP BY senderPaId, province, productType
 ),
 
+-- spedizioni rinviate alla settimana successiva, copiate nella sua partizione EVALUATE_SENDER_LIMIT
+-- oppure lasciate nelle partizioni dei job di capacità tramite cursore
+sent_to_next_week AS (
+    SELECT DISTINCT requestId, attempt, productType, senderPaId, province
+    FROM pn_delayer_paper_delivery_json_view
+    WHERE p_year = '<YYYY>'
+      AND p_month = '<MM>'
+      AND p_day = '<DD>'
+      AND pk = '<YYYY-MM-DD-NEXT-WEEK>~EVALUATE_SENDER_LIMIT'
+
+    UNION
+
+    (
+        SELECT DISTINCT requestId, attempt, productType, senderPaId, province
+        FROM pn_delayer_paper_delivery_json_view
+        WHERE <QUERY_CONDITION_CARRIED_OVER_OUT>
+
+        EXCEPT
+
+        SELECT DISTINCT requestId, attempt, productType, senderPaId, province
+        FROM pn_delayer_paper_delivery_json_view
+        WHERE p_year = '<YYYY>'
+          AND p_month = '<MM>'
+          AND p_day = '<DD>'
+          AND pk = '<YYYY-MM-DD>~EVALUATE_PRINT_CAPACITY'
+    )
+),
+
 not_passed AS (
     SELECT
         senderPaId,
@@ -78,18 +133,13 @@ not_passed AS (
         COUNT(DISTINCT IF(attempt = '1', requestId, NULL)) AS tot_not_passed_sec_tent,
         COUNT(DISTINCT IF(productType = 'RS', requestId, NULL)) AS tot_not_passed_rs
     FROM (
-        SELECT DISTINCT requestId, attempt, productType, senderPaId, province
-        FROM pn_delayer_paper_delivery_json_view
-        WHERE p_year = '<YYYY>'
-          AND p_month = '<MM>'
-          AND p_day = '<DD>'
-          AND pk = '<YYYY-MM-DD-NEXT-WEEK>~EVALUATE_SENDER_LIMIT'
+        SELECT requestId, attempt, productType, senderPaId, province
+        FROM sent_to_next_week
 
         INTERSECT
 
-        SELECT DISTINCT requestId, attempt, productType, senderPaId, province
-        FROM pn_delayer_paper_delivery_json_view
-        WHERE <QUERY_CONDITION_Q1>
+        SELECT requestId, attempt, productType, senderPaId, province
+        FROM cutoff
     )
     GROUP BY senderPaId, province, productType
 ),
@@ -20,11 +20,51 @@ WeeklyUsedCapacities AS (
     WHERE rn = 1 
 ),
 
--- 2. Spedizioni del cutoff settimanale
+-- 2. Spedizioni del cutoff settimanale, incluse quelle rinviate dalla settimana precedente tramite cursore
+-- (restano nelle partizioni dei job di capacità della settimana precedente senza essere passate alla stampa)
 ShipmentsInCutoff AS (
     SELECT requestId, cap, province
     FROM pn_delayer_paper_delivery_json_view
     WHERE <QUERY_CONDITION_Q1>
+
+    UNION
+
+    (
+        SELECT requestId, cap, province
+        FROM pn_delayer_paper_delivery_json_view
+        WHERE <QUERY_CONDITION_CARRIED_OVER_IN>
+
+        EXCEPT
+
+        SELECT requestId, cap, province
+        FROM pn_delayer_paper_delivery_json_view
+        WHERE p_year='<YYYY-LAST-WEEK>' AND p_month='<MM-LAST-WEEK>' AND p_day='<DD-LAST-WEEK>'
+          AND pk='<YYYY-MM-DD-LAST-WEEK>~EVALUATE_PRINT_CAPACITY'
+    )
+),
+
+-- 2b. Spedizioni rinviate alla settimana successiva, copiate nella sua partizione EVALUATE_SENDER_LIMIT
+-- oppure lasciate nelle partizioni dei job di capacità tramite cursore
+SentToNextWeek AS (
+    SELECT requestId, unifiedDeliveryDriver, cap, province
+    FROM pn_delayer_paper_delivery_json_view
+    WHERE p_year='<YYYY>' AND p_month='<MM>' AND p_day='<DD>'
+      AND pk='<YYYY-MM-DD-NEXT-WEEK>~EVALUATE_SENDER_LIMIT'
+
+    UNION
+
+    (
+        SELECT requestId, unifiedDeliveryDriver, cap, province
+        FROM pn_delayer_paper_delivery_json_view
+        WHERE <QUERY_CONDITION_CARRIED_OVER_OUT>
+
+        EXCEPT
+
+        SELECT requestId, unifiedDeliveryDriver, cap, province
+        FROM pn_delayer_paper_delivery_json_view
+        WHERE p_year='<YYYY>' AND p_month='<MM>' AND p_day='<DD>'
+          AND pk='<YYYY-MM-DD>~EVALUATE_PRINT_CAPACITY'
+    )
 ),
 
 -- 3. WeeklyUsedCapacities arricchiete con la provincia associata
@@ -38,19 +78,15 @@ Eccessi AS (
         c.unifiedDeliveryDriver,
         c.geokey,
         COUNT(DISTINCT t1.requestId) AS eccessi
-    FROM pn_delayer_paper_delivery_json_view t1
+    FROM SentToNextWeek t1
     -- JOIN 1: Filtra t1 mantenendo solo i requestId presenti in ShipmentsInCutoff
     INNER JOIN ShipmentsInCutoff b ON t1.requestId = b.requestId
     -- JOIN 2: Lega il driver/geokey puliti
     INNER JOIN WeeklyUsedCapacities c 
         ON t1.unifiedDeliveryDriver = c.unifiedDeliveryDriver
         AND (t1.cap = c.geokey OR t1.province = c.geokey)
-    WHERE t1.p_year='<YYYY>' 
-      AND t1.p_month='<MM>' 
-      AND t1.p_day='<DD>'
-      AND t1.pk='<YYYY-MM-DD-NEXT-WEEK>~EVALUATE_SENDER_LIMIT'
-      -- Importante: Contiamo gli eccessi SOLO se il driver è effettivamente saturo
-      AND c.usedCapacity = c.declaredCapacity
+    -- Importante: Contiamo gli eccessi SOLO se il driver è effettivamente saturo
+    WHERE c.usedCapacity = c.declaredCapacity
     GROUP BY 
         c.unifiedDeliveryDriver, 
         c.geokey
@@ -63,9 +63,17 @@ function prepareQueryPlaceholdersMap(mDate) {
     QUERY_CONDITION_Q1: `${generatePartitionConditionWithBetween(last.full, base.full)} AND pk='${base.full}~EVALUATE_SENDER_LIMIT'`,
     QUERY_CONDITION_Q2: generatePartitionConditionWithMonths(last.full, months),
     QUERY_CONDITION_Q3: `${generatePartitionConditionWithBetween(base.full, next.full)} AND pk='${base.full}~SENT_TO_PREPARE_PHASE_2'`,
+    // spedizioni rinviate tramite cursore: restano nelle partizioni dei job di capacità della settimana di origine
+    QUERY_CONDITION_CARRIED_OVER_IN: generateCapacityStepsCondition(last),
+    QUERY_CONDITION_CARRIED_OVER_OUT: generateCapacityStepsCondition(base),
   };
 }
 
+function generateCapacityStepsCondition(date) {
+  return `p_year = '${date.yyyy}' AND p_month = '${date.mm}' AND p_day = '${date.dd}'` +
+    ` AND pk IN ('${date.full}~EVALUATE_DRIVER_CAPACITY', '${date.full}~EVALUATE_RESIDUAL_CAPACITY')`;
+}
+
 function generatePartitionConditionWithBetween(startDateStr, endDateStr) {
   const start = new Date(startDateStr);
   const end = new Date(endDateStr);
@@ -84,5 +84,17 @@ describe("Query Utils", () => {
       expect(result).to.match(/p_month =/);
       expect(result).to.match(/OR/);
     });
+
+    it("genera le condizioni delle spedizioni rinviate tramite cursore", () => {
+      sinon.stub(fs, "existsSync").returns(true);
+      sinon.stub(fs, "readFileSync").returns("<QUERY_CONDITION_CARRIED_OVER_IN>|<QUERY_CONDITION_CARRIED_OVER_OUT>");
+
+      const [carriedOverIn, carriedOverOut] = prepareQueryCondition("fake.sql", "2024-02-05").split("|");
+
+      expect(carriedOverIn).to.equal("p_year = '2024' AND p_month = '01' AND p_day = '29'" +
+        " AND pk IN ('2024-01-29~EVALUATE_DRIVER_CAPACITY', '2024-01-29~EVALUATE_RESIDUAL_CAPACITY')");
+      expect(carriedOverOut).to.equal("p_year = '2024' AND p_month = '02' AND p_day = '05'" +
+        " AND pk IN ('2024-02-05~EVALUATE_DRIVER_CAPACITY', '2024-02-05~EVALUATE_RESIDUAL_CAPACITY')");
+    });
   });
 });
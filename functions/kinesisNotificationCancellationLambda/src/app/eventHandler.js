@@ -1,8 +1,10 @@
 const { extractKinesisData } = require("./lib/kinesis.js");
-const { executeTransactions, retrievePaperDelivery } = require("./lib/dynamo.js");
+const { executeTransactions, retrievePaperDelivery, retrieveCarryOverCursor } = require("./lib/dynamo.js");
 const { retrieveTimelineElements } = require("./lib/timelineClient.js");
 const { ZoneId, LocalDate } = require("@js-joda/core");
 
+const CAPACITY_STEPS = ["EVALUATE_DRIVER_CAPACITY", "EVALUATE_RESIDUAL_CAPACITY"];
+
 exports.handleEvent = async (event) => {
     const cdcEvents = extractKinesisData(event);
     console.log(`Batch size: ${cdcEvents.length} cancellation requests`);
@@ -40,7 +42,8 @@ exports.handleEvent = async (event) => {
             console.warn(`No paper delivery found for element ${element.elementId}, skipping cancellation`);
             continue;
          }
-         if (canCancel(paperDelivery)) {
+         const carriedOverWeek = await retrieveCarriedOverWeek(paperDelivery);
+         if (canCancel(paperDelivery, carriedOverWeek)) {
            const result = await executeTransactions(
              [paperDelivery],
              element.kinesisSequenceNumber
@@ -70,16 +73,41 @@ exports.handleEvent = async (event) => {
     return { batchItemFailures };
   };
 
-function canCancel(paperDelivery) {
+/**
+ * A delivery that exceeded the capacity of its week can be carried over to the next week without being copied:
+ * its last record stays in the capacity step partition, and the capacity job saves a cursor on the range of the
+ * partition that the sender limit job of the next week reads. Returns that week when the cursor covers the record.
+ */
+async function retrieveCarriedOverWeek(paperDelivery) {
+    if (!CAPACITY_STEPS.includes(paperDelivery?.workflowStep)) {
+        return null;
+    }
+    const deliveryDate = getParsedDate(paperDelivery.pk.split('~')[0], paperDelivery);
+    if (!deliveryDate) {
+        return null;
+    }
+    const [unifiedDeliveryDriver, province] = paperDelivery.sk.split('~');
+    const nextWeek = deliveryDate.plusWeeks(1);
+    const cursor = await retrieveCarryOverCursor(nextWeek.toString(), province, paperDelivery.workflowStep, `${unifiedDeliveryDriver}~${province}`);
+    const startSortKey = cursor?.startKey?.sk;
+    if (!cursor || (startSortKey && paperDelivery.sk <= startSortKey)) {
+        return null;
+    }
+    console.log(`Paper delivery with pk: ${paperDelivery.pk} and sk: ${paperDelivery.sk} carried over to deliveryWeek ${nextWeek}`);
+    return nextWeek;
+}
+
+function canCancel(paperDelivery, carriedOverWeek) {
     const deliveryDateStr = paperDelivery?.pk?.split('~')[0];
-    const parsedDeliveryDate = getParsedDate(deliveryDateStr, paperDelivery);
+    const parsedDeliveryDate = carriedOverWeek || getParsedDate(deliveryDateStr, paperDelivery);
     if(!parsedDeliveryDate) {
         console.warn(`Cannot determine delivery date for paper delivery with pk: ${paperDelivery?.pk}, skipping cancellation`);
         return false;
     }
+    const workflowStep = carriedOverWeek ? "EVALUATE_SENDER_LIMIT" : paperDelivery?.workflowStep;
     const nowIsDeliveryDate = parsedDeliveryDate.equals(LocalDate.now(ZoneId.UTC));
-    const canCancelResult = paperDelivery?.workflowStep === "EVALUATE_SENDER_LIMIT" && !nowIsDeliveryDate;
-    console.log(`Paper delivery with last workflow step ${paperDelivery?.workflowStep} and isSameDay ${nowIsDeliveryDate} canCancel: ${canCancelResult}`);
+    const canCancelResult = workflowStep === "EVALUATE_SENDER_LIMIT" && !nowIsDeliveryDate;
+    console.log(`Paper delivery with last workflow step ${workflowStep} and isSameDay ${nowIsDeliveryDate} canCancel: ${canCancelResult}`);
     return canCancelResult;
 }
 
@@ -2,6 +2,7 @@ const { DynamoDBClient } = require("@aws-sdk/client-dynamodb");
 const {
   TransactWriteCommand,
   QueryCommand,
+  GetCommand,
   DynamoDBDocumentClient
 } = require("@aws-sdk/lib-dynamodb");
 const client = new DynamoDBClient({});
@@ -10,6 +11,7 @@ const docClient = DynamoDBDocumentClient.from(client, {
     removeUndefinedValues: true,
   }});
 const paperDeliveryTable = process.env.DELAYER_PAPER_DELIVERY_TABLE_NAME;
+const paperDeliveryCounterTable = process.env.DELAYER_PAPER_DELIVERY_COUNTER_TABLE_NAME;
 
 async function retrievePaperDelivery(requestId) {
   const queryParams = {
@@ -32,6 +34,22 @@ async function retrievePaperDelivery(requestId) {
   return result.Items[0];
 }
 
+/**
+ * Reads the cursor saved by the capacity job of sourceWorkflowStep when it carried over to deliveryWeek the
+ * deliveries of sortKeyPrefix (unifiedDeliveryDriver~province) that exceeded its capacity.
+ */
+async function retrieveCarryOverCursor(deliveryWeek, province, sourceWorkflowStep, sortKeyPrefix) {
+  const result = await docClient.send(new GetCommand({
+    TableName: paperDeliveryCounterTable,
+    Key: {
+      pk: `CARRY_OVER~${deliveryWeek}`,
+      sk: `${province}~${sourceWorkflowStep}~${sortKeyPrefix}`
+    }
+  }));
+
+  return result.Item || null;
+}
+
 async function executeTransactions(paperDeliveryItems, kinesisSequenceNumber) {
   if (!paperDeliveryItems || paperDeliveryItems.length === 0) {
     return {
@@ -83,4 +101,4 @@ async function executeTransactions(paperDeliveryItems, kinesisSequenceNumber) {
   }
 }
 
-module.exports = { executeTransactions,  retrievePaperDelivery};
\ No newline at end of file
+module.exports = { executeTransactions,  retrievePaperDelivery, retrieveCarryOverCursor};
\ No newline at end of file
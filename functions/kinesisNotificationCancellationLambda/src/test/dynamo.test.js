@@ -5,7 +5,7 @@ const proxyquire = require("proxyquire");
 describe("dynamo.js – cancellation logic", () => {
   let dynamo;
   let mockSend;
-  let QueryCommand, TransactWriteCommand;
+  let QueryCommand, TransactWriteCommand, GetCommand;
 
   beforeEach(() => {
     mockSend = sinon.stub();
@@ -18,6 +18,10 @@ describe("dynamo.js – cancellation logic", () => {
       this.params = params;
     };
 
+    GetCommand = function (params) {
+      this.params = params;
+    };
+
     const DynamoDBDocumentClient = {
       from: sinon.stub().returns({ send: mockSend })
     };
@@ -29,6 +33,7 @@ describe("dynamo.js – cancellation logic", () => {
       "@aws-sdk/lib-dynamodb": {
         QueryCommand,
         TransactWriteCommand,
+        GetCommand,
         DynamoDBDocumentClient
       }
     });
@@ -80,6 +85,28 @@ describe("dynamo.js – cancellation logic", () => {
     });
   });
 
+  describe("retrieveCarryOverCursor", () => {
+    it("reads the cursor by week, province, step and sort key prefix", async () => {
+      const cursor = { pk: "CARRY_OVER~2026-01-26", sk: "RM~EVALUATE_DRIVER_CAPACITY~POSTE~RM", startKey: {} };
+      mockSend.resolves({ Item: cursor });
+
+      const result = await dynamo.retrieveCarryOverCursor("2026-01-26", "RM", "EVALUATE_DRIVER_CAPACITY", "POSTE~RM");
+
+      expect(result).to.deep.equal(cursor);
+      const command = mockSend.firstCall.args[0];
+      expect(command).to.be.instanceOf(GetCommand);
+      expect(command.params.Key).to.deep.equal({ pk: "CARRY_OVER~2026-01-26", sk: "RM~EVALUATE_DRIVER_CAPACITY~POSTE~RM" });
+    });
+
+    it("returns null when the delivery was not carried over", async () => {
+      mockSend.resolves({});
+
+      const result = await dynamo.retrieveCarryOverCursor("2026-01-26", "RM", "EVALUATE_DRIVER_CAPACITY", "POSTE~RM");
+
+      expect(result).to.be.null;
+    });
+  });
+
   describe("executeTransactions", () => {
     it("returns success true when input is empty", async () => {
       const result = await dynamo.executeTransactions([], "seq-1");
@@ -262,4 +262,74 @@ describe("Cancellation Lambda Handler", () => {
     expect(result).to.deep.equal({ batchItemFailures: [] });
   });
 
+  function carriedOverHandler(paperDelivery, cursor, executed) {
+    return proxyquire.noCallThru().load("../app/eventHandler.js", {
+      "../app/lib/kinesis.js": {
+        extractKinesisData: () => [
+          {
+            kinesisSequenceNumber: "seq-5",
+            dynamodb: {
+              NewImage: {
+                category: "NOTIFICATION_CANCELLATION_REQUEST",
+                iun: "IUN555"
+              }
+            }
+          }
+        ]
+      },
+      "../app/lib/timelineClient.js": {
+        retrieveTimelineElements: async () => [
+          {
+            category: "PREPARE_ANALOG_DOMICILE",
+            elementId: "PREPARE_ANALOG_DOMICILE.IUN_IUN555.RECINDEX_0.ATTEMPT_0"
+          }
+        ]
+      },
+      "../app/lib/dynamo.js": {
+        retrievePaperDelivery: async () => paperDelivery,
+        retrieveCarryOverCursor: async (deliveryWeek, province, sourceWorkflowStep, sortKeyPrefix) => {
+          expect(deliveryWeek).to.equal("2020-01-13");
+          expect(province).to.equal("RM");
+          expect(sourceWorkflowStep).to.equal("EVALUATE_DRIVER_CAPACITY");
+          expect(sortKeyPrefix).to.equal("POSTE~RM");
+          return cursor;
+        },
+        executeTransactions: async (items, kinesisSequenceNumber) => {
+          executed.push(items[0]);
+          return { success: true, kinesisSequenceNumber };
+        }
+      }
+    });
+  }
+
+  it("should cancel a delivery carried over to the next week by a capacity cursor", async () => {
+    const paperDelivery = {
+      workflowStep: "EVALUATE_DRIVER_CAPACITY",
+      pk: "2020-01-06~EVALUATE_DRIVER_CAPACITY",
+      sk: "POSTE~RM~3~2020-01-02T10:00:00Z~requestId2"
+    };
+    const cursor = { startKey: { pk: "2020-01-06~EVALUATE_DRIVER_CAPACITY", sk: "POSTE~RM~3~2020-01-02T09:00:00Z~requestId1" } };
+    const executed = [];
+
+    const result = await carriedOverHandler(paperDelivery, cursor, executed).handleEvent({});
+
+    expect(result).to.deep.equal({ batchItemFailures: [] });
+    expect(executed).to.deep.equal([paperDelivery]);
+  });
+
+  it("should skip cancellation of a capacity delivery preceding the carry over cursor", async () => {
+    const paperDelivery = {
+      workflowStep: "EVALUATE_DRIVER_CAPACITY",
+      pk: "2020-01-06~EVALUATE_DRIVER_CAPACITY",
+      sk: "POSTE~RM~3~2020-01-02T09:00:00Z~requestId1"
+    };
+    const cursor = { startKey: { pk: "2020-01-06~EVALUATE_DRIVER_CAPACITY", sk: "POSTE~RM~3~2020-01-02T09:00:00Z~requestId1" } };
+    const executed = [];
+
+    const result = await carriedOverHandler(paperDelivery, cursor, executed).handleEvent({});
+
+    expect(result).to.deep.equal({ batchItemFailures: [] });
+    expect(executed).to.be.empty;
+  });
+
 });
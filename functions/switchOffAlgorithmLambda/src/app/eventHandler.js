@@ -1,5 +1,5 @@
 const { LocalDate, DayOfWeek, TemporalAdjusters } = require('@js-joda/core');
-const { queryByPartitionKey, insertItemsBatch } = require('./lib/dynamo');
+const { queryByPartitionKey, queryBySortKeyPrefix, queryCarryOverCursors, insertItemsBatch } = require('./lib/dynamo');
 const { buildPaperDeliveryRecord } = require('./lib/utils');
 
 exports.handleEvent = async (event = {}) => {
@@ -12,21 +12,25 @@ exports.handleEvent = async (event = {}) => {
   const dayOfWeek = Number.parseInt(process.env.DELIVERYDATEDAYOFWEEK, 10) || 1;
 
   const deliveryDate = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.of(dayOfWeek)));
-  let pk;
-  if (currentWeek){
-    pk = `${deliveryDate}~EVALUATE_SENDER_LIMIT`;
-  }else{
-    const nextDeliveryDate = deliveryDate.plusWeeks(1);
-    pk = `${nextDeliveryDate}~EVALUATE_SENDER_LIMIT`;
+  const week = currentWeek ? deliveryDate : deliveryDate.plusWeeks(1);
+  const pk = `${week}~EVALUATE_SENDER_LIMIT`;
+
+  // Le spedizioni rinviate alla settimana dai job di capacità tramite cursore vengono processate per prime;
+  // finché non sono terminate il lastEvaluatedKey restituito è nella forma { carryOver: {...} }
+  let result = { totalProcessedItems: 0, lastEvaluatedKey: lastEvaluatedKey?.carryOver ? null : lastEvaluatedKey };
+  if (!lastEvaluatedKey || lastEvaluatedKey.carryOver) {
+    result = await processCarriedOverItems(week, executionLimit, lastEvaluatedKey?.carryOver, deliveryDate);
   }
 
-  const result = await processQueryAndItems(
-    pk,
-    executionLimit,
-    lastEvaluatedKey,
-    deliveryDate,
-    0
-  );
+  if (!result.lastEvaluatedKey?.carryOver && result.totalProcessedItems < executionLimit) {
+    result = await processQueryAndItems(
+      pk,
+      executionLimit,
+      result.lastEvaluatedKey,
+      deliveryDate,
+      result.totalProcessedItems
+    );
+  }
 
   return {
     success: true,
@@ -37,6 +41,45 @@ exports.handleEvent = async (event = {}) => {
   };
 };
 
+async function processCarriedOverItems(week, executionLimit, position, deliveryDate) {
+  if (position?.completed) {
+    return { totalProcessedItems: 0, lastEvaluatedKey: null };
+  }
+  const cursors = await queryCarryOverCursors(`${week}`);
+  const first = position ? cursors.findIndex(cursor => cursor.sk >= position.sk) : 0;
+
+  let processedCount = 0;
+  for (let i = first === -1 ? cursors.length : first; i < cursors.length; i++) {
+    const cursor = cursors[i];
+    let startKey = position?.sk === cursor.sk ? position.startKey : emptyToNull(cursor.startKey);
+    do {
+      if (processedCount >= executionLimit) {
+        return { totalProcessedItems: processedCount, lastEvaluatedKey: { carryOver: { sk: cursor.sk, startKey } } };
+      }
+      const result = await queryBySortKeyPrefix(
+        `${cursor.sourceDeliveryWeek}~${cursor.sourceWorkflowStep}`,
+        cursor.sortKeyPrefix,
+        executionLimit - processedCount,
+        startKey
+      );
+      if (result.items.length > 0) {
+        await processItems(result.items.map(i => buildPaperDeliveryRecord(i, deliveryDate)));
+        processedCount += result.items.length;
+      }
+      startKey = result.lastEvaluatedKey ?? null;
+    } while (startKey);
+  }
+
+  return {
+    totalProcessedItems: processedCount,
+    lastEvaluatedKey: processedCount >= executionLimit ? { carryOver: { completed: true } } : null
+  };
+}
+
+function emptyToNull(key) {
+  return key && Object.keys(key).length > 0 ? key : null;
+}
+
 async function processQueryAndItems(pk, executionLimit, lastEvaluatedKey, deliveryDate, totalProcessedItems) {
   const result = await queryByPartitionKey(pk, executionLimit - totalProcessedItems, lastEvaluatedKey);
 
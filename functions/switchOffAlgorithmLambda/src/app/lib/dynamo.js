@@ -6,6 +6,7 @@ const client = new DynamoDBClient({});
 const docClient = DynamoDBDocumentClient.from(client);
 
 const TABLE_NAME = process.env.DELAYER_PAPER_DELIVERY_TABLE_NAME;
+const COUNTER_TABLE_NAME = process.env.DELAYER_PAPER_DELIVERY_COUNTER_TABLE_NAME;
 const QUERY_LIMIT = Number.parseInt(process.env.QUERY_LIMIT, 10) || 1000;
 
 async function queryByPartitionKey(partitionKey, executionLimit, lastEvaluatedKey) {
@@ -29,6 +30,50 @@ async function queryByPartitionKey(partitionKey, executionLimit, lastEvaluatedKe
     };
 }
 
+async function queryBySortKeyPrefix(partitionKey, sortKeyPrefix, executionLimit, lastEvaluatedKey) {
+    const limit = Math.min(QUERY_LIMIT, executionLimit);
+    const params = {
+      TableName: TABLE_NAME,
+      KeyConditionExpression: 'pk = :pk AND begins_with(sk, :sk)',
+      ExpressionAttributeValues: { ':pk': partitionKey, ':sk': sortKeyPrefix },
+      Limit: limit
+    };
+
+    if (lastEvaluatedKey) {
+      params.ExclusiveStartKey = lastEvaluatedKey;
+    }
+
+    const result = await docClient.send(new QueryCommand(params));
+
+    return {
+      items: result.Items,
+      lastEvaluatedKey: result.LastEvaluatedKey,
+    };
+}
+
+/**
+ * Legge i cursori delle spedizioni rinviate alla settimana deliveryWeek dai job di capacità, ordinati per sk
+ * (province~sourceWorkflowStep~sortKeyPrefix).
+ */
+async function queryCarryOverCursors(deliveryWeek) {
+    const cursors = [];
+    let lastEvaluatedKey;
+    do {
+      const params = {
+        TableName: COUNTER_TABLE_NAME,
+        KeyConditionExpression: 'pk = :pk',
+        ExpressionAttributeValues: { ':pk': `CARRY_OVER~${deliveryWeek}` },
+      };
+      if (lastEvaluatedKey) {
+        params.ExclusiveStartKey = lastEvaluatedKey;
+      }
+      const result = await docClient.send(new QueryCommand(params));
+      cursors.push(...(result.Items ?? []));
+      lastEvaluatedKey = result.LastEvaluatedKey;
+    } while (lastEvaluatedKey);
+    return cursors;
+}
+
 async function insertItemsBatch(putRequests, retryCount = 0) {
   let unprocessed = [];
   const chunks = chunkArray(putRequests, 25);
@@ -54,5 +99,7 @@ async function insertItemsBatch(putRequests, retryCount = 0) {
 
 module.exports = {
   queryByPartitionKey,
+  queryBySortKeyPrefix,
+  queryCarryOverCursors,
   insertItemsBatch
 };
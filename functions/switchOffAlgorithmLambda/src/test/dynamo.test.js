@@ -13,6 +13,7 @@ describe('dynamo.js', () => {
 
   beforeEach(() => {
     process.env.DELAYER_PAPER_DELIVERY_TABLE_NAME = 'test-table';
+    process.env.DELAYER_PAPER_DELIVERY_COUNTER_TABLE_NAME = 'counter-table';
     process.env.QUERY_LIMIT = '1000';
 
     docClientStub = { send: sinon.stub() };
@@ -43,6 +44,7 @@ describe('dynamo.js', () => {
   afterEach(() => {
     sinon.restore();
     delete process.env.DELAYER_PAPER_DELIVERY_TABLE_NAME;
+    delete process.env.DELAYER_PAPER_DELIVERY_COUNTER_TABLE_NAME;
     delete process.env.QUERY_LIMIT;
   });
 
@@ -108,6 +110,40 @@ describe('dynamo.js', () => {
     expect(sentInput.Limit).to.equal(5);
   });
 
+  it('queryBySortKeyPrefix filtra per prefisso della sk e riparte da ExclusiveStartKey', async () => {
+    docClientStub.send.resolves({
+      Items: [{ id: 3 }],
+      LastEvaluatedKey: { pk: 'next' },
+    });
+
+    const result = await dynamo.queryBySortKeyPrefix('2025-01-06~EVALUATE_DRIVER_CAPACITY', 'POSTE~RM', 10, { pk: 'prev' });
+
+    expect(result.items).to.deep.equal([{ id: 3 }]);
+    expect(result.lastEvaluatedKey).to.deep.equal({ pk: 'next' });
+    expect(docClientStub.send.firstCall.args[0]).to.deep.equal({
+      TableName: 'test-table',
+      KeyConditionExpression: 'pk = :pk AND begins_with(sk, :sk)',
+      ExpressionAttributeValues: { ':pk': '2025-01-06~EVALUATE_DRIVER_CAPACITY', ':sk': 'POSTE~RM' },
+      Limit: 10,
+      ExclusiveStartKey: { pk: 'prev' },
+    });
+  });
+
+  it('queryCarryOverCursors legge tutte le pagine dei cursori della settimana', async () => {
+    docClientStub.send.onCall(0).resolves({ Items: [{ sk: 'MI~EVALUATE_DRIVER_CAPACITY~POSTE~MI' }], LastEvaluatedKey: { pk: 'next' } });
+    docClientStub.send.onCall(1).resolves({ Items: [{ sk: 'RM~EVALUATE_DRIVER_CAPACITY~POSTE~RM' }] });
+
+    const result = await dynamo.queryCarryOverCursors('2025-01-13');
+
+    expect(result.map(cursor => cursor.sk)).to.deep.equal(['MI~EVALUATE_DRIVER_CAPACITY~POSTE~MI', 'RM~EVALUATE_DRIVER_CAPACITY~POSTE~RM']);
+    expect(docClientStub.send.firstCall.args[0]).to.deep.equal({
+      TableName: 'counter-table',
+      KeyConditionExpression: 'pk = :pk',
+      ExpressionAttributeValues: { ':pk': 'CARRY_OVER~2025-01-13' },
+    });
+    expect(docClientStub.send.secondCall.args[0].ExclusiveStartKey).to.deep.equal({ pk: 'next' });
+  });
+
   it('insertItemsBatch gestisce batch write e ritorna [] quando nessun Unprocessed', async () => {
     docClientStub.send.resolves({ UnprocessedItems: { 'test-table': [] } });
 
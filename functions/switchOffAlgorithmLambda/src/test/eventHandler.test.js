@@ -7,6 +7,8 @@ describe('eventHandler.js', () => {
   let handler;
 
   let queryByPartitionKeyStub;
+  let queryBySortKeyPrefixStub;
+  let queryCarryOverCursorsStub;
   let insertItemsBatchStub;
   let buildPaperDeliveryRecordStub;
 
@@ -15,12 +17,16 @@ describe('eventHandler.js', () => {
     process.env.DELIVERYDATEDAYOFWEEK = '1';
 
     queryByPartitionKeyStub = sinon.stub();
+    queryBySortKeyPrefixStub = sinon.stub();
+    queryCarryOverCursorsStub = sinon.stub().resolves([]);
     insertItemsBatchStub = sinon.stub();
     buildPaperDeliveryRecordStub = sinon.stub();
 
     handler = proxyquire('../app/eventHandler', {
       './lib/dynamo': {
         queryByPartitionKey: queryByPartitionKeyStub,
+        queryBySortKeyPrefix: queryBySortKeyPrefixStub,
+        queryCarryOverCursors: queryCarryOverCursorsStub,
         insertItemsBatch: insertItemsBatchStub,
       },
       './lib/utils': {
@@ -175,4 +181,85 @@ describe('eventHandler.js', () => {
       expect(res.completed).to.equal(true);
     });
 
+  const cursor1 = {
+    sk: 'RM~EVALUATE_DRIVER_CAPACITY~POSTE~RM',
+    sourceDeliveryWeek: '2025-01-06',
+    sourceWorkflowStep: 'EVALUATE_DRIVER_CAPACITY',
+    sortKeyPrefix: 'POSTE~RM',
+    startKey: { pk: '2025-01-06~EVALUATE_DRIVER_CAPACITY', sk: 'POSTE~RM~3~start' },
+  };
+  const cursor2 = {
+    sk: 'RM~EVALUATE_RESIDUAL_CAPACITY~POSTE~RM',
+    sourceDeliveryWeek: '2025-01-06',
+    sourceWorkflowStep: 'EVALUATE_RESIDUAL_CAPACITY',
+    sortKeyPrefix: 'POSTE~RM',
+    startKey: {},
+  };
+
+  it('handleEvent: processa prima le spedizioni rinviate dai cursori e poi la partizione della settimana', async () => {
+    queryCarryOverCursorsStub.resolves([cursor1, cursor2]);
+    queryBySortKeyPrefixStub.onCall(0).resolves({ items: [{ id: 1 }], lastEvaluatedKey: null });
+    queryBySortKeyPrefixStub.onCall(1).resolves({ items: [{ id: 2 }], lastEvaluatedKey: null });
+    queryByPartitionKeyStub.resolves({ items: [{ id: 3 }], lastEvaluatedKey: null });
+    buildPaperDeliveryRecordStub.callsFake((i) => i);
+    insertItemsBatchStub.resolves([]);
+
+    const res = await handler.handleEvent({ executionLimit: 10, lastEvaluatedKey: null, currentWeek: true });
+
+    const week = LocalDate.now().with(TemporalAdjusters.previousOrSame(DayOfWeek.of(1))).toString();
+    expect(queryCarryOverCursorsStub.firstCall.args[0]).to.equal(week);
+    expect(queryBySortKeyPrefixStub.getCall(0).args).to.deep.equal(['2025-01-06~EVALUATE_DRIVER_CAPACITY', 'POSTE~RM', 10, cursor1.startKey]);
+    expect(queryBySortKeyPrefixStub.getCall(1).args).to.deep.equal(['2025-01-06~EVALUATE_RESIDUAL_CAPACITY', 'POSTE~RM', 9, null]);
+    expect(queryByPartitionKeyStub.firstCall.args).to.deep.equal([week + '~EVALUATE_SENDER_LIMIT', 8, null]);
+    expect(res.itemsProcessed).to.equal(3);
+    expect(res.completed).to.equal(true);
+  });
+
+  it('handleEvent: restituisce la posizione nel cursore quando raggiunge il limite e la riprende', async () => {
+    queryCarryOverCursorsStub.resolves([cursor1, cursor2]);
+    queryBySortKeyPrefixStub.onCall(0).resolves({ items: [{ id: 1 }, { id: 2 }], lastEvaluatedKey: { pk: 'p', sk: 'POSTE~RM~3~next' } });
+    buildPaperDeliveryRecordStub.callsFake((i) => i);
+    insertItemsBatchStub.resolves([]);
+
+    const res = await handler.handleEvent({ executionLimit: 2, lastEvaluatedKey: null, currentWeek: false });
+
+    const carryOverKey = { carryOver: { sk: cursor1.sk, startKey: { pk: 'p', sk: 'POSTE~RM~3~next' } } };
+    expect(res.lastEvaluatedKey).to.deep.equal(carryOverKey);
+    expect(res.completed).to.equal(false);
+    expect(queryByPartitionKeyStub.called).to.equal(false);
+
+    queryBySortKeyPrefixStub.onCall(1).resolves({ items: [{ id: 3 }], lastEvaluatedKey: null });
+    queryBySortKeyPrefixStub.onCall(2).resolves({ items: [{ id: 4 }], lastEvaluatedKey: null });
+
+    const resumed = await handler.handleEvent({ executionLimit: 2, lastEvaluatedKey: carryOverKey, currentWeek: false });
+
+    expect(queryBySortKeyPrefixStub.getCall(1).args[3]).to.deep.equal({ pk: 'p', sk: 'POSTE~RM~3~next' });
+    expect(queryBySortKeyPrefixStub.getCall(2).args[0]).to.equal('2025-01-06~EVALUATE_RESIDUAL_CAPACITY');
+    expect(resumed.lastEvaluatedKey).to.deep.equal({ carryOver: { completed: true } });
+    expect(queryByPartitionKeyStub.called).to.equal(false);
+  });
+
+  it('handleEvent: terminati i cursori legge la partizione della settimana dall inizio', async () => {
+    queryByPartitionKeyStub.resolves({ items: [{ id: 1 }], lastEvaluatedKey: null });
+    buildPaperDeliveryRecordStub.callsFake((i) => i);
+    insertItemsBatchStub.resolves([]);
+
+    const res = await handler.handleEvent({ executionLimit: 10, lastEvaluatedKey: { carryOver: { completed: true } }, currentWeek: true });
+
+    expect(queryCarryOverCursorsStub.called).to.equal(false);
+    expect(queryByPartitionKeyStub.firstCall.args[2]).to.equal(null);
+    expect(res.completed).to.equal(true);
+  });
+
+  it('handleEvent: con lastEvaluatedKey della partizione della settimana non rilegge i cursori', async () => {
+    queryByPartitionKeyStub.resolves({ items: [{ id: 1 }], lastEvaluatedKey: null });
+    buildPaperDeliveryRecordStub.callsFake((i) => i);
+    insertItemsBatchStub.resolves([]);
+
+    await handler.handleEvent({ executionLimit: 10, lastEvaluatedKey: { pk: 'lek1' }, currentWeek: true });
+
+    expect(queryCarryOverCursorsStub.called).to.equal(false);
+    expect(queryByPartitionKeyStub.firstCall.args[2]).to.deep.equal({ pk: 'lek1' });
+  });
+
 });
@@ -6,6 +6,7 @@ const {
     QueryCommand,
     BatchWriteCommand
 } = require("@aws-sdk/lib-dynamodb");
+const { queryPrintCounterItems } = require("./getPrintCapacityCounter");
 const csv = require("csv-parser");
 const { Readable } = require("stream");
 const { LocalDate, DayOfWeek, TemporalAdjusters } = require("@js-joda/core");
@@ -155,6 +156,10 @@ async function batchDeleteEntities(paperDeliveryTableName, entities) {
       sk: `EXCLUDE~${k}`,
     }));
     keys.push({ pk: 'PRINT', sk: deliveryWeek });
+    const printCounterShards = await queryPrintCounterItems(countersTableName, deliveryWeek);
+    printCounterShards
+      .filter(item => item.sk !== deliveryWeek)
+      .forEach(shard => keys.push({ pk: 'PRINT', sk: shard.sk }));
     await batchDeleteItems(keys, countersTableName);
     console.log(`Deleted ${keys.length} items from table ${countersTableName}`);
   }
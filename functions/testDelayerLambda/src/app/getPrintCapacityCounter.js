@@ -2,7 +2,7 @@
 const { DynamoDBClient } = require("@aws-sdk/client-dynamodb");
 const {
     DynamoDBDocumentClient,
-    GetCommand
+    QueryCommand
 } = require("@aws-sdk/lib-dynamodb");
 
 
@@ -10,7 +10,29 @@ const ddbClient = new DynamoDBClient({});
 const docClient = DynamoDBDocumentClient.from(ddbClient);
 
 /**
- * GET_PRINT_CAPACITY_COUNTER operation
+ * Legge l'item PRINT / deliveryDate e gli eventuali item shard PRINT / deliveryDate~shard
+ * @param {string} countersTableName
+ * @param {string} deliveryDate
+ */
+async function queryPrintCounterItems(countersTableName, deliveryDate) {
+    const items = [];
+    let lastEvaluatedKey;
+    do {
+        const { Items, LastEvaluatedKey } = await docClient.send(new QueryCommand({
+            TableName: countersTableName,
+            KeyConditionExpression: "pk = :pk AND begins_with(sk, :sk)",
+            ExpressionAttributeValues: { ":pk": "PRINT", ":sk": deliveryDate },
+            ExclusiveStartKey: lastEvaluatedKey
+        }));
+        items.push(...(Items || []));
+        lastEvaluatedKey = LastEvaluatedKey;
+    } while (lastEvaluatedKey);
+    return items.filter(item => item.sk === deliveryDate || item.sk?.startsWith(`${deliveryDate}~`));
+}
+
+/**
+ * GET_PRINT_CAPACITY_COUNTER operation: restituisce l'item PRINT / deliveryDate con numberOfShipments
+ * sommato sugli item shard PRINT / deliveryDate~shard
  * @param {Array<string>} params [countersTableName, deliveryDate]
  */
 async function getPrintCounter(params = []) {
@@ -18,18 +40,15 @@ async function getPrintCounter(params = []) {
     if (!countersTableName || !deliveryDate) {
         throw new Error("Required parameters are [paperDeliveryCounters, deliveryDate]");
     }
-    const command = new GetCommand({
-        TableName: countersTableName,
-        Key: {
-            pk: "PRINT",
-            sk: deliveryDate,
-        },
-    });
-    const { Item } = await docClient.send(command);
-    if (!Item) {
+    const items = await queryPrintCounterItems(countersTableName, deliveryDate);
+    if (items.length === 0) {
         return { message: "Item not found" };
     }
-    return Item;
+    const Item = items.find(item => item.sk === deliveryDate) || { pk: "PRINT", sk: deliveryDate };
+    return {
+        ...Item,
+        numberOfShipments: items.reduce((total, item) => total + (Number(item.numberOfShipments) || 0), 0)
+    };
 }
 
-module.exports = { getPrintCounter };
\ No newline at end of file
+module.exports = { getPrintCounter, queryPrintCounterItems };
@@ -742,16 +742,32 @@ describe("Lambda Delayer Dispatcher", () => {
                         "ttl": 1766571878068,
                         "weeklyPrintCapacity": 140
                        };
-      ddbMock.on(GetCommand).resolves({ Item: fakeItem });
+      ddbMock.on(QueryCommand).resolves({ Items: [fakeItem] });
 
-      const result = await handler({ operationType: "GET_PRINT_CAPACITY_COUNTER", parameters: ["pn-paperDeliveryCountersMock", "2025-11-10"] });
+      const result = await handler({ operationType: "GET_PRINT_CAPACITY_COUNTER", parameters: ["pn-paperDeliveryCountersMock", "2025-11-24"] });
       assert.strictEqual(result.statusCode, 200);
       const body = JSON.parse(result.body);
       assert.strictEqual(body.dailyExecutionNumber, 4);
+      assert.strictEqual(body.numberOfShipments, 70);
+    });
+
+    it("GET_PRINT_CAPACITY_COUNTER somma gli shard", async () => {
+      ddbMock.on(QueryCommand).resolves({ Items: [
+          { pk: "PRINT", sk: "2025-11-24", numberOfShipments: 0, weeklyPrintCapacity: 140, dailyExecutionNumber: 4 },
+          { pk: "PRINT", sk: "2025-11-24~0", numberOfShipments: 30 },
+          { pk: "PRINT", sk: "2025-11-24~1", numberOfShipments: 12 }
+      ] });
+
+      const result = await handler({ operationType: "GET_PRINT_CAPACITY_COUNTER", parameters: ["pn-paperDeliveryCountersMock", "2025-11-24"] });
+      assert.strictEqual(result.statusCode, 200);
+      const body = JSON.parse(result.body);
+      assert.strictEqual(body.sk, "2025-11-24");
+      assert.strictEqual(body.weeklyPrintCapacity, 140);
+      assert.strictEqual(body.numberOfShipments, 42);
     });
 
     it("GET_PRINT_CAPACITY_COUNTER no record", async () => {
-     ddbMock.on(GetCommand).resolves({});
+     ddbMock.on(QueryCommand).resolves({ Items: [] });
 
      const result = await handler({ operationType: "GET_PRINT_CAPACITY_COUNTER", parameters: ["pn-paperDeliveryCountersMock", "2025-11-10"] });
      const body = JSON.parse(result.body);
@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Benchmark del tempo di esecuzione di un job pn-delayer, dall'avvio della JVM alla fine dello step:
+# configurazione di default, profilo batch e profilo batch con archivio AppCDS.
+# Richiede il jar estratto con l'archivio generato da: ./mvnw -Pcds -Dcds.skip=false package -DskipTests
+# Ogni avvio esegue lo step configurato nell'ambiente (PN_DELAYER_WORKFLOWSTEP, input del job, tabelle e parametri
+# SSM, ad esempio su Localstack come descritto in README_TEST.md); argomenti JVM aggiuntivi in JOB_ARGS.
+# Un avvio terminato con exit code diverso da 0 interrompe il benchmark, mostrando il log dell'esecuzione.
+#
+# uso: scripts/startup-benchmark.sh [numero di avvii per variante, default 10]
+set -euo pipefail
+
+RUNS=${1:-10}
+CDS_DIR=${CDS_DIR:-target/cds}
+LOG_DIR=${LOG_DIR:-$CDS_DIR/benchmark-logs}
+JAR=$(find "$CDS_DIR" -maxdepth 1 -name 'pn-delayer-*.jar' -printf '%f\n' | head -n 1)
+COMMON_ARGS="-Daws.region-code=${AWS_REGIONCODE:-eu-south-1} ${JOB_ARGS:-}"
+
+if [[ -z "$JAR" ]]; then
+  echo "Jar non trovato in $CDS_DIR, eseguire prima ./mvnw -Pcds -Dcds.skip=false package -DskipTests" >&2
+  exit 1
+fi
+mkdir -p "$LOG_DIR"
+
+measure() {
+  local name=$1
+  shift
+  local times=()
+  for ((i = 0; i < RUNS; i++)); do
+    local start end status log
+    log="$(cd "$LOG_DIR" && pwd)/$name-$i.log"
+    start=$(date +%s%N)
+    # stesso percorso relativo del training run, richiesto perché l'archivio venga accettato
+    status=0
+    (cd "$CDS_DIR" && java "$@" $COMMON_ARGS -jar "$JAR" > "$log" 2>&1) || status=$?
+    end=$(date +%s%N)
+    if ((status != 0)); then
+      echo "Variante $name, avvio $i terminato con exit code $status, log in $log:" >&2
+      tail -n 50 "$log" >&2
+      exit 1
+    fi
+    times+=($(((end - start) / 1000000)))
+  done
+  local sorted
+  sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+  printf '%-12s runs=%d min=%dms median=%dms max=%dms\n' "$name" "$RUNS" "${sorted[0]}" "${sorted[$((RUNS / 2))]}" "${sorted[$((RUNS - 1))]}"
+}
+
+measure default
+measure batch -Dspring.profiles.active=batch
+if [[ -f "$CDS_DIR/application.jsa" ]]; then
+  measure batch+cds -XX:SharedArchiveFile=application.jsa -Dspring.profiles.active=batch
+else
+  echo "Archivio $CDS_DIR/application.jsa non trovato, variante batch+cds saltata"
+fi
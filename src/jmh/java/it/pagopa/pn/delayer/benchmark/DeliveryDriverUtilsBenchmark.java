@@ -0,0 +1,76 @@
+package it.pagopa.pn.delayer.benchmark;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.model.PriorityLookupTable;
+import it.pagopa.pn.delayer.utils.DeliveryDriverUtils;
+import it.pagopa.pn.delayer.utils.PnDelayerUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the in-memory steps of DeliveryDriverUtils: enrichment of a page with driver and priority
+ * and grouping of the drivers of a province by intersecting products.
+ * The collaborators that perform I/O are not used by the benchmarked methods and are left null.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DeliveryDriverUtilsBenchmark {
+
+    private static DeliveryDriverUtils deliveryDriverUtils() {
+        PnDelayerConfigs pnDelayerConfigs = new PnDelayerConfigs();
+        PnDelayerUtils pnDelayerUtils = new PnDelayerUtils(pnDelayerConfigs, null);
+        return new DeliveryDriverUtils(null, null, null, pnDelayerConfigs, null, pnDelayerUtils, null, null, null, null, null, null);
+    }
+
+    @State(Scope.Benchmark)
+    public static class PageState {
+
+        @Param({"1000", "10000", "100000", "1000000"})
+        private int pageSize;
+
+        private DeliveryDriverUtils deliveryDriverUtils;
+        private List<PaperDelivery> page;
+        private PriorityLookupTable priorityLookupTable;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            deliveryDriverUtils = deliveryDriverUtils();
+            page = PaperDeliveryFixtures.paperDeliveries(pageSize);
+            priorityLookupTable = PriorityLookupTable.compile(PaperDeliveryFixtures.priorityMap());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DriversState {
+
+        @Param({"10", "100", "1000"})
+        private int driverCount;
+
+        private DeliveryDriverUtils deliveryDriverUtils;
+        private List<PaperDeliveryDriverCapacity> driverCapacities;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            deliveryDriverUtils = deliveryDriverUtils();
+            driverCapacities = PaperDeliveryFixtures.driverCapacities(driverCount);
+        }
+    }
+
+    @Benchmark
+    public List<PaperDelivery> enrichWithPriorityAndUnifiedDeliveryDriver(PageState state) {
+        return state.deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(state.page, "driver-0", PaperDeliveryFixtures.TENDER_ID, state.priorityLookupTable);
+    }
+
+    @Benchmark
+    public Map<List<String>, List<PaperDeliveryDriverCapacity>> groupDriversByIntersectingProducts(DriversState state) {
+        return state.deliveryDriverUtils.groupDriversByIntersectingProducts(state.driverCapacities);
+    }
+}
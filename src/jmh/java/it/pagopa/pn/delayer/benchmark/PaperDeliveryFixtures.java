@@ -0,0 +1,95 @@
+package it.pagopa.pn.delayer.benchmark;
+
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.model.ProductType;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Synthetic data for the JMH benchmarks.
+ * Every generator uses a fixed seed so that two runs on the same page size are comparable.
+ */
+final class PaperDeliveryFixtures {
+
+    static final LocalDate DELIVERY_WEEK = LocalDate.of(2025, 1, 6);
+    static final String TENDER_ID = "tender-bench";
+    static final String PROVINCE = "RM";
+
+    private static final long SEED = 42L;
+    private static final int SENDERS = 200;
+    private static final int CAPS = 150;
+    private static final List<String> PRODUCTS = Arrays.stream(ProductType.values()).map(ProductType::getValue).toList();
+
+    private PaperDeliveryFixtures() {
+    }
+
+    static List<PaperDelivery> paperDeliveries(int size) {
+        Random random = new Random(SEED);
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        List<PaperDelivery> deliveries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PaperDelivery paperDelivery = new PaperDelivery();
+            String productType = PRODUCTS.get(random.nextInt(PRODUCTS.size()));
+            String date = base.plusSeconds(i).toString();
+            paperDelivery.setRequestId("requestId-" + i);
+            paperDelivery.setIun("IUN-" + i);
+            paperDelivery.setSenderPaId("senderPaId-" + random.nextInt(SENDERS));
+            paperDelivery.setProductType(productType);
+            paperDelivery.setProvince(PROVINCE);
+            paperDelivery.setCap(String.format("%05d", random.nextInt(CAPS)));
+            paperDelivery.setAttempt(random.nextInt(10) == 0 ? 1 : 0);
+            paperDelivery.setNotificationSentAt(date);
+            paperDelivery.setPrepareRequestDate(date);
+            paperDelivery.setRecipientId("recipientId-" + i);
+            paperDelivery.setUnifiedDeliveryDriver("driver-" + random.nextInt(3));
+            paperDelivery.setTenderId(TENDER_ID);
+            paperDelivery.setPriority(1 + random.nextInt(3));
+            paperDelivery.setPk(PaperDelivery.buildPk(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, DELIVERY_WEEK));
+            deliveries.add(paperDelivery);
+        }
+        return deliveries;
+    }
+
+    /**
+     * Sender limits for every PaId~ProductType~Province key of the page, with a declared limit equal to about
+     * half of the deliveries of the key, so that both the driver and the residual branch are exercised.
+     */
+    static Map<String, Tuple2<Integer, Integer>> senderLimitMap(Map<String, List<PaperDelivery>> groupedDeliveries) {
+        Map<String, Tuple2<Integer, Integer>> senderLimitMap = new HashMap<>();
+        groupedDeliveries.forEach((key, deliveries) -> senderLimitMap.put(key, Tuples.of(deliveries.size() / 2, 0)));
+        return senderLimitMap;
+    }
+
+    static Map<Integer, List<String>> priorityMap() {
+        return Map.of(
+                1, List.of("PRODUCT_RS.ATTEMPT_0", "PRODUCT_AR.ATTEMPT_1", "PRODUCT_890.ATTEMPT_1", "PRODUCT_RS.ATTEMPT_1"),
+                2, List.of("PRODUCT_AR.ATTEMPT_0", "PRODUCT_890.ATTEMPT_0"),
+                3, List.of("PRODUCT_RIR.ATTEMPT_0", "PRODUCT_RIS.ATTEMPT_0"));
+    }
+
+    /**
+     * Driver capacities on a province where consecutive drivers share one product, so that the grouping
+     * has to merge the overlapping groups.
+     */
+    static List<PaperDeliveryDriverCapacity> driverCapacities(int size) {
+        Random random = new Random(SEED);
+        List<PaperDeliveryDriverCapacity> capacities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PaperDeliveryDriverCapacity capacity = new PaperDeliveryDriverCapacity();
+            capacity.setPk(PaperDeliveryDriverCapacity.buildKey(TENDER_ID, "driver-" + i, PROVINCE));
+            capacity.setTenderId(TENDER_ID);
+            capacity.setUnifiedDeliveryDriver("driver-" + i);
+            capacity.setGeoKey(PROVINCE);
+            capacity.setCapacity(100 + random.nextInt(1000));
+            capacity.setProducts(List.of(PRODUCTS.get(i % PRODUCTS.size()), "product-" + i));
+            capacities.add(capacity);
+        }
+        return capacities;
+    }
+}
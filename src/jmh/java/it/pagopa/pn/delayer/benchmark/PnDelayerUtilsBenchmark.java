@@ -0,0 +1,73 @@
+package it.pagopa.pn.delayer.benchmark;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.model.SenderLimitJobProcessObjects;
+import it.pagopa.pn.delayer.utils.PnDelayerUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the in-memory grouping and filtering steps applied by the jobs to every page of PaperDelivery.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PnDelayerUtilsBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    private int pageSize;
+
+    private PnDelayerUtils pnDelayerUtils;
+    private List<PaperDelivery> page;
+    private Map<String, List<PaperDelivery>> groupedByPaIdProductTypeProvince;
+    private Map<String, Tuple2<Integer, Integer>> senderLimitMap;
+    private Tuple2<Integer, Integer> capCapacities;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pnDelayerUtils = new PnDelayerUtils(new PnDelayerConfigs(), null);
+        page = PaperDeliveryFixtures.paperDeliveries(pageSize);
+        groupedByPaIdProductTypeProvince = pnDelayerUtils.groupByPaIdProductTypeProvince(page);
+        senderLimitMap = PaperDeliveryFixtures.senderLimitMap(groupedByPaIdProductTypeProvince);
+        capCapacities = Tuples.of(pageSize / 2, 0);
+    }
+
+    @Benchmark
+    public Map<String, List<PaperDelivery>> groupByPaIdProductTypeProvince() {
+        return pnDelayerUtils.groupByPaIdProductTypeProvince(page);
+    }
+
+    @Benchmark
+    public Map<String, List<PaperDelivery>> groupByCapAndProductType() {
+        return pnDelayerUtils.groupByCapAndProductType(page);
+    }
+
+    @Benchmark
+    public void filterOnResidualDriverCapacity(Blackhole blackhole) {
+        List<PaperDelivery> deliveriesToSend = new ArrayList<>();
+        List<PaperDelivery> toNextWeek = new ArrayList<>();
+        blackhole.consume(pnDelayerUtils.filterOnResidualDriverCapacity(page, capCapacities, deliveriesToSend, toNextWeek, PaperDeliveryFixtures.DELIVERY_WEEK));
+        blackhole.consume(deliveriesToSend);
+        blackhole.consume(toNextWeek);
+    }
+
+    @Benchmark
+    public SenderLimitJobProcessObjects evaluateSenderLimitAndFilterDeliveries() {
+        // il metodo aggiorna i limiti utilizzati, la copia evita che le invocazioni successive trovino i limiti esauriti
+        SenderLimitJobProcessObjects senderLimitJobProcessObjects = new SenderLimitJobProcessObjects();
+        pnDelayerUtils.evaluateSenderLimitAndFilterDeliveries(new HashMap<>(senderLimitMap), groupedByPaIdProductTypeProvince, senderLimitJobProcessObjects);
+        return senderLimitJobProcessObjects;
+    }
+}
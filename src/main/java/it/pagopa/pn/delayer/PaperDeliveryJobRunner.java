@@ -4,29 +4,41 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import it.pagopa.pn.commons.utils.MDCUtils;
+import it.pagopa.pn.delayer.cache.DriverCacheSnapshotService;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.model.ConsumedCapacityScope;
+import it.pagopa.pn.delayer.model.ProvinceExecutionMode;
+import it.pagopa.pn.delayer.model.ProvinceJobReport;
+import it.pagopa.pn.delayer.model.StorageImpl;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import it.pagopa.pn.delayer.service.EvaluateDriverCapacityJobService;
 import it.pagopa.pn.delayer.service.EvaluateResidualCapacityJobService;
 import it.pagopa.pn.delayer.service.EvaluateSenderLimitJobService;
+import it.pagopa.pn.delayer.utils.MetricsUtils;
 import it.pagopa.pn.delayer.utils.PnDelayerUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
 
 @Component
 @RequiredArgsConstructor
@@ -34,77 +46,103 @@ import java.util.UUID;
 @Profile("!test")
 public class PaperDeliveryJobRunner implements CommandLineRunner {
 
-    private final EvaluateDriverCapacityJobService evaluateDriverCapacityJobService;
-    private final EvaluateSenderLimitJobService evaluateSenderLimitJobService;
-    private final EvaluateResidualCapacityJobService evaluateResidualCapacityJobService;
+    // resolved only for the step of the job, so that with lazy initialization the beans of the other steps are never created
+    private final ObjectProvider<EvaluateDriverCapacityJobService> evaluateDriverCapacityJobService;
+    private final ObjectProvider<EvaluateSenderLimitJobService> evaluateSenderLimitJobService;
+    private final ObjectProvider<EvaluateResidualCapacityJobService> evaluateResidualCapacityJobService;
+    private final ObjectProvider<DriverCacheSnapshotService> driverCacheSnapshotService;
     private final ApplicationContext applicationContext;
     private final PnDelayerConfigs pnDelayerConfigs;
     private final PnDelayerUtils pnDelayerUtils;
     private final ObjectMapper objectMapper;
+    private final MetricsUtils metricsUtils;
 
     @Override
     public void run(String... args) throws JsonProcessingException {
         int exitCode;
         WorkflowStepEnum workflowStep = pnDelayerConfigs.getWorkflowStep();
-        switch (workflowStep) {
-            case EVALUATE_SENDER_LIMIT:
-                log.info("Starting Evaluate Sender Limit step");
-                exitCode = executeEvaluateSenderLimitStep();
-                break;
-            case EVALUATE_DRIVER_CAPACITY:
-                log.info("Starting Evaluate Driver Capacity step");
-                exitCode = executeEvaluateDriverCapacityStep();
-                break;
-            case EVALUATE_RESIDUAL_CAPACITY:
-                log.info("Starting Evaluate Residual Capacity step");
-                exitCode = executeEvaluateResidualCapacityStep();
-                break;
-            default:
-                log.error("Unknown workflow step: {}", workflowStep);
-                exitCode = SpringApplication.exit(applicationContext, () -> 1);
-                System.exit(exitCode);
-                return;
+        if (pnDelayerConfigs.getStorage().getImpl() == StorageImpl.MEMORY) {
+            exitCode = executeMemoryPipeline();
+        } else {
+            switch (workflowStep) {
+                case EVALUATE_SENDER_LIMIT:
+                    log.info("Starting Evaluate Sender Limit step");
+                    exitCode = executeEvaluateSenderLimitStep();
+                    break;
+                case EVALUATE_DRIVER_CAPACITY:
+                    log.info("Starting Evaluate Driver Capacity step");
+                    exitCode = executeEvaluateDriverCapacityStep();
+                    break;
+                case EVALUATE_RESIDUAL_CAPACITY:
+                    log.info("Starting Evaluate Residual Capacity step");
+                    exitCode = executeEvaluateResidualCapacityStep();
+                    break;
+                default:
+                    log.error("Unknown workflow step: {}", workflowStep);
+                    exitCode = SpringApplication.exit(applicationContext, () -> 1);
+            }
         }
         log.info("Batch finished with exit code: {}", exitCode);
+        metricsUtils.dumpAndClose();
         System.exit(exitCode);
     }
 
+    /**
+     * With the in-memory storage the tables live only in this process, so the steps are executed one after the other
+     * on the same data: the sender limit step on the province of its job input, then the driver capacity and the
+     * residual capacity steps on all the provinces of their job inputs. A failed step stops the pipeline.
+     */
+    private int executeMemoryPipeline() throws JsonProcessingException {
+        log.info("Starting in-memory pipeline of the Evaluate Sender Limit, Driver Capacity and Residual Capacity steps");
+        int exitCode = executeEvaluateSenderLimitStep();
+        if (exitCode == 0) {
+            exitCode = executeEvaluateDriverCapacityStep(true);
+        }
+        if (exitCode == 0) {
+            exitCode = executeEvaluateResidualCapacityStep(true);
+        }
+        return exitCode;
+    }
+
     private int executeEvaluateResidualCapacityStep() throws JsonProcessingException {
+        return executeEvaluateResidualCapacityStep(false);
+    }
+
+    private int executeEvaluateResidualCapacityStep(boolean allProvinces) throws JsonProcessingException {
         String unifiedDeliveryDriver = pnDelayerConfigs.getEvaluateResidualCapacityJobInput().getUnifiedDeliveryDriver();
         String provinces = pnDelayerConfigs.getEvaluateResidualCapacityJobInput().getProvinceList();
         LocalDate deliveryWeek = Objects.isNull(pnDelayerConfigs.getDeliveryWeek()) ? pnDelayerUtils.calculateDeliveryWeek(Instant.now()) : pnDelayerConfigs.getDeliveryWeek();
-        List<String> provinceList = objectMapper.readValue(provinces, new TypeReference<>() {});
-        String jobIndex = System.getenv("AWS_BATCH_JOB_ARRAY_INDEX");
-        if (StringUtils.hasText(jobIndex)) {
-            return Optional.of(jobIndex)
-                    .map(Integer::parseInt)
-                    .map(provinceList::get)
-                    .map(province -> {
-                        log.info("Starting batch for unifiedDeliveryDriver: {} and province: {}", unifiedDeliveryDriver, province);
-                        addMDC( String.join("~", unifiedDeliveryDriver,  province));
-                        try {
-                            Mono<Void> monoExcecution = evaluateResidualCapacityJobService.startEvaluateResidualCapacityJob(unifiedDeliveryDriver, province, deliveryWeek, pnDelayerConfigs.getActualTenderId());
-                            MDCUtils.addMDCToContextAndExecute(monoExcecution).block();return 0;
-                        } catch (Exception e) {
-                            log.error("Error while executing batch", e);
-                            return 1;
-                        }
-                    }).orElseGet(() -> {
-                        log.error("Province on index [{}] not found, cannot start batch", jobIndex);
-                        return SpringApplication.exit(applicationContext, () -> 1);
-                    });
-        } else {
-            log.error("No job index found, cannot start batch");
-            return SpringApplication.exit(applicationContext, () -> 1);
-        }
+        EvaluateResidualCapacityJobService jobService = evaluateResidualCapacityJobService.getObject();
+        return executeOnProvinces(WorkflowStepEnum.EVALUATE_RESIDUAL_CAPACITY, unifiedDeliveryDriver, provinces, allProvinces, province ->
+                jobService.startEvaluateResidualCapacityJob(unifiedDeliveryDriver, province, deliveryWeek, pnDelayerConfigs.getActualTenderId()));
     }
 
     private int executeEvaluateDriverCapacityStep() throws JsonProcessingException {
+        return executeEvaluateDriverCapacityStep(false);
+    }
+
+    private int executeEvaluateDriverCapacityStep(boolean allProvinces) throws JsonProcessingException {
         String unifiedDeliveryDriver = pnDelayerConfigs.getEvaluateDriverCapacityJobInput().getUnifiedDeliveryDriver();
         String provinces = pnDelayerConfigs.getEvaluateDriverCapacityJobInput().getProvinceList();
         LocalDate deliveryWeek = Objects.isNull(pnDelayerConfigs.getDeliveryWeek()) ? pnDelayerUtils.calculateDeliveryWeek(Instant.now()) : pnDelayerConfigs.getDeliveryWeek();
+        EvaluateDriverCapacityJobService jobService = evaluateDriverCapacityJobService.getObject();
+        return executeOnProvinces(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, unifiedDeliveryDriver, provinces, allProvinces, province ->
+                jobService.startEvaluateDriverCapacityJob(unifiedDeliveryDriver, province, deliveryWeek, pnDelayerConfigs.getActualTenderId()));
+    }
+
+    private int executeOnProvinces(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, String provinces, boolean allProvinces,
+                                   Function<String, Mono<Void>> provinceJob) throws JsonProcessingException {
         List<String> provinceList = objectMapper.readValue(provinces, new TypeReference<>() {});
         String jobIndex = System.getenv("AWS_BATCH_JOB_ARRAY_INDEX");
+        PnDelayerConfigs.ProvinceExecution provinceExecution = pnDelayerConfigs.getProvinceExecution();
+        int concurrency = Math.max(Optional.ofNullable(provinceExecution.getConcurrency()).orElse(1), 1);
+        if (allProvinces) {
+            return executeOnProvinceSlice(workflowStep, unifiedDeliveryDriver, provinceList, jobIndex, concurrency, provinceJob);
+        }
+        if (provinceExecution.getMode() == ProvinceExecutionMode.MULTI) {
+            List<String> slice = retrieveProvinceSlice(provinceList, jobIndex, provinceExecution.getSliceSize());
+            return executeOnProvinceSlice(workflowStep, unifiedDeliveryDriver, slice, jobIndex, concurrency, provinceJob);
+        }
         if (StringUtils.hasText(jobIndex)) {
             return Optional.of(jobIndex)
                     .map(Integer::parseInt)
@@ -113,8 +151,8 @@ public class PaperDeliveryJobRunner implements CommandLineRunner {
                         log.info("Starting batch for unifiedDeliveryDriver: {} and province: {}", unifiedDeliveryDriver, province);
                         addMDC( String.join("~", unifiedDeliveryDriver,  province));
                         try {
-                            Mono<Void> monoExcecution = evaluateDriverCapacityJobService.startEvaluateDriverCapacityJob(unifiedDeliveryDriver, province, deliveryWeek, pnDelayerConfigs.getActualTenderId());
-                            MDCUtils.addMDCToContextAndExecute(monoExcecution).block();return 0;
+                            MDCUtils.addMDCToContextAndExecute(withConsumedCapacityScope(provinceJob.apply(province), workflowStep, province)).block();
+                            return 0;
                         } catch (Exception e) {
                             log.error("Error while executing batch", e);
                             return 1;
@@ -129,6 +167,57 @@ public class PaperDeliveryJobRunner implements CommandLineRunner {
         }
     }
 
+    /**
+     * Processes the provinces of the slice in the same JVM, at most concurrency provinces at a time.
+     * A failure on a province does not stop the others: the outcome of every province is collected in a
+     * report and the exit code is 1 if at least one province failed.
+     */
+    private int executeOnProvinceSlice(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, List<String> slice, String jobIndex,
+                                       int concurrency, Function<String, Mono<Void>> provinceJob) {
+        log.info("Starting multi-province batch for unifiedDeliveryDriver: {}, provinces: {}, concurrency: {}", unifiedDeliveryDriver, slice, concurrency);
+        if (slice.isEmpty()) {
+            log.error("No provinces found for job index [{}], cannot start batch", jobIndex);
+            return SpringApplication.exit(applicationContext, () -> 1);
+        }
+
+        List<ProvinceJobReport> reports = Flux.fromIterable(slice)
+                .flatMap(province -> executeProvinceJob(workflowStep, unifiedDeliveryDriver, province, provinceJob), concurrency)
+                .collectList()
+                .block();
+
+        reports.forEach(report -> log.info("Province report - province: {}, success: {}, elapsed: {}ms, error: {}",
+                report.province(), report.success(), report.elapsed().toMillis(), report.error()));
+        long failed = reports.stream().filter(report -> !report.success()).count();
+        log.info("Multi-province batch for unifiedDeliveryDriver: {} completed - processed: {}, failed: {}", unifiedDeliveryDriver, reports.size(), failed);
+        return failed == 0 ? 0 : 1;
+    }
+
+    private Mono<ProvinceJobReport> executeProvinceJob(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, String province, Function<String, Mono<Void>> provinceJob) {
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    Mono<Void> job = Mono.defer(() -> {
+                        log.info("Starting batch for unifiedDeliveryDriver: {} and province: {}", unifiedDeliveryDriver, province);
+                        return provinceJob.apply(province);
+                    });
+                    return withProvinceMDC(String.join("~", unifiedDeliveryDriver, province), withConsumedCapacityScope(job, workflowStep, province))
+                            .then(Mono.fromCallable(() -> new ProvinceJobReport(province, true, Duration.ofNanos(System.nanoTime() - start), null)))
+                            .onErrorResume(e -> {
+                                log.error("Error while executing batch for province: {}", province, e);
+                                return Mono.just(new ProvinceJobReport(province, false, Duration.ofNanos(System.nanoTime() - start), e.getMessage()));
+                            });
+                });
+    }
+
+    private List<String> retrieveProvinceSlice(List<String> provinceList, String jobIndex, Integer sliceSize) {
+        if (Objects.isNull(sliceSize) || sliceSize <= 0) {
+            return provinceList;
+        }
+        int index = StringUtils.hasText(jobIndex) ? Integer.parseInt(jobIndex) : 0;
+        int from = Math.min(index * sliceSize, provinceList.size());
+        int to = Math.min(from + sliceSize, provinceList.size());
+        return provinceList.subList(from, to);
+    }
+
     private int executeEvaluateSenderLimitStep() {
         String province = pnDelayerConfigs.getEvaluateSenderLimitJobInput().getProvince();
         String tenderId = pnDelayerConfigs.getActualTenderId();
@@ -136,8 +225,12 @@ public class PaperDeliveryJobRunner implements CommandLineRunner {
         log.info("Starting batch for province: {}", province);
         addMDC(province);
         try {
-            Mono<Void> monoExcecution = evaluateSenderLimitJobService.startSenderLimitJob(province, tenderId, deliveryWeek);
-            MDCUtils.addMDCToContextAndExecute(monoExcecution).block();
+            DriverCacheSnapshotService snapshotService = driverCacheSnapshotService.getObject();
+            EvaluateSenderLimitJobService jobService = evaluateSenderLimitJobService.getObject();
+            Mono<Void> monoExcecution = snapshotService.warmUp(tenderId)
+                    .then(Mono.defer(() -> jobService.startSenderLimitJob(province, tenderId, deliveryWeek)))
+                    .then(Mono.defer(() -> snapshotService.flush(tenderId)));
+            MDCUtils.addMDCToContextAndExecute(withConsumedCapacityScope(monoExcecution, WorkflowStepEnum.EVALUATE_SENDER_LIMIT, province)).block();
             return 0;
         } catch (Exception e) {
             log.error("Error while executing batch", e);
@@ -145,6 +238,31 @@ public class PaperDeliveryJobRunner implements CommandLineRunner {
         }
     }
 
+    /**
+     * Attributes the DynamoDB requests of the job to the step and to the province in the consumed capacity report.
+     */
+    private Mono<Void> withConsumedCapacityScope(Mono<Void> job, WorkflowStepEnum workflowStep, String province) {
+        return job.contextWrite(Context.of(ConsumedCapacityScope.CONTEXT_KEY, new ConsumedCapacityScope(workflowStep.name(), province)));
+    }
+
+    /**
+     * Copies the MDC of a province of the multi-province batch in the Reactor context of its job. The thread-local MDC
+     * is only set while the job is assembled and then restored, so the provinces running concurrently on the same
+     * threads never read each other's values from it.
+     */
+    private Mono<Void> withProvinceMDC(String requestId, Mono<Void> job) {
+        Map<String, String> previousMDC = MDC.getCopyOfContextMap();
+        try {
+            addMDC(requestId);
+            return MDCUtils.addMDCToContextAndExecute(job);
+        } finally {
+            if (Objects.isNull(previousMDC)) {
+                MDC.clear();
+            } else {
+                MDC.setContextMap(previousMDC);
+            }
+        }
+    }
 
     private void addMDC(String requestId) {
         MDCUtils.clearMDCKeys();
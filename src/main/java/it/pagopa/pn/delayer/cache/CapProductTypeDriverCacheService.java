@@ -1,14 +1,20 @@
 package it.pagopa.pn.delayer.cache;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.jodah.expiringmap.ExpiringMap;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
 @Component
+@RequiredArgsConstructor
 public class CapProductTypeDriverCacheService {
 
     protected ExpiringMap<String, String> capProductDriverCache = ExpiringMap.builder()
@@ -17,11 +23,32 @@ public class CapProductTypeDriverCacheService {
             .variableExpiration()
             .build();
 
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean modified = new AtomicBoolean(false);
+
     public void addToCache(String key, String value) {
         capProductDriverCache.put(key, value);
+        modified.set(true);
     }
 
     public Optional<String> getFromCache(String capProductTypeKey) {
-        return Optional.ofNullable(capProductDriverCache.get(capProductTypeKey));
+        Optional<String> driver = Optional.ofNullable(capProductDriverCache.get(capProductTypeKey));
+        meterRegistry.counter("pn.delayer.cache.driver", "result", driver.isPresent() ? "hit" : "miss").increment();
+        return driver;
+    }
+
+    /**
+     * Loads entries restored from a snapshot; unlike addToCache it does not mark the cache as modified.
+     */
+    public void loadIntoCache(Map<String, String> entries) {
+        capProductDriverCache.putAll(entries);
+    }
+
+    public Map<String, String> getCacheEntries() {
+        return new HashMap<>(capProductDriverCache);
+    }
+
+    public boolean isModified() {
+        return modified.get();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package it.pagopa.pn.delayer.cache;
+
+import net.jodah.expiringmap.ExpiringMap;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Declared capacities of the drivers by tenderId~unifiedDeliveryDriver~geoKey~deliveryWeek, used by the
+ * driver capacity step for the geoKeys without a used capacity item.
+ */
+@Component
+public class DeclaredCapacityCacheService {
+
+    protected ExpiringMap<String, Integer> declaredCapacityCache = ExpiringMap.builder()
+            .expiration(1, TimeUnit.HOURS)
+            .build();
+
+    public void addToCache(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek, Integer declaredCapacity) {
+        declaredCapacityCache.put(buildKey(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek), declaredCapacity);
+    }
+
+    public Optional<Integer> getFromCache(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek) {
+        return Optional.ofNullable(declaredCapacityCache.get(buildKey(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek)));
+    }
+
+    private static String buildKey(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek) {
+        return String.join("~", tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek.toString());
+    }
+}
@@ -0,0 +1,56 @@
+package it.pagopa.pn.delayer.cache;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverCapacitiesDAO;
+import it.pagopa.pn.delayer.model.DeclaredCapacityIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the declared capacity of a driver on a geoKey (province or CAP).
+ * With declaredCapacityIndex.enabled the capacity rows of the tenderId and driver are loaded once with a parallel
+ * scan and every lookup is answered by the in-memory DeclaredCapacityIndex; otherwise every lookup queries the
+ * capacities table. As for the query, a geoKey without capacity has capacity 0.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DeclaredCapacityIndexService {
+
+    private final PaperDeliveryDriverCapacitiesDAO paperDeliveryDriverCapacitiesDAO;
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final Map<String, Mono<DeclaredCapacityIndex>> indexes = new ConcurrentHashMap<>();
+
+    public Mono<Integer> getDeclaredCapacity(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryDate) {
+        PnDelayerConfigs.DeclaredCapacityIndex config = Optional.ofNullable(pnDelayerConfigs.getDeclaredCapacityIndex()).orElseGet(PnDelayerConfigs.DeclaredCapacityIndex::new);
+        if (!config.isEnabled()) {
+            return paperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities(tenderId, unifiedDeliveryDriver, geoKey, deliveryDate);
+        }
+        return retrieveIndex(tenderId, unifiedDeliveryDriver, config.getScanSegments())
+                .map(index -> index.capacityAt(geoKey, deliveryDate).orElseGet(() -> {
+                    log.error("No PaperDeliveryDriverCapacity found for tenderId: {}, unifiedDeliveryDriver: {}, geoKey: {}, deliveryDate: {}",
+                            tenderId, unifiedDeliveryDriver, geoKey, deliveryDate);
+                    return 0;
+                }));
+    }
+
+    private Mono<DeclaredCapacityIndex> retrieveIndex(String tenderId, String unifiedDeliveryDriver, Integer scanSegments) {
+        String key = String.join("~", tenderId, unifiedDeliveryDriver);
+        return indexes.computeIfAbsent(key, k -> paperDeliveryDriverCapacitiesDAO.scanPaperDeliveryDriverCapacities(tenderId, unifiedDeliveryDriver, scanSegments)
+                .collectList()
+                .map(DeclaredCapacityIndex::of)
+                .doOnNext(index -> log.info("Loaded declared capacity index for tenderId={} unifiedDeliveryDriver={}: {} geoKeys", tenderId, unifiedDeliveryDriver, index.size()))
+                .doOnError(e -> {
+                    log.error("Error loading declared capacity index for tenderId={} unifiedDeliveryDriver={}", tenderId, unifiedDeliveryDriver, e);
+                    indexes.remove(k);
+                })
+                .cache());
+    }
+}
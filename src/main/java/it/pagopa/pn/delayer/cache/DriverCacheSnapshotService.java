@@ -0,0 +1,89 @@
+package it.pagopa.pn.delayer.cache;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.DriverCacheSnapshotDAO;
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Warms the CAP~productType driver cache from the persistent snapshot of the tender and saves it back when the
+ * job has added new entries. The save re-reads the current snapshot and merges its entries with the cache, so
+ * that concurrent jobs do not discard each other's entries, and is repeated when another job publishes a new
+ * version in between. Snapshot errors are only logged: the cache falls back to the Paper Channel lambda.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class DriverCacheSnapshotService {
+
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private final CapProductTypeDriverCacheService cacheService;
+    private final DriverCacheSnapshotDAO driverCacheSnapshotDAO;
+    private final PnDelayerConfigs pnDelayerConfigs;
+
+    public Mono<Void> warmUp(String tenderId) {
+        if (!pnDelayerConfigs.getDriverCacheSnapshot().isEnabled()) {
+            return Mono.empty();
+        }
+        return driverCacheSnapshotDAO.retrieveSnapshot(tenderId)
+                .filter(snapshot -> !snapshot.isExpired(Instant.now()))
+                .doOnNext(snapshot -> {
+                    cacheService.loadIntoCache(snapshot.entries());
+                    log.info("Driver cache warmed up from snapshot version={} with {} entries for tenderId={}", snapshot.version(), snapshot.entries().size(), tenderId);
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> log.info("No valid driver cache snapshot for tenderId={}", tenderId)))
+                .onErrorResume(e -> {
+                    log.warn("Driver cache warm up failed for tenderId={}, starting with an empty cache", tenderId, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    public Mono<Void> flush(String tenderId) {
+        if (!pnDelayerConfigs.getDriverCacheSnapshot().isEnabled() || !cacheService.isModified()) {
+            return Mono.empty();
+        }
+        return mergeAndSave(tenderId, 1)
+                .onErrorResume(e -> {
+                    log.warn("Driver cache flush failed for tenderId={}", tenderId, e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Void> mergeAndSave(String tenderId, int attempt) {
+        return driverCacheSnapshotDAO.retrieveSnapshot(tenderId)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(current -> {
+                    Instant now = Instant.now();
+                    Map<String, String> entries = new HashMap<>();
+                    current.filter(snapshot -> !snapshot.isExpired(now)).ifPresent(snapshot -> entries.putAll(snapshot.entries()));
+                    entries.putAll(cacheService.getCacheEntries());
+                    Long expectedVersion = current.map(CapProductTypeDriverSnapshot::version).orElse(null);
+                    long version = Math.max(now.toEpochMilli(), Optional.ofNullable(expectedVersion).map(v -> v + 1).orElse(0L));
+                    CapProductTypeDriverSnapshot snapshot = new CapProductTypeDriverSnapshot(tenderId, version,
+                            now.plus(pnDelayerConfigs.getDriverCacheSnapshot().getTtl()), entries);
+                    return driverCacheSnapshotDAO.saveSnapshot(snapshot, expectedVersion);
+                })
+                .flatMap(saved -> {
+                    if (Boolean.TRUE.equals(saved)) {
+                        return Mono.empty();
+                    }
+                    if (attempt >= MAX_FLUSH_ATTEMPTS) {
+                        log.warn("Driver cache flush for tenderId={} not saved after {} attempts, the snapshot keeps changing", tenderId, attempt);
+                        return Mono.empty();
+                    }
+                    log.info("Driver cache snapshot for tenderId={} changed meanwhile, merging again (attempt {})", tenderId, attempt + 1);
+                    return mergeAndSave(tenderId, attempt + 1);
+                });
+    }
+}
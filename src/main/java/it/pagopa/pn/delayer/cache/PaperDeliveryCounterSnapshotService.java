@@ -0,0 +1,76 @@
+package it.pagopa.pn.delayer.cache;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.model.PaperDeliveryCounterSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import net.jodah.expiringmap.ExpiringMap;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the SUM_ESTIMATES and EXCLUDE counters of the counter table.
+ * With counterSnapshot.enabled the SUM_ESTIMATES counters of a date (pk) are read once, all products and provinces
+ * included, and the EXCLUDE counters once per province; every lookup is then answered by the
+ * PaperDeliveryCounterSnapshot. The snapshots expire after counterSnapshot.ttl. Otherwise every lookup queries the table.
+ */
+@Component
+@Slf4j
+public class PaperDeliveryCounterSnapshotService {
+
+    private final PaperDeliveryCounterDAO paperDeliveryCounterDAO;
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final ExpiringMap<String, Mono<PaperDeliveryCounterSnapshot>> snapshots;
+
+    public PaperDeliveryCounterSnapshotService(PaperDeliveryCounterDAO paperDeliveryCounterDAO, PnDelayerConfigs pnDelayerConfigs) {
+        this.paperDeliveryCounterDAO = paperDeliveryCounterDAO;
+        this.pnDelayerConfigs = pnDelayerConfigs;
+        Duration ttl = Optional.ofNullable(pnDelayerConfigs.getCounterSnapshot())
+                .map(PnDelayerConfigs.CounterSnapshot::getTtl)
+                .orElse(Duration.ofMinutes(10));
+        this.snapshots = ExpiringMap.builder()
+                .expiration(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public Mono<List<PaperDeliveryCounter>> getPaperDeliveryCounter(String pk, PaperDeliveryCounter.SkPrefix skPrefix, String province, String sk, Integer limit) {
+        boolean enabled = Optional.ofNullable(pnDelayerConfigs.getCounterSnapshot()).map(PnDelayerConfigs.CounterSnapshot::isEnabled).orElse(false);
+        if (!enabled) {
+            return paperDeliveryCounterDAO.getPaperDeliveryCounter(pk, sk, limit);
+        }
+        return retrieveSnapshot(pk, skPrefix, province)
+                .map(snapshot -> snapshot.withSkPrefix(sk, limit));
+    }
+
+    private Mono<PaperDeliveryCounterSnapshot> retrieveSnapshot(String pk, PaperDeliveryCounter.SkPrefix skPrefix, String province) {
+        String snapshotSkPrefix = snapshotSkPrefix(skPrefix, province);
+        String key = String.join("~", pk, snapshotSkPrefix);
+        return snapshots.computeIfAbsent(key, k -> paperDeliveryCounterDAO.retrievePaperDeliveryCounters(pk, snapshotSkPrefix)
+                .collectList()
+                .map(PaperDeliveryCounterSnapshot::of)
+                .doOnNext(snapshot -> log.info("Loaded counters snapshot for pk={} and sk prefix={}: {} counters", pk, snapshotSkPrefix, snapshot.size()))
+                .doOnError(e -> {
+                    log.error("Error loading counters snapshot for pk={} and sk prefix={}", pk, snapshotSkPrefix, e);
+                    snapshots.remove(k);
+                })
+                .cache());
+    }
+
+    /**
+     * The EXCLUDE sort keys begin with the province, so a snapshot holds the counters of one province. The
+     * SUM_ESTIMATES ones begin with the product followed by the province: they are read for the whole date at once,
+     * since a per-province read would take one query per product.
+     */
+    private static String snapshotSkPrefix(PaperDeliveryCounter.SkPrefix skPrefix, String province) {
+        if (skPrefix == PaperDeliveryCounter.SkPrefix.EXCLUDE) {
+            return PaperDeliveryCounter.buildSkPrefix(skPrefix, province);
+        }
+        return PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES.getValue();
+    }
+}
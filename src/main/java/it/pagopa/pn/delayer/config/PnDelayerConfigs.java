@@ -2,6 +2,9 @@ package it.pagopa.pn.delayer.config;
 
 import it.pagopa.pn.commons.conf.SharedAutoConfiguration;
 import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.model.DriverCacheSnapshotStore;
+import it.pagopa.pn.delayer.model.ProvinceExecutionMode;
+import it.pagopa.pn.delayer.model.StorageImpl;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import it.pagopa.pn.delayer.utils.CronUtils;
 import lombok.Data;
@@ -13,7 +16,9 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @ConfigurationProperties(prefix = "pn.delayer")
@@ -27,6 +32,19 @@ public class PnDelayerConfigs {
     private EvaluateDriverCapacityJobInput evaluateDriverCapacityJobInput;
     private EvaluateSenderLimitJobInput evaluateSenderLimitJobInput;
     private EvaluateResidualCapacityJobInput evaluateResidualCapacityJobInput;
+    private ProvinceExecution provinceExecution = new ProvinceExecution();
+    private ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter();
+    private DriverCacheSnapshot driverCacheSnapshot = new DriverCacheSnapshot();
+    private DriverResolution driverResolution = new DriverResolution();
+    private CapacityResolution capacityResolution = new CapacityResolution();
+    private DeclaredCapacityIndex declaredCapacityIndex = new DeclaredCapacityIndex();
+    private CounterSnapshot counterSnapshot = new CounterSnapshot();
+    private PrintCounter printCounter = new PrintCounter();
+    private Checkpoint checkpoint = new Checkpoint();
+    private Scheduling scheduling = new Scheduling();
+    private CarryOver carryOver = new CarryOver();
+    private Metrics metrics = new Metrics();
+    private Storage storage = new Storage();
     private WorkflowStepEnum workflowStep;
     private Integer deliveryDateDayOfWeek; //1-7 the day-of-week to represent, from 1 (Monday) to 7 (Sunday)
     private List<String> printCapacity;
@@ -53,6 +71,170 @@ public class PnDelayerConfigs {
         private String provinceList;
     }
 
+    /**
+     * Execution mode of the driver and residual capacity steps over the provinceList of the job input.
+     * SINGLE processes only the province at index AWS_BATCH_JOB_ARRAY_INDEX, MULTI processes the whole list
+     * (or the slice of sliceSize provinces selected by AWS_BATCH_JOB_ARRAY_INDEX) inside the same process.
+     */
+    @Data
+    public static class ProvinceExecution {
+        private ProvinceExecutionMode mode = ProvinceExecutionMode.SINGLE;
+        private Integer concurrency = 1;
+        private Integer sliceSize;
+    }
+
+    /**
+     * AIMD limiter applied to the DynamoDB calls of the DAOs. The values in defaults apply to every table
+     * and can be overridden per table in tables, keyed by table name.
+     */
+    @Data
+    public static class ConcurrencyLimiter {
+        private boolean enabled = false;
+        private ConcurrencyLimit defaults = new ConcurrencyLimit();
+        private Map<String, ConcurrencyLimit> tables = new HashMap<>();
+    }
+
+    @Data
+    public static class ConcurrencyLimit {
+        private Integer initialLimit;
+        private Integer minLimit;
+        private Integer maxLimit;
+        private Double backoffRatio;
+        private Duration latencyThreshold;
+    }
+
+    /**
+     * Persistent snapshot of the CAP~productType driver cache, loaded at the start of the sender limit job
+     * and saved at its end. store selects the counter table (DYNAMO) or a JSON file in directory (FILE).
+     */
+    @Data
+    public static class DriverCacheSnapshot {
+        private boolean enabled = false;
+        private DriverCacheSnapshotStore store = DriverCacheSnapshotStore.DYNAMO;
+        private Duration ttl = Duration.ofDays(7);
+        private String directory;
+    }
+
+    /**
+     * With upfront enabled the sender limit job resolves the drivers of all the CAP~productType keys of the
+     * province before processing the pages, calling Paper Channel with chunks of chunkSize keys, up to
+     * concurrency invocations in parallel.
+     * With asyncInvocation enabled Paper Channel is invoked through the LambdaAsyncClient, splitting the requests
+     * whose payload exceeds maxPayloadBytes in concurrent sub-invocations.
+     */
+    @Data
+    public static class DriverResolution {
+        private boolean upfront = false;
+        private Integer chunkSize = 500;
+        private Integer concurrency = 4;
+        private boolean asyncInvocation = false;
+        private Integer maxPayloadBytes = 1024 * 1024;
+    }
+
+    /**
+     * With batch enabled the driver capacity step resolves the capacities of all the CAPs of a page at once:
+     * the used capacities are read with batchGetItem in chunks of batchSize keys (at most 100) and the declared
+     * capacities of the CAPs without a used capacity are queried, up to concurrency in parallel, through a cache.
+     */
+    @Data
+    public static class CapacityResolution {
+        private boolean batch = false;
+        private Integer batchSize = 100;
+        private Integer concurrency = 8;
+    }
+
+    /**
+     * With enabled the declared capacities of a driver are read once per job, scanning the capacities table of the
+     * tenderId and driver with scanSegments parallel segments, and resolved in memory for every province and CAP.
+     */
+    @Data
+    public static class DeclaredCapacityIndex {
+        private boolean enabled = false;
+        private Integer scanSegments = 4;
+    }
+
+    /**
+     * With enabled the SUM_ESTIMATES counters of a date are read once for all provinces and products, the EXCLUDE
+     * ones once per province, and resolved in memory until ttl expires.
+     */
+    @Data
+    public static class CounterSnapshot {
+        private boolean enabled = false;
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    /**
+     * With shards greater than 1 the increments of the print capacity counter are spread over the shard items
+     * PRINT / deliveryDate~shard and the total is the sum of the base item and of its shards.
+     */
+    @Data
+    public static class PrintCounter {
+        private Integer shards = 1;
+    }
+
+    /**
+     * With enabled the driver and residual capacity jobs save their paging progress on the counter table every
+     * everyPages pages and, when retried, resume from the last checkpoint instead of the first page. A job completed
+     * within ttl is skipped, unless rerunCompleted is set to run it again from the first page.
+     */
+    @Data
+    public static class Checkpoint {
+        private boolean enabled = false;
+        private Integer everyPages = 5;
+        private Duration ttl = Duration.ofDays(14);
+        private boolean rerunCompleted = false;
+    }
+
+    /**
+     * With cpuOffload enabled the CPU-bound stages of the jobs run on a parallel scheduler of parallelism threads,
+     * the available processors when not set. capGroupConcurrency bounds the CAP groups of a page evaluated together
+     * and writeChunkConcurrency the chunks of deliveries sent to the next week written together.
+     */
+    @Data
+    public static class Scheduling {
+        private boolean cpuOffload = false;
+        private Integer parallelism;
+        private Integer capGroupConcurrency;
+        private Integer writeChunkConcurrency;
+    }
+
+    /**
+     * With enabled the deliveries exceeding the capacity of the driver and residual capacity jobs are no longer
+     * copied into the EVALUATE_SENDER_LIMIT partition of the next week: the job saves a cursor on the remaining
+     * range of its partition and the sender limit job of the next week reads that range before its own deliveries.
+     * The flag must be disabled only once the cursors of the current week have been read; they expire after ttl.
+     */
+    @Data
+    public static class CarryOver {
+        private boolean enabled = false;
+        private Duration ttl = Duration.ofDays(28);
+    }
+
+    /**
+     * With dumpOnExit the meters are logged as a JSON summary when the job ends and, if dumpFile is set, written
+     * to that file; with pushEnabled they are also published every pushStep by a LoggingMeterRegistry.
+     * With registryEnabled set to false the MeterRegistry is not defined here and must be provided by another bean.
+     */
+    @Data
+    public static class Metrics {
+        private boolean registryEnabled = true;
+        private boolean dumpOnExit = true;
+        private String dumpFile;
+        private boolean pushEnabled = false;
+        private Duration pushStep = Duration.ofMinutes(1);
+    }
+
+    /**
+     * impl selects the DynamoDB tables (DYNAMO) or the in-memory ones (MEMORY). The in-memory tables are loaded at
+     * startup from the JSON files of seedDirectory and live only in the process, so with MEMORY the runner executes
+     * the sender limit, driver capacity and residual capacity steps one after the other.
+     */
+    @Data
+    public static class Storage {
+        private StorageImpl impl = StorageImpl.DYNAMO;
+        private String seedDirectory;
+    }
+
     @Data
     public static class EvaluateSenderLimitJobInput {
         private String province;
@@ -65,10 +247,22 @@ public class PnDelayerConfigs {
         private String paperDeliveryDriverUsedCapacitiesTableName;
         private String paperDeliveryTableName;
         private Integer paperDeliveryQueryLimit;
+        private Integer paperDeliveryPrefetchDepth;
+        private Integer paperDeliveryReadSegments;
+        private Integer paperDeliveryReadLookbackWeeks;
+        private Boolean paperDeliveryReadPriorityBuckets;
         private String paperDeliverySenderLimitTableName;
         private String paperDeliveryUsedSenderLimitTableName;
         private String paperDeliveryCounterTableName;
         private String paperDeliveryPrintCapacityTableName;
+        private Integer batchWriteMaxConcurrency;
+        private Integer batchWriteMaxAttempts;
+        private Duration batchWriteBaseDelay;
+        private Duration batchWriteMaxDelay;
+        private Integer batchGetMaxConcurrency;
+        private Integer batchGetMaxAttempts;
+        private Duration batchGetBaseDelay;
+        private Duration batchGetMaxDelay;
     }
 
     public Integer calculateDailyExecutionNumber() {
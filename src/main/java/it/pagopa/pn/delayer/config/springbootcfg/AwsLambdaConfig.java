@@ -6,8 +6,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.awscore.client.builder.AwsClientBuilder;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
-import software.amazon.awssdk.services.lambda.LambdaClientBuilder;
 
 import java.net.URI;
 
@@ -25,7 +26,12 @@ public class AwsLambdaConfig {
         return configureBuilder(LambdaClient.builder());
     }
 
-    private LambdaClient configureBuilder(LambdaClientBuilder builder) {
+    @Bean
+    public LambdaAsyncClient lambdaAsyncClient() {
+        return configureBuilder(LambdaAsyncClient.builder());
+    }
+
+    private <B extends AwsClientBuilder<B, C>, C> C configureBuilder(B builder) {
         if (this.props != null) {
             String profileName = this.props.getProfileName();
             if (StringUtils.isNotBlank(profileName)) {
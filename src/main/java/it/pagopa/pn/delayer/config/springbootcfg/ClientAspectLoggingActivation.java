@@ -1,8 +1,10 @@
 package it.pagopa.pn.delayer.config.springbootcfg;
 
 import it.pagopa.pn.commons.utils.ClientAspectLogging;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnProperty(name = "pn.delayer.client-aspect-logging.enabled", havingValue = "true", matchIfMissing = true)
 public class ClientAspectLoggingActivation extends ClientAspectLogging {
 }
@@ -2,9 +2,11 @@ package it.pagopa.pn.delayer.config.springbootcfg;
 
 
 import it.pagopa.pn.commons.log.MDCWebFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
 
 @Component
+@ConditionalOnWebApplication
 public class MDCTraceIdWebFilter extends MDCWebFilter {
 
 }
\ No newline at end of file
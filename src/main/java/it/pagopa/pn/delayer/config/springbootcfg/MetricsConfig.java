@@ -0,0 +1,47 @@
+package it.pagopa.pn.delayer.config.springbootcfg;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.logging.LoggingMeterRegistry;
+import io.micrometer.core.instrument.logging.LoggingRegistryConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * The SimpleMeterRegistry keeps the cumulative values read by the summary dumped at the end of the job;
+     * with metrics.pushEnabled the meters are also published every metrics.pushStep by a LoggingMeterRegistry.
+     * Set metrics.registryEnabled to false when another MeterRegistry bean (e.g. a CloudWatch registry) is provided.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "pn.delayer.metrics.registry-enabled", havingValue = "true", matchIfMissing = true)
+    public MeterRegistry meterRegistry(PnDelayerConfigs pnDelayerConfigs) {
+        PnDelayerConfigs.Metrics metrics = Optional.ofNullable(pnDelayerConfigs.getMetrics()).orElseGet(PnDelayerConfigs.Metrics::new);
+        if (!metrics.isPushEnabled()) {
+            return new SimpleMeterRegistry();
+        }
+        CompositeMeterRegistry meterRegistry = new CompositeMeterRegistry();
+        meterRegistry.add(new SimpleMeterRegistry());
+        meterRegistry.add(new LoggingMeterRegistry(new LoggingRegistryConfig() {
+            @Override
+            public String get(String key) {
+                return null;
+            }
+
+            @Override
+            public Duration step() {
+                return metrics.getPushStep();
+            }
+        }, Clock.SYSTEM));
+        return meterRegistry;
+    }
+}
@@ -9,8 +9,11 @@ public class PnDelayerExceptionCode extends PnExceptionsCodes {
 
     public static final String ERROR_CODE_NO_DELIVERY_DATE = "PN_DELAYER_NO_DELIVERY_DATE";
     public static final String ERROR_CODE_INSERT_PAPER_DELIVERY_ENTITY = "PN_DELAYER_INSERT_PAPER_DELIVERY_ENTITY_ERROR";
+    public static final String ERROR_CODE_BATCH_WRITE = "PN_DELAYER_BATCH_WRITE_ERROR";
+    public static final String ERROR_CODE_BATCH_GET = "PN_DELAYER_BATCH_GET_ERROR";
     public static final String ERROR_CODE_PRINT_CAPACITY_NOT_FOUND = "PN_DELAYER_PRINT_CAPACITY_NOT_FOUND";
     public static final String ERROR_CODE_DELIVERY_DRIVER_NOT_FOUND = "PN_DELAYER_DELIVERY_DRIVER_NOT_FOUND";
     public static final String PAPER_DELIVERY_PRIORITY_MAP_NOT_FOUND = "PAPER_DELIVERY_PRIORITY_MAP_NOT_FOUND";
+    public static final String ERROR_CODE_MEMORY_STORAGE_SEED = "PN_DELAYER_MEMORY_STORAGE_SEED_ERROR";
 
 }
@@ -0,0 +1,69 @@
+package it.pagopa.pn.delayer.middleware.dao;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every call of the DAO interfaces, from the subscription to the termination of the returned Mono or Flux,
+ * with the timer pn.delayer.dao.calls tagged by dao (the DAO interface, i.e. the table), operation (the method)
+ * and outcome; the items emitted by the Flux operations are counted by pn.delayer.dao.items.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class DaoMetricsAspect {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Class<?>, String> daoNames = new ConcurrentHashMap<>();
+
+    @Around("execution(public * it.pagopa.pn.delayer.middleware.dao.*DAO.*(..))")
+    public Object timeDaoCall(ProceedingJoinPoint joinPoint) throws Throwable {
+        String dao = daoNames.computeIfAbsent(joinPoint.getTarget().getClass(), DaoMetricsAspect::daoName);
+        String operation = joinPoint.getSignature().getName();
+        Object result = joinPoint.proceed();
+        if (result instanceof Mono<?> mono) {
+            return Mono.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                return mono.doFinally(signalType -> sample.stop(timer(dao, operation, signalType)));
+            });
+        }
+        if (result instanceof Flux<?> flux) {
+            return Flux.defer(() -> {
+                Timer.Sample sample = Timer.start(meterRegistry);
+                return flux.doOnNext(item -> meterRegistry.counter("pn.delayer.dao.items", "dao", dao, "operation", operation).increment())
+                        .doFinally(signalType -> sample.stop(timer(dao, operation, signalType)));
+            });
+        }
+        return result;
+    }
+
+    private Timer timer(String dao, String operation, SignalType signalType) {
+        String outcome = switch (signalType) {
+            case ON_ERROR -> "ERROR";
+            case CANCEL -> "CANCEL";
+            default -> "SUCCESS";
+        };
+        return meterRegistry.timer("pn.delayer.dao.calls", "dao", dao, "operation", operation, "outcome", outcome);
+    }
+
+    private static String daoName(Class<?> daoClass) {
+        return Arrays.stream(ClassUtils.getAllInterfacesForClass(daoClass))
+                .map(Class::getSimpleName)
+                .filter(name -> name.endsWith("DAO"))
+                .findFirst()
+                .orElseGet(daoClass::getSimpleName);
+    }
+}
@@ -0,0 +1,16 @@
+package it.pagopa.pn.delayer.middleware.dao;
+
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import reactor.core.publisher.Mono;
+
+public interface DriverCacheSnapshotDAO {
+
+    Mono<CapProductTypeDriverSnapshot> retrieveSnapshot(String tenderId);
+
+    /**
+     * Publishes the snapshot only if the current one still has expectedVersion (null: no snapshot yet).
+     *
+     * @return true if the snapshot was published, false if another job published a different version meanwhile
+     */
+    Mono<Boolean> saveSnapshot(CapProductTypeDriverSnapshot snapshot, Long expectedVersion);
+}
@@ -1,16 +1,49 @@
 package it.pagopa.pn.delayer.middleware.dao;
 
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.model.CarryOverCursor;
+import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
+import it.pagopa.pn.delayer.model.JobCheckpoint;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 
 public interface PaperDeliveryCounterDAO {
 
+    /**
+     * Used capacity updates that fit in the transaction of saveJobCheckpointWithCounters, together with the
+     * checkpoint and the print capacity counter (100 items at most).
+     */
+    int MAX_CHECKPOINT_COUNTER_UPDATES = 98;
+
     Mono<List<PaperDeliveryCounter>> getPaperDeliveryCounter(String pk, String sk, Integer limit);
 
+    Flux<PaperDeliveryCounter> retrievePaperDeliveryCounters(String pk, String skPrefix);
+
     Mono<Void> updatePrintCapacityCounter(LocalDate deliveryDate, Integer counter, Integer weeklyPrintCapacity);
 
+    /**
+     * Reads the print capacity counter of the deliveryDate, with numberOfShipments summed over its shard items.
+     */
+    Mono<PaperDeliveryCounter> retrievePrintCapacityCounter(LocalDate deliveryDate);
+
+    Mono<Void> saveJobCheckpoint(JobCheckpoint jobCheckpoint, Duration ttl);
+
+    /**
+     * Saves the checkpoint and, in the same transaction, increments the print capacity counter by printCounter
+     * (if not 0) and the used capacities by usedCapacities, at most MAX_CHECKPOINT_COUNTER_UPDATES.
+     */
+    Mono<Void> saveJobCheckpointWithCounters(JobCheckpoint jobCheckpoint, Duration ttl, int printCounter, Integer weeklyPrintCapacity, List<IncrementUsedCapacityDto> usedCapacities);
+
+    Mono<JobCheckpoint> retrieveJobCheckpoint(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek);
+
+    Mono<Void> saveCarryOverCursor(CarryOverCursor carryOverCursor, Duration ttl);
+
+    Flux<CarryOverCursor> retrieveCarryOverCursors(LocalDate deliveryWeek, String province);
+
 
 }
@@ -1,6 +1,7 @@
 package it.pagopa.pn.delayer.middleware.dao;
 
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.model.SortKeyRange;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.enhanced.dynamodb.model.Page;
@@ -14,5 +15,9 @@ public interface PaperDeliveryDAO {
 
     Mono<Page<PaperDelivery>> retrievePaperDeliveries(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit);
 
+    Mono<Page<PaperDelivery>> retrievePaperDeliveriesInRange(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, SortKeyRange sortKeyRange, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit);
+
+    Mono<Page<PaperDelivery>> retrievePaperDeliveriesProjection(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, List<String> attributesToProject, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit);
+
     Mono<Void> insertPaperDeliveries(List<PaperDelivery> paperDeliveriesChunk);
 }
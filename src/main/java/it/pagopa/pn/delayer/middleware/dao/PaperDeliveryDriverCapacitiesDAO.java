@@ -2,6 +2,7 @@ package it.pagopa.pn.delayer.middleware.dao;
 
 
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
@@ -12,4 +13,6 @@ public interface PaperDeliveryDriverCapacitiesDAO {
     Mono<Integer> getPaperDeliveryDriverCapacities(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryDate);
 
     Mono<List<PaperDeliveryDriverCapacity>> retrieveUnifiedDeliveryDriversOnProvince(String tenderId, String geoKey, LocalDate deliveryDate);
+
+    Flux<PaperDeliveryDriverCapacity> scanPaperDeliveryDriverCapacities(String tenderId, String unifiedDeliveryDriver, Integer totalSegments);
 }
@@ -0,0 +1,168 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.DriverCacheSnapshotDAO;
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the driver cache snapshot of a tender in the counter table, under the partition DRIVER_CACHE~tenderId.
+ * The entries are split in chunks with sort key version~writeId~chunkIndex, unique to every save, written before
+ * the HEAD item that points to their prefix: the chunks are referenced only once the HEAD put succeeds.
+ * The HEAD is replaced only if it still has the version read by the job (optimistic locking); when the put fails,
+ * the chunks just written are deleted. Every item carries a ttl (epoch seconds) so that the chunks of replaced
+ * versions expire.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "pn.delayer.driver-cache-snapshot.store", havingValue = "DYNAMO", matchIfMissing = true)
+public class DriverCacheSnapshotDAOImpl implements DriverCacheSnapshotDAO {
+
+    static final String PK_PREFIX = "DRIVER_CACHE~";
+    static final String HEAD_SK = "HEAD";
+    static final int CHUNK_SIZE = 2000;
+
+    private static final String COL_PK = "pk";
+    private static final String COL_SK = "sk";
+    private static final String COL_VERSION = "version";
+    private static final String COL_EXPIRES_AT = "expiresAt";
+    private static final String COL_CHUNK_PREFIX = "chunkPrefix";
+    private static final String COL_ENTRIES = "entries";
+    private static final String COL_TTL = "ttl";
+
+    private final String tableName;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final DynamoDbBatchWriter dynamoDbBatchWriter;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+
+    public DriverCacheSnapshotDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbBatchWriter dynamoDbBatchWriter, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator) {
+        this.tableName = pnDelayerConfigs.getDao().getPaperDeliveryCounterTableName();
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.dynamoDbBatchWriter = dynamoDbBatchWriter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
+    }
+
+    @Override
+    public Mono<CapProductTypeDriverSnapshot> retrieveSnapshot(String tenderId) {
+        String pk = PK_PREFIX + tenderId;
+        GetItemRequest headRequest = GetItemRequest.builder()
+                .tableName(tableName)
+                .key(key(pk, HEAD_SK))
+                .consistentRead(true)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        return consumedCapacityAccumulator.recordRead(concurrencyLimiter.execute(tableName, () -> Mono.fromFuture(dynamoDbAsyncClient.getItem(headRequest))),
+                        true, response -> Collections.singletonList(response.consumedCapacity()), response -> response.hasItem() ? 1 : 0)
+                .filter(GetItemResponse::hasItem)
+                .map(GetItemResponse::item)
+                .flatMap(head -> {
+                    long version = Long.parseLong(head.get(COL_VERSION).n());
+                    Instant expiresAt = Instant.parse(head.get(COL_EXPIRES_AT).s());
+                    return retrieveChunks(pk, head.get(COL_CHUNK_PREFIX).s())
+                            .map(entries -> new CapProductTypeDriverSnapshot(tenderId, version, expiresAt, entries));
+                })
+                .doOnNext(snapshot -> log.info("Retrieved driver cache snapshot for tenderId={} version={} entries={}", tenderId, snapshot.version(), snapshot.entries().size()))
+                .doOnError(e -> log.error("Error retrieving driver cache snapshot for tenderId={}: {}", tenderId, e.getMessage()));
+    }
+
+    private Mono<Map<String, String>> retrieveChunks(String pk, String chunkPrefix) {
+        return queryChunks(pk, chunkPrefix, Map.of())
+                .expand(response -> CollectionUtils.isEmpty(response.lastEvaluatedKey())
+                        ? Mono.empty()
+                        : queryChunks(pk, chunkPrefix, response.lastEvaluatedKey()))
+                .flatMapIterable(QueryResponse::items)
+                .flatMapIterable(chunk -> chunk.get(COL_ENTRIES).m().entrySet())
+                .collectMap(Map.Entry::getKey, entry -> entry.getValue().s());
+    }
+
+    private Mono<QueryResponse> queryChunks(String pk, String chunkPrefix, Map<String, AttributeValue> lastEvaluatedKey) {
+        QueryRequest.Builder builder = QueryRequest.builder()
+                .tableName(tableName)
+                .keyConditionExpression("#pk = :pk AND begins_with(#sk, :chunkPrefix)")
+                .expressionAttributeNames(Map.of("#pk", COL_PK, "#sk", COL_SK))
+                .expressionAttributeValues(Map.of(
+                        ":pk", AttributeValue.builder().s(pk).build(),
+                        ":chunkPrefix", AttributeValue.builder().s(chunkPrefix).build()))
+                .consistentRead(true)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        if (!CollectionUtils.isEmpty(lastEvaluatedKey)) {
+            builder.exclusiveStartKey(lastEvaluatedKey);
+        }
+        QueryRequest request = builder.build();
+        return consumedCapacityAccumulator.recordRead(concurrencyLimiter.execute(tableName, () -> Mono.fromFuture(dynamoDbAsyncClient.query(request))),
+                true, response -> Collections.singletonList(response.consumedCapacity()), QueryResponse::count);
+    }
+
+    @Override
+    public Mono<Boolean> saveSnapshot(CapProductTypeDriverSnapshot snapshot, Long expectedVersion) {
+        String pk = PK_PREFIX + snapshot.tenderId();
+        String chunkPrefix = String.join("~", String.valueOf(snapshot.version()), UUID.randomUUID().toString(), "");
+        AttributeValue ttl = AttributeValue.builder().n(String.valueOf(snapshot.expiresAt().getEpochSecond())).build();
+        List<Map.Entry<String, String>> entries = new ArrayList<>(snapshot.entries().entrySet());
+        List<Map<String, AttributeValue>> chunks = new ArrayList<>();
+        List<Map<String, AttributeValue>> chunkKeys = new ArrayList<>();
+        for (int from = 0, chunkIndex = 0; from < entries.size(); from += CHUNK_SIZE, chunkIndex++) {
+            Map<String, AttributeValue> chunkKey = key(pk, chunkPrefix + String.format("%05d", chunkIndex));
+            chunkKeys.add(chunkKey);
+            Map<String, AttributeValue> chunk = new HashMap<>(chunkKey);
+            chunk.put(COL_ENTRIES, AttributeValue.builder().m(entries.subList(from, Math.min(from + CHUNK_SIZE, entries.size())).stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> AttributeValue.builder().s(entry.getValue()).build()))).build());
+            chunk.put(COL_TTL, ttl);
+            chunks.add(chunk);
+        }
+
+        Map<String, AttributeValue> head = new HashMap<>(key(pk, HEAD_SK));
+        head.put(COL_VERSION, AttributeValue.builder().n(String.valueOf(snapshot.version())).build());
+        head.put(COL_EXPIRES_AT, AttributeValue.builder().s(snapshot.expiresAt().toString()).build());
+        head.put(COL_CHUNK_PREFIX, AttributeValue.builder().s(chunkPrefix).build());
+        head.put(COL_TTL, ttl);
+        PutItemRequest.Builder headRequestBuilder = PutItemRequest.builder()
+                .tableName(tableName)
+                .item(head)
+                .expressionAttributeNames(Map.of("#version", COL_VERSION))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        if (Objects.isNull(expectedVersion)) {
+            headRequestBuilder.conditionExpression("attribute_not_exists(#version)");
+        } else {
+            headRequestBuilder.conditionExpression("#version = :expectedVersion")
+                    .expressionAttributeValues(Map.of(":expectedVersion", AttributeValue.builder().n(String.valueOf(expectedVersion)).build()));
+        }
+        PutItemRequest headRequest = headRequestBuilder.build();
+
+        return dynamoDbBatchWriter.putItems(tableName, chunks)
+                .then(consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(tableName, () -> Mono.fromFuture(dynamoDbAsyncClient.putItem(headRequest))), PutItemResponse::consumedCapacity))
+                .doOnSuccess(r -> log.info("Saved driver cache snapshot for tenderId={} version={} entries={} chunks={}", snapshot.tenderId(), snapshot.version(), entries.size(), chunks.size()))
+                .thenReturn(true)
+                .onErrorResume(e -> deleteChunks(snapshot.tenderId(), chunkKeys)
+                        .then(e instanceof ConditionalCheckFailedException
+                                ? Mono.fromRunnable(() -> log.info("Driver cache snapshot for tenderId={} not saved, the snapshot was replaced after version {}", snapshot.tenderId(), expectedVersion)).thenReturn(false)
+                                : Mono.error(e)))
+                .doOnError(e -> log.error("Error saving driver cache snapshot for tenderId={}: {}", snapshot.tenderId(), e.getMessage()));
+    }
+
+    private Mono<Void> deleteChunks(String tenderId, List<Map<String, AttributeValue>> chunkKeys) {
+        return dynamoDbBatchWriter.deleteItems(tableName, chunkKeys)
+                .onErrorResume(e -> {
+                    log.warn("Error deleting {} unreferenced driver cache snapshot chunks for tenderId={}, they expire with their ttl: {}", chunkKeys.size(), tenderId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private static Map<String, AttributeValue> key(String pk, String sk) {
+        return Map.of(COL_PK, AttributeValue.builder().s(pk).build(),
+                COL_SK, AttributeValue.builder().s(sk).build());
+    }
+}
@@ -0,0 +1,132 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.ERROR_CODE_BATCH_GET;
+
+/**
+ * Reads items from a DynamoDB table through BatchGetItem.
+ * Keys are sent in batches of at most 100 keys; the unprocessed keys of a response and the keys of a throttled
+ * batch are requested again with exponential backoff and full jitter, until maxAttempts is reached and the read fails.
+ * The read capacity units consumed by every request are recorded on the pn.delayer.dynamodb.batchget.consumed.capacity counter
+ * and in the DynamoDbConsumedCapacityAccumulator.
+ */
+@Component
+@Slf4j
+public class DynamoDbBatchGetter {
+
+    static final int MAX_BATCH_SIZE = 100;
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(50);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(2);
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+
+    public DynamoDbBatchGetter(DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator, PnDelayerConfigs pnDelayerConfigs, MeterRegistry meterRegistry) {
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
+        this.meterRegistry = meterRegistry;
+        PnDelayerConfigs.Dao dao = Optional.ofNullable(pnDelayerConfigs.getDao()).orElseGet(PnDelayerConfigs.Dao::new);
+        this.maxAttempts = Optional.ofNullable(dao.getBatchGetMaxAttempts()).orElse(DEFAULT_MAX_ATTEMPTS);
+        this.baseDelay = Optional.ofNullable(dao.getBatchGetBaseDelay()).orElse(DEFAULT_BASE_DELAY);
+        this.maxDelay = Optional.ofNullable(dao.getBatchGetMaxDelay()).orElse(DEFAULT_MAX_DELAY);
+    }
+
+    public Flux<Map<String, AttributeValue>> getItems(String tableName, List<Map<String, AttributeValue>> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Flux.empty();
+        }
+        return Flux.fromIterable(keys)
+                .buffer(MAX_BATCH_SIZE)
+                .concatMap(batch -> getBatch(tableName, batch, 0));
+    }
+
+    private Flux<Map<String, AttributeValue>> getBatch(String tableName, List<Map<String, AttributeValue>> keys, int failedAttempts) {
+        BatchGetItemRequest request = BatchGetItemRequest.builder()
+                .requestItems(Map.of(tableName, KeysAndAttributes.builder().keys(keys).build()))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return consumedCapacityAccumulator.recordRead(concurrencyLimiter.execute(tableName, () -> Mono.fromFuture(() -> dynamoDbAsyncClient.batchGetItem(request))),
+                        false, BatchGetItemResponse::consumedCapacity, response -> response.responses().getOrDefault(tableName, List.of()).size())
+                .map(response -> {
+                    recordConsumedCapacity(tableName, response.consumedCapacity());
+                    List<Map<String, AttributeValue>> items = response.responses().getOrDefault(tableName, List.of());
+                    counter("pn.delayer.dynamodb.batchget.read.items", tableName).increment(items.size());
+                    KeysAndAttributes unprocessed = response.unprocessedKeys().get(tableName);
+                    List<Map<String, AttributeValue>> unprocessedKeys = unprocessed == null ? List.of() : unprocessed.keys();
+                    if (!unprocessedKeys.isEmpty()) {
+                        counter("pn.delayer.dynamodb.batchget.unprocessed.keys", tableName).increment(unprocessedKeys.size());
+                    }
+                    return new BatchGetOutcome(items, unprocessedKeys);
+                })
+                .onErrorResume(DynamoDbConcurrencyLimiter::isThrottling, e -> {
+                    log.warn("Batch get of {} keys on table {} throttled: {}", keys.size(), tableName, e.getMessage());
+                    counter("pn.delayer.dynamodb.batchget.throttled", tableName).increment();
+                    return Mono.just(new BatchGetOutcome(List.of(), keys));
+                })
+                .doFinally(signalType -> sample.stop(meterRegistry.timer("pn.delayer.dynamodb.batchget.latency", "table", tableName)))
+                .flatMapMany(outcome -> outcome.unprocessedKeys().isEmpty()
+                        ? Flux.fromIterable(outcome.items())
+                        : Flux.fromIterable(outcome.items()).concatWith(retry(tableName, outcome.unprocessedKeys(), failedAttempts + 1)));
+    }
+
+    private Flux<Map<String, AttributeValue>> retry(String tableName, List<Map<String, AttributeValue>> keys, int attempt) {
+        if (attempt >= maxAttempts) {
+            log.error("Failed to read {} keys on table {} after {} attempts", keys.size(), tableName, attempt);
+            counter("pn.delayer.dynamodb.batchget.failed.keys", tableName).increment(keys.size());
+            return Flux.error(new PnInternalException(String.format("Error during batch get on table %s, unprocessed keys remain after %d attempts", tableName, attempt), ERROR_CODE_BATCH_GET));
+        }
+        Duration delay = backoff(attempt);
+        log.info("Retrying batch get of {} unprocessed keys on table {}, attempt {} of {} in {} ms", keys.size(), tableName, attempt + 1, maxAttempts, delay.toMillis());
+        counter("pn.delayer.dynamodb.batchget.retries", tableName).increment();
+        return Mono.delay(delay).thenMany(Flux.defer(() -> getBatch(tableName, keys, attempt)));
+    }
+
+    private void recordConsumedCapacity(String tableName, List<ConsumedCapacity> consumedCapacities) {
+        double capacityUnits = consumedCapacities.stream()
+                .map(ConsumedCapacity::capacityUnits)
+                .filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue)
+                .sum();
+        log.debug("Batch get on table {} consumed {} read capacity units", tableName, capacityUnits);
+        counter("pn.delayer.dynamodb.batchget.consumed.capacity", tableName).increment(capacityUnits);
+    }
+
+    Duration backoff(int attempt) {
+        long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() * (1L << Math.min(attempt - 1, 20)));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private Counter counter(String name, String tableName) {
+        return meterRegistry.counter(name, "table", tableName);
+    }
+
+    private record BatchGetOutcome(List<Map<String, AttributeValue>> items, List<Map<String, AttributeValue>> unprocessedKeys) {}
+}
@@ -0,0 +1,166 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.ERROR_CODE_BATCH_WRITE;
+
+/**
+ * Writes items to a DynamoDB table through BatchWriteItem.
+ * Items are sent in rounds of at most maxConcurrency batches of 25 items executed concurrently.
+ * Unprocessed items and the items of throttled batches are put back at the head of the queue, so that
+ * they are coalesced with the pending ones into the next outgoing batches instead of being retried alone.
+ * When a round leaves items behind, the next one is delayed with exponential backoff and full jitter;
+ * after maxAttempts consecutive rounds without full success the write fails.
+ */
+@Component
+@Slf4j
+public class DynamoDbBatchWriter {
+
+    static final int MAX_BATCH_SIZE = 25;
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 16;
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final Duration DEFAULT_BASE_DELAY = Duration.ofMillis(100);
+    private static final Duration DEFAULT_MAX_DELAY = Duration.ofSeconds(5);
+
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+    private final MeterRegistry meterRegistry;
+    private final int maxConcurrency;
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+
+    public DynamoDbBatchWriter(DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator, PnDelayerConfigs pnDelayerConfigs, MeterRegistry meterRegistry) {
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
+        this.meterRegistry = meterRegistry;
+        PnDelayerConfigs.Dao dao = Optional.ofNullable(pnDelayerConfigs.getDao()).orElseGet(PnDelayerConfigs.Dao::new);
+        this.maxConcurrency = Optional.ofNullable(dao.getBatchWriteMaxConcurrency()).orElse(DEFAULT_MAX_CONCURRENCY);
+        this.maxAttempts = Optional.ofNullable(dao.getBatchWriteMaxAttempts()).orElse(DEFAULT_MAX_ATTEMPTS);
+        this.baseDelay = Optional.ofNullable(dao.getBatchWriteBaseDelay()).orElse(DEFAULT_BASE_DELAY);
+        this.maxDelay = Optional.ofNullable(dao.getBatchWriteMaxDelay()).orElse(DEFAULT_MAX_DELAY);
+    }
+
+    public Mono<Void> putItems(String tableName, List<Map<String, AttributeValue>> items) {
+        if (CollectionUtils.isEmpty(items)) {
+            return Mono.empty();
+        }
+        Deque<WriteRequest> pending = new ConcurrentLinkedDeque<>();
+        items.forEach(item -> pending.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build()));
+        return writeRound(tableName, pending, 0);
+    }
+
+    public Mono<Void> deleteItems(String tableName, List<Map<String, AttributeValue>> keys) {
+        if (CollectionUtils.isEmpty(keys)) {
+            return Mono.empty();
+        }
+        Deque<WriteRequest> pending = new ConcurrentLinkedDeque<>();
+        keys.forEach(key -> pending.add(WriteRequest.builder().deleteRequest(DeleteRequest.builder().key(key).build()).build()));
+        return writeRound(tableName, pending, 0);
+    }
+
+    private Mono<Void> writeRound(String tableName, Deque<WriteRequest> pending, int failedRounds) {
+        List<List<WriteRequest>> batches = drainBatches(pending);
+        return Flux.fromIterable(batches)
+                .flatMap(batch -> writeBatch(tableName, batch, pending), maxConcurrency)
+                .reduce(Boolean::logicalOr)
+                .defaultIfEmpty(false)
+                .flatMap(leftItemsBehind -> {
+                    if (pending.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    if (!leftItemsBehind) {
+                        return writeRound(tableName, pending, 0);
+                    }
+                    int attempt = failedRounds + 1;
+                    if (attempt >= maxAttempts) {
+                        log.error("Failed to write {} items on table {} after {} attempts", pending.size(), tableName, attempt);
+                        counter("pn.delayer.dynamodb.batchwrite.failed.items", tableName).increment(pending.size());
+                        return Mono.error(new PnInternalException(String.format("Error during batch write on table %s, unprocessed items remain after %d attempts", tableName, attempt), ERROR_CODE_BATCH_WRITE));
+                    }
+                    Duration delay = backoff(attempt);
+                    log.info("Retrying batch write of {} pending items on table {}, attempt {} of {} in {} ms", pending.size(), tableName, attempt + 1, maxAttempts, delay.toMillis());
+                    counter("pn.delayer.dynamodb.batchwrite.retries", tableName).increment();
+                    return Mono.delay(delay).then(Mono.defer(() -> writeRound(tableName, pending, attempt)));
+                });
+    }
+
+    private List<List<WriteRequest>> drainBatches(Deque<WriteRequest> pending) {
+        List<List<WriteRequest>> batches = new ArrayList<>();
+        while (!pending.isEmpty() && batches.size() < maxConcurrency) {
+            List<WriteRequest> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            WriteRequest writeRequest;
+            while (batch.size() < MAX_BATCH_SIZE && (writeRequest = pending.pollFirst()) != null) {
+                batch.add(writeRequest);
+            }
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * Sends a single batch; the items not written are put back in front of the pending queue.
+     *
+     * @return true if some items of the batch were left behind
+     */
+    private Mono<Boolean> writeBatch(String tableName, List<WriteRequest> batch, Deque<WriteRequest> pending) {
+        BatchWriteItemRequest request = BatchWriteItemRequest.builder()
+                .requestItems(Map.of(tableName, batch))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return consumedCapacityAccumulator.recordBatchWrite(concurrencyLimiter.execute(tableName, () -> Mono.fromFuture(() -> dynamoDbAsyncClient.batchWriteItem(request))),
+                        BatchWriteItemResponse::consumedCapacity)
+                .map(response -> {
+                    List<WriteRequest> unprocessed = response.unprocessedItems().getOrDefault(tableName, List.of());
+                    counter("pn.delayer.dynamodb.batchwrite.written.items", tableName).increment((double) batch.size() - unprocessed.size());
+                    if (unprocessed.isEmpty()) {
+                        return false;
+                    }
+                    counter("pn.delayer.dynamodb.batchwrite.unprocessed.items", tableName).increment(unprocessed.size());
+                    requeue(pending, unprocessed);
+                    return true;
+                })
+                .onErrorResume(DynamoDbConcurrencyLimiter::isThrottling, e -> {
+                    log.warn("Batch write of {} items on table {} throttled: {}", batch.size(), tableName, e.getMessage());
+                    counter("pn.delayer.dynamodb.batchwrite.throttled", tableName).increment();
+                    requeue(pending, batch);
+                    return Mono.just(true);
+                })
+                .doFinally(signalType -> sample.stop(meterRegistry.timer("pn.delayer.dynamodb.batchwrite.latency", "table", tableName)));
+    }
+
+    private void requeue(Deque<WriteRequest> pending, List<WriteRequest> writeRequests) {
+        for (int i = writeRequests.size() - 1; i >= 0; i--) {
+            pending.addFirst(writeRequests.get(i));
+        }
+    }
+
+    Duration backoff(int attempt) {
+        long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() * (1L << Math.min(attempt - 1, 20)));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private Counter counter(String name, String tableName) {
+        return meterRegistry.counter(name, "table", tableName);
+    }
+}
@@ -0,0 +1,227 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.RequestLimitExceededException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Additive-increase/multiplicative-decrease limiter of the in-flight DynamoDB requests, one limit per table.
+ * Every call completed without congestion grows the limit by 1/limit (about +1 every limit calls);
+ * a throttling error, a timeout or an average latency above latencyThreshold multiplies it by backoffRatio.
+ * The latency of a call is measured from its start to its completion and folded into an exponentially weighted
+ * average, each sample capped at twice latencyThreshold, so that a single slow page does not count as congestion.
+ * The limit is decreased at most once per window: only the calls started with a permit granted after the last
+ * decrease can decrease it again, so a burst of failures of the calls already in flight counts once.
+ * Calls exceeding the current limit wait in FIFO order for a free permit.
+ * When pn.delayer.concurrency-limiter.enabled is false the calls are executed without any limit.
+ */
+@Component
+@Slf4j
+public class DynamoDbConcurrencyLimiter {
+
+    private static final int DEFAULT_INITIAL_LIMIT = 16;
+    private static final int DEFAULT_MIN_LIMIT = 1;
+    private static final int DEFAULT_MAX_LIMIT = 256;
+    private static final double DEFAULT_BACKOFF_RATIO = 0.7;
+    private static final Duration DEFAULT_LATENCY_THRESHOLD = Duration.ofMillis(500);
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final PnDelayerConfigs.ConcurrencyLimiter config;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AimdLimit> limits = new ConcurrentHashMap<>();
+
+    public DynamoDbConcurrencyLimiter(PnDelayerConfigs pnDelayerConfigs, MeterRegistry meterRegistry) {
+        this.config = Optional.ofNullable(pnDelayerConfigs.getConcurrencyLimiter()).orElseGet(PnDelayerConfigs.ConcurrencyLimiter::new);
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> Mono<T> execute(String tableName, Supplier<Mono<T>> call) {
+        if (!config.isEnabled()) {
+            return Mono.defer(call);
+        }
+        AimdLimit limit = limits.computeIfAbsent(tableName, this::createLimit);
+        return Mono.usingWhen(limit.acquire(),
+                permit -> Mono.defer(() -> {
+                    permit.start();
+                    return call.get();
+                }),
+                permit -> Mono.fromRunnable(() -> limit.release(permit, false)),
+                (permit, error) -> Mono.fromRunnable(() -> limit.release(permit, isThrottling(error) || isTimeout(error))),
+                permit -> Mono.fromRunnable(permit::releaseIgnored));
+    }
+
+    static boolean isThrottling(Throwable throwable) {
+        return throwable instanceof ProvisionedThroughputExceededException
+                || throwable instanceof RequestLimitExceededException
+                || (throwable instanceof DynamoDbException dynamoDbException && dynamoDbException.isThrottlingException());
+    }
+
+    private static boolean isTimeout(Throwable throwable) {
+        return throwable instanceof ApiCallTimeoutException
+                || throwable instanceof ApiCallAttemptTimeoutException
+                || throwable instanceof TimeoutException;
+    }
+
+    private AimdLimit createLimit(String tableName) {
+        PnDelayerConfigs.ConcurrencyLimit tableConfig = config.getTables().getOrDefault(tableName, new PnDelayerConfigs.ConcurrencyLimit());
+        PnDelayerConfigs.ConcurrencyLimit defaults = Optional.ofNullable(config.getDefaults()).orElseGet(PnDelayerConfigs.ConcurrencyLimit::new);
+        int minLimit = firstNonNull(tableConfig.getMinLimit(), defaults.getMinLimit(), DEFAULT_MIN_LIMIT);
+        int maxLimit = firstNonNull(tableConfig.getMaxLimit(), defaults.getMaxLimit(), DEFAULT_MAX_LIMIT);
+        int initialLimit = firstNonNull(tableConfig.getInitialLimit(), defaults.getInitialLimit(), DEFAULT_INITIAL_LIMIT);
+        AimdLimit limit = new AimdLimit(
+                Math.clamp(initialLimit, minLimit, maxLimit), minLimit, maxLimit,
+                firstNonNull(tableConfig.getBackoffRatio(), defaults.getBackoffRatio(), DEFAULT_BACKOFF_RATIO),
+                firstNonNull(tableConfig.getLatencyThreshold(), defaults.getLatencyThreshold(), DEFAULT_LATENCY_THRESHOLD).toNanos());
+        log.info("Concurrency limiter for table {}: initialLimit={} minLimit={} maxLimit={}", tableName, limit.getLimit(), minLimit, maxLimit);
+        Gauge.builder("pn.delayer.dynamodb.concurrency.limit", limit, AimdLimit::getLimit)
+                .tag("table", tableName)
+                .register(meterRegistry);
+        Gauge.builder("pn.delayer.dynamodb.concurrency.inflight", limit, AimdLimit::getInFlight)
+                .tag("table", tableName)
+                .register(meterRegistry);
+        return limit;
+    }
+
+    @SafeVarargs
+    private static <T> T firstNonNull(T... values) {
+        return Arrays.stream(values).filter(Objects::nonNull).findFirst().orElseThrow();
+    }
+
+    static final class AimdLimit {
+
+        private final int minLimit;
+        private final int maxLimit;
+        private final double backoffRatio;
+        private final long latencyThresholdNanos;
+        private final Deque<MonoSink<Permit>> waiters = new ArrayDeque<>();
+        private double limit;
+        private int inFlight;
+        private long window;
+        private double smoothedLatencyNanos;
+
+        AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long latencyThresholdNanos) {
+            this.limit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.backoffRatio = backoffRatio;
+            this.latencyThresholdNanos = latencyThresholdNanos;
+        }
+
+        Mono<Permit> acquire() {
+            return Mono.<Permit>create(sink -> {
+                Permit permit = null;
+                synchronized (this) {
+                    if (inFlight < (int) limit) {
+                        inFlight++;
+                        permit = new Permit(this, window);
+                    } else {
+                        waiters.addLast(sink);
+                    }
+                }
+                if (permit != null) {
+                    sink.success(permit);
+                } else {
+                    sink.onCancel(() -> cancelWaiter(sink));
+                }
+            }).doOnDiscard(Permit.class, Permit::releaseIgnored);
+        }
+
+        void release(Permit permit, boolean dropped) {
+            if (!permit.markReleased()) {
+                return;
+            }
+            long latencyNanos = Math.min(System.nanoTime() - permit.startNanos, 2 * latencyThresholdNanos);
+            List<Map.Entry<MonoSink<Permit>, Permit>> granted;
+            synchronized (this) {
+                inFlight--;
+                smoothedLatencyNanos += (latencyNanos - smoothedLatencyNanos) * LATENCY_SMOOTHING;
+                boolean congested = dropped || smoothedLatencyNanos > latencyThresholdNanos;
+                if (!congested) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                } else if (permit.window == window) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    window++;
+                }
+                granted = grantWaiters();
+            }
+            granted.forEach(entry -> entry.getKey().success(entry.getValue()));
+        }
+
+        private void releaseWithoutFeedback(Permit permit) {
+            if (!permit.markReleased()) {
+                return;
+            }
+            List<Map.Entry<MonoSink<Permit>, Permit>> granted;
+            synchronized (this) {
+                inFlight--;
+                granted = grantWaiters();
+            }
+            granted.forEach(entry -> entry.getKey().success(entry.getValue()));
+        }
+
+        private synchronized void cancelWaiter(MonoSink<Permit> sink) {
+            waiters.remove(sink);
+        }
+
+        private List<Map.Entry<MonoSink<Permit>, Permit>> grantWaiters() {
+            List<Map.Entry<MonoSink<Permit>, Permit>> granted = new ArrayList<>();
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                inFlight++;
+                granted.add(Map.entry(waiters.pollFirst(), new Permit(this, window)));
+            }
+            return granted;
+        }
+
+        synchronized double getLimit() {
+            return limit;
+        }
+
+        synchronized int getInFlight() {
+            return inFlight;
+        }
+    }
+
+    static final class Permit {
+
+        private final AimdLimit owner;
+        private final long window;
+        private volatile long startNanos = System.nanoTime();
+        private boolean released;
+
+        private Permit(AimdLimit owner, long window) {
+            this.owner = owner;
+            this.window = window;
+        }
+
+        private void start() {
+            startNanos = System.nanoTime();
+        }
+
+        private synchronized boolean markReleased() {
+            if (released) {
+                return false;
+            }
+            released = true;
+            return true;
+        }
+
+        void releaseIgnored() {
+            owner.releaseWithoutFeedback(this);
+        }
+    }
+}
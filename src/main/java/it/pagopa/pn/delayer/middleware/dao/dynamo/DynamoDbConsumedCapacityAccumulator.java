@@ -0,0 +1,119 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.model.ConsumedCapacityReport;
+import it.pagopa.pn.delayer.model.ConsumedCapacityScope;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Collects the capacity units returned by the DynamoDB requests (ReturnConsumedCapacity.TOTAL) for the whole job,
+ * keyed by table and by the ConsumedCapacityScope found in the Reactor context of the request.
+ * The DAOs wrap their calls with recordRead and recordWrite; the report is logged when the job ends.
+ */
+@Component
+@RequiredArgsConstructor
+public class DynamoDbConsumedCapacityAccumulator {
+
+    private static final int READ_UNIT_BYTES = 4096;
+
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final Map<UsageKey, Usage> usages = new ConcurrentHashMap<>();
+
+    public <T> Mono<T> recordRead(Mono<T> call, boolean consistentRead, Function<T, List<ConsumedCapacity>> consumedCapacity, ToIntFunction<T> itemCount) {
+        return Mono.deferContextual(contextView -> call.doOnNext(response -> add(contextView, consumedCapacity.apply(response), true, consistentRead, itemCount.applyAsInt(response))));
+    }
+
+    public <T> Flux<T> recordRead(Flux<T> call, boolean consistentRead, Function<T, List<ConsumedCapacity>> consumedCapacity, ToIntFunction<T> itemCount) {
+        return Flux.deferContextual(contextView -> call.doOnNext(response -> add(contextView, consumedCapacity.apply(response), true, consistentRead, itemCount.applyAsInt(response))));
+    }
+
+    public <T> Mono<Page<T>> recordPage(Mono<Page<T>> call, boolean consistentRead) {
+        return recordRead(call, consistentRead, page -> Collections.singletonList(page.consumedCapacity()), page -> page.items().size());
+    }
+
+    public <T> Flux<Page<T>> recordPages(Flux<Page<T>> call, boolean consistentRead) {
+        return recordRead(call, consistentRead, page -> Collections.singletonList(page.consumedCapacity()), page -> page.items().size());
+    }
+
+    public <T> Mono<T> recordWrite(Mono<T> call, Function<T, ConsumedCapacity> consumedCapacity) {
+        return recordBatchWrite(call, response -> Collections.singletonList(consumedCapacity.apply(response)));
+    }
+
+    public <T> Mono<T> recordBatchWrite(Mono<T> call, Function<T, List<ConsumedCapacity>> consumedCapacity) {
+        return Mono.deferContextual(contextView -> call.doOnNext(response -> add(contextView, consumedCapacity.apply(response), false, false, 0)));
+    }
+
+    private void add(ContextView contextView, List<ConsumedCapacity> consumedCapacities, boolean read, boolean consistentRead, int itemCount) {
+        ConsumedCapacityScope scope = contextView.getOrDefault(ConsumedCapacityScope.CONTEXT_KEY, ConsumedCapacityScope.UNSCOPED);
+        Optional.ofNullable(consumedCapacities).orElseGet(List::of).stream()
+                .filter(Objects::nonNull)
+                .forEach(consumedCapacity -> {
+                    double capacityUnits = Optional.ofNullable(consumedCapacity.capacityUnits()).orElse(0d);
+                    Usage usage = usages.computeIfAbsent(new UsageKey(consumedCapacity.tableName(), scope), key -> new Usage());
+                    usage.requests.increment();
+                    if (read) {
+                        usage.readCapacityUnits.add(capacityUnits);
+                        usage.bytesRead.add(capacityUnits * READ_UNIT_BYTES * (consistentRead ? 1 : 2));
+                        usage.itemsRead.add(itemCount);
+                    } else {
+                        usage.writeCapacityUnits.add(capacityUnits);
+                    }
+                });
+    }
+
+    public ConsumedCapacityReport report() {
+        Map<String, ConsumedCapacityReport.Usage> tables = aggregate(UsageKey::tableName);
+        String paperDeliveryTableName = Optional.ofNullable(pnDelayerConfigs.getDao()).map(PnDelayerConfigs.Dao::getPaperDeliveryTableName).orElse(null);
+        Double bytesReadPerDelivery = Optional.ofNullable(paperDeliveryTableName)
+                .map(tables::get)
+                .map(ConsumedCapacityReport.Usage::bytesReadPerItem)
+                .orElse(null);
+        return new ConsumedCapacityReport(tables, aggregate(key -> key.scope().step()), aggregate(key -> key.scope().province()), bytesReadPerDelivery);
+    }
+
+    private Map<String, ConsumedCapacityReport.Usage> aggregate(Function<UsageKey, String> groupBy) {
+        Map<String, Usage> groups = new TreeMap<>();
+        usages.forEach((key, usage) -> groups.computeIfAbsent(Objects.toString(groupBy.apply(key)), group -> new Usage()).merge(usage));
+        Map<String, ConsumedCapacityReport.Usage> report = new TreeMap<>();
+        groups.forEach((group, usage) -> report.put(group, usage.toReport()));
+        return report;
+    }
+
+    private record UsageKey(String tableName, ConsumedCapacityScope scope) {}
+
+    private static final class Usage {
+
+        private final DoubleAdder readCapacityUnits = new DoubleAdder();
+        private final DoubleAdder writeCapacityUnits = new DoubleAdder();
+        private final DoubleAdder bytesRead = new DoubleAdder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder itemsRead = new LongAdder();
+
+        private void merge(Usage other) {
+            readCapacityUnits.add(other.readCapacityUnits.sum());
+            writeCapacityUnits.add(other.writeCapacityUnits.sum());
+            bytesRead.add(other.bytesRead.sum());
+            requests.add(other.requests.sum());
+            itemsRead.add(other.itemsRead.sum());
+        }
+
+        private ConsumedCapacityReport.Usage toReport() {
+            long items = itemsRead.sum();
+            return new ConsumedCapacityReport.Usage(readCapacityUnits.sum(), writeCapacityUnits.sum(), requests.sum(), items,
+                    items > 0 ? bytesRead.sum() / items : null);
+        }
+    }
+}
@@ -3,8 +3,17 @@ package it.pagopa.pn.delayer.middleware.dao.dynamo;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities;
+import it.pagopa.pn.delayer.model.CarryOverCursor;
+import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
+import it.pagopa.pn.delayer.model.JobCheckpoint;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
@@ -14,22 +23,33 @@ import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
-import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.*;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "DYNAMO", matchIfMissing = true)
 public class PaperDeliveryCounterDAOImpl implements PaperDeliveryCounterDAO {
 
+    private static final String PRINT_PK = "PRINT";
+
     private final DynamoDbAsyncTable<PaperDeliveryCounter> tableCounter;
     private final DynamoDbAsyncClient dynamoDbAsyncClient;
     private final PnDelayerConfigs pnDelayerConfigs;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+    private final Map<LocalDate, Mono<Void>> initializedPrintCounters = new ConcurrentHashMap<>();
 
-    public PaperDeliveryCounterDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient, DynamoDbAsyncClient dynamoDbAsyncClient) {
+    public PaperDeliveryCounterDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient, DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator) {
         this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
         this.tableCounter = dynamoDbEnhancedAsyncClient.table(pnDelayerConfigs.getDao().getPaperDeliveryCounterTableName(), TableSchema.fromBean(PaperDeliveryCounter.class));
         this.pnDelayerConfigs = pnDelayerConfigs;
     }
@@ -39,7 +59,8 @@ public class PaperDeliveryCounterDAOImpl implements PaperDeliveryCounterDAO {
         QueryEnhancedRequest.Builder queryEnhancedRequestBuilder = QueryEnhancedRequest.builder()
                 .queryConditional(QueryConditional.sortBeginsWith(
                         Key.builder().partitionValue(pk).sortValue(sk).build()
-                ));
+                ))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
 
         if (Objects.nonNull(limit)) {
             queryEnhancedRequestBuilder.limit(limit);
@@ -47,14 +68,59 @@ public class PaperDeliveryCounterDAOImpl implements PaperDeliveryCounterDAO {
         }
         QueryEnhancedRequest queryEnhancedRequest = queryEnhancedRequestBuilder.build();
 
-        return Mono.from(tableCounter.query(queryEnhancedRequest).map(Page::items))
+        return consumedCapacityAccumulator.recordPage(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.from(tableCounter.query(queryEnhancedRequest))), false)
+                .map(Page::items)
                 .doOnError(error -> log.error("Error retrieving paper delivery counter for deliveryDate: {} and key: {}", pk, sk, error));
     }
 
+    /**
+     * Reads all the counters of the partition pk whose sort key begins with skPrefix, following every page.
+     * Every page is a separate query, executed through the concurrency limiter.
+     */
+    public Flux<PaperDeliveryCounter> retrievePaperDeliveryCounters(String pk, String skPrefix) {
+        return queryCountersPage(pk, skPrefix, null)
+                .expand(page -> CollectionUtils.isEmpty(page.lastEvaluatedKey())
+                        ? Mono.empty()
+                        : queryCountersPage(pk, skPrefix, page.lastEvaluatedKey()))
+                .flatMapIterable(Page::items)
+                .doOnError(error -> log.error("Error retrieving paper delivery counters for pk: {} and skPrefix: {}", pk, skPrefix, error));
+    }
+
+    private Mono<Page<PaperDeliveryCounter>> queryCountersPage(String pk, String skPrefix, Map<String, AttributeValue> lastEvaluatedKey) {
+        QueryEnhancedRequest.Builder requestBuilder = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.sortBeginsWith(Key.builder().partitionValue(pk).sortValue(skPrefix).build()))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        if (!CollectionUtils.isEmpty(lastEvaluatedKey)) {
+            requestBuilder.exclusiveStartKey(lastEvaluatedKey);
+        }
+        QueryEnhancedRequest request = requestBuilder.build();
+        return consumedCapacityAccumulator.recordPage(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.from(tableCounter.query(request))), false);
+    }
+
     public Mono<Void> updatePrintCapacityCounter(LocalDate deliveryDate, Integer counter, Integer weeklyPrintCapacity) {
         log.info("update print capacity counter for deliveryDate={} with weeklyPrintCapacity={} and field counter to increment of={}",
                 deliveryDate, weeklyPrintCapacity, counter);
 
+        UpdateItemRequest updateRequest = buildPrintCapacityCounterUpdate(deliveryDate, counter, weeklyPrintCapacity);
+
+        return initPrintCapacityCounter(deliveryDate, weeklyPrintCapacity)
+                .then(consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.fromFuture(dynamoDbAsyncClient.updateItem(updateRequest))), UpdateItemResponse::consumedCapacity))
+                .doOnSuccess(r -> log.info("Update print Capacity Counter successful for deliveryDate={}", deliveryDate))
+                .doOnError(e -> log.error("Error updating print Capacity Counter for deliveryDate={} --> {}", deliveryDate, e.getMessage(), e))
+                .then();
+    }
+
+    /**
+     * Builds the increment of the print capacity counter. With a single shard it is the legacy update of the item
+     * PRINT / deliveryDate, which also sets the non-counter attributes; with more shards the increment is added to
+     * the shard item PRINT / deliveryDate~shard, chosen by the AWS Batch array index or at random, so that the jobs
+     * finishing together do not all write the same item.
+     */
+    private UpdateItemRequest buildPrintCapacityCounterUpdate(LocalDate deliveryDate, Integer counter, Integer weeklyPrintCapacity) {
+        int shards = printCounterShards();
+        if (shards > 1) {
+            return buildShardedPrintCapacityCounterUpdate(deliveryDate, counter, shards);
+        }
         Map<String, String> expressionAttributeNames = new HashMap<>();
         Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
         List<String> updateExpressions = new ArrayList<>();
@@ -70,20 +136,264 @@ public class PaperDeliveryCounterDAOImpl implements PaperDeliveryCounterDAO {
         updateExpr = updateExpr + " ADD " + PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS + " :increment";
         expressionAttributeValues.put(":increment", AttributeValue.builder().n(String.valueOf(counter)).build());
 
-        UpdateItemRequest updateRequest = UpdateItemRequest.builder()
+        return UpdateItemRequest.builder()
                 .tableName(tableCounter.tableName())
-                .key(Map.of("pk", AttributeValue.builder().s("PRINT").build(), "sk", AttributeValue.builder().s(deliveryDate.toString()).build()))
+                .key(Map.of("pk", AttributeValue.builder().s(PRINT_PK).build(), "sk", AttributeValue.builder().s(deliveryDate.toString()).build()))
                 .updateExpression(updateExpr)
                 .expressionAttributeValues(expressionAttributeValues)
                 .expressionAttributeNames(expressionAttributeNames)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
                 .build();
+    }
 
-        return Mono.fromFuture(dynamoDbAsyncClient.updateItem(updateRequest))
-                .doOnSuccess(r -> log.info("Update print Capacity Counter successful for deliveryDate={}", deliveryDate))
-                .doOnError(e -> log.error("Error updating print Capacity Counter for deliveryDate={} --> {}", deliveryDate, e.getMessage(), e))
+    private UpdateItemRequest buildShardedPrintCapacityCounterUpdate(LocalDate deliveryDate, Integer counter, int shards) {
+        String shardSk = String.join("~", deliveryDate.toString(), String.valueOf(shardIndex(shards)));
+        Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+        expressionAttributeValues.put(":increment", AttributeValue.builder().n(String.valueOf(counter)).build());
+        expressionAttributeValues.put(":ttl", AttributeValue.builder().n(String.valueOf(Instant.now().plus(pnDelayerConfigs.getPrintCounterTtlDuration()).toEpochMilli())).build());
+
+        return UpdateItemRequest.builder()
+                .tableName(tableCounter.tableName())
+                .key(Map.of("pk", AttributeValue.builder().s(PRINT_PK).build(), "sk", AttributeValue.builder().s(shardSk).build()))
+                .updateExpression("ADD " + PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS + " :increment SET #ttl = if_not_exists(#ttl, :ttl)")
+                .expressionAttributeNames(Map.of("#ttl", PaperDeliveryCounter.COL_TTL))
+                .expressionAttributeValues(expressionAttributeValues)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+    }
+
+    /**
+     * In sharded mode writes the non-counter attributes of the base item PRINT / deliveryDate (weeklyPrintCapacity,
+     * dailyExecutions, ttl...) only if missing, once per deliveryDate and JVM, instead of on every increment.
+     * The base item is the one read by the DelayerToPaperChannel state machine, which sums the shards to it.
+     */
+    private Mono<Void> initPrintCapacityCounter(LocalDate deliveryDate, Integer weeklyPrintCapacity) {
+        if (printCounterShards() <= 1) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> initializedPrintCounters.computeIfAbsent(deliveryDate, date -> {
+            Map<String, String> expressionAttributeNames = new HashMap<>();
+            Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            Map<String, AttributeValue> map = PaperDeliveryCounter
+                    .entityToAttributeValueMap(PaperDeliveryCounter.constructPrintCounterEntity(weeklyPrintCapacity, pnDelayerConfigs.getPrintCapacityWeeklyWorkingDays(),
+                            pnDelayerConfigs.getPrintCounterTtlDuration(), pnDelayerConfigs.calculateDailyExecutionNumber()));
+            map.put(PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS, AttributeValue.builder().n("0").build());
+            List<String> updateExpressions = map.entrySet().stream()
+                    .map(entry -> buildIfNotExistsExpression(entry.getKey(), entry.getValue(), expressionAttributeNames, expressionAttributeValues))
+                    .toList();
+
+            UpdateItemRequest updateRequest = UpdateItemRequest.builder()
+                    .tableName(tableCounter.tableName())
+                    .key(Map.of("pk", AttributeValue.builder().s(PRINT_PK).build(), "sk", AttributeValue.builder().s(date.toString()).build()))
+                    .updateExpression("SET " + String.join(", ", updateExpressions))
+                    .expressionAttributeValues(expressionAttributeValues)
+                    .expressionAttributeNames(expressionAttributeNames)
+                    .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                    .build();
+
+            return consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.fromFuture(() -> dynamoDbAsyncClient.updateItem(updateRequest))), UpdateItemResponse::consumedCapacity)
+                    .doOnSuccess(r -> log.info("Print Capacity Counter initialized for deliveryDate={}", date))
+                    .doOnError(e -> {
+                        log.error("Error initializing print Capacity Counter for deliveryDate={} --> {}", date, e.getMessage(), e);
+                        initializedPrintCounters.remove(date);
+                    })
+                    .then()
+                    .cache();
+        }));
+    }
+
+    /**
+     * Reads the print capacity counter of the deliveryDate: the base item with its numberOfShipments increased by
+     * the sum of the shard items written in sharded mode.
+     */
+    public Mono<PaperDeliveryCounter> retrievePrintCapacityCounter(LocalDate deliveryDate) {
+        return retrievePaperDeliveryCounters(PRINT_PK, deliveryDate.toString())
+                .collectList()
+                .mapNotNull(counters -> PaperDeliveryCounter.sumPrintCounterShards(deliveryDate, counters));
+    }
+
+    private int printCounterShards() {
+        return Math.max(Optional.ofNullable(pnDelayerConfigs.getPrintCounter())
+                .map(PnDelayerConfigs.PrintCounter::getShards)
+                .orElse(1), 1);
+    }
+
+    private static int shardIndex(int shards) {
+        String jobIndex = System.getenv("AWS_BATCH_JOB_ARRAY_INDEX");
+        return StringUtils.hasText(jobIndex)
+                ? Math.floorMod(Integer.parseInt(jobIndex), shards)
+                : ThreadLocalRandom.current().nextInt(shards);
+    }
+
+    public Mono<Void> saveJobCheckpoint(JobCheckpoint jobCheckpoint, Duration ttl) {
+        PutItemRequest putItemRequest = PutItemRequest.builder()
+                .tableName(tableCounter.tableName())
+                .item(buildCheckpointItem(jobCheckpoint, ttl))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        return consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(putItemRequest))), PutItemResponse::consumedCapacity)
+                .doOnSuccess(r -> log.info("Saved checkpoint {} for {}~{}~{} on deliveryWeek={} after {} pages", jobCheckpoint.phase(),
+                        jobCheckpoint.workflowStep(), jobCheckpoint.unifiedDeliveryDriver(), jobCheckpoint.province(), jobCheckpoint.deliveryWeek(), jobCheckpoint.processedPages()))
+                .doOnError(e -> log.error("Error saving checkpoint for {}~{}~{} on deliveryWeek={} --> {}",
+                        jobCheckpoint.workflowStep(), jobCheckpoint.unifiedDeliveryDriver(), jobCheckpoint.province(), jobCheckpoint.deliveryWeek(), e.getMessage(), e))
+                .then();
+    }
+
+    /**
+     * Writes the checkpoint, the print capacity counter and the used capacities with a single TransactWriteItems,
+     * so that a retry never finds the counters incremented without the checkpoint that records it.
+     */
+    public Mono<Void> saveJobCheckpointWithCounters(JobCheckpoint jobCheckpoint, Duration ttl, int printCounter, Integer weeklyPrintCapacity, List<IncrementUsedCapacityDto> usedCapacities) {
+        if (usedCapacities.size() > MAX_CHECKPOINT_COUNTER_UPDATES) {
+            return Mono.error(new IllegalArgumentException("Too many used capacities in a checkpoint transaction: " + usedCapacities.size()));
+        }
+        String usedCapacitiesTableName = pnDelayerConfigs.getDao().getPaperDeliveryDriverUsedCapacitiesTableName();
+        List<TransactWriteItem> transactItems = new ArrayList<>();
+        transactItems.add(TransactWriteItem.builder()
+                .put(Put.builder().tableName(tableCounter.tableName()).item(buildCheckpointItem(jobCheckpoint, ttl)).build())
+                .build());
+        if (printCounter != 0) {
+            transactItems.add(toTransactUpdate(buildPrintCapacityCounterUpdate(jobCheckpoint.deliveryWeek(), printCounter, weeklyPrintCapacity)));
+        }
+        usedCapacities.forEach(increment -> transactItems.add(toTransactUpdate(PaperDeliveryDriverUsedUsedCapacitiesDAOImpl.buildUpdateCounterRequest(usedCapacitiesTableName,
+                increment.unifiedDeliveryDriver(), increment.geoKey(), increment.numberOfDeliveries(), increment.deliveryWeek(), increment.declaredCapacity()))));
+
+        TransactWriteItemsRequest transactWriteItemsRequest = TransactWriteItemsRequest.builder()
+                .transactItems(transactItems)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        return (printCounter != 0 ? initPrintCapacityCounter(jobCheckpoint.deliveryWeek(), weeklyPrintCapacity) : Mono.<Void>empty())
+                .then(consumedCapacityAccumulator.recordBatchWrite(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.fromFuture(() -> dynamoDbAsyncClient.transactWriteItems(transactWriteItemsRequest))), TransactWriteItemsResponse::consumedCapacity))
+                .doOnSuccess(r -> log.info("Saved checkpoint {} for {}~{}~{} on deliveryWeek={} with printCounter={} and {} used capacities", jobCheckpoint.phase(),
+                        jobCheckpoint.workflowStep(), jobCheckpoint.unifiedDeliveryDriver(), jobCheckpoint.province(), jobCheckpoint.deliveryWeek(), printCounter, usedCapacities.size()))
+                .doOnError(e -> log.error("Error saving checkpoint with counters for {}~{}~{} on deliveryWeek={} --> {}",
+                        jobCheckpoint.workflowStep(), jobCheckpoint.unifiedDeliveryDriver(), jobCheckpoint.province(), jobCheckpoint.deliveryWeek(), e.getMessage(), e))
+                .then();
+    }
+
+    private static TransactWriteItem toTransactUpdate(UpdateItemRequest updateItemRequest) {
+        Update.Builder update = Update.builder()
+                .tableName(updateItemRequest.tableName())
+                .key(updateItemRequest.key())
+                .updateExpression(updateItemRequest.updateExpression())
+                .expressionAttributeValues(updateItemRequest.expressionAttributeValues());
+        if (updateItemRequest.hasExpressionAttributeNames() && !updateItemRequest.expressionAttributeNames().isEmpty()) {
+            update.expressionAttributeNames(updateItemRequest.expressionAttributeNames());
+        }
+        return TransactWriteItem.builder().update(update.build()).build();
+    }
+
+    private Map<String, AttributeValue> buildCheckpointItem(JobCheckpoint jobCheckpoint, Duration ttl) {
+        Map<String, AttributeValue> usedCapacities = new HashMap<>();
+        jobCheckpoint.usedCapacities().forEach(increment -> usedCapacities.put(increment.geoKey(), AttributeValue.builder().m(Map.of(
+                PaperDeliveryDriverUsedCapacities.COL_USED_CAPACITY, AttributeValue.builder().n(String.valueOf(increment.numberOfDeliveries())).build(),
+                PaperDeliveryDriverUsedCapacities.COL_DECLARED_CAPACITY, AttributeValue.builder().n(String.valueOf(increment.declaredCapacity())).build())).build()));
+
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(PaperDeliveryCounter.COL_PK, AttributeValue.builder().s(PaperDeliveryCounter.buildCheckpointPk(jobCheckpoint.deliveryWeek())).build());
+        item.put(PaperDeliveryCounter.COL_SK, AttributeValue.builder().s(PaperDeliveryCounter.buildCheckpointSk(jobCheckpoint.workflowStep().name(), jobCheckpoint.unifiedDeliveryDriver(), jobCheckpoint.province())).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_PHASE, AttributeValue.builder().s(jobCheckpoint.phase().name()).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_LAST_EVALUATED_KEY, AttributeValue.builder().m(Optional.ofNullable(jobCheckpoint.lastEvaluatedKey()).orElse(Map.of())).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_PROCESSED_PAGES, AttributeValue.builder().n(String.valueOf(jobCheckpoint.processedPages())).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_SENT_TO_NEXT_STEP, AttributeValue.builder().n(String.valueOf(jobCheckpoint.sentToNextStep())).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_PRINT_COUNTER, AttributeValue.builder().n(String.valueOf(jobCheckpoint.printCounter())).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_USED_CAPACITIES, AttributeValue.builder().m(usedCapacities).build());
+        item.put(PaperDeliveryCounter.COL_CHECKPOINT_FLUSHED_CHUNKS, AttributeValue.builder().n(String.valueOf(jobCheckpoint.flushedChunks())).build());
+        item.put(PaperDeliveryCounter.COL_TTL, AttributeValue.builder().n(String.valueOf(Instant.now().plus(ttl).toEpochMilli())).build());
+        return item;
+    }
+
+    public Mono<JobCheckpoint> retrieveJobCheckpoint(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek) {
+        GetItemRequest getItemRequest = GetItemRequest.builder()
+                .tableName(tableCounter.tableName())
+                .key(Map.of(PaperDeliveryCounter.COL_PK, AttributeValue.builder().s(PaperDeliveryCounter.buildCheckpointPk(deliveryWeek)).build(),
+                        PaperDeliveryCounter.COL_SK, AttributeValue.builder().s(PaperDeliveryCounter.buildCheckpointSk(workflowStep.name(), unifiedDeliveryDriver, province)).build()))
+                .consistentRead(true)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        return consumedCapacityAccumulator.recordRead(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.fromFuture(() -> dynamoDbAsyncClient.getItem(getItemRequest))),
+                        true, response -> Collections.singletonList(response.consumedCapacity()), response -> response.hasItem() ? 1 : 0)
+                .filter(GetItemResponse::hasItem)
+                .map(GetItemResponse::item)
+                .map(item -> new JobCheckpoint(workflowStep, unifiedDeliveryDriver, province, deliveryWeek,
+                        JobCheckpoint.Phase.valueOf(item.get(PaperDeliveryCounter.COL_CHECKPOINT_PHASE).s()),
+                        item.get(PaperDeliveryCounter.COL_CHECKPOINT_LAST_EVALUATED_KEY).m(),
+                        Integer.parseInt(item.get(PaperDeliveryCounter.COL_CHECKPOINT_PROCESSED_PAGES).n()),
+                        Integer.parseInt(item.get(PaperDeliveryCounter.COL_CHECKPOINT_SENT_TO_NEXT_STEP).n()),
+                        Integer.parseInt(item.get(PaperDeliveryCounter.COL_CHECKPOINT_PRINT_COUNTER).n()),
+                        item.get(PaperDeliveryCounter.COL_CHECKPOINT_USED_CAPACITIES).m().entrySet().stream()
+                                .map(entry -> new IncrementUsedCapacityDto(unifiedDeliveryDriver, entry.getKey(),
+                                        Integer.parseInt(entry.getValue().m().get(PaperDeliveryDriverUsedCapacities.COL_USED_CAPACITY).n()),
+                                        deliveryWeek,
+                                        Integer.parseInt(entry.getValue().m().get(PaperDeliveryDriverUsedCapacities.COL_DECLARED_CAPACITY).n())))
+                                .toList(),
+                        Optional.ofNullable(item.get(PaperDeliveryCounter.COL_CHECKPOINT_FLUSHED_CHUNKS)).map(AttributeValue::n).map(Integer::parseInt).orElse(0)))
+                .doOnNext(checkpoint -> log.info("Found checkpoint {} for {}~{}~{} on deliveryWeek={} after {} pages",
+                        checkpoint.phase(), workflowStep, unifiedDeliveryDriver, province, deliveryWeek, checkpoint.processedPages()))
+                .doOnError(e -> log.error("Error retrieving checkpoint for {}~{}~{} on deliveryWeek={}", workflowStep, unifiedDeliveryDriver, province, deliveryWeek, e));
+    }
+
+    public Mono<Void> saveCarryOverCursor(CarryOverCursor carryOverCursor, Duration ttl) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put(PaperDeliveryCounter.COL_PK, AttributeValue.builder().s(PaperDeliveryCounter.buildCarryOverPk(carryOverCursor.deliveryWeek())).build());
+        item.put(PaperDeliveryCounter.COL_SK, AttributeValue.builder().s(PaperDeliveryCounter.buildCarryOverSk(carryOverCursor.province(), carryOverCursor.sourceWorkflowStep().name(), carryOverCursor.sortKeyPrefix())).build());
+        item.put(PaperDeliveryCounter.COL_CARRY_OVER_PROVINCE, AttributeValue.builder().s(carryOverCursor.province()).build());
+        item.put(PaperDeliveryCounter.COL_CARRY_OVER_SOURCE_WORKFLOW_STEP, AttributeValue.builder().s(carryOverCursor.sourceWorkflowStep().name()).build());
+        item.put(PaperDeliveryCounter.COL_CARRY_OVER_SOURCE_DELIVERY_WEEK, AttributeValue.builder().s(carryOverCursor.sourceDeliveryWeek().toString()).build());
+        item.put(PaperDeliveryCounter.COL_CARRY_OVER_SORT_KEY_PREFIX, AttributeValue.builder().s(carryOverCursor.sortKeyPrefix()).build());
+        item.put(PaperDeliveryCounter.COL_CARRY_OVER_START_KEY, AttributeValue.builder().m(Optional.ofNullable(carryOverCursor.startKey()).orElse(Map.of())).build());
+        item.put(PaperDeliveryCounter.COL_TTL, AttributeValue.builder().n(String.valueOf(Instant.now().plus(ttl).toEpochMilli())).build());
+
+        PutItemRequest putItemRequest = PutItemRequest.builder()
+                .tableName(tableCounter.tableName())
+                .item(item)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        return consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(tableCounter.tableName(), () -> Mono.fromFuture(() -> dynamoDbAsyncClient.putItem(putItemRequest))), PutItemResponse::consumedCapacity)
+                .doOnSuccess(r -> log.info("Saved carry over cursor {}~{} of deliveryWeek={} to deliveryWeek={}", carryOverCursor.sourceWorkflowStep(),
+                        carryOverCursor.sortKeyPrefix(), carryOverCursor.sourceDeliveryWeek(), carryOverCursor.deliveryWeek()))
+                .doOnError(e -> log.error("Error saving carry over cursor {}~{} to deliveryWeek={} --> {}",
+                        carryOverCursor.sourceWorkflowStep(), carryOverCursor.sortKeyPrefix(), carryOverCursor.deliveryWeek(), e.getMessage(), e))
                 .then();
     }
 
+    /**
+     * Reads all the cursors carried over to deliveryWeek for the province, in sort key order (province~sourceWorkflowStep~sortKeyPrefix).
+     * The cursors of all the provinces share the CARRY_OVER~deliveryWeek partition, so that the readers outside of the job
+     * (switch off and cancellation lambdas) can list them with a single query.
+     */
+    public Flux<CarryOverCursor> retrieveCarryOverCursors(LocalDate deliveryWeek, String province) {
+        QueryRequest queryRequest = QueryRequest.builder()
+                .tableName(tableCounter.tableName())
+                .keyConditionExpression("#pk = :pk AND begins_with(#sk, :sk)")
+                .expressionAttributeNames(Map.of("#pk", PaperDeliveryCounter.COL_PK, "#sk", PaperDeliveryCounter.COL_SK))
+                .expressionAttributeValues(Map.of(
+                        ":pk", AttributeValue.builder().s(PaperDeliveryCounter.buildCarryOverPk(deliveryWeek)).build(),
+                        ":sk", AttributeValue.builder().s(province + "~").build()))
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+
+        return consumedCapacityAccumulator.recordRead(Flux.from(dynamoDbAsyncClient.queryPaginator(queryRequest)), false,
+                        response -> Collections.singletonList(response.consumedCapacity()), response -> response.items().size())
+                .flatMapIterable(QueryResponse::items)
+                .map(item -> new CarryOverCursor(deliveryWeek, province,
+                        WorkflowStepEnum.valueOf(item.get(PaperDeliveryCounter.COL_CARRY_OVER_SOURCE_WORKFLOW_STEP).s()),
+                        LocalDate.parse(item.get(PaperDeliveryCounter.COL_CARRY_OVER_SOURCE_DELIVERY_WEEK).s()),
+                        item.get(PaperDeliveryCounter.COL_CARRY_OVER_SORT_KEY_PREFIX).s(),
+                        item.get(PaperDeliveryCounter.COL_CARRY_OVER_START_KEY).m()))
+                .doOnError(e -> log.error("Error retrieving carry over cursors for province={} on deliveryWeek={}", province, deliveryWeek, e));
+    }
+
+    private String buildIfNotExistsExpression(String key, AttributeValue value, Map<String, String> names, Map<String, AttributeValue> values) {
+        names.put("#" + key, key);
+        values.put(":" + key, value);
+        return "#" + key + " = if_not_exists(#" + key + ", :" + key + ")";
+    }
+
     private String buildUpdateExpressions(String key, AttributeValue value, Map<String, String> names, Map<String, AttributeValue> values) {
         if(key.equalsIgnoreCase(PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS)) {
             return "";
@@ -4,11 +4,12 @@ import it.pagopa.pn.commons.exceptions.PnInternalException;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.model.SortKeyRange;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
@@ -16,8 +17,8 @@ import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
 import software.amazon.awssdk.enhanced.dynamodb.model.*;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
 
-import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -26,14 +27,19 @@ import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.ERROR_CODE_I
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "DYNAMO", matchIfMissing = true)
 public class PaperDeliveryDAOImpl implements PaperDeliveryDAO {
 
     private final DynamoDbAsyncTable<PaperDelivery> table;
-    private final DynamoDbEnhancedAsyncClient enhancedAsyncClient;
+    private final DynamoDbBatchWriter dynamoDbBatchWriter;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
 
-    public PaperDeliveryDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient) {
+    public PaperDeliveryDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient, DynamoDbBatchWriter dynamoDbBatchWriter, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator) {
         this.table = dynamoDbEnhancedAsyncClient.table(pnDelayerConfigs.getDao().getPaperDeliveryTableName(), TableSchema.fromBean(PaperDelivery.class));
-        this.enhancedAsyncClient = dynamoDbEnhancedAsyncClient;
+        this.dynamoDbBatchWriter = dynamoDbBatchWriter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
     }
 
     @Override
@@ -43,50 +49,55 @@ public class PaperDeliveryDAOImpl implements PaperDeliveryDAO {
                 .sortValue(sortKeyPrefix)
                 .build());
 
+        return query(keyCondition, null, lastEvaluatedKey, queryLimit);
+    }
+
+    @Override
+    public Mono<Page<PaperDelivery>> retrievePaperDeliveriesProjection(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, List<String> attributesToProject, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
+        QueryConditional keyCondition = QueryConditional.sortBeginsWith(Key.builder()
+                .partitionValue(String.join("~", deliveryWeek.toString(), workflowStepEnum.name()))
+                .sortValue(sortKeyPrefix)
+                .build());
+
+        return query(keyCondition, attributesToProject, lastEvaluatedKey, queryLimit);
+    }
+
+    @Override
+    public Mono<Page<PaperDelivery>> retrievePaperDeliveriesInRange(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, SortKeyRange sortKeyRange, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
+        String partitionKey = String.join("~", deliveryWeek.toString(), workflowStepEnum.name());
+        QueryConditional keyCondition = QueryConditional.sortBetween(
+                Key.builder().partitionValue(partitionKey).sortValue(sortKeyRange.from()).build(),
+                Key.builder().partitionValue(partitionKey).sortValue(sortKeyRange.to()).build());
+
+        return query(keyCondition, null, lastEvaluatedKey, queryLimit);
+    }
+
+    private Mono<Page<PaperDelivery>> query(QueryConditional keyCondition, List<String> attributesToProject, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
         QueryEnhancedRequest.Builder requestBuilder = QueryEnhancedRequest.builder()
                 .queryConditional(keyCondition)
-                .limit(queryLimit);
+                .limit(queryLimit)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+
+        if (!CollectionUtils.isEmpty(attributesToProject)) {
+            requestBuilder.attributesToProject(attributesToProject);
+        }
 
         if (!CollectionUtils.isEmpty(lastEvaluatedKey)) {
             requestBuilder.exclusiveStartKey(lastEvaluatedKey);
         }
 
-        return Mono.from(table.query(requestBuilder.build()));
+        QueryEnhancedRequest request = requestBuilder.build();
+        return consumedCapacityAccumulator.recordPage(concurrencyLimiter.execute(table.tableName(), () -> Mono.from(table.query(request))), false);
     }
 
     @Override
     public Mono<Void> insertPaperDeliveries(List<PaperDelivery> paperDeliveries) {
         if(!CollectionUtils.isEmpty(paperDeliveries)) {
-            return Flux.fromIterable(paperDeliveries).buffer(25)
-                    .flatMap(chunk -> insertWithRetry(chunk, 10))
-                    .then();
+            return dynamoDbBatchWriter.putItems(table.tableName(), paperDeliveries.stream()
+                    .map(paperDelivery -> table.tableSchema().itemToMap(paperDelivery, true))
+                    .toList())
+                    .onErrorMap(e -> new PnInternalException("Error during insert of " + paperDeliveries.size() + " PaperDelivery", ERROR_CODE_INSERT_PAPER_DELIVERY_ENTITY, e));
         }
         return Mono.empty();
     }
-
-    private Mono<Void> insertWithRetry(List<PaperDelivery> paperDeliveriesChunk, int retriesLeft) {
-        BatchWriteItemEnhancedRequest.Builder batchBuilder = BatchWriteItemEnhancedRequest.builder();
-        paperDeliveriesChunk.forEach(paperDelivery -> {
-            WriteBatch writeBatch = WriteBatch.builder(PaperDelivery.class)
-                    .mappedTableResource(table)
-                    .addPutItem(paperDelivery)
-                    .build();
-            batchBuilder.addWriteBatch(writeBatch);
-        });
-
-        return Mono.fromFuture(enhancedAsyncClient.batchWriteItem(batchBuilder.build()))
-            .flatMap(response -> {
-                List<PaperDelivery> unprocessed = response.unprocessedPutItemsForTable(table);
-                if (unprocessed != null && !unprocessed.isEmpty()) {
-                    if (retriesLeft > 1) {
-                        log.info("Retrying batch write for {} unprocessed items, {} retries left", unprocessed.size(), retriesLeft - 1);
-                        return Mono.delay(Duration.ofSeconds(3)).then(insertWithRetry(unprocessed, retriesLeft - 1));
-                    } else {
-                        log.error("Failed to insert PaperDelivery after 3 attempts, unprocessed items remain: {}", unprocessed);
-                        return Mono.error(new PnInternalException("Error during insert PaperDelivery, Unprocessed items remain after 3 attempts", ERROR_CODE_INSERT_PAPER_DELIVERY_ENTITY));
-                    }
-                }
-                return Mono.empty();
-            });
-    }
 }
@@ -4,13 +4,17 @@ import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverCapacitiesDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.enhanced.dynamodb.*;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
 import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
 
 import java.time.LocalDate;
 import java.time.ZoneOffset;
@@ -21,12 +25,15 @@ import java.util.Map;
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "DYNAMO", matchIfMissing = true)
 public class PaperDeliveryDriverCapacitiesDAOImpl implements PaperDeliveryDriverCapacitiesDAO {
 
     private final DynamoDbAsyncTable<PaperDeliveryDriverCapacity> table;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
 
-    public PaperDeliveryDriverCapacitiesDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient) {
+    public PaperDeliveryDriverCapacitiesDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator) {
         this.table = dynamoDbEnhancedAsyncClient.table(pnDelayerConfigs.getDao().getPaperDeliveryDriverCapacitiesTableName(), TableSchema.fromBean(PaperDeliveryDriverCapacity.class));
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
     }
 
     @Override
@@ -57,9 +64,12 @@ public class PaperDeliveryDriverCapacitiesDAOImpl implements PaperDeliveryDriver
                         .build())
                 .limit(1)
                 .scanIndexForward(false)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
                 .build();
 
-        return Mono.from(table.query(queryRequest).items().limit(1))
+        return consumedCapacityAccumulator.recordPages(Flux.from(table.query(queryRequest)), false)
+                .flatMapIterable(Page::items)
+                .next()
                 .map(PaperDeliveryDriverCapacity::getCapacity)
                 .switchIfEmpty(Mono.defer(() -> {
                     log.error("No PaperDeliveryDriverCapacity found for tenderId: {}, unifiedDeliveryDriver: {}, geoKey: {}, deliveryDate: {}",
@@ -97,9 +107,10 @@ public class PaperDeliveryDriverCapacitiesDAOImpl implements PaperDeliveryDriver
                         .build())
                 .scanIndexForward(false)
                 .limit(1000)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
                 .build();
 
-        return Flux.from(table.index(PaperDeliveryDriverCapacity.TENDER_ID_GEO_KEY_INDEX).query(queryRequest))
+        return consumedCapacityAccumulator.recordPages(Flux.from(table.index(PaperDeliveryDriverCapacity.TENDER_ID_GEO_KEY_INDEX).query(queryRequest)), false)
                 .flatMap(page -> Flux.fromIterable(page.items()))
                 .groupBy(PaperDeliveryDriverCapacity::getUnifiedDeliveryDriver)
                 .flatMap(groupedFlux ->
@@ -110,4 +121,27 @@ public class PaperDeliveryDriverCapacitiesDAOImpl implements PaperDeliveryDriver
                 .collectList()
                 .doOnError(e -> log.error("Error during retrieve PaperDeliveryDriverCapacities for tenderId: {}, geoKey: {}, deliveryDate: {}", tenderId, geoKey, deliveryDate, e));
     }
+
+    /**
+     * Scans all the capacity rows of the given tenderId and unifiedDeliveryDriver (pk starting with tenderId~driver~),
+     * reading totalSegments segments of the table in parallel.
+     */
+    @Override
+    public Flux<PaperDeliveryDriverCapacity> scanPaperDeliveryDriverCapacities(String tenderId, String unifiedDeliveryDriver, Integer totalSegments) {
+        Expression filterExpression = Expression.builder()
+                .expression("begins_with(#pk, :pkPrefix)")
+                .expressionNames(Map.of("#pk", PaperDeliveryDriverCapacity.COL_PK))
+                .expressionValues(Map.of(":pkPrefix", AttributeValue.builder().s(String.join("~", tenderId, unifiedDeliveryDriver, "")).build()))
+                .build();
+
+        return Flux.range(0, totalSegments)
+                .flatMap(segment -> consumedCapacityAccumulator.recordPages(Flux.from(table.scan(ScanEnhancedRequest.builder()
+                                .filterExpression(filterExpression)
+                                .segment(segment)
+                                .totalSegments(totalSegments)
+                                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                                .build())), false)
+                        .flatMapIterable(Page::items), totalSegments)
+                .doOnError(e -> log.error("Error during scan PaperDeliveryDriverCapacities for tenderId: {}, unifiedDeliveryDriver: {}", tenderId, unifiedDeliveryDriver, e));
+    }
 }
@@ -4,6 +4,7 @@ import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverUsedCapacitiesDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -13,31 +14,41 @@ import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetItemEnhancedRequest;
-import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedResponse;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
 import java.time.LocalDate;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import static it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities.*;
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "DYNAMO", matchIfMissing = true)
 public class PaperDeliveryDriverUsedUsedCapacitiesDAOImpl implements PaperDeliveryDriverUsedCapacitiesDAO {
 
     private final DynamoDbAsyncTable<PaperDeliveryDriverUsedCapacities> table;
     private final DynamoDbAsyncClient dynamoDbAsyncClient;
-    private final DynamoDbEnhancedAsyncClient dynamoDbEnhancedClient;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbBatchGetter dynamoDbBatchGetter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
 
-    public PaperDeliveryDriverUsedUsedCapacitiesDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbEnhancedAsyncClient dynamoDbEnhancedClient) {
+    public PaperDeliveryDriverUsedUsedCapacitiesDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbEnhancedAsyncClient dynamoDbEnhancedClient, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbBatchGetter dynamoDbBatchGetter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator) {
         this.table = dynamoDbEnhancedClient.table(pnDelayerConfigs.getDao().getPaperDeliveryDriverUsedCapacitiesTableName(), TableSchema.fromBean(PaperDeliveryDriverUsedCapacities.class));
         this.dynamoDbAsyncClient = dynamoDbAsyncClient;
-        this.dynamoDbEnhancedClient = dynamoDbEnhancedClient;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.dynamoDbBatchGetter = dynamoDbBatchGetter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
     }
 
     @Override
@@ -45,8 +56,21 @@ public class PaperDeliveryDriverUsedUsedCapacitiesDAOImpl implements PaperDelive
         String pk = PaperDeliveryDriverUsedCapacities.buildPk(unifiedDeliveryDriver, geoKey);
         log.info("update pk={} increment={}, declaredCapacity={}", pk, increment, declaredCapacity);
 
+        UpdateItemRequest updateRequest = buildUpdateCounterRequest(table.tableName(), unifiedDeliveryDriver, geoKey, increment, deliveryDate, declaredCapacity);
+
+        return consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(table.tableName(), () -> Mono.fromFuture(dynamoDbAsyncClient.updateItem(updateRequest))), UpdateItemResponse::consumedCapacity)
+                .thenReturn(increment)
+                .doOnSuccess(r -> log.info("Update successful for pk={} increment={}", pk, increment))
+                .doOnError(e -> log.error("Error updating item with pk {}: {}", pk, e.getMessage()));
+    }
+
+    /**
+     * Builds the update adding increment to the used capacity of unifiedDeliveryDriver on geoKey, shared with the
+     * transactions that flush the used capacities together with the job checkpoint.
+     */
+    static UpdateItemRequest buildUpdateCounterRequest(String tableName, String unifiedDeliveryDriver, String geoKey, Integer increment, LocalDate deliveryDate, Integer declaredCapacity) {
         Map<String, AttributeValue> key = new HashMap<>();
-        key.put(PaperDeliveryDriverUsedCapacities.COL_UNIFIED_DELIVERY_DRIVER_GEOKEY, AttributeValue.builder().s(pk).build());
+        key.put(PaperDeliveryDriverUsedCapacities.COL_UNIFIED_DELIVERY_DRIVER_GEOKEY, AttributeValue.builder().s(PaperDeliveryDriverUsedCapacities.buildPk(unifiedDeliveryDriver, geoKey)).build());
         key.put(PaperDeliveryDriverUsedCapacities.COL_DELIVERY_DATE, AttributeValue.builder().s(deliveryDate.toString()).build());
 
         Map<String, AttributeValue> attributeValue = new HashMap<>();
@@ -55,28 +79,30 @@ public class PaperDeliveryDriverUsedUsedCapacitiesDAOImpl implements PaperDelive
         attributeValue.put(":geoKey", AttributeValue.builder().s(geoKey).build());
         attributeValue.put(":declaredCapacity", AttributeValue.builder().n(String.valueOf(declaredCapacity)).build());
 
-        UpdateItemRequest updateRequest = UpdateItemRequest.builder()
-                .tableName(table.tableName())
+        return UpdateItemRequest.builder()
+                .tableName(tableName)
                 .key(key)
                 .updateExpression("ADD " + COL_USED_CAPACITY + " :v" +
                         " SET " + COL_UNIFIED_DELIVERY_DRIVER + " = :deliveryDriver," + COL_GEO_KEY + "= :geoKey," +
                         COL_DECLARED_CAPACITY + "= :declaredCapacity")
                 .expressionAttributeValues(attributeValue)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
                 .build();
-
-        return Mono.fromFuture(dynamoDbAsyncClient.updateItem(updateRequest))
-                .thenReturn(increment)
-                .doOnSuccess(r -> log.info("Update successful for pk={} increment={}", pk, increment))
-                .doOnError(e -> log.error("Error updating item with pk {}: {}", pk, e.getMessage()));
     }
 
     @Override
     public Mono<Tuple2<Integer, Integer>> get(String unifiedDeliveryDriver, String geoKey, LocalDate deliveryDate) {
         String pk = PaperDeliveryDriverUsedCapacities.buildPk(unifiedDeliveryDriver, geoKey);
-        return Mono.fromFuture(table.getItem(Key.builder()
+        GetItemEnhancedRequest getItemRequest = GetItemEnhancedRequest.builder()
+                .key(Key.builder()
                         .partitionValue(pk)
                         .sortValue(String.valueOf(deliveryDate))
-                        .build()))
+                        .build())
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
+                .build();
+        return consumedCapacityAccumulator.recordRead(concurrencyLimiter.execute(table.tableName(), () -> Mono.fromFuture(table.getItemWithResponse(getItemRequest))),
+                        false, response -> Collections.singletonList(response.consumedCapacity()), response -> Objects.isNull(response.attributes()) ? 0 : 1)
+                .mapNotNull(GetItemEnhancedResponse::attributes)
                 .map(item -> Tuples.of(item.getDeclaredCapacity(), item.getUsedCapacity()))
                 .doOnError(e -> log.error("Error retrieving usedCapacity item with pk {}: {}", pk, e.getMessage()));
     }
@@ -85,26 +111,17 @@ public class PaperDeliveryDriverUsedUsedCapacitiesDAOImpl implements PaperDelive
     public Flux<PaperDeliveryDriverUsedCapacities> batchGetItem(List<String> pks, LocalDate deliveryDate) {
         log.info("batchGetItem for usedCapacity pks={} deliveryDate={}", pks, deliveryDate);
 
-        List<Key> keys = pks.stream()
+        List<Map<String, AttributeValue>> keys = pks.stream()
                 .map(pk -> Key.builder()
                         .partitionValue(pk)
                         .sortValue(deliveryDate.toString())
-                        .build())
+                        .build()
+                        .keyMap(table.tableSchema(), TableMetadata.primaryIndexName()))
                 .toList();
 
-        ReadBatch.Builder<PaperDeliveryDriverUsedCapacities> readBatchBuilder = ReadBatch
-                .builder(PaperDeliveryDriverUsedCapacities.class)
-                .mappedTableResource(table);
-
-        keys.forEach(readBatchBuilder::addGetItem);
-        ReadBatch readBatch = readBatchBuilder.build();
-
-        BatchGetItemEnhancedRequest request = BatchGetItemEnhancedRequest.builder()
-                .addReadBatch(readBatch)
-                .build();
-
-        return Mono.from(dynamoDbEnhancedClient.batchGetItem(request))
-                .map(batchGetResultPage -> batchGetResultPage.resultsForTable(table))
+        return dynamoDbBatchGetter.getItems(table.tableName(), keys)
+                .map(item -> table.tableSchema().mapToItem(item))
+                .collectList()
                 .doOnNext(items -> log.info("Retrieved usedCapacity items: {}", items.size()))
                 .flatMapMany(Flux::fromIterable)
                 .doOnError(e -> log.error("Error retrieving usedCapacity items with pks {}: {}", pks, e.getMessage()));
@@ -5,18 +5,20 @@ import it.pagopa.pn.delayer.middleware.dao.PaperDeliverySenderLimitDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliverySenderLimit;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryUsedSenderLimit;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
 import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
-import software.amazon.awssdk.enhanced.dynamodb.model.BatchGetItemEnhancedRequest;
-import software.amazon.awssdk.enhanced.dynamodb.model.ReadBatch;
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
 import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
 
 import java.time.LocalDate;
 import java.util.HashMap;
@@ -25,44 +27,31 @@ import java.util.Map;
 
 @Component
 @Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "DYNAMO", matchIfMissing = true)
 public class PaperDeliverySenderLimitDAOImpl implements PaperDeliverySenderLimitDAO {
 
     private final DynamoDbAsyncTable<PaperDeliverySenderLimit> senderLimitTable;
     private final DynamoDbAsyncTable<PaperDeliveryUsedSenderLimit> usedSenderLimitTable;
-    private final DynamoDbEnhancedAsyncClient dynamoDbEnhancedClient;
     private final DynamoDbAsyncClient dynamoDbAsyncClient;
+    private final DynamoDbConcurrencyLimiter concurrencyLimiter;
+    private final DynamoDbBatchGetter dynamoDbBatchGetter;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
 
-    public PaperDeliverySenderLimitDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedClient, DynamoDbAsyncClient dynamoDbAsyncClient) {
+    public PaperDeliverySenderLimitDAOImpl(PnDelayerConfigs pnDelayerConfigs, DynamoDbEnhancedAsyncClient dynamoDbEnhancedClient, DynamoDbAsyncClient dynamoDbAsyncClient, DynamoDbConcurrencyLimiter concurrencyLimiter, DynamoDbBatchGetter dynamoDbBatchGetter, DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator) {
         this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.dynamoDbBatchGetter = dynamoDbBatchGetter;
+        this.consumedCapacityAccumulator = consumedCapacityAccumulator;
         this.senderLimitTable = dynamoDbEnhancedClient.table(pnDelayerConfigs.getDao().getPaperDeliverySenderLimitTableName(), TableSchema.fromBean(PaperDeliverySenderLimit.class));
         this.usedSenderLimitTable = dynamoDbEnhancedClient.table(pnDelayerConfigs.getDao().getPaperDeliveryUsedSenderLimitTableName(), TableSchema.fromBean(PaperDeliveryUsedSenderLimit.class));
-        this.dynamoDbEnhancedClient = dynamoDbEnhancedClient;
     }
 
     @Override
     public Flux<PaperDeliverySenderLimit> retrieveSendersLimit(List<String> pks, LocalDate shipmentDate) {
         log.info("retrieve sender Limit for tuples={} on shipmentDate={}", pks, shipmentDate);
 
-        List<Key> keys = pks.stream()
-                .map(pk -> Key.builder()
-                        .partitionValue(pk)
-                        .sortValue(shipmentDate.toString())
-                        .build())
-                .toList();
-
-        ReadBatch.Builder<PaperDeliverySenderLimit> readBatchBuilder = ReadBatch
-                .builder(PaperDeliverySenderLimit.class)
-                .mappedTableResource(senderLimitTable);
-
-        keys.forEach(readBatchBuilder::addGetItem);
-        ReadBatch readBatch = readBatchBuilder.build();
-
-        BatchGetItemEnhancedRequest request = BatchGetItemEnhancedRequest.builder()
-                .addReadBatch(readBatch)
-                .build();
-
-        return Mono.from(dynamoDbEnhancedClient.batchGetItem(request))
-                .map(batchGetResultPage -> batchGetResultPage.resultsForTable(senderLimitTable))
+        return batchGetItems(senderLimitTable, pks, shipmentDate)
+                .collectList()
                 .doOnNext(items -> log.info("Retrieved senderLimits [{}] items", items.size()))
                 .flatMapMany(Flux::fromIterable)
                 .doOnError(e -> log.error("Error retrieving senderLimits items with pks {}: {}", pks, e.getMessage()));
@@ -90,9 +79,10 @@ public class PaperDeliverySenderLimitDAOImpl implements PaperDeliverySenderLimit
                         + PaperDeliveryUsedSenderLimit.COL_PROVINCE + " = :province, "
                         + PaperDeliveryUsedSenderLimit.COL_PRODUCT_TYPE + " = :productType")
                 .expressionAttributeValues(attributeValue)
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL)
                 .build();
 
-        return Mono.fromFuture(dynamoDbAsyncClient.updateItem(updateRequest))
+        return consumedCapacityAccumulator.recordWrite(concurrencyLimiter.execute(usedSenderLimitTable.tableName(), () -> Mono.fromFuture(dynamoDbAsyncClient.updateItem(updateRequest))), UpdateItemResponse::consumedCapacity)
                 .thenReturn(increment)
                 .doOnSuccess(r -> log.info("Update successful for pk={} increment={}", pk, increment))
                 .doOnError(e -> log.error("Error updating item with pk {}: {}", pk, e.getMessage()));
@@ -102,28 +92,27 @@ public class PaperDeliverySenderLimitDAOImpl implements PaperDeliverySenderLimit
     public Flux<PaperDeliveryUsedSenderLimit> retrieveUsedSendersLimit(List<String> pks, LocalDate shipmentDate) {
         log.info("retrieve used sender Limit for tuples={} on shipmentDate={}", pks, shipmentDate);
 
-        List<Key> keys = pks.stream()
+        return batchGetItems(usedSenderLimitTable, pks, shipmentDate)
+                .collectList()
+                .doOnNext(items -> log.info("Retrieved used senderLimits [{}] items", items.size()))
+                .flatMapMany(Flux::fromIterable)
+                .doOnError(e -> log.error("Error retrieving usedSenderLimits items with pks {}: {}", pks, e.getMessage()));
+    }
+
+    /**
+     * Reads the items with the given pks and shipmentDate as sort key, retrying the unprocessed keys
+     * returned by BatchGetItem so that no existing item is silently skipped.
+     */
+    private <T> Flux<T> batchGetItems(DynamoDbAsyncTable<T> table, List<String> pks, LocalDate shipmentDate) {
+        List<Map<String, AttributeValue>> keys = pks.stream()
                 .map(pk -> Key.builder()
                         .partitionValue(pk)
                         .sortValue(shipmentDate.toString())
-                        .build())
+                        .build()
+                        .keyMap(table.tableSchema(), TableMetadata.primaryIndexName()))
                 .toList();
 
-        ReadBatch.Builder<PaperDeliveryUsedSenderLimit> readBatchBuilder = ReadBatch
-                .builder(PaperDeliveryUsedSenderLimit.class)
-                .mappedTableResource(usedSenderLimitTable);
-
-        keys.forEach(readBatchBuilder::addGetItem);
-        ReadBatch readBatch = readBatchBuilder.build();
-
-        BatchGetItemEnhancedRequest request = BatchGetItemEnhancedRequest.builder()
-                .addReadBatch(readBatch)
-                .build();
-
-        return Mono.from(dynamoDbEnhancedClient.batchGetItem(request))
-                .map(batchGetResultPage -> batchGetResultPage.resultsForTable(usedSenderLimitTable))
-                .doOnNext(items -> log.info("Retrieved used senderLimits [{}] items", items.size()))
-                .flatMapMany(Flux::fromIterable)
-                .doOnError(e -> log.error("Error retrieving usedSenderLimits items with pks {}: {}", pks, e.getMessage()));
+        return dynamoDbBatchGetter.getItems(table.tableName(), keys)
+                .map(item -> table.tableSchema().mapToItem(item));
     }
 }
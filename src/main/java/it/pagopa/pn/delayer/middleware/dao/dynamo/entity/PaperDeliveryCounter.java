@@ -8,7 +8,9 @@ import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -28,6 +30,20 @@ public class PaperDeliveryCounter {
     public static final String COL_STOP_SEND_TO_PHASE_TWO = "stopSendToPhaseTwo";
     public static final String COL_DAILY_EXECUTION_NUMBER = "dailyExecutionNumber";
     public static final String COL_DAILY_EXECUTION_COUNTER = "dailyExecutionCounter";
+    public static final String COL_CHECKPOINT_PHASE = "phase";
+    public static final String COL_CHECKPOINT_LAST_EVALUATED_KEY = "lastEvaluatedKey";
+    public static final String COL_CHECKPOINT_PROCESSED_PAGES = "processedPages";
+    public static final String COL_CHECKPOINT_SENT_TO_NEXT_STEP = "sentToNextStep";
+    public static final String COL_CHECKPOINT_PRINT_COUNTER = "printCounter";
+    public static final String COL_CHECKPOINT_USED_CAPACITIES = "usedCapacities";
+    public static final String COL_CHECKPOINT_FLUSHED_CHUNKS = "flushedChunks";
+    public static final String CHECKPOINT_PK_PREFIX = "CHECKPOINT~";
+    public static final String COL_CARRY_OVER_PROVINCE = "province";
+    public static final String COL_CARRY_OVER_SOURCE_WORKFLOW_STEP = "sourceWorkflowStep";
+    public static final String COL_CARRY_OVER_SOURCE_DELIVERY_WEEK = "sourceDeliveryWeek";
+    public static final String COL_CARRY_OVER_SORT_KEY_PREFIX = "sortKeyPrefix";
+    public static final String COL_CARRY_OVER_START_KEY = "startKey";
+    public static final String CARRY_OVER_PK_PREFIX = "CARRY_OVER~";
 
 
     @Getter(onMethod = @__({@DynamoDbPartitionKey, @DynamoDbAttribute(COL_PK)}))
@@ -81,6 +97,55 @@ public class PaperDeliveryCounter {
         return paperDeliveryCounter;
     }
 
+    /**
+     * Merges the print counter items of a deliveryDate, the base item PRINT / deliveryDate and its shard items
+     * PRINT / deliveryDate~shard, into the base item with the summed numberOfShipments; null if there are none.
+     */
+    @DynamoDbIgnore
+    public static PaperDeliveryCounter sumPrintCounterShards(LocalDate deliveryDate, List<PaperDeliveryCounter> counters) {
+        String baseSk = deliveryDate.toString();
+        List<PaperDeliveryCounter> printCounters = counters.stream()
+                .filter(counter -> counter.getSk().equals(baseSk) || counter.getSk().startsWith(baseSk + "~"))
+                .toList();
+        if (printCounters.isEmpty()) {
+            return null;
+        }
+        PaperDeliveryCounter printCounter = printCounters.stream()
+                .filter(counter -> counter.getSk().equals(baseSk))
+                .findFirst()
+                .orElseGet(() -> {
+                    PaperDeliveryCounter base = new PaperDeliveryCounter();
+                    base.setPk("PRINT");
+                    base.setSk(baseSk);
+                    return base;
+                });
+        printCounter.setNumberOfShipments(printCounters.stream()
+                .map(PaperDeliveryCounter::getNumberOfShipments)
+                .filter(Objects::nonNull)
+                .reduce(0, Integer::sum));
+        return printCounter;
+    }
+
+    @DynamoDbIgnore
+    public static String buildCheckpointPk(LocalDate deliveryWeek) {
+        return CHECKPOINT_PK_PREFIX + deliveryWeek;
+    }
+
+    @DynamoDbIgnore
+    public static String buildCheckpointSk(String workflowStep, String unifiedDeliveryDriver, String province) {
+        return String.join("~", workflowStep, unifiedDeliveryDriver, province);
+    }
+
+    @DynamoDbIgnore
+    public static String buildCarryOverPk(LocalDate deliveryWeek) {
+        return CARRY_OVER_PK_PREFIX + deliveryWeek;
+    }
+
+    @DynamoDbIgnore
+    public static String buildCarryOverSk(String province, String sourceWorkflowStep, String sortKeyPrefix) {
+        return String.join("~", province, sourceWorkflowStep, sortKeyPrefix);
+    }
+
     @DynamoDbIgnore
     public static String buildSkPrefix(SkPrefix skPrefix, String... attribute) {
         if(Objects.nonNull(skPrefix)) {
@@ -98,5 +163,9 @@ public class PaperDeliveryCounter {
         SkPrefix(String value) {
             this.value = value;
         }
+
+        public String getValue() {
+            return value;
+        }
     }
 }
@@ -0,0 +1,77 @@
+package it.pagopa.pn.delayer.middleware.dao.file;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.DriverCacheSnapshotDAO;
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Stores the driver cache snapshot of a tender as the JSON file driver-cache-{tenderId}.json in the configured
+ * directory. The file is replaced atomically and only if it still has the expected version, checked under an
+ * exclusive lock on driver-cache-{tenderId}.lock, as the DynamoDB implementation does with a conditional put.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "pn.delayer.driver-cache-snapshot.store", havingValue = "FILE")
+public class DriverCacheSnapshotFileDAOImpl implements DriverCacheSnapshotDAO {
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    public DriverCacheSnapshotFileDAOImpl(PnDelayerConfigs pnDelayerConfigs, ObjectMapper objectMapper) {
+        this.directory = Path.of(pnDelayerConfigs.getDriverCacheSnapshot().getDirectory());
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Mono<CapProductTypeDriverSnapshot> retrieveSnapshot(String tenderId) {
+        return Mono.fromCallable(() -> readSnapshot(tenderId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnError(e -> log.error("Error reading driver cache snapshot for tenderId={}: {}", tenderId, e.getMessage()));
+    }
+
+    @Override
+    public Mono<Boolean> saveSnapshot(CapProductTypeDriverSnapshot snapshot, Long expectedVersion) {
+        return Mono.fromCallable(() -> {
+                    Files.createDirectories(directory);
+                    try (FileChannel lockChannel = FileChannel.open(directory.resolve("driver-cache-" + snapshot.tenderId() + ".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                         FileLock ignored = lockChannel.lock()) {
+                        Long currentVersion = Optional.ofNullable(readSnapshot(snapshot.tenderId())).map(CapProductTypeDriverSnapshot::version).orElse(null);
+                        if (!Objects.equals(currentVersion, expectedVersion)) {
+                            log.info("Driver cache snapshot for tenderId={} not saved, the snapshot was replaced after version {}", snapshot.tenderId(), expectedVersion);
+                            return false;
+                        }
+                        Path tmp = Files.createTempFile(directory, "driver-cache-", ".tmp");
+                        objectMapper.writeValue(tmp.toFile(), snapshot);
+                        Path file = Files.move(tmp, snapshotFile(snapshot.tenderId()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        log.info("Saved driver cache snapshot for tenderId={} version={} in {}", snapshot.tenderId(), snapshot.version(), file);
+                        return true;
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private CapProductTypeDriverSnapshot readSnapshot(String tenderId) throws IOException {
+        Path file = snapshotFile(tenderId);
+        return Files.exists(file) ? objectMapper.readValue(file.toFile(), CapProductTypeDriverSnapshot.class) : null;
+    }
+
+    private Path snapshotFile(String tenderId) {
+        return directory.resolve("driver-cache-" + tenderId + ".json");
+    }
+}
@@ -0,0 +1,180 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import org.springframework.util.CollectionUtils;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Table (or global secondary index) kept in memory with the key semantics of DynamoDB: the items are stored as
+ * attribute maps, grouped by partition key and sorted by sort key; a query reads at most limit items of a sort key
+ * range starting after exclusiveStartKey, then applies the filter and the projection, and returns the key of the
+ * last read item as lastEvaluatedKey when the limit has been reached.
+ * The items of an index are stored under indexSortKey~pk~sk, since the index sort key is not unique.
+ */
+class InMemoryTable<T> {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final char KEY_END = '\uffff';
+
+    private final TableSchema<T> tableSchema;
+    private final String partitionKeyName;
+    private final String sortKeyName;
+    private final String primaryPartitionKeyName;
+    private final String primarySortKeyName;
+    private final boolean index;
+    private final Map<String, ConcurrentSkipListMap<String, Map<String, AttributeValue>>> partitions = new ConcurrentHashMap<>();
+
+    private InMemoryTable(TableSchema<T> tableSchema, String indexName) {
+        TableMetadata tableMetadata = tableSchema.tableMetadata();
+        this.tableSchema = tableSchema;
+        this.primaryPartitionKeyName = tableMetadata.primaryPartitionKey();
+        this.primarySortKeyName = tableMetadata.primarySortKey().orElseThrow();
+        this.partitionKeyName = tableMetadata.indexPartitionKey(indexName);
+        this.sortKeyName = tableMetadata.indexSortKey(indexName).orElseThrow();
+        this.index = !TableMetadata.primaryIndexName().equals(indexName);
+    }
+
+    static <T> InMemoryTable<T> of(Class<T> beanClass) {
+        return new InMemoryTable<>(TableSchema.fromBean(beanClass), TableMetadata.primaryIndexName());
+    }
+
+    static <T> InMemoryTable<T> index(Class<T> beanClass, String indexName) {
+        return new InMemoryTable<>(TableSchema.fromBean(beanClass), indexName);
+    }
+
+    TableSchema<T> tableSchema() {
+        return tableSchema;
+    }
+
+    void putItem(T item) {
+        putItem(tableSchema.itemToMap(item, true));
+    }
+
+    void putItem(Map<String, AttributeValue> item) {
+        partitions.computeIfAbsent(item.get(partitionKeyName).s(), pk -> new ConcurrentSkipListMap<>())
+                .put(storageKey(item), Map.copyOf(item));
+    }
+
+    void deleteItem(Map<String, AttributeValue> item) {
+        Optional.ofNullable(partitions.get(item.get(partitionKeyName).s()))
+                .ifPresent(partition -> partition.remove(storageKey(item)));
+    }
+
+    Optional<T> getItem(String pk, String sk) {
+        return Optional.ofNullable(partitions.get(pk))
+                .map(partition -> partition.get(sk))
+                .map(tableSchema::mapToItem);
+    }
+
+    /**
+     * Applies the update to the item with the given key, or to an item holding only the key when missing,
+     * atomically with respect to the other updates of the same item, and returns the updated item.
+     */
+    T updateItem(String pk, String sk, UnaryOperator<Map<String, AttributeValue>> update) {
+        Map<String, AttributeValue> updated = partitions.computeIfAbsent(pk, key -> new ConcurrentSkipListMap<>())
+                .compute(sk, (key, current) -> {
+                    Map<String, AttributeValue> item = Objects.isNull(current)
+                            ? new HashMap<>(Map.of(partitionKeyName, s(pk), sortKeyName, s(sk)))
+                            : new HashMap<>(current);
+                    return Map.copyOf(update.apply(item));
+                });
+        return tableSchema.mapToItem(updated);
+    }
+
+    Page<T> query(String pk, SortKeyCondition condition, boolean scanIndexForward, Predicate<Map<String, AttributeValue>> filter,
+                  List<String> attributesToProject, Map<String, AttributeValue> exclusiveStartKey, Integer limit) {
+        NavigableMap<String, Map<String, AttributeValue>> range = condition.apply(partitions.getOrDefault(pk, new ConcurrentSkipListMap<>()));
+        if (!scanIndexForward) {
+            range = range.descendingMap();
+        }
+        if (!CollectionUtils.isEmpty(exclusiveStartKey)) {
+            range = range.tailMap(storageKey(exclusiveStartKey), false);
+        }
+        int maxItems = Objects.isNull(limit) ? Integer.MAX_VALUE : limit;
+        List<Map<String, AttributeValue>> evaluated = range.values().stream()
+                .limit(maxItems)
+                .toList();
+        Map<String, AttributeValue> lastEvaluatedKey = evaluated.size() == maxItems ? keyOf(evaluated.getLast()) : null;
+        List<T> items = evaluated.stream()
+                .filter(filter)
+                .map(item -> project(item, attributesToProject))
+                .map(tableSchema::mapToItem)
+                .toList();
+        return Page.create(items, lastEvaluatedKey);
+    }
+
+    /**
+     * Reads every page of the query, as the items() publisher of the enhanced client does.
+     */
+    Stream<T> queryAll(String pk, SortKeyCondition condition, boolean scanIndexForward, Predicate<Map<String, AttributeValue>> filter) {
+        return query(pk, condition, scanIndexForward, filter, null, null, null).items().stream();
+    }
+
+    Stream<T> scan(Predicate<Map<String, AttributeValue>> filter) {
+        return partitions.values().stream()
+                .flatMap(partition -> partition.values().stream())
+                .filter(filter)
+                .map(tableSchema::mapToItem);
+    }
+
+    private Map<String, AttributeValue> keyOf(Map<String, AttributeValue> item) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        Stream.of(partitionKeyName, sortKeyName, primaryPartitionKeyName, primarySortKeyName)
+                .distinct()
+                .forEach(name -> key.put(name, item.get(name)));
+        return key;
+    }
+
+    private String storageKey(Map<String, AttributeValue> item) {
+        String sk = item.get(sortKeyName).s();
+        if (!index) {
+            return sk;
+        }
+        return sk + KEY_SEPARATOR + item.get(primaryPartitionKeyName).s() + KEY_SEPARATOR + item.get(primarySortKeyName).s();
+    }
+
+    private static Map<String, AttributeValue> project(Map<String, AttributeValue> item, List<String> attributesToProject) {
+        if (CollectionUtils.isEmpty(attributesToProject)) {
+            return item;
+        }
+        Map<String, AttributeValue> projected = new HashMap<>(item);
+        projected.keySet().retainAll(attributesToProject);
+        return projected;
+    }
+
+    static AttributeValue s(String value) {
+        return AttributeValue.builder().s(value).build();
+    }
+
+    static AttributeValue n(Number value) {
+        return AttributeValue.builder().n(String.valueOf(value)).build();
+    }
+
+    /**
+     * Key condition on the sort key of a query, applied to the sorted items of a partition.
+     */
+    @FunctionalInterface
+    interface SortKeyCondition extends UnaryOperator<NavigableMap<String, Map<String, AttributeValue>>> {
+
+        static SortKeyCondition beginsWith(String prefix) {
+            return items -> items.subMap(prefix, true, prefix + KEY_END, false);
+        }
+
+        static SortKeyCondition between(String from, String to) {
+            return items -> items.subMap(from, true, to + KEY_SEPARATOR + KEY_END, true);
+        }
+
+        static SortKeyCondition lessThanOrEqualTo(String value) {
+            return items -> items.headMap(value + KEY_SEPARATOR + KEY_END, true);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliverySenderLimit;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.document.EnhancedDocument;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.ERROR_CODE_MEMORY_STORAGE_SEED;
+
+/**
+ * Loads the in-memory tables at startup from the JSON files of storage.seedDirectory, one file per table:
+ * paper-deliveries.json, driver-capacities.json, sender-limits.json and counters.json. Every file is an array of
+ * items with the attribute names of the DynamoDB table (numbers as JSON numbers, maps as JSON objects), as they
+ * are exported with a scan; missing files leave the table empty.
+ * The bean is eager also with lazy initialization, so that the tables are loaded before the job starts.
+ */
+@Component
+@Slf4j
+@Lazy(false)
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "MEMORY")
+public class MemoryStorageSeedLoader {
+
+    static final String PAPER_DELIVERIES_FILE = "paper-deliveries.json";
+    static final String DRIVER_CAPACITIES_FILE = "driver-capacities.json";
+    static final String SENDER_LIMITS_FILE = "sender-limits.json";
+    static final String COUNTERS_FILE = "counters.json";
+
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final ObjectMapper objectMapper;
+    private final PaperDeliveryMemoryDAOImpl paperDeliveryDAO;
+    private final PaperDeliveryDriverCapacitiesMemoryDAOImpl paperDeliveryDriverCapacitiesDAO;
+    private final PaperDeliverySenderLimitMemoryDAOImpl paperDeliverySenderLimitDAO;
+    private final PaperDeliveryCounterMemoryDAOImpl paperDeliveryCounterDAO;
+
+    @PostConstruct
+    public void load() {
+        Optional<Path> seedDirectory = Optional.ofNullable(pnDelayerConfigs.getStorage())
+                .map(PnDelayerConfigs.Storage::getSeedDirectory)
+                .filter(StringUtils::hasText)
+                .map(Path::of);
+        if (seedDirectory.isEmpty()) {
+            log.warn("No seed directory configured, the in-memory tables are empty");
+            return;
+        }
+        Path directory = seedDirectory.get();
+        loadTable(directory.resolve(PAPER_DELIVERIES_FILE), PaperDelivery.class, paperDelivery -> paperDeliveryDAO.insertPaperDeliveries(List.of(paperDelivery)).block());
+        loadTable(directory.resolve(DRIVER_CAPACITIES_FILE), PaperDeliveryDriverCapacity.class, paperDeliveryDriverCapacitiesDAO::putPaperDeliveryDriverCapacity);
+        loadTable(directory.resolve(SENDER_LIMITS_FILE), PaperDeliverySenderLimit.class, paperDeliverySenderLimitDAO::putSenderLimit);
+        loadTable(directory.resolve(COUNTERS_FILE), PaperDeliveryCounter.class, paperDeliveryCounterDAO::putPaperDeliveryCounter);
+    }
+
+    private <T> void loadTable(Path file, Class<T> beanClass, Consumer<T> put) {
+        if (!Files.exists(file)) {
+            log.info("Seed file {} not found, table of {} left empty", file, beanClass.getSimpleName());
+            return;
+        }
+        TableSchema<T> tableSchema = TableSchema.fromBean(beanClass);
+        try {
+            JsonNode items = objectMapper.readTree(file.toFile());
+            items.forEach(item -> put.accept(tableSchema.mapToItem(EnhancedDocument.fromJson(item.toString()).toMap())));
+            log.info("Loaded {} items of {} from {}", items.size(), beanClass.getSimpleName(), file);
+        } catch (IOException | RuntimeException e) {
+            throw new PnInternalException("Error loading seed file " + file, ERROR_CODE_MEMORY_STORAGE_SEED, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.SortKeyCondition;
+import it.pagopa.pn.delayer.model.CarryOverCursor;
+import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
+import it.pagopa.pn.delayer.model.JobCheckpoint;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.n;
+
+/**
+ * In memory implementation of the counter table. The print capacity counter is a single item per deliveryDate; the job
+ * checkpoints and the carry over cursors are kept by key without TTL. The SUM_ESTIMATES and EXCLUDE counters are
+ * loaded with putPaperDeliveryCounter.
+ * saveJobCheckpointWithCounters applies the counters and the checkpoint one after the other, since the in-memory
+ * writes cannot fail in between.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "MEMORY")
+public class PaperDeliveryCounterMemoryDAOImpl implements PaperDeliveryCounterDAO {
+
+    private static final String PRINT_PK = "PRINT";
+
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final PaperDeliveryDriverUsedCapacitiesMemoryDAOImpl paperDeliveryDriverUsedCapacitiesDAO;
+    private final InMemoryTable<PaperDeliveryCounter> table = InMemoryTable.of(PaperDeliveryCounter.class);
+    private final Map<String, JobCheckpoint> checkpoints = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, CarryOverCursor> carryOverCursors = new ConcurrentSkipListMap<>();
+
+    public void putPaperDeliveryCounter(PaperDeliveryCounter paperDeliveryCounter) {
+        table.putItem(paperDeliveryCounter);
+    }
+
+    @Override
+    public Mono<List<PaperDeliveryCounter>> getPaperDeliveryCounter(String pk, String sk, Integer limit) {
+        return Mono.fromSupplier(() -> table.query(pk, SortKeyCondition.beginsWith(sk), Objects.isNull(limit), item -> true, null, null, limit).items());
+    }
+
+    @Override
+    public Flux<PaperDeliveryCounter> retrievePaperDeliveryCounters(String pk, String skPrefix) {
+        return Flux.defer(() -> Flux.fromStream(table.queryAll(pk, SortKeyCondition.beginsWith(skPrefix), true, item -> true)));
+    }
+
+    @Override
+    public Mono<Void> updatePrintCapacityCounter(LocalDate deliveryDate, Integer counter, Integer weeklyPrintCapacity) {
+        Map<String, AttributeValue> attributes = PaperDeliveryCounter.entityToAttributeValueMap(PaperDeliveryCounter.constructPrintCounterEntity(weeklyPrintCapacity,
+                pnDelayerConfigs.getPrintCapacityWeeklyWorkingDays(), pnDelayerConfigs.getPrintCounterTtlDuration(), pnDelayerConfigs.calculateDailyExecutionNumber()));
+        attributes.remove(PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS);
+        return Mono.fromRunnable(() -> table.updateItem(PRINT_PK, deliveryDate.toString(), item -> {
+            int numberOfShipments = Optional.ofNullable(item.get(PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS)).map(AttributeValue::n).map(Integer::parseInt).orElse(0);
+            item.putAll(attributes);
+            item.put(PaperDeliveryCounter.COL_NUMBER_OF_SHIPMENTS, n(numberOfShipments + counter));
+            return item;
+        }));
+    }
+
+    @Override
+    public Mono<PaperDeliveryCounter> retrievePrintCapacityCounter(LocalDate deliveryDate) {
+        return retrievePaperDeliveryCounters(PRINT_PK, deliveryDate.toString())
+                .collectList()
+                .mapNotNull(counters -> PaperDeliveryCounter.sumPrintCounterShards(deliveryDate, counters));
+    }
+
+    @Override
+    public Mono<Void> saveJobCheckpoint(JobCheckpoint jobCheckpoint, Duration ttl) {
+        return Mono.fromRunnable(() -> checkpoints.put(checkpointKey(jobCheckpoint.workflowStep(), jobCheckpoint.unifiedDeliveryDriver(), jobCheckpoint.province(), jobCheckpoint.deliveryWeek()), jobCheckpoint));
+    }
+
+    @Override
+    public Mono<Void> saveJobCheckpointWithCounters(JobCheckpoint jobCheckpoint, Duration ttl, int printCounter, Integer weeklyPrintCapacity, List<IncrementUsedCapacityDto> usedCapacities) {
+        return Flux.fromIterable(usedCapacities)
+                .concatMap(increment -> paperDeliveryDriverUsedCapacitiesDAO.updateCounter(increment.unifiedDeliveryDriver(), increment.geoKey(),
+                        increment.numberOfDeliveries(), increment.deliveryWeek(), increment.declaredCapacity()))
+                .then(Mono.defer(() -> printCounter != 0 ? updatePrintCapacityCounter(jobCheckpoint.deliveryWeek(), printCounter, weeklyPrintCapacity) : Mono.<Void>empty()))
+                .then(saveJobCheckpoint(jobCheckpoint, ttl));
+    }
+
+    @Override
+    public Mono<JobCheckpoint> retrieveJobCheckpoint(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek) {
+        return Mono.fromSupplier(() -> checkpoints.get(checkpointKey(workflowStep, unifiedDeliveryDriver, province, deliveryWeek)));
+    }
+
+    @Override
+    public Mono<Void> saveCarryOverCursor(CarryOverCursor carryOverCursor, Duration ttl) {
+        String key = String.join("#", PaperDeliveryCounter.buildCarryOverPk(carryOverCursor.deliveryWeek()),
+                PaperDeliveryCounter.buildCarryOverSk(carryOverCursor.province(), carryOverCursor.sourceWorkflowStep().name(), carryOverCursor.sortKeyPrefix()));
+        return Mono.fromRunnable(() -> carryOverCursors.put(key, carryOverCursor));
+    }
+
+    @Override
+    public Flux<CarryOverCursor> retrieveCarryOverCursors(LocalDate deliveryWeek, String province) {
+        String keyPrefix = PaperDeliveryCounter.buildCarryOverPk(deliveryWeek) + "#" + province + "~";
+        return Flux.defer(() -> Flux.fromIterable(List.copyOf(carryOverCursors.subMap(keyPrefix, keyPrefix + Character.MAX_VALUE).values())));
+    }
+
+    private static String checkpointKey(WorkflowStepEnum workflowStep, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek) {
+        return String.join("~", PaperDeliveryCounter.buildCheckpointPk(deliveryWeek), PaperDeliveryCounter.buildCheckpointSk(workflowStep.name(), unifiedDeliveryDriver, province));
+    }
+}
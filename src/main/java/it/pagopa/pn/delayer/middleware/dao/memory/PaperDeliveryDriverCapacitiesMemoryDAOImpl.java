@@ -0,0 +1,90 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverCapacitiesDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.SortKeyCondition;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In memory implementation of the driver capacities table and of its tenderIdGeoKey index. The capacities are
+ * loaded with putPaperDeliveryDriverCapacity, since the service only reads them.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "MEMORY")
+public class PaperDeliveryDriverCapacitiesMemoryDAOImpl implements PaperDeliveryDriverCapacitiesDAO {
+
+    private final InMemoryTable<PaperDeliveryDriverCapacity> table = InMemoryTable.of(PaperDeliveryDriverCapacity.class);
+    private final InMemoryTable<PaperDeliveryDriverCapacity> tenderIdGeoKeyIndex = InMemoryTable.index(PaperDeliveryDriverCapacity.class, PaperDeliveryDriverCapacity.TENDER_ID_GEO_KEY_INDEX);
+
+    public synchronized void putPaperDeliveryDriverCapacity(PaperDeliveryDriverCapacity paperDeliveryDriverCapacity) {
+        Map<String, AttributeValue> item = table.tableSchema().itemToMap(paperDeliveryDriverCapacity, true);
+        table.getItem(paperDeliveryDriverCapacity.getPk(), item.get(PaperDeliveryDriverCapacity.COL_ACTIVATION_DATE_FROM).s())
+                .map(current -> table.tableSchema().itemToMap(current, true))
+                .filter(current -> current.containsKey(PaperDeliveryDriverCapacity.COL_TENDER_ID_GEO_KEY))
+                .ifPresent(tenderIdGeoKeyIndex::deleteItem);
+        table.putItem(item);
+        if (item.containsKey(PaperDeliveryDriverCapacity.COL_TENDER_ID_GEO_KEY)) {
+            tenderIdGeoKeyIndex.putItem(item);
+        }
+    }
+
+    @Override
+    public Mono<Integer> getPaperDeliveryDriverCapacities(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryDate) {
+        String dateToQuery = formatDeliveryDate(deliveryDate);
+        return Mono.fromSupplier(() -> table.queryAll(PaperDeliveryDriverCapacity.buildKey(tenderId, unifiedDeliveryDriver, geoKey), SortKeyCondition.lessThanOrEqualTo(dateToQuery), false, isActive(dateToQuery))
+                        .findFirst()
+                        .map(PaperDeliveryDriverCapacity::getCapacity)
+                        .orElseGet(() -> {
+                            log.error("No PaperDeliveryDriverCapacity found for tenderId: {}, unifiedDeliveryDriver: {}, geoKey: {}, deliveryDate: {}",
+                                    tenderId, unifiedDeliveryDriver, geoKey, deliveryDate);
+                            return 0;
+                        }));
+    }
+
+    @Override
+    public Mono<List<PaperDeliveryDriverCapacity>> retrieveUnifiedDeliveryDriversOnProvince(String tenderId, String geoKey, LocalDate deliveryDate) {
+        String dateToQuery = formatDeliveryDate(deliveryDate);
+        return Mono.fromSupplier(() -> List.copyOf(tenderIdGeoKeyIndex.queryAll(PaperDeliveryDriverCapacity.buildGsiKey(tenderId, geoKey), SortKeyCondition.lessThanOrEqualTo(dateToQuery), false, isActive(dateToQuery))
+                .collect(Collectors.toMap(PaperDeliveryDriverCapacity::getUnifiedDeliveryDriver, capacity -> capacity,
+                        (a, b) -> a.getActivationDateFrom().isAfter(b.getActivationDateFrom()) ? a : b))
+                .values()));
+    }
+
+    @Override
+    public Flux<PaperDeliveryDriverCapacity> scanPaperDeliveryDriverCapacities(String tenderId, String unifiedDeliveryDriver, Integer totalSegments) {
+        String pkPrefix = String.join("~", tenderId, unifiedDeliveryDriver, "");
+        return Flux.defer(() -> Flux.fromStream(table.scan(item -> item.get(PaperDeliveryDriverCapacity.COL_PK).s().startsWith(pkPrefix))));
+    }
+
+    private static String formatDeliveryDate(LocalDate deliveryDate) {
+        return deliveryDate.atStartOfDay()
+                .atOffset(ZoneOffset.UTC)
+                .format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
+    }
+
+    /**
+     * attribute_not_exists(activationDateTo) OR activationDateTo >= :now
+     */
+    private static Predicate<Map<String, AttributeValue>> isActive(String dateToQuery) {
+        return item -> {
+            AttributeValue activationDateTo = item.get(PaperDeliveryDriverCapacity.COL_ACTIVATION_DATE_TO);
+            return Objects.isNull(activationDateTo) || Objects.isNull(activationDateTo.s()) || activationDateTo.s().compareTo(dateToQuery) >= 0;
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverUsedCapacitiesDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities.*;
+import static it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.n;
+import static it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.s;
+
+/**
+ * In memory implementation of the driver used capacities table: updateCounter adds the increment atomically,
+ * as the ADD update expression of the DynamoDB implementation does.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "MEMORY")
+public class PaperDeliveryDriverUsedCapacitiesMemoryDAOImpl implements PaperDeliveryDriverUsedCapacitiesDAO {
+
+    private final InMemoryTable<PaperDeliveryDriverUsedCapacities> table = InMemoryTable.of(PaperDeliveryDriverUsedCapacities.class);
+
+    @Override
+    public Mono<Integer> updateCounter(String unifiedDeliveryDriver, String geoKey, Integer increment, LocalDate deliveryDate, Integer declaredCapacity) {
+        String pk = PaperDeliveryDriverUsedCapacities.buildPk(unifiedDeliveryDriver, geoKey);
+        return Mono.fromSupplier(() -> table.updateItem(pk, deliveryDate.toString(), item -> {
+                    int usedCapacity = Optional.ofNullable(item.get(COL_USED_CAPACITY)).map(AttributeValue::n).map(Integer::parseInt).orElse(0);
+                    item.put(COL_USED_CAPACITY, n(usedCapacity + increment));
+                    item.put(COL_UNIFIED_DELIVERY_DRIVER, s(unifiedDeliveryDriver));
+                    item.put(COL_GEO_KEY, s(geoKey));
+                    item.put(COL_DECLARED_CAPACITY, n(declaredCapacity));
+                    return item;
+                }))
+                .thenReturn(increment)
+                .doOnSuccess(r -> log.debug("Update successful for pk={} increment={}", pk, increment));
+    }
+
+    @Override
+    public Mono<Tuple2<Integer, Integer>> get(String unifiedDeliveryDriver, String geoKey, LocalDate deliveryDate) {
+        return Mono.fromSupplier(() -> table.getItem(PaperDeliveryDriverUsedCapacities.buildPk(unifiedDeliveryDriver, geoKey), deliveryDate.toString())
+                .map(item -> Tuples.of(item.getDeclaredCapacity(), item.getUsedCapacity()))
+                .orElse(null));
+    }
+
+    @Override
+    public Flux<PaperDeliveryDriverUsedCapacities> batchGetItem(List<String> pks, LocalDate deliveryDate) {
+        return Flux.defer(() -> Flux.fromStream(pks.stream()
+                .distinct()
+                .map(pk -> table.getItem(pk, deliveryDate.toString()))
+                .flatMap(Optional::stream)));
+    }
+}
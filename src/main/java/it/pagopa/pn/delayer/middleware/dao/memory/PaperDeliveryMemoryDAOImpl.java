@@ -0,0 +1,59 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.SortKeyCondition;
+import it.pagopa.pn.delayer.model.SortKeyRange;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory implementation of the paper delivery table, with the same begins_with and between queries,
+ * page limits and lastEvaluatedKey of the DynamoDB implementation.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "MEMORY")
+public class PaperDeliveryMemoryDAOImpl implements PaperDeliveryDAO {
+
+    private final InMemoryTable<PaperDelivery> table = InMemoryTable.of(PaperDelivery.class);
+
+    @Override
+    public Mono<Page<PaperDelivery>> retrievePaperDeliveries(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
+        return query(workflowStepEnum, deliveryWeek, SortKeyCondition.beginsWith(sortKeyPrefix), null, lastEvaluatedKey, queryLimit);
+    }
+
+    @Override
+    public Mono<Page<PaperDelivery>> retrievePaperDeliveriesInRange(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, SortKeyRange sortKeyRange, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
+        return query(workflowStepEnum, deliveryWeek, SortKeyCondition.between(sortKeyRange.from(), sortKeyRange.to()), null, lastEvaluatedKey, queryLimit);
+    }
+
+    @Override
+    public Mono<Page<PaperDelivery>> retrievePaperDeliveriesProjection(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, List<String> attributesToProject, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
+        return query(workflowStepEnum, deliveryWeek, SortKeyCondition.beginsWith(sortKeyPrefix), attributesToProject, lastEvaluatedKey, queryLimit);
+    }
+
+    private Mono<Page<PaperDelivery>> query(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, SortKeyCondition condition, List<String> attributesToProject, Map<String, AttributeValue> lastEvaluatedKey, Integer queryLimit) {
+        String partitionKey = String.join("~", deliveryWeek.toString(), workflowStepEnum.name());
+        return Mono.fromSupplier(() -> table.query(partitionKey, condition, true, item -> true, attributesToProject, lastEvaluatedKey, queryLimit));
+    }
+
+    @Override
+    public Mono<Void> insertPaperDeliveries(List<PaperDelivery> paperDeliveries) {
+        if (!CollectionUtils.isEmpty(paperDeliveries)) {
+            return Mono.fromRunnable(() -> paperDeliveries.forEach(table::putItem));
+        }
+        return Mono.empty();
+    }
+}
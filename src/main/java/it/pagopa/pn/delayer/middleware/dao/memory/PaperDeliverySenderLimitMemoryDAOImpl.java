@@ -0,0 +1,69 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliverySenderLimitDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliverySenderLimit;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryUsedSenderLimit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.n;
+import static it.pagopa.pn.delayer.middleware.dao.memory.InMemoryTable.s;
+
+/**
+ * In memory implementation of the sender limit and used sender limit tables. The sender limits are loaded with
+ * putSenderLimit, since the service only reads them.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = PnDelayerConfigs.IMPLEMENTATION_TYPE_PROPERTY_NAME, havingValue = "MEMORY")
+public class PaperDeliverySenderLimitMemoryDAOImpl implements PaperDeliverySenderLimitDAO {
+
+    private final InMemoryTable<PaperDeliverySenderLimit> senderLimitTable = InMemoryTable.of(PaperDeliverySenderLimit.class);
+    private final InMemoryTable<PaperDeliveryUsedSenderLimit> usedSenderLimitTable = InMemoryTable.of(PaperDeliveryUsedSenderLimit.class);
+
+    public void putSenderLimit(PaperDeliverySenderLimit paperDeliverySenderLimit) {
+        senderLimitTable.putItem(paperDeliverySenderLimit);
+    }
+
+    @Override
+    public Flux<PaperDeliverySenderLimit> retrieveSendersLimit(List<String> pks, LocalDate shipmentDate) {
+        return batchGetItems(senderLimitTable, pks, shipmentDate);
+    }
+
+    @Override
+    public Mono<Long> updateUsedSenderLimit(String pk, Long increment, LocalDate shipmentDate, Integer senderLimit) {
+        String[] keyParts = pk.split("~");
+        return Mono.fromSupplier(() -> usedSenderLimitTable.updateItem(pk, shipmentDate.toString(), item -> {
+                    long numberOfShipment = Optional.ofNullable(item.get(PaperDeliveryUsedSenderLimit.COL_NUMBER_OF_SHIPMENT)).map(AttributeValue::n).map(Long::parseLong).orElse(0L);
+                    item.put(PaperDeliveryUsedSenderLimit.COL_NUMBER_OF_SHIPMENT, n(numberOfShipment + increment));
+                    item.put(PaperDeliveryUsedSenderLimit.COL_SENDER_LIMIT, n(senderLimit));
+                    item.put(PaperDeliveryUsedSenderLimit.COL_PAID, s(keyParts[0]));
+                    item.put(PaperDeliveryUsedSenderLimit.COL_PRODUCT_TYPE, s(keyParts[1]));
+                    item.put(PaperDeliveryUsedSenderLimit.COL_PROVINCE, s(keyParts[2]));
+                    return item;
+                }))
+                .thenReturn(increment)
+                .doOnSuccess(r -> log.debug("Update successful for pk={} increment={}", pk, increment));
+    }
+
+    @Override
+    public Flux<PaperDeliveryUsedSenderLimit> retrieveUsedSendersLimit(List<String> pks, LocalDate shipmentDate) {
+        return batchGetItems(usedSenderLimitTable, pks, shipmentDate);
+    }
+
+    private static <T> Flux<T> batchGetItems(InMemoryTable<T> table, List<String> pks, LocalDate shipmentDate) {
+        return Flux.defer(() -> Flux.fromStream(pks.stream()
+                .distinct()
+                .map(pk -> table.getItem(pk, shipmentDate.toString()))
+                .flatMap(Optional::stream)));
+    }
+}
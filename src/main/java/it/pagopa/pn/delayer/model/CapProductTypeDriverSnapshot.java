@@ -0,0 +1,15 @@
+package it.pagopa.pn.delayer.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Content of the CAP~productType -> unifiedDeliveryDriver cache of a tender, persisted between jobs.
+ * The version is the creation instant in millis: a snapshot never replaces a newer one.
+ */
+public record CapProductTypeDriverSnapshot(String tenderId, long version, Instant expiresAt, Map<String, String> entries) {
+
+    public boolean isExpired(Instant now) {
+        return expiresAt.isBefore(now);
+    }
+}
@@ -0,0 +1,19 @@
+package it.pagopa.pn.delayer.model;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Deliveries of a province carried over to the EVALUATE_SENDER_LIMIT step of deliveryWeek without being copied:
+ * the items of the sourceWorkflowStep partition of sourceDeliveryWeek with the given sortKeyPrefix that follow
+ * startKey, or all of them when startKey is empty.
+ */
+public record CarryOverCursor(LocalDate deliveryWeek,
+                              String province,
+                              WorkflowStepEnum sourceWorkflowStep,
+                              LocalDate sourceDeliveryWeek,
+                              String sortKeyPrefix,
+                              Map<String, AttributeValue> startKey) {
+}
@@ -0,0 +1,20 @@
+package it.pagopa.pn.delayer.model;
+
+import java.util.Map;
+
+/**
+ * Capacity units consumed by the job, grouped by table, step and province. bytesReadPerItem is estimated from the
+ * read capacity units (4 KB per unit, 8 KB for eventually consistent reads), so it is an upper bound of the item size
+ * since every request is rounded up to the next unit; bytesReadPerDelivery is the one of the paper delivery table.
+ */
+public record ConsumedCapacityReport(Map<String, Usage> tables,
+                                     Map<String, Usage> steps,
+                                     Map<String, Usage> provinces,
+                                     Double bytesReadPerDelivery) {
+
+    public record Usage(double readCapacityUnits,
+                        double writeCapacityUnits,
+                        long requests,
+                        long itemsRead,
+                        Double bytesReadPerItem) {}
+}
@@ -0,0 +1,12 @@
+package it.pagopa.pn.delayer.model;
+
+/**
+ * Step and province the DynamoDB requests of a province job are attributed to in the consumed capacity report.
+ * It is put in the Reactor context of the job under CONTEXT_KEY; requests issued outside of a job are attributed to UNSCOPED.
+ */
+public record ConsumedCapacityScope(String step,
+                                    String province) {
+
+    public static final Class<ConsumedCapacityScope> CONTEXT_KEY = ConsumedCapacityScope.class;
+    public static final ConsumedCapacityScope UNSCOPED = new ConsumedCapacityScope("-", "-");
+}
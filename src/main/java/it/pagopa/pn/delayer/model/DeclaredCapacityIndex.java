@@ -0,0 +1,89 @@
+package it.pagopa.pn.delayer.model;
+
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the PaperDeliveryDriverCapacity rows of a tenderId and unifiedDeliveryDriver.
+ * For every geoKey the rows are sorted by activationDateFrom; capacityAt returns the capacity of the row with the
+ * latest activationDateFrom not after the given date and whose activationDateTo, if present, is not before it,
+ * the same row selected by PaperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities.
+ */
+public final class DeclaredCapacityIndex {
+
+    private final Map<String, GeoKeyIntervals> intervalsByGeoKey;
+
+    private DeclaredCapacityIndex(Map<String, GeoKeyIntervals> intervalsByGeoKey) {
+        this.intervalsByGeoKey = intervalsByGeoKey;
+    }
+
+    public static DeclaredCapacityIndex of(Collection<PaperDeliveryDriverCapacity> capacities) {
+        Map<String, GeoKeyIntervals> intervalsByGeoKey = capacities.stream()
+                .filter(capacity -> capacity.getActivationDateFrom() != null)
+                .collect(Collectors.groupingBy(DeclaredCapacityIndex::geoKeyOf))
+                .entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> GeoKeyIntervals.of(entry.getValue())));
+        return new DeclaredCapacityIndex(intervalsByGeoKey);
+    }
+
+    public Optional<Integer> capacityAt(String geoKey, LocalDate deliveryDate) {
+        GeoKeyIntervals intervals = intervalsByGeoKey.get(geoKey);
+        if (intervals == null) {
+            return Optional.empty();
+        }
+        return intervals.capacityAt(deliveryDate.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+
+    /**
+     * The geoKey is taken from the pk tenderId~unifiedDeliveryDriver~geoKey, the key used by the query.
+     */
+    private static String geoKeyOf(PaperDeliveryDriverCapacity capacity) {
+        return capacity.getPk().substring(capacity.getPk().lastIndexOf('~') + 1);
+    }
+
+    public int size() {
+        return intervalsByGeoKey.size();
+    }
+
+    private record GeoKeyIntervals(Instant[] from, Instant[] to, int[] capacity) {
+
+        static GeoKeyIntervals of(List<PaperDeliveryDriverCapacity> capacities) {
+            List<PaperDeliveryDriverCapacity> sorted = capacities.stream()
+                    .sorted(Comparator.comparing(PaperDeliveryDriverCapacity::getActivationDateFrom))
+                    .toList();
+            Instant[] from = new Instant[sorted.size()];
+            Instant[] to = new Instant[sorted.size()];
+            int[] capacity = new int[sorted.size()];
+            for (int i = 0; i < sorted.size(); i++) {
+                from[i] = sorted.get(i).getActivationDateFrom();
+                to[i] = sorted.get(i).getActivationDateTo();
+                capacity[i] = sorted.get(i).getCapacity();
+            }
+            return new GeoKeyIntervals(from, to, capacity);
+        }
+
+        Optional<Integer> capacityAt(Instant date) {
+            int index = Arrays.binarySearch(from, date);
+            // last row with activationDateFrom <= date
+            int last = index >= 0 ? lastEqual(index, date) : -index - 2;
+            for (int i = last; i >= 0; i--) {
+                if (to[i] == null || !to[i].isBefore(date)) {
+                    return Optional.of(capacity[i]);
+                }
+            }
+            return Optional.empty();
+        }
+
+        private int lastEqual(int index, Instant date) {
+            while (index + 1 < from.length && from[index + 1].equals(date)) {
+                index++;
+            }
+            return index;
+        }
+    }
+}
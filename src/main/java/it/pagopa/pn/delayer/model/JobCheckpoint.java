@@ -0,0 +1,34 @@
+package it.pagopa.pn.delayer.model;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paging progress of a capacity job on a (workflowStep, unifiedDeliveryDriver, province, deliveryWeek).
+ * In phase NEXT_STEP lastEvaluatedKey is the key of the last page sent to the next step and the counters hold
+ * what has been processed so far; in phase FLUSHING the first flushedChunks transactions of the counter flush have
+ * been applied, in phase NEXT_WEEK the used capacities have been flushed, and in both lastEvaluatedKey is where the
+ * deliveries exceeding the capacity start; COMPLETED jobs have nothing left to do.
+ */
+public record JobCheckpoint(WorkflowStepEnum workflowStep,
+                            String unifiedDeliveryDriver,
+                            String province,
+                            LocalDate deliveryWeek,
+                            Phase phase,
+                            Map<String, AttributeValue> lastEvaluatedKey,
+                            int processedPages,
+                            int sentToNextStep,
+                            int printCounter,
+                            List<IncrementUsedCapacityDto> usedCapacities,
+                            int flushedChunks) {
+
+    public enum Phase {
+        NEXT_STEP,
+        FLUSHING,
+        NEXT_WEEK,
+        COMPLETED
+    }
+}
@@ -0,0 +1,11 @@
+package it.pagopa.pn.delayer.model;
+
+import java.util.Map;
+
+/**
+ * Value of a meter at the end of the job: for timers the measurements are COUNT, TOTAL_TIME and MAX in seconds.
+ */
+public record MeterSummary(String name,
+                           String type,
+                           Map<String, String> tags,
+                           Map<String, Double> measurements) {}
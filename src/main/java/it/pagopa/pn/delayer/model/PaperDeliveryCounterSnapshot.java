@@ -0,0 +1,39 @@
+package it.pagopa.pn.delayer.model;
+
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+
+import java.util.*;
+
+/**
+ * Immutable copy of the counters of a partition of the counter table, sorted by sort key.
+ * withSkPrefix answers like a query with begins_with on the sort key: without limit the counters are returned in
+ * ascending sort key order, with a limit the last ones are returned in descending order (scanIndexForward false).
+ */
+public final class PaperDeliveryCounterSnapshot {
+
+    private final NavigableMap<String, PaperDeliveryCounter> countersBySk;
+
+    private PaperDeliveryCounterSnapshot(NavigableMap<String, PaperDeliveryCounter> countersBySk) {
+        this.countersBySk = countersBySk;
+    }
+
+    public static PaperDeliveryCounterSnapshot of(Collection<PaperDeliveryCounter> counters) {
+        NavigableMap<String, PaperDeliveryCounter> countersBySk = new TreeMap<>();
+        counters.forEach(counter -> countersBySk.put(counter.getSk(), counter));
+        return new PaperDeliveryCounterSnapshot(Collections.unmodifiableNavigableMap(countersBySk));
+    }
+
+    public List<PaperDeliveryCounter> withSkPrefix(String skPrefix, Integer limit) {
+        NavigableMap<String, PaperDeliveryCounter> matching = countersBySk.subMap(skPrefix, true, skPrefix + Character.MAX_VALUE, false);
+        if (Objects.isNull(limit)) {
+            return List.copyOf(matching.values());
+        }
+        return matching.descendingMap().values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    public int size() {
+        return countersBySk.size();
+    }
+}
@@ -0,0 +1,103 @@
+package it.pagopa.pn.delayer.model;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Priority map of the SSM parameter compiled in a dense (ProductType ordinal, attempt) -> priority table.
+ * The SSM map associates every priority with keys in the format PRODUCT_{productType}.ATTEMPT_{attempt};
+ * a key listed under more priorities gets the lowest one and the deliveries without a key get DEFAULT_PRIORITY.
+ * Keys that do not match a known ProductType are kept in a fallback map, so the lookup is equivalent to the
+ * linear scan of the SSM map but does not allocate for the known product types.
+ */
+@Slf4j
+public final class PriorityLookupTable {
+
+    public static final int DEFAULT_PRIORITY = 3;
+
+    private static final String PRODUCT_PREFIX = "PRODUCT_";
+    private static final String ATTEMPT_SEPARATOR = ".ATTEMPT_";
+    private static final ProductType[] PRODUCT_TYPES = ProductType.values();
+
+    private final Map<Integer, List<String>> priorityMap;
+    private final int[][] priorities;
+    private final Map<String, Integer> fallback;
+
+    private PriorityLookupTable(Map<Integer, List<String>> priorityMap, int[][] priorities, Map<String, Integer> fallback) {
+        this.priorityMap = priorityMap;
+        this.priorities = priorities;
+        this.fallback = fallback;
+    }
+
+    public static PriorityLookupTable compile(Map<Integer, List<String>> priorityMap) {
+        Map<String, Integer> keyToPriority = new HashMap<>();
+        priorityMap.forEach((priority, keys) -> keys.forEach(key -> keyToPriority.merge(key, priority, Math::min)));
+
+        int[] maxAttempt = new int[PRODUCT_TYPES.length];
+        Arrays.fill(maxAttempt, -1);
+        Map<String, Integer> fallback = new HashMap<>();
+        List<CompiledKey> compiled = new ArrayList<>();
+        keyToPriority.forEach((key, priority) -> {
+            ProductType productType = null;
+            int attempt = -1;
+            int separator = key.indexOf(ATTEMPT_SEPARATOR);
+            if (key.startsWith(PRODUCT_PREFIX) && separator > 0) {
+                productType = fromValue(key.substring(PRODUCT_PREFIX.length(), separator));
+                attempt = parseAttempt(key.substring(separator + ATTEMPT_SEPARATOR.length()));
+            }
+            if (productType == null || attempt < 0) {
+                log.warn("Priority key {} does not match a known product type and attempt", key);
+                fallback.put(key, priority);
+            } else {
+                maxAttempt[productType.ordinal()] = Math.max(maxAttempt[productType.ordinal()], attempt);
+                compiled.add(new CompiledKey(productType, attempt, priority));
+            }
+        });
+
+        int[][] priorities = new int[PRODUCT_TYPES.length][];
+        for (int i = 0; i < PRODUCT_TYPES.length; i++) {
+            priorities[i] = new int[maxAttempt[i] + 1];
+            Arrays.fill(priorities[i], DEFAULT_PRIORITY);
+        }
+        compiled.forEach(key -> priorities[key.productType().ordinal()][key.attempt()] = key.priority());
+        return new PriorityLookupTable(Map.copyOf(priorityMap), priorities, fallback);
+    }
+
+    public int priorityOf(String productType, Integer attempt) {
+        ProductType type = fromValue(productType);
+        if (type != null && attempt != null) {
+            int[] attempts = priorities[type.ordinal()];
+            return attempt >= 0 && attempt < attempts.length ? attempts[attempt] : DEFAULT_PRIORITY;
+        }
+        return fallback.isEmpty()
+                ? DEFAULT_PRIORITY
+                : fallback.getOrDefault(PRODUCT_PREFIX + productType + ATTEMPT_SEPARATOR + attempt, DEFAULT_PRIORITY);
+    }
+
+    /**
+     * Returns true when the table has been compiled from a map equal to the given one.
+     */
+    public boolean isCompiledFrom(Map<Integer, List<String>> priorityMap) {
+        return this.priorityMap.equals(priorityMap);
+    }
+
+    private static ProductType fromValue(String value) {
+        for (ProductType productType : PRODUCT_TYPES) {
+            if (productType.getValue().equals(value)) {
+                return productType;
+            }
+        }
+        return null;
+    }
+
+    private static int parseAttempt(String attempt) {
+        try {
+            return Integer.parseInt(attempt);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private record CompiledKey(ProductType productType, int attempt, int priority) {}
+}
@@ -0,0 +1,6 @@
+package it.pagopa.pn.delayer.model;
+
+public enum ProvinceExecutionMode {
+    SINGLE,
+    MULTI
+}
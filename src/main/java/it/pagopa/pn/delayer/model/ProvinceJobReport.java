@@ -0,0 +1,8 @@
+package it.pagopa.pn.delayer.model;
+
+import java.time.Duration;
+
+public record ProvinceJobReport(String province,
+                                boolean success,
+                                Duration elapsed,
+                                String error) {}
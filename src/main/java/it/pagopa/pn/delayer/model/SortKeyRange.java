@@ -0,0 +1,6 @@
+package it.pagopa.pn.delayer.model;
+
+/**
+ * Sort key interval of a PaperDelivery partition, both bounds inclusive as in the DynamoDB between condition.
+ */
+public record SortKeyRange(String from, String to) {}
@@ -0,0 +1,53 @@
+package it.pagopa.pn.delayer.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Used capacity increments of a driver capacity job, aggregated by unifiedDeliveryDriver, geoKey and deliveryWeek.
+ * Driver and geoKey are compared ignoring case. The increments can be added concurrently by the CAP groups of a
+ * page, and aggregated() returns one IncrementUsedCapacityDto per key with the sum of the deliveries and the last
+ * declared capacity, ready to be flushed on the used capacities table.
+ */
+public class UsedCapacityLedger {
+
+    private final Map<LedgerKey, LedgerEntry> entries = new ConcurrentHashMap<>();
+
+    public void add(IncrementUsedCapacityDto increment) {
+        int numberOfDeliveries = increment.numberOfDeliveries() == null ? 0 : increment.numberOfDeliveries();
+        entries.compute(LedgerKey.of(increment.unifiedDeliveryDriver(), increment.geoKey(), increment.deliveryWeek()),
+                (key, entry) -> entry == null
+                        ? new LedgerEntry(increment.unifiedDeliveryDriver(), increment.geoKey(), increment.deliveryWeek(), numberOfDeliveries, increment.declaredCapacity())
+                        : new LedgerEntry(entry.unifiedDeliveryDriver(), entry.geoKey(), entry.deliveryWeek(), entry.numberOfDeliveries() + numberOfDeliveries, increment.declaredCapacity()));
+    }
+
+    public int incrementsOf(String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek) {
+        LedgerEntry entry = entries.get(LedgerKey.of(unifiedDeliveryDriver, geoKey, deliveryWeek));
+        return entry == null ? 0 : entry.numberOfDeliveries();
+    }
+
+    public List<IncrementUsedCapacityDto> aggregated() {
+        return entries.values().stream()
+                .map(entry -> new IncrementUsedCapacityDto(entry.unifiedDeliveryDriver(), entry.geoKey(), entry.numberOfDeliveries(), entry.deliveryWeek(), entry.declaredCapacity()))
+                .toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    private record LedgerKey(String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek) {
+        static LedgerKey of(String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek) {
+            return new LedgerKey(unifiedDeliveryDriver.toLowerCase(Locale.ROOT), geoKey.toLowerCase(Locale.ROOT), deliveryWeek);
+        }
+    }
+
+    private record LedgerEntry(String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek, int numberOfDeliveries, Integer declaredCapacity) {}
+}
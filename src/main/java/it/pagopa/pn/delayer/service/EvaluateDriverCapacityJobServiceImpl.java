@@ -1,5 +1,9 @@
 package it.pagopa.pn.delayer.service;
 
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.config.SsmParameterConsumerActivation;
+import it.pagopa.pn.delayer.model.PriorityLookupTable;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import it.pagopa.pn.delayer.utils.PaperDeliveryUtils;
 import lombok.RequiredArgsConstructor;
@@ -8,6 +12,12 @@ import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.PAPER_DELIVERY_PRIORITY_MAP_NOT_FOUND;
 
 @Slf4j
 @Component
@@ -15,9 +25,32 @@ import java.time.LocalDate;
 public class EvaluateDriverCapacityJobServiceImpl implements EvaluateDriverCapacityJobService {
 
     private final PaperDeliveryUtils paperDeliveryUtils;
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final SsmParameterConsumerActivation ssmParameterConsumerActivation;
 
     @Override
     public Mono<Void> startEvaluateDriverCapacityJob(String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, String tenderId) {
-        return paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, unifiedDeliveryDriver, province, deliveryWeek, tenderId);
+        return paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, unifiedDeliveryDriver, province, deliveryWeek, tenderId, retrievePriorities());
+    }
+
+    /**
+     * With dao.paperDeliveryReadPriorityBuckets enabled returns the priorities of the SSM priority map, plus the
+     * default priority of the deliveries without a key, used to read the partition one priority bucket per query;
+     * otherwise an empty set, for the single query chain.
+     */
+    private Set<Integer> retrievePriorities() {
+        boolean priorityBuckets = Optional.ofNullable(pnDelayerConfigs.getDao())
+                .map(PnDelayerConfigs.Dao::getPaperDeliveryReadPriorityBuckets)
+                .orElse(false);
+        if (!priorityBuckets) {
+            return Set.of();
+        }
+        Set<Integer> priorities = new TreeSet<>();
+        priorities.add(PriorityLookupTable.DEFAULT_PRIORITY);
+        ssmParameterConsumerActivation.getParameterValue(pnDelayerConfigs.getPaperDeliveryPriorityParameterName(), Map.class)
+                .orElseThrow(() -> new PnInternalException("Failed to retrieve paper delivery priority map from SSM parameter store", PAPER_DELIVERY_PRIORITY_MAP_NOT_FOUND))
+                .keySet()
+                .forEach(priority -> priorities.add(Integer.parseInt(String.valueOf(priority))));
+        return priorities;
     }
 }
@@ -6,6 +6,7 @@ import it.pagopa.pn.delayer.config.SsmParameterConsumerActivation;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliverySenderLimitDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.model.*;
+import it.pagopa.pn.delayer.utils.CpuStageScheduler;
 import it.pagopa.pn.delayer.utils.DeliveryDriverUtils;
 import it.pagopa.pn.delayer.utils.PaperDeliveryUtils;
 import it.pagopa.pn.delayer.utils.PnDelayerUtils;
@@ -16,15 +17,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.function.Tuple2;
-import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.PAPER_DELIVERY_PRIORITY_MAP_NOT_FOUND;
@@ -41,34 +44,89 @@ public class EvaluateSenderLimitJobServiceImpl implements EvaluateSenderLimitJob
     private final SsmParameterConsumerActivation ssmParameterConsumerActivation;
     private final SenderLimitUtils senderLimitUtils;
     private final PaperDeliverySenderLimitDAO paperDeliverySenderLimitDAO;
+    private final CpuStageScheduler cpuStageScheduler;
+    private final AtomicReference<PriorityLookupTable> compiledPriorityLookupTable = new AtomicReference<>();
 
 
     @Override
     public Mono<Void> startSenderLimitJob(String province, String tenderId, LocalDate deliveryWeek){
         SenderLimitJobProcessObjects senderLimitJobProcessObjects = new SenderLimitJobProcessObjects();
-        senderLimitJobProcessObjects.setPriorityMap(getPriorityMap());
+        senderLimitJobProcessObjects.setPriorityLookupTable(getPriorityLookupTable());
         return senderLimitUtils.retrieveTotalEstimateCounter(deliveryWeek, province)
                 .doOnNext(senderLimitJobProcessObjects::setTotalEstimateCounter)
                 .flatMap(stringIntegerMap -> deliveryDriverUtils.retrieveDriversCapacityOnProvince(deliveryWeek, tenderId, province))
-                .flatMap(driversTotalCapacities -> retrieveAndProcessPaperDeliveries(province, tenderId, deliveryWeek, new HashMap<>(), driversTotalCapacities, senderLimitJobProcessObjects))
+                .flatMap(driversTotalCapacities -> resolveUnifiedDeliveryDriversUpfront(province, tenderId, deliveryWeek, driversTotalCapacities)
+                        .thenReturn(driversTotalCapacities))
+                .flatMap(driversTotalCapacities -> retrieveAndProcessPaperDeliveries(province, tenderId, deliveryWeek, driversTotalCapacities, senderLimitJobProcessObjects))
                 .flatMap(processObj -> flushCounters(deliveryWeek, processObj.getSenderLimitMap()))
                 .doOnError(error -> log.error("Error processing sender limit job for province: {}, tenderId: {}, deliveryWeek: {}", province, tenderId, deliveryWeek, error));
     }
 
-    private Mono<SenderLimitJobProcessObjects> retrieveAndProcessPaperDeliveries(String province, String tenderId, LocalDate deliveryWeek, Map<String, AttributeValue> lastEvaluatedKey, List<DriversTotalCapacity> driversTotalCapacity, SenderLimitJobProcessObjects senderLimitJobProcessObjects) {
+    /**
+     * With driverResolution.upfront enabled, reads the distinct CAP~productType keys of the province with a
+     * projection query and resolves their drivers in a few chunked Paper Channel invocations, so that the
+     * page processing finds every driver in cache. Skipped when the province has a single driver.
+     */
+    private Mono<Void> resolveUnifiedDeliveryDriversUpfront(String province, String tenderId, LocalDate deliveryWeek, List<DriversTotalCapacity> driversTotalCapacity) {
+        boolean upfront = Optional.ofNullable(pnDelayerConfigs.getDriverResolution()).map(PnDelayerConfigs.DriverResolution::isUpfront).orElse(false);
+        if (!upfront || isSingleDriver(driversTotalCapacity)) {
+            return Mono.empty();
+        }
+        return paperDeliveryUtils.retrieveDistinctCapProductTypeKeys(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, province + "~", pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit())
+                .flatMap(capProductTypeKeys -> deliveryDriverUtils.resolveAndCacheUnifiedDeliveryDrivers(capProductTypeKeys, tenderId));
+    }
+
+    private boolean isAsyncInvocation() {
+        return Optional.ofNullable(pnDelayerConfigs.getDriverResolution()).map(PnDelayerConfigs.DriverResolution::isAsyncInvocation).orElse(false);
+    }
+
+    private static boolean isSingleDriver(List<DriversTotalCapacity> driversTotalCapacity) {
+        return driversTotalCapacity.size() == 1 && driversTotalCapacity.getFirst().getUnifiedDeliveryDrivers().size() == 1;
+    }
+
+    /**
+     * Streams the pages of the EVALUATE_SENDER_LIMIT step of the province and processes them one at a time,
+     * in query order. While a page is being processed up to paperDeliveryPrefetchDepth following pages are
+     * already queried, so that the query latency overlaps with the processing and write latency.
+     * With paperDeliveryReadSegments greater than 1 the partition is read as that many date ranges queried
+     * concurrently and merged back in sort key order.
+     * With carryOver.enabled the deliveries carried over from the previous week are read first, from the partitions
+     * of the capacity jobs that could not process them.
+     */
+    private Mono<SenderLimitJobProcessObjects> retrieveAndProcessPaperDeliveries(String province, String tenderId, LocalDate deliveryWeek, List<DriversTotalCapacity> driversTotalCapacity, SenderLimitJobProcessObjects senderLimitJobProcessObjects) {
+        int prefetchDepth = Math.max(Optional.ofNullable(pnDelayerConfigs.getDao().getPaperDeliveryPrefetchDepth()).orElse(1), 1);
+        return Flux.concat(retrieveCarriedOverPaperDeliveryPages(province, deliveryWeek), Flux.defer(() -> retrievePaperDeliveryPages(province, deliveryWeek, prefetchDepth)))
+                .concatMap(paperDeliveryPage -> {
+                    senderLimitJobProcessObjects.getSendToDriverCapacityStep().clear();
+                    senderLimitJobProcessObjects.getSendToResidualCapacityStep().clear();
+                    return processItems(paperDeliveryPage.items(), tenderId, deliveryWeek, driversTotalCapacity, senderLimitJobProcessObjects)
+                            .doOnNext(processObjects -> log.info("Processed items for province: {}, tenderId: {}, deliveryWeek: {}. lastEvaluatedKey: {}", province, tenderId, deliveryWeek, paperDeliveryPage.lastEvaluatedKey()));
+                }, prefetchDepth)
+                .then(Mono.fromSupplier(() -> {
+                    log.info("Processed items for province: {}, tenderId: {}, deliveryWeek: {}. No more items to process.", province, tenderId, deliveryWeek);
+                    return senderLimitJobProcessObjects;
+                }));
+    }
+
+    private Flux<Page<PaperDelivery>> retrieveCarriedOverPaperDeliveryPages(String province, LocalDate deliveryWeek) {
+        boolean carryOver = Optional.ofNullable(pnDelayerConfigs.getCarryOver()).map(PnDelayerConfigs.CarryOver::isEnabled).orElse(false);
+        if (!carryOver) {
+            return Flux.empty();
+        }
+        return paperDeliveryUtils.retrieveCarriedOverPaperDeliveryPages(deliveryWeek, province, pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit());
+    }
+
+    private Flux<Page<PaperDelivery>> retrievePaperDeliveryPages(String province, LocalDate deliveryWeek, int prefetchDepth) {
         var sortkeyPrefix = province + "~";
-        return paperDeliveryUtils.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, sortkeyPrefix, lastEvaluatedKey, pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit())
-                .flatMap(paperDeliveryPage -> processItems(paperDeliveryPage.items(), tenderId, deliveryWeek, driversTotalCapacity, senderLimitJobProcessObjects)
-                        .flatMap(processObjects -> {
-                            if (!CollectionUtils.isEmpty(paperDeliveryPage.lastEvaluatedKey())) {
-                                log.info("Processed items for province: {}, tenderId: {}, deliveryWeek: {}. Continuing with lastEvaluatedKey: {}", province, tenderId, deliveryWeek, paperDeliveryPage.lastEvaluatedKey());
-                                processObjects.getSendToDriverCapacityStep().clear();
-                                processObjects.getSendToResidualCapacityStep().clear();
-                                return retrieveAndProcessPaperDeliveries(province, tenderId, deliveryWeek, paperDeliveryPage.lastEvaluatedKey(), driversTotalCapacity, processObjects);
-                            }
-                            log.info("Processed items for province: {}, tenderId: {}, deliveryWeek: {}. No more items to process.", province, tenderId, deliveryWeek);
-                            return Mono.just(processObjects);
-                        }));
+        Integer queryLimit = pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit();
+        int segments = Optional.ofNullable(pnDelayerConfigs.getDao().getPaperDeliveryReadSegments()).orElse(1);
+        if (segments <= 1) {
+            return paperDeliveryUtils.retrievePaperDeliveryPages(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, sortkeyPrefix, queryLimit);
+        }
+        int lookbackWeeks = Optional.ofNullable(pnDelayerConfigs.getDao().getPaperDeliveryReadLookbackWeeks()).orElse(4);
+        List<SortKeyRange> sortKeyRanges = pnDelayerUtils.splitSortKeyRangeByDate(sortkeyPrefix, deliveryWeek.minusWeeks(lookbackWeeks), deliveryWeek, segments);
+        log.info("Reading province: {}, deliveryWeek: {} on {} sort key ranges: {}", province, deliveryWeek, sortKeyRanges.size(), sortKeyRanges);
+        return paperDeliveryUtils.retrievePaperDeliveryPages(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, sortKeyRanges, queryLimit, prefetchDepth);
     }
 
     private Mono<Void> flushCounters(LocalDate deliveryDate, Map<String, Tuple2<Integer, Integer>> senderLimitMap) {
@@ -98,6 +156,7 @@ public class EvaluateSenderLimitJobServiceImpl implements EvaluateSenderLimitJob
      * that categorizes deliveries for either the EVALUATE_DRIVER_CAPACITY or EVALUATE_RESIDUAL_CAPACITY step.
      * 5. Inserts new entities into the Pn-DelayerPaperDeliveries collection, mapped to their corresponding evaluation step.
      * 6. Updates the used sender limits in the database for deliveries assigned to the EVALUATE_DRIVER_CAPACITY step.
+     * The enrichment, the grouping and the sender limit evaluation run on the CpuStageScheduler.
      *
      * @param items                List of PaperDelivery items to be processed
      * @param tenderId             The tender ID associated with the deliveries
@@ -106,7 +165,8 @@ public class EvaluateSenderLimitJobServiceImpl implements EvaluateSenderLimitJob
      * @return Mono<Long> indicating the count of items sent to the next step
      */
     private Mono<SenderLimitJobProcessObjects> processItems(List<PaperDelivery> items, String tenderId, LocalDate deliveryWeek, List<DriversTotalCapacity> driversTotalCapacity, SenderLimitJobProcessObjects senderLimitJobProcessObjects) {
-        return retrieveUnifiedDeliveryDriverAndAssignToPaperDeliveries(items, tenderId, driversTotalCapacity, senderLimitJobProcessObjects.getPriorityMap())
+        return cpuStageScheduler.offload(Mono.just(items))
+                .flatMap(paperDeliveries -> retrieveUnifiedDeliveryDriverAndAssignToPaperDeliveries(paperDeliveries, tenderId, driversTotalCapacity, senderLimitJobProcessObjects.getPriorityLookupTable()))
                 .map(paperDeliveryList -> pnDelayerUtils.excludeRsAndSecondAttempt(paperDeliveryList, senderLimitJobProcessObjects))
                 .map(pnDelayerUtils::groupByPaIdProductTypeProvince)
                 .flatMap(deliveriesGroupedByProductTypePaId -> senderLimitUtils.retrieveAndEvaluateSenderLimit(deliveryWeek, deliveriesGroupedByProductTypePaId, driversTotalCapacity, senderLimitJobProcessObjects))
@@ -126,19 +186,19 @@ public class EvaluateSenderLimitJobServiceImpl implements EvaluateSenderLimitJob
      * If the drivers are not found in the cache, it retrieves them from the Paper Channel Lambda,
      * assigns them to the paper deliveries, and updates the cache accordingly.
      */
-    private Mono<List<PaperDelivery>> retrieveUnifiedDeliveryDriverAndAssignToPaperDeliveries(List<PaperDelivery> paperDelivery, String tenderId, List<DriversTotalCapacity> driversTotalCapacity, Map<Integer, List<String>> priorityMap) {
-        if (driversTotalCapacity.size() == 1 && driversTotalCapacity.getFirst().getUnifiedDeliveryDrivers().size() == 1) {
+    private Mono<List<PaperDelivery>> retrieveUnifiedDeliveryDriverAndAssignToPaperDeliveries(List<PaperDelivery> paperDelivery, String tenderId, List<DriversTotalCapacity> driversTotalCapacity, PriorityLookupTable priorityLookupTable) {
+        if (isSingleDriver(driversTotalCapacity)) {
             String unifiedDeliveryDriver = driversTotalCapacity.getFirst().getUnifiedDeliveryDrivers().getFirst();
-            return Mono.just(deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(paperDelivery, unifiedDeliveryDriver, tenderId, priorityMap));
+            return Mono.just(deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(paperDelivery, unifiedDeliveryDriver, tenderId, priorityLookupTable));
         } else {
             Map<String, List<PaperDelivery>> groupedByCapProductType = pnDelayerUtils.groupByCapAndProductType(paperDelivery);
             log.info("Number of CAP and Product Type groups to process for tenderId {}: {}", tenderId, groupedByCapProductType.size());
             ConcurrentHashMap<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache = new ConcurrentHashMap<>();
             return Flux.fromIterable(groupedByCapProductType.entrySet())
-                    .map(capProductTypeEntry -> retrieveFromCacheAndEnrichPaperDelivery(tenderId, priorityMap, capProductTypeEntry, groupedByCapProductTypeNotInCache))
+                    .map(capProductTypeEntry -> retrieveFromCacheAndEnrichPaperDelivery(tenderId, priorityLookupTable, capProductTypeEntry, groupedByCapProductTypeNotInCache))
                     .flatMapIterable(list -> list)
                     .collectList()
-                    .flatMap(toSenderLimitEvaluationTmp -> callPaperChannelAndRetrieveEnrichedPaperDelivery(tenderId, priorityMap, groupedByCapProductTypeNotInCache)
+                    .flatMap(toSenderLimitEvaluationTmp -> callPaperChannelAndRetrieveEnrichedPaperDelivery(tenderId, priorityLookupTable, groupedByCapProductTypeNotInCache)
                             .map(toSenderLimitEvaluationFromPaperChannel -> {
                                 List<PaperDelivery> result = new ArrayList<>(toSenderLimitEvaluationTmp);
                                 result.addAll(toSenderLimitEvaluationFromPaperChannel);
@@ -147,28 +207,48 @@ public class EvaluateSenderLimitJobServiceImpl implements EvaluateSenderLimitJob
         }
     }
 
-    private List<PaperDelivery> retrieveFromCacheAndEnrichPaperDelivery(String tenderId, Map<Integer, List<String>> priorityMap, Map.Entry<String, List<PaperDelivery>> capProductTypeEntry, Map<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache) {
+    private List<PaperDelivery> retrieveFromCacheAndEnrichPaperDelivery(String tenderId, PriorityLookupTable priorityLookupTable, Map.Entry<String, List<PaperDelivery>> capProductTypeEntry, Map<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache) {
         return deliveryDriverUtils.retrieveFromCache(capProductTypeEntry.getKey())
-                .map(unifiedDeliveryDriver -> deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(capProductTypeEntry.getValue(), unifiedDeliveryDriver, tenderId, priorityMap))
+                .map(unifiedDeliveryDriver -> deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(capProductTypeEntry.getValue(), unifiedDeliveryDriver, tenderId, priorityLookupTable))
                 .orElseGet(() -> {
                     groupedByCapProductTypeNotInCache.put(capProductTypeEntry.getKey(), capProductTypeEntry.getValue());
                     return new ArrayList<>();
                 });
     }
 
-    private Mono<List<PaperDelivery>> callPaperChannelAndRetrieveEnrichedPaperDelivery(String tenderId, Map<Integer, List<String>> priorityMap, Map<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache) {
+    /**
+     * The synchronous Paper Channel invocation blocks its thread for the whole Lambda call, so it runs on the
+     * boundedElastic scheduler and never on the pn-delayer-cpu threads of the CPU-bound stages; the enrichment
+     * of the response goes back to the CpuStageScheduler.
+     */
+    private Mono<List<PaperDelivery>> callPaperChannelAndRetrieveEnrichedPaperDelivery(String tenderId, PriorityLookupTable priorityLookupTable, Map<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache) {
 
         return Flux.fromIterable(groupedByCapProductTypeNotInCache.keySet())
                 .map(capProductTypeKey -> new DeliveryDriverRequest(capProductTypeKey.split("~")[0], capProductTypeKey.split("~")[1]))
                 .collectList()
                 .doOnNext(requests -> log.info("Number of driver requests for paper channel for tenderId {}: {}", tenderId, requests.size()))
                 .filter(requests -> !CollectionUtils.isEmpty(requests))
-                .map(requests -> deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannel(requests, tenderId))
+                .flatMap(requests -> isAsyncInvocation()
+                        ? deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannelAsync(requests, tenderId)
+                        : Mono.fromCallable(() -> deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannel(requests, tenderId))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                .transform(cpuStageScheduler::offload)
                 .doOnNext(deliveryDriverUtils::insertInCache)
-                .map(responses -> deliveryDriverUtils.assignUnifiedDeliveryDriverAndEnrichWithDriverAndPriority(groupedByCapProductTypeNotInCache, tenderId, priorityMap))
+                .map(responses -> deliveryDriverUtils.assignUnifiedDeliveryDriverAndEnrichWithDriverAndPriority(groupedByCapProductTypeNotInCache, tenderId, priorityLookupTable))
                 .defaultIfEmpty(List.of());
     }
 
+    /**
+     * Compiles the priority map of the SSM parameter, reusing the table of a previous job of the JVM
+     * when the parameter has not changed.
+     */
+    private PriorityLookupTable getPriorityLookupTable() {
+        Map<Integer, List<String>> priorityMap = getPriorityMap();
+        return compiledPriorityLookupTable.updateAndGet(table -> table != null && table.isCompiledFrom(priorityMap)
+                ? table
+                : PriorityLookupTable.compile(priorityMap));
+    }
+
     private Map<Integer, List<String>> getPriorityMap() {
         return ((Map<String, List<String>>) ssmParameterConsumerActivation.getParameterValue(pnDelayerConfigs.getPaperDeliveryPriorityParameterName(), Map.class)
                 .orElseThrow(() -> new PnInternalException("Failed to retrieve paper delivery priority map from SSM parameter store", PAPER_DELIVERY_PRIORITY_MAP_NOT_FOUND)))
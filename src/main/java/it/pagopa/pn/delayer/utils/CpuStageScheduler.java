@@ -0,0 +1,66 @@
+package it.pagopa.pn.delayer.utils;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.util.Optional;
+
+/**
+ * Moves the CPU-bound stages of the jobs (grouping, enrichment, sender limit and CAP capacity evaluation) off the
+ * SDK thread that completed the DynamoDB response, onto a bounded parallel scheduler of scheduling.parallelism
+ * threads. With scheduling.cpuOffload disabled the stages keep running on the thread that delivered the signal.
+ */
+@Slf4j
+@Component
+public class CpuStageScheduler implements DisposableBean {
+
+    private final PnDelayerConfigs.Scheduling scheduling;
+    private final Scheduler scheduler;
+
+    public CpuStageScheduler(PnDelayerConfigs pnDelayerConfigs) {
+        this.scheduling = Optional.ofNullable(pnDelayerConfigs.getScheduling()).orElseGet(PnDelayerConfigs.Scheduling::new);
+        if (scheduling.isCpuOffload()) {
+            int parallelism = Optional.ofNullable(scheduling.getParallelism()).orElse(Runtime.getRuntime().availableProcessors());
+            log.info("CPU-bound stages offloaded on a parallel scheduler of {} threads", parallelism);
+            this.scheduler = Schedulers.newParallel("pn-delayer-cpu", Math.max(parallelism, 1), true);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    public <T> Mono<T> offload(Mono<T> mono) {
+        return scheduler != null ? mono.publishOn(scheduler) : mono;
+    }
+
+    public <T> Flux<T> offload(Flux<T> flux) {
+        return scheduler != null ? flux.publishOn(scheduler) : flux;
+    }
+
+    /**
+     * Concurrency of the CAP groups of a page evaluated together, the flatMap default when not set.
+     */
+    public int capGroupConcurrency() {
+        return Math.max(Optional.ofNullable(scheduling.getCapGroupConcurrency()).orElse(Queues.SMALL_BUFFER_SIZE), 1);
+    }
+
+    /**
+     * Concurrency of the chunks of deliveries written together, the flatMap default when not set.
+     */
+    public int writeChunkConcurrency() {
+        return Math.max(Optional.ofNullable(scheduling.getWriteChunkConcurrency()).orElse(Queues.SMALL_BUFFER_SIZE), 1);
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+}
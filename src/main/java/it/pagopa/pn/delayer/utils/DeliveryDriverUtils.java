@@ -1,15 +1,20 @@
 package it.pagopa.pn.delayer.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import it.pagopa.pn.commons.exceptions.PnInternalException;
 import it.pagopa.pn.delayer.cache.CapProductTypeDriverCacheService;
+import it.pagopa.pn.delayer.cache.DeclaredCapacityCacheService;
+import it.pagopa.pn.delayer.cache.DeclaredCapacityIndexService;
+import it.pagopa.pn.delayer.cache.PaperDeliveryCounterSnapshotService;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
-import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverCapacitiesDAO;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverUsedCapacitiesDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities;
 import it.pagopa.pn.delayer.model.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,9 +22,11 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
 import software.amazon.awssdk.services.lambda.model.InvocationType;
 import software.amazon.awssdk.services.lambda.model.InvokeRequest;
@@ -37,15 +44,21 @@ import static it.pagopa.pn.delayer.exception.PnDelayerExceptionCode.ERROR_CODE_D
 public class DeliveryDriverUtils {
 
     private final LambdaClient lambdaClient;
+    private final LambdaAsyncClient lambdaAsyncClient;
     private final ObjectMapper objectMapper;
     private final PnDelayerConfigs pnDelayerConfigs;
     private final CapProductTypeDriverCacheService cacheService;
     private final PnDelayerUtils pnDelayerUtils;
     private final PaperDeliveryDriverUsedCapacitiesDAO paperDeliveryUsedCapacityDAO;
     private final PaperDeliveryDriverCapacitiesDAO paperDeliveryDriverCapacitiesDAO;
-    private final PaperDeliveryCounterDAO paperDeliveryCounterDAO;
+    private final PaperDeliveryCounterSnapshotService paperDeliveryCounterSnapshotService;
+    private final DeclaredCapacityCacheService declaredCapacityCacheService;
+    private final DeclaredCapacityIndexService declaredCapacityIndexService;
+    private final MeterRegistry meterRegistry;
 
     public List<PaperChannelDeliveryDriver> retrieveUnifiedDeliveryDriversFromPaperChannel(List<DeliveryDriverRequest> deliveryDriverRequests, String tenderId) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ERROR";
         try {
             SdkBytes sdkBytesResponse = lambdaClient.invoke(InvokeRequest.builder()
                             .functionName(pnDelayerConfigs.getPaperChannelTenderApiLambdaArn())
@@ -57,14 +70,114 @@ public class DeliveryDriverUtils {
             if(deliveryDriverRequests.size() != response.size()) {
                 log.error("CAP without delivery driver from Paper Channel. Request: {}. Response: {}", deliveryDriverRequests, response);
             }
+            outcome = "SUCCESS";
             return response;
 
         } catch (IOException e) {
             log.error("Error in retrieveUnifiedDeliveryDriversFromPaperChannel with requests: {}", deliveryDriverRequests, e);
             throw new RuntimeException(e);
+        } finally {
+            recordPaperChannelInvoke(sample, "sync", outcome, deliveryDriverRequests.size());
         }
     }
 
+    /**
+     * Non-blocking variant of retrieveUnifiedDeliveryDriversFromPaperChannel. The requests are split in sub-lists
+     * whose payload stays within driverResolution.maxPayloadBytes, invoked concurrently through the
+     * LambdaAsyncClient; serialization and deserialization run on the bounded elastic scheduler so that the
+     * SDK event loop threads are never busy with JSON processing.
+     */
+    public Mono<List<PaperChannelDeliveryDriver>> retrieveUnifiedDeliveryDriversFromPaperChannelAsync(List<DeliveryDriverRequest> deliveryDriverRequests, String tenderId) {
+        PnDelayerConfigs.DriverResolution driverResolution = Optional.ofNullable(pnDelayerConfigs.getDriverResolution()).orElseGet(PnDelayerConfigs.DriverResolution::new);
+        return splitPaperChannelPayloads(deliveryDriverRequests, tenderId, driverResolution)
+                .flatMap(this::invokePaperChannelAsync, driverResolution.getConcurrency())
+                .flatMapIterable(responses -> responses)
+                .collectList()
+                .doOnError(e -> log.error("Error in retrieveUnifiedDeliveryDriversFromPaperChannelAsync with {} requests", deliveryDriverRequests.size(), e));
+    }
+
+    private Flux<PaperChannelPayload> splitPaperChannelPayloads(List<DeliveryDriverRequest> deliveryDriverRequests, String tenderId, PnDelayerConfigs.DriverResolution driverResolution) {
+        return Mono.fromCallable(() -> splitByPayloadSize(deliveryDriverRequests, tenderId, driverResolution.getMaxPayloadBytes()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    private Mono<List<PaperChannelDeliveryDriver>> invokePaperChannelAsync(PaperChannelPayload payload) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return Mono.fromFuture(() -> lambdaAsyncClient.invoke(InvokeRequest.builder()
+                            .functionName(pnDelayerConfigs.getPaperChannelTenderApiLambdaArn())
+                            .invocationType(InvocationType.REQUEST_RESPONSE)
+                            .payload(payload.payload())
+                            .build()))
+                    .publishOn(Schedulers.boundedElastic())
+                    .map(invokeResponse -> readPaperChannelResponse(invokeResponse.payload(), payload.requests()))
+                    .doOnSuccess(responses -> recordPaperChannelInvoke(sample, "async", "SUCCESS", payload.requests().size()))
+                    .doOnError(e -> recordPaperChannelInvoke(sample, "async", "ERROR", payload.requests().size()));
+        });
+    }
+
+    /**
+     * Records the duration of a Paper Channel invocation (pn.delayer.paperchannel.invoke) and the number of
+     * delivery driver requests it carried (pn.delayer.paperchannel.requests).
+     */
+    private void recordPaperChannelInvoke(Timer.Sample sample, String mode, String outcome, int requests) {
+        sample.stop(meterRegistry.timer("pn.delayer.paperchannel.invoke", "mode", mode, "outcome", outcome));
+        meterRegistry.summary("pn.delayer.paperchannel.requests", "mode", mode).record(requests);
+    }
+
+    /**
+     * Serializes the requests in a single payload, halving the list until every payload is within maxPayloadBytes.
+     */
+    private List<PaperChannelPayload> splitByPayloadSize(List<DeliveryDriverRequest> deliveryDriverRequests, String tenderId, int maxPayloadBytes) throws IOException {
+        byte[] payload = objectMapper.writeValueAsBytes(new PaperChannelDeliveryDriverRequest(deliveryDriverRequests, tenderId, "GET_UNIFIED_DELIVERY_DRIVERS"));
+        if (payload.length <= maxPayloadBytes || deliveryDriverRequests.size() == 1) {
+            return List.of(new PaperChannelPayload(deliveryDriverRequests, SdkBytes.fromByteArray(payload)));
+        }
+        int half = deliveryDriverRequests.size() / 2;
+        List<PaperChannelPayload> payloads = new ArrayList<>(splitByPayloadSize(deliveryDriverRequests.subList(0, half), tenderId, maxPayloadBytes));
+        payloads.addAll(splitByPayloadSize(deliveryDriverRequests.subList(half, deliveryDriverRequests.size()), tenderId, maxPayloadBytes));
+        return payloads;
+    }
+
+    private List<PaperChannelDeliveryDriver> readPaperChannelResponse(SdkBytes sdkBytesResponse, List<DeliveryDriverRequest> deliveryDriverRequests) {
+        try {
+            var response = objectMapper.readValue(sdkBytesResponse.asByteArray(), PaperChannelDeliveryDriverResponse.class).getBody();
+            if (deliveryDriverRequests.size() != response.size()) {
+                log.error("CAP without delivery driver from Paper Channel. Request: {}. Response: {}", deliveryDriverRequests, response);
+            }
+            return response;
+        } catch (IOException e) {
+            log.error("Error reading Paper Channel response for requests: {}", deliveryDriverRequests, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Resolves the drivers of the given CAP~productType keys not already cached, calling Paper Channel with
+     * chunks of driverResolution.chunkSize keys in parallel, and stores the responses in the cache.
+     * With asyncInvocation the chunks are split by payload size and all the resulting invocations share the
+     * same flatMap, so that at most driverResolution.concurrency Paper Channel calls are in flight.
+     */
+    public Mono<Void> resolveAndCacheUnifiedDeliveryDrivers(Collection<String> capProductTypeKeys, String tenderId) {
+        PnDelayerConfigs.DriverResolution driverResolution = Optional.ofNullable(pnDelayerConfigs.getDriverResolution()).orElseGet(PnDelayerConfigs.DriverResolution::new);
+        List<DeliveryDriverRequest> requests = capProductTypeKeys.stream()
+                .filter(capProductTypeKey -> retrieveFromCache(capProductTypeKey).isEmpty())
+                .map(capProductTypeKey -> new DeliveryDriverRequest(capProductTypeKey.split("~")[0], capProductTypeKey.split("~")[1]))
+                .toList();
+        log.info("Resolving upfront {} of {} CAP and Product Type keys for tenderId {}", requests.size(), capProductTypeKeys.size(), tenderId);
+        Flux<List<DeliveryDriverRequest>> chunks = Flux.fromIterable(requests)
+                .buffer(driverResolution.getChunkSize());
+        Flux<List<PaperChannelDeliveryDriver>> responses = driverResolution.isAsyncInvocation()
+                ? chunks.concatMap(chunk -> splitPaperChannelPayloads(chunk, tenderId, driverResolution))
+                        .flatMap(this::invokePaperChannelAsync, driverResolution.getConcurrency())
+                : chunks.flatMap(chunk -> Mono.fromCallable(() -> retrieveUnifiedDeliveryDriversFromPaperChannel(chunk, tenderId)).subscribeOn(Schedulers.boundedElastic()),
+                        driverResolution.getConcurrency());
+        return responses
+                .doOnNext(this::insertInCache)
+                .then();
+    }
+
     public void insertInCache(List<PaperChannelDeliveryDriver> paperChannelDeliveryDriver) {
         if(!CollectionUtils.isEmpty(paperChannelDeliveryDriver)) {
             Map<String, String> map = pnDelayerUtils.groupByGeoKeyAndProduct(paperChannelDeliveryDriver);
@@ -76,14 +189,14 @@ public class DeliveryDriverUtils {
         return cacheService.getFromCache(capProductTypeKey);
     }
 
-    public List<PaperDelivery> assignUnifiedDeliveryDriverAndEnrichWithDriverAndPriority(Map<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache, String tenderId, Map<Integer, List<String>> priorityMap) {
+    public List<PaperDelivery> assignUnifiedDeliveryDriverAndEnrichWithDriverAndPriority(Map<String, List<PaperDelivery>> groupedByCapProductTypeNotInCache, String tenderId, PriorityLookupTable priorityLookupTable) {
         return groupedByCapProductTypeNotInCache.entrySet().stream()
                 .map(entry -> {
                     Optional<String> driver = retrieveFromCache(entry.getKey());
                     if(driver.isEmpty()){
                         throw new PnInternalException(String.format("UnifiedDeliveryDriver not found for geoKey and product key [%s]", entry.getKey()), 404, ERROR_CODE_DELIVERY_DRIVER_NOT_FOUND);
                     }else {
-                        enrichWithPriorityAndUnifiedDeliveryDriver(entry.getValue(), driver.get(), tenderId, priorityMap);
+                        enrichWithPriorityAndUnifiedDeliveryDriver(entry.getValue(), driver.get(), tenderId, priorityLookupTable);
                         return entry.getValue();
                     }
                 })
@@ -91,9 +204,9 @@ public class DeliveryDriverUtils {
                 .toList();
     }
 
-    public List<PaperDelivery> enrichWithPriorityAndUnifiedDeliveryDriver(List<PaperDelivery> deliveries, String unifiedDeliveryDriver, String tenderId, Map<Integer, List<String>> priorityMap) {
+    public List<PaperDelivery> enrichWithPriorityAndUnifiedDeliveryDriver(List<PaperDelivery> deliveries, String unifiedDeliveryDriver, String tenderId, PriorityLookupTable priorityLookupTable) {
         deliveries.forEach(paperDelivery -> {
-            Integer priority = findPriorityOnMap(priorityMap, paperDelivery);
+            int priority = priorityLookupTable.priorityOf(paperDelivery.getProductType(), paperDelivery.getAttempt());
             paperDelivery.setUnifiedDeliveryDriver(unifiedDeliveryDriver);
             paperDelivery.setTenderId(tenderId);
             paperDelivery.setPriority(priority);
@@ -101,24 +214,42 @@ public class DeliveryDriverUtils {
         return deliveries;
     }
 
-    private static Integer findPriorityOnMap(Map<Integer, List<String>> priorityMap, PaperDelivery paperDelivery) {
-        String key = "PRODUCT_" + paperDelivery.getProductType() + ".ATTEMPT_" + paperDelivery.getAttempt();
-        return priorityMap.entrySet().stream()
-                .filter(entry -> entry.getValue().contains(key))
-                .map(Map.Entry::getKey)
-                .findFirst()
-                .orElse(3);
-    }
-
     public Mono<Tuple2<Integer, Integer>> retrieveDeclaredAndUsedCapacity(String geoKey, String unifiedDeliveryDriver, String tenderId, LocalDate deliveryWeek) {
         return paperDeliveryUsedCapacityDAO.get(unifiedDeliveryDriver, geoKey, deliveryWeek)
                 .switchIfEmpty(Mono.defer(() -> {
                     log.info("No used capacities found for unifiedDeliveryDriver={}, geoKey={}, deliveryWeek={}, retrieving declared capacity", unifiedDeliveryDriver, geoKey, deliveryWeek);
-                    return paperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek)
+                    return declaredCapacityIndexService.getDeclaredCapacity(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek)
                             .map(capacity -> Tuples.of(capacity, 0));
                 }));
     }
 
+    /**
+     * Resolves the declared and used capacities of all the given geoKeys of a driver: the used capacities are read
+     * with batchGetItem in chunks of capacityResolution.batchSize keys, while the declared capacity of the geoKeys
+     * without a used capacity item is retrieved in parallel through the DeclaredCapacityCacheService.
+     * The geoKeys without a declared capacity are not present in the returned map.
+     */
+    public Mono<Map<String, Tuple2<Integer, Integer>>> retrieveDeclaredAndUsedCapacities(Collection<String> geoKeys, String unifiedDeliveryDriver, String tenderId, LocalDate deliveryWeek) {
+        PnDelayerConfigs.CapacityResolution capacityResolution = Optional.ofNullable(pnDelayerConfigs.getCapacityResolution()).orElseGet(PnDelayerConfigs.CapacityResolution::new);
+        return Flux.fromIterable(geoKeys)
+                .map(geoKey -> PaperDeliveryDriverUsedCapacities.buildPk(unifiedDeliveryDriver, geoKey))
+                .buffer(Math.min(capacityResolution.getBatchSize(), 100))
+                .flatMap(pks -> paperDeliveryUsedCapacityDAO.batchGetItem(pks, deliveryWeek), capacityResolution.getConcurrency())
+                .collectMap(PaperDeliveryDriverUsedCapacities::getGeoKey, usedCapacity -> Tuples.of(usedCapacity.getDeclaredCapacity(), usedCapacity.getUsedCapacity()))
+                .flatMap(usedCapacities -> Flux.fromIterable(geoKeys)
+                        .filter(geoKey -> !usedCapacities.containsKey(geoKey))
+                        .doOnNext(geoKey -> log.info("No used capacities found for unifiedDeliveryDriver={}, geoKey={}, deliveryWeek={}, retrieving declared capacity", unifiedDeliveryDriver, geoKey, deliveryWeek))
+                        .flatMap(geoKey -> retrieveDeclaredCapacity(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek)
+                                .map(declaredCapacity -> Tuples.of(geoKey, Tuples.of(declaredCapacity, 0))), capacityResolution.getConcurrency())
+                        .collectMap(Tuple2::getT1, Tuple2::getT2, () -> new HashMap<>(usedCapacities)));
+    }
+
+    private Mono<Integer> retrieveDeclaredCapacity(String tenderId, String unifiedDeliveryDriver, String geoKey, LocalDate deliveryWeek) {
+        return Mono.justOrEmpty(declaredCapacityCacheService.getFromCache(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek))
+                .switchIfEmpty(Mono.defer(() -> declaredCapacityIndexService.getDeclaredCapacity(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek)
+                        .doOnNext(declaredCapacity -> declaredCapacityCacheService.addToCache(tenderId, unifiedDeliveryDriver, geoKey, deliveryWeek, declaredCapacity))));
+    }
+
     public Mono<Void> updateCounters(List<IncrementUsedCapacityDto> incrementCapacities) {
         if (incrementCapacities == null || incrementCapacities.isEmpty()) {
             return Mono.empty();
@@ -145,7 +276,7 @@ public class DeliveryDriverUtils {
     }
 
     public Mono<List<DriversTotalCapacity>> retrieveDriversCapacityOnProvince(LocalDate deliveryDate, String tenderId, String province) {
-        return paperDeliveryCounterDAO.getPaperDeliveryCounter(deliveryDate.toString(), PaperDeliveryCounter.buildSkPrefix(PaperDeliveryCounter.SkPrefix.EXCLUDE, province), null)
+        return paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(deliveryDate.toString(), PaperDeliveryCounter.SkPrefix.EXCLUDE, province, PaperDeliveryCounter.buildSkPrefix(PaperDeliveryCounter.SkPrefix.EXCLUDE, province), null)
                 .defaultIfEmpty(Collections.emptyList())
                 .map(this::createProductCounterMap)
                 .doOnNext(stringIntegerMap -> log.info("Retrieved counters for province {}: {}", province, stringIntegerMap))
@@ -219,4 +350,6 @@ public class DeliveryDriverUtils {
     }
 
     record GeoCapKey(String geoKey, Integer declaredCapacity) {}
+
+    private record PaperChannelPayload(List<DeliveryDriverRequest> requests, SdkBytes payload) {}
 }
@@ -0,0 +1,78 @@
+package it.pagopa.pn.delayer.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.DynamoDbConsumedCapacityAccumulator;
+import it.pagopa.pn.delayer.model.MeterSummary;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class MetricsUtils {
+
+    private final MeterRegistry meterRegistry;
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final ObjectMapper objectMapper;
+    private final DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+
+    /**
+     * Returns the current value of every meter of the registry, sorted by name and tags.
+     */
+    public List<MeterSummary> summary() {
+        return meterRegistry.getMeters().stream()
+                .map(MetricsUtils::toSummary)
+                .sorted(Comparator.comparing(MeterSummary::name).thenComparing(meterSummary -> meterSummary.tags().toString()))
+                .toList();
+    }
+
+    /**
+     * Logs the summary of the meters as a single JSON line and writes it to metrics.dumpFile if set, followed by the
+     * DynamoDB consumed capacity report; then closes the registry so that a push registry publishes its last step
+     * before the JVM exits.
+     */
+    public void dumpAndClose() {
+        PnDelayerConfigs.Metrics metrics = Optional.ofNullable(pnDelayerConfigs.getMetrics()).orElseGet(PnDelayerConfigs.Metrics::new);
+        try {
+            if (metrics.isDumpOnExit()) {
+                String json = objectMapper.writeValueAsString(summary());
+                log.info("Metrics summary: {}", json);
+                if (StringUtils.hasText(metrics.getDumpFile())) {
+                    Files.writeString(Path.of(metrics.getDumpFile()), json);
+                    log.info("Metrics summary written to {}", metrics.getDumpFile());
+                }
+                log.info("Consumed capacity report: {}", objectMapper.writeValueAsString(consumedCapacityAccumulator.report()));
+            }
+        } catch (IOException e) {
+            log.error("Error dumping metrics summary", e);
+        } finally {
+            meterRegistry.close();
+        }
+    }
+
+    private static MeterSummary toSummary(Meter meter) {
+        Map<String, String> tags = meter.getId().getTags().stream()
+                .collect(Collectors.toMap(Tag::getKey, Tag::getValue, (a, b) -> b, TreeMap::new));
+        Map<String, Double> measurements = StreamSupport.stream(meter.measure().spliterator(), false)
+                .collect(Collectors.toMap(measurement -> measurement.getStatistic().name(), Measurement::getValue, Double::sum, TreeMap::new));
+        return new MeterSummary(meter.getId().getName(), meter.getId().getType().name(), tags, measurements);
+    }
+}
@@ -1,5 +1,6 @@
 package it.pagopa.pn.delayer.utils;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDAO;
@@ -17,11 +18,17 @@ import software.amazon.awssdk.enhanced.dynamodb.model.Page;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 @Slf4j
@@ -33,6 +40,8 @@ public class PaperDeliveryUtils {
     private final PnDelayerUtils pnDelayerUtils;
     private final DeliveryDriverUtils deliveryDriverUtils;
     private final PaperDeliveryCounterDAO paperDeliveryCounterDAO;
+    private final MeterRegistry meterRegistry;
+    private final CpuStageScheduler cpuStageScheduler;
 
 
     /**
@@ -47,27 +56,98 @@ public class PaperDeliveryUtils {
      * @param tenderId              the tender identifier
      */
     public Mono<Void> evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, String tenderId) {
+        return evaluateCapacitiesAndProcessDeliveries(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, tenderId, Set.of());
+    }
+
+    /**
+     * Same as evaluateCapacitiesAndProcessDeliveries, but when priorities is not empty the deliveries are read with
+     * one concurrent query per priority bucket, see sendToNextStepByPriority. Only for the EVALUATE_DRIVER_CAPACITY
+     * step, whose sort key contains the priority.
+     *
+     * @param priorities the priorities of the SSM priority map
+     */
+    public Mono<Void> evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, String tenderId, Set<Integer> priorities) {
+        if (!isCheckpointEnabled()) {
+            return evaluateCapacitiesAndProcessDeliveries(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, tenderId, priorities, Optional.empty());
+        }
+        return paperDeliveryCounterDAO.retrieveJobCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(checkpoint -> resumeFromCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, tenderId, priorities, checkpoint));
+    }
+
+    /**
+     * Resumes the job from its last checkpoint: a COMPLETED job is skipped, unless checkpoint.rerunCompleted is set,
+     * a job in phase FLUSHING completes the flush of its counters, a job in phase NEXT_WEEK has already flushed its
+     * counters and only sends the remaining deliveries to the next week, otherwise the deliveries are read from the
+     * checkpoint lastEvaluatedKey with the counters accumulated before the interruption.
+     * At the end the job is marked COMPLETED.
+     */
+    private Mono<Void> resumeFromCheckpoint(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, String tenderId, Set<Integer> priorities, Optional<JobCheckpoint> checkpoint) {
+        JobCheckpoint.Phase phase = checkpoint.map(JobCheckpoint::phase).orElse(JobCheckpoint.Phase.NEXT_STEP);
+        if (phase == JobCheckpoint.Phase.COMPLETED) {
+            if (!pnDelayerConfigs.getCheckpoint().isRerunCompleted()) {
+                log.warn("Job already completed for province={} and unifiedDeliveryDriver={} on deliveryWeek={}, skipped: set checkpoint.rerunCompleted to run it again",
+                        province, unifiedDeliveryDriver, deliveryWeek);
+                return Mono.empty();
+            }
+            log.warn("Job already completed for province={} and unifiedDeliveryDriver={} on deliveryWeek={}, running it again from the first page as checkpoint.rerunCompleted is set",
+                    province, unifiedDeliveryDriver, deliveryWeek);
+            checkpoint = Optional.empty();
+            phase = JobCheckpoint.Phase.NEXT_STEP;
+        }
+        Mono<Void> job;
+        if (phase == JobCheckpoint.Phase.FLUSHING || phase == JobCheckpoint.Phase.NEXT_WEEK) {
+            JobCheckpoint jobCheckpoint = checkpoint.get();
+            Map<String, AttributeValue> lastEvaluatedKey = jobCheckpoint.lastEvaluatedKey();
+            Mono<Void> flush = phase == JobCheckpoint.Phase.FLUSHING
+                    ? resumeFlush(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, jobCheckpoint)
+                    : Mono.empty();
+            job = flush.then(Mono.defer(() -> CollectionUtils.isEmpty(lastEvaluatedKey)
+                    ? Mono.<Void>empty()
+                    : sendToNextWeek(workflowStepEnum, String.join("~", unifiedDeliveryDriver, province), new HashMap<>(lastEvaluatedKey), deliveryWeek)));
+        } else {
+            job = evaluateCapacitiesAndProcessDeliveries(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, tenderId, priorities, checkpoint);
+        }
+        return job.then(Mono.defer(() -> saveCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, JobCheckpoint.Phase.COMPLETED,
+                Map.of(), new AtomicInteger(0), new DriverCapacityJobProcessResult())));
+    }
+
+    private Mono<Void> evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, String tenderId, Set<Integer> priorities, Optional<JobCheckpoint> checkpoint) {
         return deliveryDriverUtils.retrieveDeclaredAndUsedCapacity(province, unifiedDeliveryDriver, tenderId, deliveryWeek)
                 .doOnNext(tuple -> log.info("Retrieved capacities for province: [{}], unifiedDeliveryDriver: [{}] -> declared capacity={}, used capacity={}", province, unifiedDeliveryDriver, tuple.getT1(), tuple.getT2()))
                 .flatMap(tuple -> {
                     String sortKeyPrefix = String.join("~", unifiedDeliveryDriver, province);
-                    int residualCapacity = tuple.getT1() - tuple.getT2();
+                    DriverCapacityJobProcessResult driverCapacityJobProcessResult = new DriverCapacityJobProcessResult();
+                    AtomicInteger printCounter = new AtomicInteger(0);
+                    Map<String, AttributeValue> lastEvaluatedKey = new HashMap<>();
+                    checkpoint.ifPresent(jobCheckpoint -> {
+                        log.info("Resuming province={} and unifiedDeliveryDriver={} after {} pages, sentToNextStep={}", province, unifiedDeliveryDriver, jobCheckpoint.processedPages(), jobCheckpoint.sentToNextStep());
+                        restoreProcessResult(jobCheckpoint, printCounter, driverCapacityJobProcessResult);
+                        lastEvaluatedKey.putAll(jobCheckpoint.lastEvaluatedKey());
+                    });
+                    int residualCapacity = tuple.getT1() - tuple.getT2() - driverCapacityJobProcessResult.getSentToNextStep();
                     if (residualCapacity <= 0) {
                         log.warn("No capacity for province={} and unifiedDeliveryDriver={}, no records will be processed", province, unifiedDeliveryDriver);
-                        return sendToNextWeek(workflowStepEnum, sortKeyPrefix, new HashMap<>(), deliveryWeek);
+                        return sendToNextWeek(workflowStepEnum, sortKeyPrefix, lastEvaluatedKey, deliveryWeek);
                     } else {
-                        AtomicInteger printCounter = new AtomicInteger(0);
-                        DriverCapacityJobProcessResult driverCapacityJobProcessResult = new DriverCapacityJobProcessResult();
                         var declaredCapacity = tuple.getT1();
                         var usedCapacityBase = tuple.getT2(); // nel batch EVALUATE_DRIVER_CAPACITY = 0, nel batch EVALUATE_RESIDUAL_CAPACITY = capacità utilizzata già nel batch EVALUATE_DRIVER_CAPACITY
+                        if (!priorities.isEmpty() && lastEvaluatedKey.isEmpty()) {
+                            return Mono.just(pnDelayerUtils.retrieveActualPrintCapacity(deliveryWeek))
+                                    .flatMap(dailyPrintCapacity -> sendToNextStepByPriority(workflowStepEnum, sortKeyPrefix, priorities, tenderId, deliveryWeek, declaredCapacity, dailyPrintCapacity * pnDelayerConfigs.getPrintCapacityWeeklyWorkingDays(), printCounter, driverCapacityJobProcessResult, usedCapacityBase));
+                        }
                         return Mono.just(pnDelayerUtils.retrieveActualPrintCapacity(deliveryWeek))
-                                .flatMap(dailyPrintCapacity -> sendToNextStep(workflowStepEnum, sortKeyPrefix, new HashMap<>(), tenderId, deliveryWeek, residualCapacity, declaredCapacity, dailyPrintCapacity * pnDelayerConfigs.getPrintCapacityWeeklyWorkingDays(), printCounter, driverCapacityJobProcessResult, usedCapacityBase));
+                                .flatMap(dailyPrintCapacity -> sendToNextStep(workflowStepEnum, sortKeyPrefix, lastEvaluatedKey, tenderId, deliveryWeek, residualCapacity, declaredCapacity, dailyPrintCapacity * pnDelayerConfigs.getPrintCapacityWeeklyWorkingDays(), printCounter, driverCapacityJobProcessResult, usedCapacityBase));
                     }
                 })
                 .then();
     }
 
     private Mono<Void> sendToNextWeek(WorkflowStepEnum workflowStepEnum, String sortKeyPrefix, Map<String, AttributeValue> lastEvaluatedKey, LocalDate deliveryWeek) {
+        if (isCarryOverEnabled()) {
+            return carryOverToNextWeek(workflowStepEnum, sortKeyPrefix, lastEvaluatedKey, deliveryWeek);
+        }
         return retrievePaperDeliveries(workflowStepEnum, deliveryWeek, sortKeyPrefix, lastEvaluatedKey, pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit())
                 .flatMap(paperDeliveryPage -> processChunkToSendToNextWeek(paperDeliveryPage.items(), deliveryWeek)
                         .flatMap(unused -> !CollectionUtils.isEmpty(paperDeliveryPage.lastEvaluatedKey()) ?
@@ -75,6 +155,23 @@ public class PaperDeliveryUtils {
     }
 
 
+    /**
+     * Lazy variant of sendToNextWeek used with carryOver.enabled: instead of reading the remaining deliveries and
+     * copying them into the EVALUATE_SENDER_LIMIT partition of the next week, saves a cursor on the range following
+     * lastEvaluatedKey, that the sender limit job of the next week reads with retrieveCarriedOverPaperDeliveryPages.
+     */
+    private Mono<Void> carryOverToNextWeek(WorkflowStepEnum workflowStepEnum, String sortKeyPrefix, Map<String, AttributeValue> lastEvaluatedKey, LocalDate deliveryWeek) {
+        String province = sortKeyPrefix.split("~")[1];
+        CarryOverCursor carryOverCursor = new CarryOverCursor(deliveryWeek.plusWeeks(1), province, workflowStepEnum, deliveryWeek, sortKeyPrefix,
+                Map.copyOf(Optional.ofNullable(lastEvaluatedKey).orElse(Map.of())));
+        log.info("Carrying over deliveries of {}~{} on deliveryWeek={} to the next week from lastEvaluatedKey={}", workflowStepEnum, sortKeyPrefix, deliveryWeek, lastEvaluatedKey);
+        return paperDeliveryCounterDAO.saveCarryOverCursor(carryOverCursor, pnDelayerConfigs.getCarryOver().getTtl());
+    }
+
+    private boolean isCarryOverEnabled() {
+        return Optional.ofNullable(pnDelayerConfigs.getCarryOver()).map(PnDelayerConfigs.CarryOver::isEnabled).orElse(false);
+    }
+
     /**
      * Processes a chunk of paper deliveries to send them to the next week because no driver capacity Found for them in current week.
      *
@@ -85,7 +182,7 @@ public class PaperDeliveryUtils {
     private Mono<Integer> processChunkToSendToNextWeek(List<PaperDelivery> chunk, LocalDate deliveryWeek) {
         log.info("Processing chunk of size {} to send to next week", chunk.size());
         if (!CollectionUtils.isEmpty(chunk)) {
-            return paperDeliveryDAO.insertPaperDeliveries(pnDelayerUtils.mapItemForEvaluateSenderLimitOnNextWeek(chunk, deliveryWeek))
+            return insertPaperDeliveries(pnDelayerUtils.mapItemForEvaluateSenderLimitOnNextWeek(chunk, deliveryWeek))
                     .thenReturn(chunk.size());
         }
         return Mono.just(0);
@@ -122,17 +219,20 @@ public class PaperDeliveryUtils {
         return retrievePaperDeliveries(workflowStepEnum, deliveryWeek, sortKeyPrefix, lastEvaluatedKey, Math.min(residualCapacity, pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit()))
                 .flatMap(paperDeliveryPage -> processChunkToSendToNextStep(paperDeliveryPage.items(), unifiedDeliveryDriver, tenderId, deliveryWeek, printCounter, driverCapacityJobProcessResult)
                         .flatMap(processResult -> {
+                            processResult.setProcessedPages(processResult.getProcessedPages() + 1);
                             log.info("driverCapacityJobProcessResult for province={} and unifiedDeliveryDriver={} after processing chunk: sentToNextStep={}, totalIncrements={}",
-                                    province, unifiedDeliveryDriver, processResult.getSentToNextStep(), processResult.getIncrementUsedCapacityDtos().size());
+                                    province, unifiedDeliveryDriver, processResult.getSentToNextStep(), processResult.getUsedCapacityLedger().size());
                             int residualCapacityAfterSending = declaredCapacity - (usedCapacityBase + processResult.getSentToNextStep());
                             if (!CollectionUtils.isEmpty(paperDeliveryPage.lastEvaluatedKey()) && residualCapacityAfterSending > 0) {
                                 log.info("Continuing to process chunk to send to next step for province={} and unifiedDeliveryDriver={}, residualCapacityAfterSending={}", province, unifiedDeliveryDriver, residualCapacityAfterSending);
-                                return sendToNextStep(workflowStepEnum, sortKeyPrefix, paperDeliveryPage.lastEvaluatedKey(), tenderId, deliveryWeek, residualCapacityAfterSending, declaredCapacity, weeklyPrintCapacity, printCounter, processResult, usedCapacityBase)
+                                return saveProgress(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, paperDeliveryPage.lastEvaluatedKey(), printCounter, processResult)
+                                        .then(sendToNextStep(workflowStepEnum, sortKeyPrefix, paperDeliveryPage.lastEvaluatedKey(), tenderId, deliveryWeek, residualCapacityAfterSending, declaredCapacity, weeklyPrintCapacity, printCounter, processResult, usedCapacityBase))
                                         .thenReturn(residualCapacityAfterSending);
                             } else {
                                 log.info("Finished processing chunk to send to next step for province={} and unifiedDeliveryDriver={}, residualCapacityAfterSending={}", province, unifiedDeliveryDriver, residualCapacityAfterSending);
-                                processResult.getIncrementUsedCapacityDtos().add(new IncrementUsedCapacityDto(unifiedDeliveryDriver, province, processResult.getSentToNextStep(), deliveryWeek, declaredCapacity));
-                                return flushCounters(deliveryWeek, weeklyPrintCapacity, printCounter, driverCapacityJobProcessResult.getIncrementUsedCapacityDtos())
+                                processResult.getUsedCapacityLedger().add(new IncrementUsedCapacityDto(unifiedDeliveryDriver, province, processResult.getSentToNextStep(), deliveryWeek, declaredCapacity));
+                                return flushCountersAndSaveCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, weeklyPrintCapacity,
+                                                paperDeliveryPage.lastEvaluatedKey(), printCounter, processResult, 0)
                                         .thenReturn(residualCapacityAfterSending);
                             }
                         })
@@ -142,19 +242,165 @@ public class PaperDeliveryUtils {
                         .thenReturn(paperDeliveryPage.items().size()));
     }
 
+    /**
+     * Variant of sendToNextStep for the EVALUATE_DRIVER_CAPACITY partition, whose sort key continues with the
+     * priority: one query chain per priority bucket is read concurrently and the pages are merged back in priority
+     * order, so the capacity is still granted by priority while the pages of the lower priorities are prefetched
+     * (up to paperDeliveryPrefetchDepth pages per bucket). Every page is cut to the residual capacity; once the
+     * capacity is over the reading is cancelled and the deliveries following the last processed one are sent to
+     * the next week. The checkpoints hold the key of the last processed delivery, so a retry resumes with sendToNextStep.
+     */
+    private Mono<Integer> sendToNextStepByPriority(WorkflowStepEnum workflowStepEnum,
+                                                   String sortKeyPrefix,
+                                                   Set<Integer> priorities,
+                                                   String tenderId,
+                                                   LocalDate deliveryWeek,
+                                                   Integer declaredCapacity,
+                                                   Integer weeklyPrintCapacity,
+                                                   AtomicInteger printCounter,
+                                                   DriverCapacityJobProcessResult driverCapacityJobProcessResult,
+                                                   Integer usedCapacityBase) {
+
+        String[] splittedSortKeyPrefix = sortKeyPrefix.split("~");
+        String unifiedDeliveryDriver = splittedSortKeyPrefix[0];
+        String province = splittedSortKeyPrefix[1];
+        List<SortKeyRange> sortKeyRanges = pnDelayerUtils.splitSortKeyRangeByPriority(sortKeyPrefix, priorities);
+        int prefetchDepth = Math.max(Optional.ofNullable(pnDelayerConfigs.getDao().getPaperDeliveryPrefetchDepth()).orElse(1), 1);
+        AtomicReference<Map<String, AttributeValue>> lastProcessedKey = new AtomicReference<>(Map.of());
+        log.info("Reading province={} and unifiedDeliveryDriver={} on {} priority buckets: {}", province, unifiedDeliveryDriver, sortKeyRanges.size(), sortKeyRanges);
+
+        return retrievePaperDeliveryPages(workflowStepEnum, deliveryWeek, sortKeyRanges, pnDelayerConfigs.getDao().getPaperDeliveryQueryLimit(), prefetchDepth)
+                .concatMap(paperDeliveryPage -> {
+                    int residualCapacity = declaredCapacity - (usedCapacityBase + driverCapacityJobProcessResult.getSentToNextStep());
+                    List<PaperDelivery> chunk = paperDeliveryPage.items().subList(0, Math.min(residualCapacity, paperDeliveryPage.items().size()));
+                    return processChunkToSendToNextStep(chunk, unifiedDeliveryDriver, tenderId, deliveryWeek, printCounter, driverCapacityJobProcessResult)
+                            .flatMap(processResult -> {
+                                processResult.setProcessedPages(processResult.getProcessedPages() + 1);
+                                lastProcessedKey.set(keyOf(chunk.getLast()));
+                                int residualCapacityAfterSending = declaredCapacity - (usedCapacityBase + processResult.getSentToNextStep());
+                                log.info("driverCapacityJobProcessResult for province={} and unifiedDeliveryDriver={} after processing chunk: sentToNextStep={}, residualCapacityAfterSending={}",
+                                        province, unifiedDeliveryDriver, processResult.getSentToNextStep(), residualCapacityAfterSending);
+                                return saveProgress(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, lastProcessedKey.get(), printCounter, processResult)
+                                        .thenReturn(residualCapacityAfterSending);
+                            });
+                }, prefetchDepth)
+                .takeUntil(residualCapacityAfterSending -> residualCapacityAfterSending <= 0)
+                .last(declaredCapacity - usedCapacityBase)
+                .flatMap(residualCapacityAfterSending -> {
+                    if (lastProcessedKey.get().isEmpty()) {
+                        return Mono.just(residualCapacityAfterSending);
+                    }
+                    Map<String, AttributeValue> nextWeekKey = residualCapacityAfterSending <= 0 ? lastProcessedKey.get() : Map.of();
+                    driverCapacityJobProcessResult.getUsedCapacityLedger().add(new IncrementUsedCapacityDto(unifiedDeliveryDriver, province, driverCapacityJobProcessResult.getSentToNextStep(), deliveryWeek, declaredCapacity));
+                    return flushCountersAndSaveCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, weeklyPrintCapacity,
+                                    nextWeekKey, printCounter, driverCapacityJobProcessResult, 0)
+                            .then(Mono.defer(() -> nextWeekKey.isEmpty() ? Mono.<Void>empty() : sendToNextWeek(workflowStepEnum, sortKeyPrefix, nextWeekKey, deliveryWeek)))
+                            .thenReturn(residualCapacityAfterSending);
+                });
+    }
+
+    private static Map<String, AttributeValue> keyOf(PaperDelivery paperDelivery) {
+        return Map.of(PaperDelivery.COL_PK, AttributeValue.builder().s(paperDelivery.getPk()).build(),
+                PaperDelivery.COL_SK, AttributeValue.builder().s(paperDelivery.getSk()).build());
+    }
+
+    /**
+     * Flushes the counters of the job and moves its checkpoint to NEXT_WEEK on nextWeekKey. With checkpoints enabled
+     * the counters are written in the same transaction as the checkpoint, MAX_CHECKPOINT_COUNTER_UPDATES used
+     * capacities at a time starting from chunk startChunk: the intermediate transactions leave the checkpoint in phase
+     * FLUSHING with the number of chunks applied, so a retry resumes the flush without counting a delivery twice.
+     */
+    private Mono<Void> flushCountersAndSaveCheckpoint(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek,
+                                                      Integer weeklyPrintCapacity, Map<String, AttributeValue> nextWeekKey, AtomicInteger printCounter,
+                                                      DriverCapacityJobProcessResult driverCapacityJobProcessResult, int startChunk) {
+        if (!isCheckpointEnabled()) {
+            return flushCounters(deliveryWeek, weeklyPrintCapacity, printCounter, driverCapacityJobProcessResult.getUsedCapacityLedger());
+        }
+        List<IncrementUsedCapacityDto> usedCapacities = driverCapacityJobProcessResult.getUsedCapacityLedger().aggregated().stream()
+                .sorted(Comparator.comparing(IncrementUsedCapacityDto::geoKey))
+                .toList();
+        int chunkSize = PaperDeliveryCounterDAO.MAX_CHECKPOINT_COUNTER_UPDATES;
+        int chunks = Math.max((usedCapacities.size() + chunkSize - 1) / chunkSize, 1);
+        return Flux.range(startChunk, Math.max(chunks - startChunk, 0))
+                .concatMap(chunk -> {
+                    JobCheckpoint.Phase phase = chunk == chunks - 1 ? JobCheckpoint.Phase.NEXT_WEEK : JobCheckpoint.Phase.FLUSHING;
+                    JobCheckpoint jobCheckpoint = buildCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, phase, nextWeekKey,
+                            printCounter, driverCapacityJobProcessResult, chunk + 1);
+                    return paperDeliveryCounterDAO.saveJobCheckpointWithCounters(jobCheckpoint, pnDelayerConfigs.getCheckpoint().getTtl(),
+                            chunk == 0 ? printCounter.get() : 0, weeklyPrintCapacity,
+                            usedCapacities.subList(chunk * chunkSize, Math.min((chunk + 1) * chunkSize, usedCapacities.size())));
+                })
+                .then();
+    }
+
+    /**
+     * Completes the flush interrupted in phase FLUSHING, with the counters saved in the checkpoint.
+     */
+    private Mono<Void> resumeFlush(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, JobCheckpoint jobCheckpoint) {
+        log.info("Resuming the flush of province={} and unifiedDeliveryDriver={} after {} chunks", province, unifiedDeliveryDriver, jobCheckpoint.flushedChunks());
+        DriverCapacityJobProcessResult driverCapacityJobProcessResult = new DriverCapacityJobProcessResult();
+        AtomicInteger printCounter = new AtomicInteger(0);
+        restoreProcessResult(jobCheckpoint, printCounter, driverCapacityJobProcessResult);
+        return Mono.fromSupplier(() -> pnDelayerUtils.retrieveActualPrintCapacity(deliveryWeek))
+                .flatMap(dailyPrintCapacity -> flushCountersAndSaveCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek,
+                        dailyPrintCapacity * pnDelayerConfigs.getPrintCapacityWeeklyWorkingDays(), jobCheckpoint.lastEvaluatedKey(), printCounter,
+                        driverCapacityJobProcessResult, jobCheckpoint.flushedChunks()));
+    }
+
+    private static void restoreProcessResult(JobCheckpoint jobCheckpoint, AtomicInteger printCounter, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
+        driverCapacityJobProcessResult.setSentToNextStep(jobCheckpoint.sentToNextStep());
+        driverCapacityJobProcessResult.setProcessedPages(jobCheckpoint.processedPages());
+        jobCheckpoint.usedCapacities().forEach(driverCapacityJobProcessResult.getUsedCapacityLedger()::add);
+        printCounter.set(jobCheckpoint.printCounter());
+    }
+
     private Mono<Void> flushCounters(LocalDate deliveryWeek,
                                      Integer weeklyPrintCapacity,
                                      AtomicInteger printCounter,
-                                     List<IncrementUsedCapacityDto> incrementUsedCapacities) {
-        if (printCounter.get() == 0 && (incrementUsedCapacities == null || incrementUsedCapacities.isEmpty())) {
+                                     UsedCapacityLedger usedCapacityLedger) {
+        if (printCounter.get() == 0 && usedCapacityLedger.isEmpty()) {
             return Mono.empty();
         }
 
         return paperDeliveryCounterDAO.updatePrintCapacityCounter(deliveryWeek, printCounter.get(), weeklyPrintCapacity)
-                .then(deliveryDriverUtils.updateCounters(incrementUsedCapacities));
+                .then(deliveryDriverUtils.updateCounters(usedCapacityLedger.aggregated()));
     }
 
 
+    /**
+     * Saves a NEXT_STEP checkpoint every checkpoint.everyPages processed pages.
+     */
+    private Mono<Void> saveProgress(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek,
+                                    Map<String, AttributeValue> lastEvaluatedKey, AtomicInteger printCounter, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
+        int everyPages = Math.max(Optional.ofNullable(pnDelayerConfigs.getCheckpoint()).map(PnDelayerConfigs.Checkpoint::getEveryPages).orElse(1), 1);
+        if (driverCapacityJobProcessResult.getProcessedPages() % everyPages != 0) {
+            return Mono.empty();
+        }
+        return saveCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, JobCheckpoint.Phase.NEXT_STEP, lastEvaluatedKey, printCounter, driverCapacityJobProcessResult);
+    }
+
+    private Mono<Void> saveCheckpoint(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, JobCheckpoint.Phase phase,
+                                      Map<String, AttributeValue> lastEvaluatedKey, AtomicInteger printCounter, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
+        if (!isCheckpointEnabled()) {
+            return Mono.empty();
+        }
+        JobCheckpoint jobCheckpoint = buildCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, phase, lastEvaluatedKey,
+                printCounter, driverCapacityJobProcessResult, 0);
+        return paperDeliveryCounterDAO.saveJobCheckpoint(jobCheckpoint, pnDelayerConfigs.getCheckpoint().getTtl());
+    }
+
+    private static JobCheckpoint buildCheckpoint(WorkflowStepEnum workflowStepEnum, String unifiedDeliveryDriver, String province, LocalDate deliveryWeek, JobCheckpoint.Phase phase,
+                                                 Map<String, AttributeValue> lastEvaluatedKey, AtomicInteger printCounter, DriverCapacityJobProcessResult driverCapacityJobProcessResult,
+                                                 int flushedChunks) {
+        return new JobCheckpoint(workflowStepEnum, unifiedDeliveryDriver, province, deliveryWeek, phase, lastEvaluatedKey,
+                driverCapacityJobProcessResult.getProcessedPages(), driverCapacityJobProcessResult.getSentToNextStep(), printCounter.get(),
+                driverCapacityJobProcessResult.getUsedCapacityLedger().aggregated(), flushedChunks);
+    }
+
+    private boolean isCheckpointEnabled() {
+        return Optional.ofNullable(pnDelayerConfigs.getCheckpoint()).map(PnDelayerConfigs.Checkpoint::isEnabled).orElse(false);
+    }
+
     private Mono<DriverCapacityJobProcessResult> processChunkToSendToNextStep(List<PaperDelivery> chunk, String unifiedDeliveryDriver, String tenderId, LocalDate deliveryWeek, AtomicInteger printCounter, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
 
         return evaluateCapCapacity(chunk, unifiedDeliveryDriver, tenderId, deliveryWeek, driverCapacityJobProcessResult)
@@ -172,9 +418,9 @@ public class PaperDeliveryUtils {
 
                     // aggiorno il result cumulativo
                     driverCapacityJobProcessResult.setSentToNextStep(driverCapacityJobProcessResult.getSentToNextStep() + deliveriesToSend.size());
-                    driverCapacityJobProcessResult.getIncrementUsedCapacityDtos().addAll(mergedIncrements);
+                    mergedIncrements.forEach(driverCapacityJobProcessResult.getUsedCapacityLedger()::add);
 
-                    return paperDeliveryDAO.insertPaperDeliveries(deliveriesToSend)
+                    return insertPaperDeliveries(deliveriesToSend)
                             .thenReturn(driverCapacityJobProcessResult)
                             .doOnNext(driverCapacityJobProcessRes -> printCounter.addAndGet(deliveriesToSend.size()));
                 });
@@ -187,21 +433,113 @@ public class PaperDeliveryUtils {
                         log.warn("No records found for province = [{}] and deliveryWeek = [{}]", sortKeyPrefix, deliveryWeek);
                         return Mono.empty();
                     }
+                    recordPage(workflowStepEnum, paperDeliveryPage);
                     return Mono.just(paperDeliveryPage);
                 });
     }
 
+    /**
+     * Reads the given disjoint sort key ranges concurrently, each one following its own lastEvaluatedKey chain,
+     * and merges the pages back in range order: all the pages of the first range, then all the pages of the second
+     * one and so on. If the ranges are sorted, the pages are emitted in the same sort key order of a single query.
+     * At most prefetch pages per range are buffered while waiting for the previous ranges to be consumed.
+     */
+    public Flux<Page<PaperDelivery>> retrievePaperDeliveryPages(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, List<SortKeyRange> sortKeyRanges, Integer queryLimit, int prefetch) {
+        return Flux.fromIterable(sortKeyRanges)
+                .flatMapSequential(sortKeyRange -> retrievePaperDeliveryPagesInRange(workflowStepEnum, deliveryWeek, sortKeyRange, queryLimit), Math.max(sortKeyRanges.size(), 1), prefetch);
+    }
+
+    private Flux<Page<PaperDelivery>> retrievePaperDeliveryPagesInRange(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, SortKeyRange sortKeyRange, Integer queryLimit) {
+        return paperDeliveryDAO.retrievePaperDeliveriesInRange(workflowStepEnum, deliveryWeek, sortKeyRange, new HashMap<>(), queryLimit)
+                .expand(paperDeliveryPage -> CollectionUtils.isEmpty(paperDeliveryPage.lastEvaluatedKey())
+                        ? Mono.empty()
+                        : paperDeliveryDAO.retrievePaperDeliveriesInRange(workflowStepEnum, deliveryWeek, sortKeyRange, paperDeliveryPage.lastEvaluatedKey(), queryLimit))
+                .filter(paperDeliveryPage -> !CollectionUtils.isEmpty(paperDeliveryPage.items()))
+                .doOnNext(paperDeliveryPage -> recordPage(workflowStepEnum, paperDeliveryPage));
+    }
+
+    private void recordPage(WorkflowStepEnum workflowStepEnum, Page<PaperDelivery> paperDeliveryPage) {
+        meterRegistry.counter("pn.delayer.job.pages", "step", workflowStepEnum.name()).increment();
+        meterRegistry.summary("pn.delayer.job.page.size", "step", workflowStepEnum.name()).record(paperDeliveryPage.items().size());
+    }
+
+    /**
+     * Reads all the pages of the given step and sort key prefix, following the lastEvaluatedKey.
+     * The next page is queried as soon as the previous one is emitted, so with a downstream prefetch the query
+     * of page N+1 overlaps with the processing of page N; the number of pages held in memory is bounded by
+     * the downstream demand.
+     */
+    public Flux<Page<PaperDelivery>> retrievePaperDeliveryPages(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, Integer queryLimit) {
+        return retrievePaperDeliveryPages(workflowStepEnum, deliveryWeek, sortKeyPrefix, Map.of(), queryLimit);
+    }
+
+    /**
+     * Reads the deliveries carried over to the EVALUATE_SENDER_LIMIT step of deliveryWeek for the province:
+     * one cursor after the other, the pages of the source partition of the cursor that follow its startKey.
+     */
+    public Flux<Page<PaperDelivery>> retrieveCarriedOverPaperDeliveryPages(LocalDate deliveryWeek, String province, Integer queryLimit) {
+        return paperDeliveryCounterDAO.retrieveCarryOverCursors(deliveryWeek, province)
+                .doOnNext(carryOverCursor -> log.info("Reading deliveries carried over from {}~{} of deliveryWeek={} from startKey={}", carryOverCursor.sourceWorkflowStep(),
+                        carryOverCursor.sortKeyPrefix(), carryOverCursor.sourceDeliveryWeek(), carryOverCursor.startKey()))
+                .concatMap(carryOverCursor -> retrievePaperDeliveryPages(carryOverCursor.sourceWorkflowStep(), carryOverCursor.sourceDeliveryWeek(),
+                        carryOverCursor.sortKeyPrefix(), carryOverCursor.startKey(), queryLimit));
+    }
+
+    private Flux<Page<PaperDelivery>> retrievePaperDeliveryPages(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, Map<String, AttributeValue> startKey, Integer queryLimit) {
+        return retrievePaperDeliveries(workflowStepEnum, deliveryWeek, sortKeyPrefix, new HashMap<>(startKey), queryLimit)
+                .expand(paperDeliveryPage -> CollectionUtils.isEmpty(paperDeliveryPage.lastEvaluatedKey())
+                        ? Mono.empty()
+                        : retrievePaperDeliveries(workflowStepEnum, deliveryWeek, sortKeyPrefix, paperDeliveryPage.lastEvaluatedKey(), queryLimit));
+    }
+
+    /**
+     * Reads the whole partition of the given step and sort key prefix projecting only cap and productType,
+     * and returns the distinct CAP~productType keys, in the same format of PnDelayerUtils.groupByCapAndProductType.
+     */
+    public Mono<Set<String>> retrieveDistinctCapProductTypeKeys(WorkflowStepEnum workflowStepEnum, LocalDate deliveryWeek, String sortKeyPrefix, Integer queryLimit) {
+        List<String> attributesToProject = List.of(PaperDelivery.COL_CAP, PaperDelivery.COL_PRODUCT_TYPE);
+        return paperDeliveryDAO.retrievePaperDeliveriesProjection(workflowStepEnum, deliveryWeek, sortKeyPrefix, attributesToProject, new HashMap<>(), queryLimit)
+                .expand(paperDeliveryPage -> CollectionUtils.isEmpty(paperDeliveryPage.lastEvaluatedKey())
+                        ? Mono.empty()
+                        : paperDeliveryDAO.retrievePaperDeliveriesProjection(workflowStepEnum, deliveryWeek, sortKeyPrefix, attributesToProject, paperDeliveryPage.lastEvaluatedKey(), queryLimit))
+                .flatMapIterable(Page::items)
+                .map(paperDelivery -> paperDelivery.getCap() + "~" + paperDelivery.getProductType())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Groups the page by CAP and evaluates the CAP groups, up to scheduling.capGroupConcurrency together, writing
+     * the deliveries exceeding the capacity of each group to the next week, up to scheduling.writeChunkConcurrency
+     * groups together. The grouping and the capacity filters run on the CpuStageScheduler.
+     */
     private Flux<DriverCapacityJobProcessObject> evaluateCapCapacity(List<PaperDelivery> paperDeliveries, String unifiedDeliveryDriver, String tenderId, LocalDate deliveryWeek, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
-        Map<String, List<PaperDelivery>> capMap = pnDelayerUtils.groupByCap(paperDeliveries);
-        return Flux.fromIterable(capMap.entrySet())
-                .flatMap(entry -> processCapGroup(entry.getKey(), entry.getValue(), unifiedDeliveryDriver, tenderId, deliveryWeek, driverCapacityJobProcessResult)
-                        .doOnNext(driverCapacityJobProcessObject -> log.info("Processed CAP group [{}~{}]: toNextStep={}, toNextWeek={}, increments={}",
-                                unifiedDeliveryDriver, entry.getKey(),
-                                driverCapacityJobProcessObject.getToNextStep().size(),
-                                driverCapacityJobProcessObject.getToNextWeek().size(),
-                                driverCapacityJobProcessObject.getIncrementUsedCapacityDtosForCap().size())))
+        return cpuStageScheduler.offload(Mono.just(paperDeliveries))
+                .map(pnDelayerUtils::groupByCap)
+                .flatMapMany(capMap -> retrieveCapCapacities(capMap.keySet(), unifiedDeliveryDriver, tenderId, deliveryWeek)
+                        .flatMapMany(capCapacities -> Flux.fromIterable(capMap.entrySet())
+                                .flatMap(entry -> processCapGroup(entry.getKey(), entry.getValue(), capCapacities.apply(entry.getKey()), unifiedDeliveryDriver, deliveryWeek, driverCapacityJobProcessResult)
+                                        .doOnNext(driverCapacityJobProcessObject -> log.info("Processed CAP group [{}~{}]: toNextStep={}, toNextWeek={}, increments={}",
+                                                unifiedDeliveryDriver, entry.getKey(),
+                                                driverCapacityJobProcessObject.getToNextStep().size(),
+                                                driverCapacityJobProcessObject.getToNextWeek().size(),
+                                                driverCapacityJobProcessObject.getIncrementUsedCapacityDtosForCap().size())), cpuStageScheduler.capGroupConcurrency())))
                 .flatMap(driverCapacityJobProcessObject -> processChunkToSendToNextWeek(driverCapacityJobProcessObject.getToNextWeek(), deliveryWeek)
-                        .thenReturn(driverCapacityJobProcessObject));
+                        .thenReturn(driverCapacityJobProcessObject), cpuStageScheduler.writeChunkConcurrency());
+    }
+
+    /**
+     * Returns the function giving the declared and used capacities of a CAP of the page.
+     * With capacityResolution.batch enabled the capacities of all the CAPs are resolved at once, otherwise
+     * every CAP group retrieves its own capacities.
+     */
+    private Mono<Function<String, Mono<Tuple2<Integer, Integer>>>> retrieveCapCapacities(Set<String> caps, String unifiedDeliveryDriver, String tenderId, LocalDate deliveryWeek) {
+        boolean batch = Optional.ofNullable(pnDelayerConfigs.getCapacityResolution()).map(PnDelayerConfigs.CapacityResolution::isBatch).orElse(false);
+        if (!batch) {
+            return Mono.just(cap -> deliveryDriverUtils.retrieveDeclaredAndUsedCapacity(cap, unifiedDeliveryDriver, tenderId, deliveryWeek));
+        }
+        return deliveryDriverUtils.retrieveDeclaredAndUsedCapacities(caps, unifiedDeliveryDriver, tenderId, deliveryWeek)
+                .doOnNext(capacities -> log.info("Resolved capacities of {} CAPs out of {} for unifiedDeliveryDriver={}", capacities.size(), caps.size(), unifiedDeliveryDriver))
+                .map(capacities -> cap -> Mono.justOrEmpty(capacities.get(cap)));
     }
 
     /**
@@ -211,21 +549,17 @@ public class PaperDeliveryUtils {
      *
      * @param cap                       the CAP (postal code) for which the deliveries are processed
      * @param deliveries                the list of paper deliveries for the given CAP
+     * @param declaredAndUsedCapacity   the declared and used capacities of the CAP
      * @param unifiedDeliveryDriver     the unified delivery driver identifier
-     * @param tenderId                  the tender identifier
      * @param deliveryWeek              the week for which the deliveries are processed
      * @return a Mono containing the number of processed deliveries
      */
-    private Mono<DriverCapacityJobProcessObject> processCapGroup(String cap, List<PaperDelivery> deliveries, String unifiedDeliveryDriver, String tenderId, LocalDate deliveryWeek, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
+    private Mono<DriverCapacityJobProcessObject> processCapGroup(String cap, List<PaperDelivery> deliveries, Mono<Tuple2<Integer, Integer>> declaredAndUsedCapacity, String unifiedDeliveryDriver, LocalDate deliveryWeek, DriverCapacityJobProcessResult driverCapacityJobProcessResult) {
 
         DriverCapacityJobProcessObject obj = new DriverCapacityJobProcessObject();
-        int incrementsSoFar = driverCapacityJobProcessResult.getIncrementUsedCapacityDtos().stream()
-                .filter(dto -> dto.unifiedDeliveryDriver().equalsIgnoreCase(unifiedDeliveryDriver)
-                        && dto.geoKey().equalsIgnoreCase(cap) && deliveryWeek.equals(dto.deliveryWeek()))
-                .mapToInt(dto -> dto.numberOfDeliveries() == null ? 0 : dto.numberOfDeliveries())
-                .sum();
+        int incrementsSoFar = driverCapacityJobProcessResult.getUsedCapacityLedger().incrementsOf(unifiedDeliveryDriver, cap, deliveryWeek);
 
-        return deliveryDriverUtils.retrieveDeclaredAndUsedCapacity(cap, unifiedDeliveryDriver, tenderId, deliveryWeek)
+        return cpuStageScheduler.offload(declaredAndUsedCapacity)
                 // used effettiva = usedDB + incrementi già processati in questa run
                 .map(db -> Tuples.of(db.getT1(), db.getT2() + incrementsSoFar))
                 .doOnNext(t -> log.info("Capacities [{}~{}] -> declared={}, used(base+inc)={} (inc={})", unifiedDeliveryDriver, cap, t.getT1(), t.getT2(), incrementsSoFar))
@@ -240,10 +574,20 @@ public class PaperDeliveryUtils {
     }
 
     public Mono<List<PaperDelivery>> insertPaperDeliveries(SenderLimitJobProcessObjects senderLimitJobProcessObjects, LocalDate deliveryWeek) {
-        return paperDeliveryDAO.insertPaperDeliveries(pnDelayerUtils.mapItemForEvaluateDriverCapacityStep(senderLimitJobProcessObjects.getSendToDriverCapacityStep(), deliveryWeek))
+        return insertPaperDeliveries(pnDelayerUtils.mapItemForEvaluateDriverCapacityStep(senderLimitJobProcessObjects.getSendToDriverCapacityStep(), deliveryWeek))
                 .thenReturn(senderLimitJobProcessObjects)
-                .flatMap(unused -> paperDeliveryDAO.insertPaperDeliveries(pnDelayerUtils.mapItemForResidualCapacityStep(senderLimitJobProcessObjects.getSendToResidualCapacityStep(), deliveryWeek))
+                .flatMap(unused -> insertPaperDeliveries(pnDelayerUtils.mapItemForResidualCapacityStep(senderLimitJobProcessObjects.getSendToResidualCapacityStep(), deliveryWeek))
                         .thenReturn(senderLimitJobProcessObjects.getSendToDriverCapacityStep())
                         .doOnNext(paperDeliveries -> paperDeliveries.removeIf(paperDelivery -> paperDelivery.getProductType().equalsIgnoreCase("RS") || paperDelivery.getAttempt() == 1)));
     }
+
+    /**
+     * Inserts the given deliveries counting them by target step (pn.delayer.job.deliveries.routed).
+     */
+    private Mono<Void> insertPaperDeliveries(List<PaperDelivery> paperDeliveries) {
+        return paperDeliveryDAO.insertPaperDeliveries(paperDeliveries)
+                .doOnSuccess(unused -> Optional.ofNullable(paperDeliveries).orElseGet(List::of).stream()
+                        .collect(Collectors.groupingBy(paperDelivery -> Optional.ofNullable(paperDelivery.getWorkflowStep()).orElse("UNKNOWN"), Collectors.counting()))
+                        .forEach((workflowStep, count) -> meterRegistry.counter("pn.delayer.job.deliveries.routed", "target", workflowStep).increment(count)));
+    }
 }
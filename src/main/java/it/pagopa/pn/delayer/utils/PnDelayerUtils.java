@@ -4,6 +4,7 @@ import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.model.PaperChannelDeliveryDriver;
 import it.pagopa.pn.delayer.model.SenderLimitJobProcessObjects;
+import it.pagopa.pn.delayer.model.SortKeyRange;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
@@ -15,6 +16,7 @@ import java.time.DayOfWeek;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.function.Predicate;
@@ -24,6 +26,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class PnDelayerUtils {
 
+    private static final String SORT_KEY_UPPER_BOUND = "\uffff";
+
     private final PnDelayerConfigs pnDelayerConfig;
     private final PrintCapacityUtils printCapacityUtils;
 
@@ -161,6 +165,59 @@ public class PnDelayerUtils {
         return partitioned.get(false);
     }
 
+    /**
+     * Splits the sort keys starting with sortKeyPrefix into disjoint ranges by date bucket.
+     * The interval [from, to) is divided into at most segments buckets of whole days; the first range is open
+     * towards the past and the last one towards the future, so that the ranges together cover every sort key
+     * with the given prefix. The ranges are returned in sort key order.
+     *
+     * @param sortKeyPrefix prefix preceding the date in the sort key, e.g. "RM~"
+     * @param from          first day of the interval
+     * @param to            day after the last day of the interval
+     * @param segments      number of ranges to produce
+     * @return the list of ranges ordered by sort key
+     */
+    public List<SortKeyRange> splitSortKeyRangeByDate(String sortKeyPrefix, LocalDate from, LocalDate to, int segments) {
+        long days = Math.max(ChronoUnit.DAYS.between(from, to), 1);
+        long bucketDays = Math.max((days + segments - 1) / segments, 1);
+        List<SortKeyRange> ranges = new ArrayList<>();
+        String lowerBound = sortKeyPrefix;
+        for (LocalDate boundary = from.plusDays(bucketDays); boundary.isBefore(to) && ranges.size() < segments - 1; boundary = boundary.plusDays(bucketDays)) {
+            String upperBound = sortKeyPrefix + boundary;
+            ranges.add(new SortKeyRange(lowerBound, upperBound));
+            lowerBound = upperBound;
+        }
+        ranges.add(new SortKeyRange(lowerBound, sortKeyPrefix + SORT_KEY_UPPER_BOUND));
+        return ranges;
+    }
+
+    /**
+     * Splits the sort keys starting with sortKeyPrefix~ in one contiguous range per priority, for the partitions whose
+     * sort key continues with the priority (EVALUATE_DRIVER_CAPACITY). The boundaries are the bucket prefixes
+     * sortKeyPrefix~priority~ in sort key order, the same order of a single query; the first range starts at
+     * sortKeyPrefix~ and the last one ends at the upper bound, so the deliveries with a priority not listed are
+     * read as well.
+     *
+     * @param sortKeyPrefix prefix preceding the priority in the sort key, e.g. "driver~RM"
+     * @param priorities    priorities of the SSM priority map
+     * @return the list of ranges ordered by sort key
+     */
+    public List<SortKeyRange> splitSortKeyRangeByPriority(String sortKeyPrefix, Collection<Integer> priorities) {
+        String lowerBound = sortKeyPrefix + "~";
+        List<String> bucketPrefixes = priorities.stream()
+                .map(priority -> String.join("~", sortKeyPrefix, String.valueOf(priority), ""))
+                .distinct()
+                .sorted()
+                .toList();
+        List<SortKeyRange> ranges = new ArrayList<>();
+        for (String bucketPrefix : bucketPrefixes.subList(Math.min(1, bucketPrefixes.size()), bucketPrefixes.size())) {
+            ranges.add(new SortKeyRange(lowerBound, bucketPrefix));
+            lowerBound = bucketPrefix;
+        }
+        ranges.add(new SortKeyRange(lowerBound, sortKeyPrefix + "~" + SORT_KEY_UPPER_BOUND));
+        return ranges;
+    }
+
     public Integer retrieveActualPrintCapacity(LocalDate deliveryWeek) {
         return printCapacityUtils.getActualPrintCapacity(deliveryWeek);
 
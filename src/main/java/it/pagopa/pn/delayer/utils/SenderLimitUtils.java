@@ -1,6 +1,7 @@
 package it.pagopa.pn.delayer.utils;
 
-import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
+import it.pagopa.pn.delayer.cache.PaperDeliveryCounterSnapshotService;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliverySenderLimitDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
@@ -26,13 +27,17 @@ import java.util.*;
 @RequiredArgsConstructor
 public class SenderLimitUtils {
 
+    private static final int DEFAULT_BATCH_GET_MAX_CONCURRENCY = 8;
+
     private final PaperDeliverySenderLimitDAO paperDeliverySenderLimitDAO;
     private final PnDelayerUtils pnDelayerUtils;
-    private final PaperDeliveryCounterDAO paperDeliveryCounterDAO;
+    private final PaperDeliveryCounterSnapshotService paperDeliveryCounterSnapshotService;
+    private final PnDelayerConfigs pnDelayerConfigs;
+    private final CpuStageScheduler cpuStageScheduler;
 
     public Mono<SenderLimitJobProcessObjects> retrieveAndEvaluateSenderLimit(LocalDate deliveryWeek, Map<String, List<PaperDelivery>> deliveriesGroupedByProductTypePaId, List<DriversTotalCapacity> driversTotalCapacity, SenderLimitJobProcessObjects senderLimitJobProcessObjects) {
         LocalDate shipmentDate = deliveryWeek.minusWeeks(1);
-        return retrieveAndCalculateSenderLimit(shipmentDate, driversTotalCapacity, deliveriesGroupedByProductTypePaId.keySet(), senderLimitJobProcessObjects)
+        return cpuStageScheduler.offload(retrieveAndCalculateSenderLimit(shipmentDate, driversTotalCapacity, deliveriesGroupedByProductTypePaId.keySet(), senderLimitJobProcessObjects))
                 .doOnNext(unused -> pnDelayerUtils.evaluateSenderLimitAndFilterDeliveries(senderLimitJobProcessObjects.getSenderLimitMap(), deliveriesGroupedByProductTypePaId, senderLimitJobProcessObjects))
                 .thenReturn(senderLimitJobProcessObjects);
     }
@@ -43,7 +48,7 @@ public class SenderLimitUtils {
                 .flatMap(product -> {
                     String sk = PaperDeliveryCounter.buildSkPrefix(PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, product.getValue(), province);
                     String shipmentDate = deliveryWeek.minusWeeks(1).toString();
-                    return paperDeliveryCounterDAO.getPaperDeliveryCounter(shipmentDate, sk, 1)
+                    return paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(shipmentDate, PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, province, sk, 1)
                             .flatMapMany(Flux::fromIterable)
                             .map(counter -> Tuples.of(product, counter));
                 })
@@ -58,6 +63,7 @@ public class SenderLimitUtils {
      * Retrieves the sender limits for the specified delivery date only for the paIdProductType entries
      * that are not already present in the provided senderLimitMap.
      * For each retrieved entry, calculates the limit based on the corresponding drivers' total capacity.
+     * The entries are read in chunks of 25 keys, fetched concurrently up to dao.batchGetMaxConcurrency.
      * The computed limits are then stored in the senderLimitMap.
      * @param shipmentDate The date for which the sender limits are to be retrieved
      * @param driversTotalCapacity List containing calculated capacities for each products or list of products and related unifiedDeliveryDrivers
@@ -69,7 +75,7 @@ public class SenderLimitUtils {
         paIdProductTypeTuplesCopy.removeIf(paIdProductTypeTuple -> senderLimitJobProcessObjects.getSenderLimitMap().containsKey(paIdProductTypeTuple));
         return Flux.fromIterable(paIdProductTypeTuplesCopy).buffer(25)
                 .flatMap(senderLimitPkSubList -> paperDeliverySenderLimitDAO.retrieveSendersLimit(senderLimitPkSubList, shipmentDate)
-                        .map(paperDeliverySenderLimit -> Tuples.of(paperDeliverySenderLimit.getPk(), calculateLimit(driversTotalCapacity, senderLimitJobProcessObjects, paperDeliverySenderLimit))))
+                        .map(paperDeliverySenderLimit -> Tuples.of(paperDeliverySenderLimit.getPk(), calculateLimit(driversTotalCapacity, senderLimitJobProcessObjects, paperDeliverySenderLimit))), batchGetMaxConcurrency())
                 .collectList()
                 .doOnNext(pkLimitTuples -> pkLimitTuples.forEach(tuple -> senderLimitJobProcessObjects
                         .getSenderLimitMap()
@@ -77,6 +83,12 @@ public class SenderLimitUtils {
                 .thenReturn(senderLimitJobProcessObjects.getSenderLimitMap());
     }
 
+    private int batchGetMaxConcurrency() {
+        return Optional.ofNullable(pnDelayerConfigs.getDao())
+                .map(PnDelayerConfigs.Dao::getBatchGetMaxConcurrency)
+                .orElse(DEFAULT_BATCH_GET_MAX_CONCURRENCY);
+    }
+
     private static Integer calculateLimit(List<DriversTotalCapacity> driversTotalCapacity,
                                           SenderLimitJobProcessObjects senderLimitJobProcessObjects,
                                           PaperDeliverySenderLimit paperDeliverySenderLimit) {
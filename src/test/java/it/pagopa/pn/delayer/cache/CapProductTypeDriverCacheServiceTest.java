@@ -1,8 +1,9 @@
 package it.pagopa.pn.delayer.cache;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Optional;
@@ -13,9 +14,15 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 @ExtendWith(MockitoExtension.class)
 class CapProductTypeDriverCacheServiceTest {
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
     private CapProductTypeDriverCacheService capProductTypeDriverCacheService;
 
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        capProductTypeDriverCacheService = new CapProductTypeDriverCacheService(meterRegistry);
+    }
+
     @Test
     void addToCache_storesValueCorrectly() {
         String key = "ProductA~Cap1";
@@ -48,4 +55,16 @@ class CapProductTypeDriverCacheServiceTest {
         assertTrue(result.isPresent());
         assertEquals("Driver2", result.get());
     }
+
+    @Test
+    void getFromCache_countsHitsAndMisses() {
+        capProductTypeDriverCacheService.addToCache("ProductC~Cap3", "Driver3");
+
+        capProductTypeDriverCacheService.getFromCache("ProductC~Cap3");
+        capProductTypeDriverCacheService.getFromCache("ProductC~Cap3");
+        capProductTypeDriverCacheService.getFromCache("NonExistentKey");
+
+        assertEquals(2, meterRegistry.counter("pn.delayer.cache.driver", "result", "hit").count());
+        assertEquals(1, meterRegistry.counter("pn.delayer.cache.driver", "result", "miss").count());
+    }
 }
@@ -0,0 +1,100 @@
+package it.pagopa.pn.delayer.cache;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverCapacitiesDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeclaredCapacityIndexServiceTest {
+
+    private static final String TENDER_ID = "tender1";
+    private static final String DRIVER = "driver1";
+
+    @Mock
+    private PaperDeliveryDriverCapacitiesDAO paperDeliveryDriverCapacitiesDAO;
+
+    private PnDelayerConfigs pnDelayerConfigs;
+
+    private DeclaredCapacityIndexService declaredCapacityIndexService;
+
+    @BeforeEach
+    void setUp() {
+        pnDelayerConfigs = new PnDelayerConfigs();
+        pnDelayerConfigs.getDeclaredCapacityIndex().setEnabled(true);
+        declaredCapacityIndexService = new DeclaredCapacityIndexService(paperDeliveryDriverCapacitiesDAO, pnDelayerConfigs);
+    }
+
+    @Test
+    void getDeclaredCapacity_selectsLatestActiveIntervalAndScansOnce() {
+        when(paperDeliveryDriverCapacitiesDAO.scanPaperDeliveryDriverCapacities(TENDER_ID, DRIVER, 4)).thenReturn(Flux.just(
+                capacity("00100", "2025-01-01T00:00:00Z", null, 30),
+                capacity("00100", "2025-03-01T00:00:00Z", "2025-03-31T00:00:00Z", 10),
+                capacity("00100", "2025-02-01T00:00:00Z", "2025-02-15T00:00:00Z", 60),
+                capacity("RM", "2025-01-01T00:00:00Z", null, 1000)));
+
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "00100", LocalDate.parse("2025-03-10")))
+                .expectNext(10)
+                .verifyComplete();
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "00100", LocalDate.parse("2025-02-20")))
+                .expectNext(30)
+                .verifyComplete();
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "00100", LocalDate.parse("2025-02-15")))
+                .expectNext(60)
+                .verifyComplete();
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "RM", LocalDate.parse("2025-03-10")))
+                .expectNext(1000)
+                .verifyComplete();
+
+        verify(paperDeliveryDriverCapacitiesDAO, times(1)).scanPaperDeliveryDriverCapacities(any(), any(), any());
+        verify(paperDeliveryDriverCapacitiesDAO, never()).getPaperDeliveryDriverCapacities(any(), any(), any(), any());
+    }
+
+    @Test
+    void getDeclaredCapacity_returnsZeroWithoutActiveInterval() {
+        when(paperDeliveryDriverCapacitiesDAO.scanPaperDeliveryDriverCapacities(TENDER_ID, DRIVER, 4)).thenReturn(Flux.just(
+                capacity("00100", "2025-02-01T00:00:00Z", "2025-02-15T00:00:00Z", 60)));
+
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "00100", LocalDate.parse("2025-01-10")))
+                .expectNext(0)
+                .verifyComplete();
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "00200", LocalDate.parse("2025-02-10")))
+                .expectNext(0)
+                .verifyComplete();
+    }
+
+    @Test
+    void getDeclaredCapacity_queriesTheTableWhenDisabled() {
+        pnDelayerConfigs.getDeclaredCapacityIndex().setEnabled(false);
+        LocalDate deliveryDate = LocalDate.parse("2025-03-10");
+        when(paperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities(TENDER_ID, DRIVER, "00100", deliveryDate)).thenReturn(Mono.just(15));
+
+        StepVerifier.create(declaredCapacityIndexService.getDeclaredCapacity(TENDER_ID, DRIVER, "00100", deliveryDate))
+                .expectNext(15)
+                .verifyComplete();
+
+        verify(paperDeliveryDriverCapacitiesDAO, never()).scanPaperDeliveryDriverCapacities(any(), any(), any());
+    }
+
+    private static PaperDeliveryDriverCapacity capacity(String geoKey, String from, String to, int capacity) {
+        PaperDeliveryDriverCapacity driverCapacity = new PaperDeliveryDriverCapacity();
+        driverCapacity.setPk(PaperDeliveryDriverCapacity.buildKey(TENDER_ID, DRIVER, geoKey));
+        driverCapacity.setActivationDateFrom(Instant.parse(from));
+        driverCapacity.setActivationDateTo(to == null ? null : Instant.parse(to));
+        driverCapacity.setCapacity(capacity);
+        return driverCapacity;
+    }
+}
@@ -0,0 +1,136 @@
+package it.pagopa.pn.delayer.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.DriverCacheSnapshotDAO;
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DriverCacheSnapshotServiceTest {
+
+    @Mock
+    private DriverCacheSnapshotDAO driverCacheSnapshotDAO;
+
+    private CapProductTypeDriverCacheService cacheService;
+    private PnDelayerConfigs pnDelayerConfigs;
+    private DriverCacheSnapshotService driverCacheSnapshotService;
+
+    @BeforeEach
+    void setUp() {
+        cacheService = new CapProductTypeDriverCacheService(new SimpleMeterRegistry());
+        pnDelayerConfigs = new PnDelayerConfigs();
+        pnDelayerConfigs.getDriverCacheSnapshot().setEnabled(true);
+        driverCacheSnapshotService = new DriverCacheSnapshotService(cacheService, driverCacheSnapshotDAO, pnDelayerConfigs);
+    }
+
+    @Test
+    void warmUpLoadsValidSnapshot() {
+        when(driverCacheSnapshotDAO.retrieveSnapshot("tender1"))
+                .thenReturn(Mono.just(new CapProductTypeDriverSnapshot("tender1", 1L, Instant.now().plus(1, ChronoUnit.DAYS), Map.of("00100~AR", "driver1"))));
+
+        StepVerifier.create(driverCacheSnapshotService.warmUp("tender1")).verifyComplete();
+
+        assertEquals("driver1", cacheService.getFromCache("00100~AR").orElseThrow());
+        assertFalse(cacheService.isModified());
+    }
+
+    @Test
+    void warmUpIgnoresExpiredSnapshot() {
+        when(driverCacheSnapshotDAO.retrieveSnapshot("tender1"))
+                .thenReturn(Mono.just(new CapProductTypeDriverSnapshot("tender1", 1L, Instant.now().minus(1, ChronoUnit.DAYS), Map.of("00100~AR", "driver1"))));
+
+        StepVerifier.create(driverCacheSnapshotService.warmUp("tender1")).verifyComplete();
+
+        assertTrue(cacheService.getFromCache("00100~AR").isEmpty());
+    }
+
+    @Test
+    void warmUpErrorDoesNotFailTheJob() {
+        when(driverCacheSnapshotDAO.retrieveSnapshot("tender1")).thenReturn(Mono.error(new RuntimeException("boom")));
+
+        StepVerifier.create(driverCacheSnapshotService.warmUp("tender1")).verifyComplete();
+    }
+
+    @Test
+    void flushSavesCacheWhenModified() {
+        cacheService.loadIntoCache(Map.of("00100~AR", "driver1"));
+        cacheService.addToCache("00200~RS", "driver2");
+        when(driverCacheSnapshotDAO.retrieveSnapshot("tender1")).thenReturn(Mono.empty());
+        when(driverCacheSnapshotDAO.saveSnapshot(any(), isNull())).thenReturn(Mono.just(true));
+
+        StepVerifier.create(driverCacheSnapshotService.flush("tender1")).verifyComplete();
+
+        ArgumentCaptor<CapProductTypeDriverSnapshot> captor = ArgumentCaptor.forClass(CapProductTypeDriverSnapshot.class);
+        verify(driverCacheSnapshotDAO).saveSnapshot(captor.capture(), isNull());
+        assertEquals("tender1", captor.getValue().tenderId());
+        assertEquals(Map.of("00100~AR", "driver1", "00200~RS", "driver2"), captor.getValue().entries());
+        assertTrue(captor.getValue().expiresAt().isAfter(Instant.now()));
+    }
+
+    @Test
+    void flushMergesWithTheCurrentSnapshotAndRetriesOnConflict() {
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.DAYS);
+        long futureVersion = Instant.now().plus(1, ChronoUnit.HOURS).toEpochMilli();
+        cacheService.addToCache("00200~RS", "driver2");
+        when(driverCacheSnapshotDAO.retrieveSnapshot("tender1"))
+                .thenReturn(Mono.just(new CapProductTypeDriverSnapshot("tender1", 1L, expiresAt, Map.of("00100~AR", "driver1"))))
+                .thenReturn(Mono.just(new CapProductTypeDriverSnapshot("tender1", futureVersion, expiresAt, Map.of("00100~AR", "driver1", "00300~890", "driver3"))));
+        when(driverCacheSnapshotDAO.saveSnapshot(any(), eq(1L))).thenReturn(Mono.just(false));
+        when(driverCacheSnapshotDAO.saveSnapshot(any(), eq(futureVersion))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(driverCacheSnapshotService.flush("tender1")).verifyComplete();
+
+        ArgumentCaptor<CapProductTypeDriverSnapshot> captor = ArgumentCaptor.forClass(CapProductTypeDriverSnapshot.class);
+        verify(driverCacheSnapshotDAO).saveSnapshot(captor.capture(), eq(futureVersion));
+        assertEquals(futureVersion + 1, captor.getValue().version());
+        assertEquals(Map.of("00100~AR", "driver1", "00200~RS", "driver2", "00300~890", "driver3"), captor.getValue().entries());
+    }
+
+    @Test
+    void flushGivesUpAfterMaxAttempts() {
+        cacheService.addToCache("00200~RS", "driver2");
+        when(driverCacheSnapshotDAO.retrieveSnapshot("tender1")).thenReturn(Mono.empty());
+        when(driverCacheSnapshotDAO.saveSnapshot(any(), isNull())).thenReturn(Mono.just(false));
+
+        StepVerifier.create(driverCacheSnapshotService.flush("tender1")).verifyComplete();
+
+        verify(driverCacheSnapshotDAO, times(3)).saveSnapshot(any(), isNull());
+    }
+
+    @Test
+    void flushSkipsUnmodifiedCache() {
+        cacheService.loadIntoCache(Map.of("00100~AR", "driver1"));
+
+        StepVerifier.create(driverCacheSnapshotService.flush("tender1")).verifyComplete();
+
+        verifyNoInteractions(driverCacheSnapshotDAO);
+    }
+
+    @Test
+    void disabledSnapshotIsNeverRead() {
+        pnDelayerConfigs.getDriverCacheSnapshot().setEnabled(false);
+        cacheService.addToCache("00200~RS", "driver2");
+
+        StepVerifier.create(driverCacheSnapshotService.warmUp("tender1").then(driverCacheSnapshotService.flush("tender1"))).verifyComplete();
+
+        verifyNoInteractions(driverCacheSnapshotDAO);
+    }
+}
@@ -0,0 +1,103 @@
+package it.pagopa.pn.delayer.cache;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaperDeliveryCounterSnapshotServiceTest {
+
+    private static final String SHIPMENT_DATE = "2025-01-06";
+
+    @Mock
+    private PaperDeliveryCounterDAO paperDeliveryCounterDAO;
+
+    private PnDelayerConfigs pnDelayerConfigs;
+
+    private PaperDeliveryCounterSnapshotService paperDeliveryCounterSnapshotService;
+
+    @BeforeEach
+    void setUp() {
+        pnDelayerConfigs = new PnDelayerConfigs();
+        pnDelayerConfigs.getCounterSnapshot().setEnabled(true);
+        paperDeliveryCounterSnapshotService = new PaperDeliveryCounterSnapshotService(paperDeliveryCounterDAO, pnDelayerConfigs);
+    }
+
+    @Test
+    void getPaperDeliveryCounter_readsTheSumEstimatesOfTheDateOnce() {
+        when(paperDeliveryCounterDAO.retrievePaperDeliveryCounters(SHIPMENT_DATE, "SUM_ESTIMATES~")).thenReturn(Flux.just(
+                counter("SUM_ESTIMATES~AR~RM~2", 20),
+                counter("SUM_ESTIMATES~AR~RM~1", 10),
+                counter("SUM_ESTIMATES~AR~MI~1", 7),
+                counter("SUM_ESTIMATES~RS~RM~1", 5)));
+
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, "RM", "SUM_ESTIMATES~AR~RM~", 1))
+                .expectNextMatches(counters -> counters.size() == 1 && counters.getFirst().getNumberOfShipments() == 20)
+                .verifyComplete();
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, "RM", "SUM_ESTIMATES~AR~RM~", null))
+                .expectNextMatches(counters -> counters.stream().map(PaperDeliveryCounter::getNumberOfShipments).toList().equals(List.of(10, 20)))
+                .verifyComplete();
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, "RM", "SUM_ESTIMATES~RS~RM~", 1))
+                .expectNextMatches(counters -> counters.getFirst().getNumberOfShipments() == 5)
+                .verifyComplete();
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, "MI", "SUM_ESTIMATES~AR~MI~", 1))
+                .expectNextMatches(counters -> counters.getFirst().getNumberOfShipments() == 7)
+                .verifyComplete();
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.SUM_ESTIMATES, "RM", "SUM_ESTIMATES~890~RM~", 1))
+                .expectNext(List.of())
+                .verifyComplete();
+
+        verify(paperDeliveryCounterDAO, times(1)).retrievePaperDeliveryCounters(any(), any());
+        verify(paperDeliveryCounterDAO, never()).getPaperDeliveryCounter(any(), any(), any());
+    }
+
+    @Test
+    void getPaperDeliveryCounter_readsTheExcludeCountersOfTheProvince() {
+        when(paperDeliveryCounterDAO.retrievePaperDeliveryCounters(SHIPMENT_DATE, "EXCLUDE~RM~")).thenReturn(Flux.just(
+                counter("EXCLUDE~RM~AR", 3)));
+
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.EXCLUDE, "RM", "EXCLUDE~RM~", null))
+                .expectNextMatches(counters -> counters.size() == 1 && counters.getFirst().getNumberOfShipments() == 3)
+                .verifyComplete();
+
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.EXCLUDE, "RM", "EXCLUDE~RM~", null))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(paperDeliveryCounterDAO, times(1)).retrievePaperDeliveryCounters(any(), any());
+    }
+
+    @Test
+    void getPaperDeliveryCounter_queriesTheTableWhenDisabled() {
+        pnDelayerConfigs.getCounterSnapshot().setEnabled(false);
+        List<PaperDeliveryCounter> counters = List.of(counter("EXCLUDE~RM~AR", 3));
+        when(paperDeliveryCounterDAO.getPaperDeliveryCounter(SHIPMENT_DATE, "EXCLUDE~RM~", null)).thenReturn(Mono.just(counters));
+
+        StepVerifier.create(paperDeliveryCounterSnapshotService.getPaperDeliveryCounter(SHIPMENT_DATE, PaperDeliveryCounter.SkPrefix.EXCLUDE, "RM", "EXCLUDE~RM~", null))
+                .expectNext(counters)
+                .verifyComplete();
+
+        verify(paperDeliveryCounterDAO, never()).retrievePaperDeliveryCounters(any(), any());
+    }
+
+    private static PaperDeliveryCounter counter(String sk, int numberOfShipments) {
+        PaperDeliveryCounter paperDeliveryCounter = new PaperDeliveryCounter();
+        paperDeliveryCounter.setPk(SHIPMENT_DATE);
+        paperDeliveryCounter.setSk(sk);
+        paperDeliveryCounter.setNumberOfShipments(numberOfShipments);
+        return paperDeliveryCounter;
+    }
+}
@@ -0,0 +1,64 @@
+package it.pagopa.pn.delayer.middleware.dao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.middleware.dao.memory.PaperDeliveryDriverCapacitiesMemoryDAOImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DaoMetricsAspectTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PaperDeliveryDriverCapacitiesDAO paperDeliveryDriverCapacitiesDAO;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        PaperDeliveryDriverCapacitiesMemoryDAOImpl target = new PaperDeliveryDriverCapacitiesMemoryDAOImpl();
+        PaperDeliveryDriverCapacity capacity = new PaperDeliveryDriverCapacity();
+        capacity.setPk(PaperDeliveryDriverCapacity.buildKey("tender", "driver", "RM"));
+        capacity.setActivationDateFrom(Instant.parse("2025-01-01T00:00:00Z"));
+        capacity.setTenderId("tender");
+        capacity.setUnifiedDeliveryDriver("driver");
+        capacity.setGeoKey("RM");
+        capacity.setCapacity(10);
+        target.putPaperDeliveryDriverCapacity(capacity);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new DaoMetricsAspect(meterRegistry));
+        paperDeliveryDriverCapacitiesDAO = proxyFactory.getProxy();
+    }
+
+    @Test
+    void monoCallIsTimedByDaoAndOperation() {
+        StepVerifier.create(paperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities("tender", "driver", "RM", LocalDate.parse("2025-02-03")))
+                .expectNext(10)
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.timer("pn.delayer.dao.calls", "dao", "PaperDeliveryDriverCapacitiesDAO",
+                "operation", "getPaperDeliveryDriverCapacities", "outcome", "SUCCESS").count());
+    }
+
+    @Test
+    void fluxCallIsTimedOnlyOnSubscriptionAndCountsItems() {
+        var capacities = paperDeliveryDriverCapacitiesDAO.scanPaperDeliveryDriverCapacities("tender", "driver", 1);
+        assertNull(meterRegistry.find("pn.delayer.dao.calls").timer());
+
+        StepVerifier.create(capacities)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.timer("pn.delayer.dao.calls", "dao", "PaperDeliveryDriverCapacitiesDAO",
+                "operation", "scanPaperDeliveryDriverCapacities", "outcome", "SUCCESS").count());
+        assertEquals(1, meterRegistry.counter("pn.delayer.dao.items", "dao", "PaperDeliveryDriverCapacitiesDAO",
+                "operation", "scanPaperDeliveryDriverCapacities").count());
+    }
+}
@@ -0,0 +1,40 @@
+package it.pagopa.pn.delayer.middleware.dao;
+
+import it.pagopa.pn.delayer.BaseTest;
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+class DriverCacheSnapshotDaoIT extends BaseTest.WithLocalStack {
+
+    @Autowired
+    DriverCacheSnapshotDAO driverCacheSnapshotDAO;
+
+    @Test
+    void saveAndRetrieveChunkedSnapshot() {
+        Map<String, String> entries = new HashMap<>();
+        IntStream.range(0, 4500).forEach(i -> entries.put(String.format("%05d~AR", i), "driver" + (i % 3)));
+        Instant expiresAt = Instant.now().plus(7, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+
+        Assertions.assertEquals(Boolean.TRUE, driverCacheSnapshotDAO.saveSnapshot(new CapProductTypeDriverSnapshot("tenderIT", 2L, expiresAt, entries), null).block());
+        Assertions.assertEquals(Boolean.FALSE, driverCacheSnapshotDAO.saveSnapshot(new CapProductTypeDriverSnapshot("tenderIT", 3L, expiresAt, Map.of("00000~AR", "old")), 1L).block());
+
+        CapProductTypeDriverSnapshot snapshot = driverCacheSnapshotDAO.retrieveSnapshot("tenderIT").block();
+        Assertions.assertNotNull(snapshot);
+        Assertions.assertEquals(2L, snapshot.version());
+        Assertions.assertEquals(expiresAt, snapshot.expiresAt());
+        Assertions.assertEquals(entries, snapshot.entries());
+    }
+
+    @Test
+    void retrieveMissingSnapshot() {
+        Assertions.assertNull(driverCacheSnapshotDAO.retrieveSnapshot("missingTender").block());
+    }
+}
@@ -0,0 +1,66 @@
+package it.pagopa.pn.delayer.middleware.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.file.DriverCacheSnapshotFileDAOImpl;
+import it.pagopa.pn.delayer.model.CapProductTypeDriverSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+class DriverCacheSnapshotFileDaoTest {
+
+    @TempDir
+    Path directory;
+
+    private DriverCacheSnapshotFileDAOImpl driverCacheSnapshotDAO;
+
+    @BeforeEach
+    void setUp() {
+        PnDelayerConfigs pnDelayerConfigs = new PnDelayerConfigs();
+        pnDelayerConfigs.getDriverCacheSnapshot().setDirectory(directory.toString());
+        driverCacheSnapshotDAO = new DriverCacheSnapshotFileDAOImpl(pnDelayerConfigs, new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Test
+    void retrieveSnapshotWithoutFile() {
+        StepVerifier.create(driverCacheSnapshotDAO.retrieveSnapshot("tender1")).verifyComplete();
+    }
+
+    @Test
+    void saveAndRetrieveSnapshot() {
+        CapProductTypeDriverSnapshot snapshot = new CapProductTypeDriverSnapshot("tender1", 2L, Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS), Map.of("00100~AR", "driver1"));
+
+        StepVerifier.create(driverCacheSnapshotDAO.saveSnapshot(snapshot, null))
+                .expectNext(true)
+                .verifyComplete();
+
+        StepVerifier.create(driverCacheSnapshotDAO.retrieveSnapshot("tender1"))
+                .expectNext(snapshot)
+                .verifyComplete();
+    }
+
+    @Test
+    void snapshotReplacedMeanwhileIsNotOverwritten() {
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.DAYS).truncatedTo(ChronoUnit.MILLIS);
+        CapProductTypeDriverSnapshot first = new CapProductTypeDriverSnapshot("tender1", 1L, expiresAt, Map.of("00100~AR", "driver1"));
+        CapProductTypeDriverSnapshot second = new CapProductTypeDriverSnapshot("tender1", 2L, expiresAt, Map.of("00100~AR", "driver1", "00200~RS", "driver2"));
+        CapProductTypeDriverSnapshot stale = new CapProductTypeDriverSnapshot("tender1", 3L, expiresAt, Map.of("00100~AR", "driver3"));
+
+        StepVerifier.create(driverCacheSnapshotDAO.saveSnapshot(first, null)
+                        .then(driverCacheSnapshotDAO.saveSnapshot(second, 1L))
+                        .then(driverCacheSnapshotDAO.saveSnapshot(stale, 1L)))
+                .expectNext(false)
+                .verifyComplete();
+
+        StepVerifier.create(driverCacheSnapshotDAO.retrieveSnapshot("tender1"))
+                .expectNext(second)
+                .verifyComplete();
+    }
+}
@@ -3,6 +3,10 @@ package it.pagopa.pn.delayer.middleware.dao;
 import it.pagopa.pn.delayer.BaseTest;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
+import it.pagopa.pn.delayer.model.CarryOverCursor;
+import it.pagopa.pn.delayer.model.JobCheckpoint;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +14,7 @@ import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.HashMap;
@@ -70,6 +75,25 @@ public class PaperDeliveryCounterDaoIT extends BaseTest.WithLocalStack {
 
     }
 
+    @Test
+    void retrievePaperDeliveryCounters() {
+        for (String sk : List.of("SUM_ESTIMATES~AR~RM~", "SUM_ESTIMATES~RS~NA~", "EXCLUDE~RM~AR")) {
+            Map<String, AttributeValue> itemMap = new HashMap<>();
+            itemMap.put("pk", AttributeValue.builder().s("2025-04-14").build());
+            itemMap.put("sk", AttributeValue.builder().s(sk).build());
+            itemMap.put("numberOfShipments", AttributeValue.builder().n("7").build());
+            dynamoDbAsyncClient.putItem(PutItemRequest.builder()
+                            .item(itemMap)
+                            .tableName(pnDelayerConfigs.getDao().getPaperDeliveryCounterTableName())
+                            .build())
+                    .join();
+        }
+
+        List<PaperDeliveryCounter> result = paperDeliveryCounterDAO.retrievePaperDeliveryCounters("2025-04-14", "SUM_ESTIMATES~").collectList().block();
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(List.of("SUM_ESTIMATES~AR~RM~", "SUM_ESTIMATES~RS~NA~"), result.stream().map(PaperDeliveryCounter::getSk).toList());
+    }
+
     @Test
     void updatePrintCapacityCounterTest() {
         pnDelayerConfigs.setDelayerToPaperChannelFirstSchedulerCron("0 5-21 ? * MON-SUN *");
@@ -105,4 +129,51 @@ public class PaperDeliveryCounterDaoIT extends BaseTest.WithLocalStack {
         Assertions.assertEquals(21, result.getFirst().getDailyExecutions());
         Assertions.assertEquals(0, result.getFirst().getDailyExecutionCounter());
     }
+
+    @Test
+    void updateShardedPrintCapacityCounterTest() {
+        pnDelayerConfigs.setDelayerToPaperChannelFirstSchedulerCron("0 5-21 ? * MON-SUN *");
+        pnDelayerConfigs.setDelayerToPaperChannelSecondSchedulerCron("0 1-21 ? * MON-SUN *");
+        pnDelayerConfigs.setDelayerToPaperChannelFirstSchedulerStartDate(Instant.parse("2024-06-01T00:00:00Z"));
+        pnDelayerConfigs.setDelayerToPaperChannelSecondSchedulerStartDate(Instant.parse("2024-07-01T00:00:00Z"));
+        pnDelayerConfigs.getPrintCounter().setShards(4);
+        LocalDate deliveryDate = LocalDate.parse("2025-04-21");
+
+        try {
+            paperDeliveryCounterDAO.updatePrintCapacityCounter(deliveryDate, 3000, 35000).block();
+            paperDeliveryCounterDAO.updatePrintCapacityCounter(deliveryDate, 2000, 5000).block();
+            paperDeliveryCounterDAO.updatePrintCapacityCounter(deliveryDate, 1000, 5000).block();
+        } finally {
+            pnDelayerConfigs.getPrintCounter().setShards(1);
+        }
+
+        List<PaperDeliveryCounter> base = paperDeliveryCounterDAO.getPaperDeliveryCounter("PRINT", deliveryDate.toString(), null).block();
+        Assertions.assertNotNull(base);
+        Assertions.assertTrue(base.stream().anyMatch(counter -> counter.getSk().startsWith(deliveryDate + "~")));
+
+        PaperDeliveryCounter result = paperDeliveryCounterDAO.retrievePrintCapacityCounter(deliveryDate).block();
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(deliveryDate.toString(), result.getSk());
+        Assertions.assertEquals(6000, result.getNumberOfShipments());
+        Assertions.assertEquals(35000, result.getWeeklyPrintCapacity());
+        Assertions.assertEquals(5000, result.getDailyPrintCapacity());
+        Assertions.assertEquals(21, result.getDailyExecutions());
+    }
+
+    @Test
+    void saveAndRetrieveCarryOverCursorsTest() {
+        LocalDate deliveryWeek = LocalDate.parse("2025-04-28");
+        Map<String, AttributeValue> startKey = Map.of(
+                "pk", AttributeValue.builder().s("2025-04-21~EVALUATE_DRIVER_CAPACITY").build(),
+                "sk", AttributeValue.builder().s("driver1~RM~3~2025-04-14T10:00:00Z~iun1").build());
+        CarryOverCursor driverCapacityCursor = new CarryOverCursor(deliveryWeek, "RM", WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, LocalDate.parse("2025-04-21"), "driver1~RM", startKey);
+        CarryOverCursor residualCapacityCursor = new CarryOverCursor(deliveryWeek, "RM", WorkflowStepEnum.EVALUATE_RESIDUAL_CAPACITY, LocalDate.parse("2025-04-21"), "driver1~RM", Map.of());
+
+        paperDeliveryCounterDAO.saveCarryOverCursor(residualCapacityCursor, Duration.ofDays(1)).block();
+        paperDeliveryCounterDAO.saveCarryOverCursor(driverCapacityCursor, Duration.ofDays(1)).block();
+        List<CarryOverCursor> result = paperDeliveryCounterDAO.retrieveCarryOverCursors(deliveryWeek, "RM").collectList().block();
+
+        Assertions.assertEquals(List.of(driverCapacityCursor, residualCapacityCursor), result);
+        Assertions.assertEquals(List.of(), paperDeliveryCounterDAO.retrieveCarryOverCursors(deliveryWeek, "MI").collectList().block());
+    }
 }
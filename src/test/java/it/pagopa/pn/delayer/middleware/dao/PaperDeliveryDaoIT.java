@@ -3,6 +3,7 @@ package it.pagopa.pn.delayer.middleware.dao;
 import it.pagopa.pn.delayer.BaseTest;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.model.SortKeyRange;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
@@ -94,5 +95,13 @@ class PaperDeliveryDaoIT extends BaseTest.WithLocalStack {
                 && paperDelivery.getSk().startsWith("NA~")));
         Assertions.assertNull(resultForOtherProvince.lastEvaluatedKey());
 
+        Page<PaperDelivery> resultInRange = paperDeliveryDAO.retrievePaperDeliveriesInRange(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, LocalDate.parse("2025-04-07"),
+                new SortKeyRange("RM~2025-04-09T00:02", "RM~2025-04-09T00:05"), null, 10).block();
+        log.info("resultInRange: {}", resultInRange);
+        Assertions.assertNotNull(resultInRange);
+        Assertions.assertEquals(3, resultInRange.items().size());
+        Assertions.assertEquals("RM~2025-04-09T00:02:00Z~2", resultInRange.items().getFirst().getSk());
+        Assertions.assertNull(resultInRange.lastEvaluatedKey());
+
     }
 }
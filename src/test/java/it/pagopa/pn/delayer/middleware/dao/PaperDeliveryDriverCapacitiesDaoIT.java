@@ -69,6 +69,28 @@ class PaperDeliveryDriverCapacitiesDaoIT extends BaseTest.WithLocalStack {
         Assertions.assertEquals(10, result);
     }
 
+    @Test
+    void scanPaperDeliveryDriverCapacitiesReturnsOnlyRowsOfTheDriver() {
+        String tenderId = "tenderScan";
+        String tableName = pnDelayerConfigs.getDao().getPaperDeliveryDriverCapacitiesTableName();
+        for (String pk : List.of(String.join("~", tenderId, "driverScan", "00100"), String.join("~", tenderId, "driverScan", "00200"),
+                String.join("~", tenderId, "driverScan10", "00100"))) {
+            Map<String, AttributeValue> itemMap = new HashMap<>();
+            itemMap.put("pk", AttributeValue.builder().s(pk).build());
+            itemMap.put("activationDateFrom", AttributeValue.builder().s("2025-01-01T00:00:00Z").build());
+            itemMap.put("capacity", AttributeValue.builder().n("10").build());
+            dynamoDbAsyncClient.putItem(PutItemRequest.builder().item(itemMap).tableName(tableName).build()).join();
+        }
+
+        List<PaperDeliveryDriverCapacity> result = paperDeliveryDriverCapacitiesDao.scanPaperDeliveryDriverCapacities(tenderId, "driverScan", 2)
+                .collectList()
+                .block();
+
+        Assertions.assertNotNull(result);
+        Assertions.assertEquals(2, result.size());
+        Assertions.assertTrue(result.stream().allMatch(capacity -> capacity.getPk().startsWith(tenderId + "~driverScan~")));
+    }
+
     @Test
     void getPaperDeliveryDriverCapacitiesOpenIntervalSelected() {
         String tenderId = "tenderId";
@@ -0,0 +1,138 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.model.ConsumedCapacityScope;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoDbBatchGetterTest {
+
+    private static final String TABLE_NAME = "pn-PaperDeliverySenderLimit";
+
+    @Mock
+    private DynamoDbAsyncClient dynamoDbAsyncClient;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+
+    private DynamoDbBatchGetter dynamoDbBatchGetter;
+
+    @BeforeEach
+    void setUp() {
+        PnDelayerConfigs config = new PnDelayerConfigs();
+        PnDelayerConfigs.Dao dao = new PnDelayerConfigs.Dao();
+        dao.setBatchGetMaxAttempts(3);
+        dao.setBatchGetBaseDelay(Duration.ofMillis(1));
+        dao.setBatchGetMaxDelay(Duration.ofMillis(5));
+        config.setDao(dao);
+        meterRegistry = new SimpleMeterRegistry();
+        consumedCapacityAccumulator = new DynamoDbConsumedCapacityAccumulator(config);
+        dynamoDbBatchGetter = new DynamoDbBatchGetter(dynamoDbAsyncClient, new DynamoDbConcurrencyLimiter(config, meterRegistry), consumedCapacityAccumulator, config, meterRegistry);
+    }
+
+    @Test
+    void getItemsRetriesUnprocessedKeys() {
+        List<Map<String, AttributeValue>> keys = keys(5);
+        when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+                        .responses(Map.of(TABLE_NAME, keys.subList(0, 3)))
+                        .unprocessedKeys(Map.of(TABLE_NAME, KeysAndAttributes.builder().keys(keys.subList(3, 5)).build()))
+                        .consumedCapacity(ConsumedCapacity.builder().tableName(TABLE_NAME).capacityUnits(1.5).build())
+                        .build()))
+                .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+                        .responses(Map.of(TABLE_NAME, keys.subList(3, 5)))
+                        .consumedCapacity(ConsumedCapacity.builder().tableName(TABLE_NAME).capacityUnits(1.0).build())
+                        .build()));
+
+        StepVerifier.create(dynamoDbBatchGetter.getItems(TABLE_NAME, keys).collectList()
+                        .contextWrite(Context.of(ConsumedCapacityScope.CONTEXT_KEY, new ConsumedCapacityScope("EVALUATE_SENDER_LIMIT", "RM"))))
+                .expectNextMatches(items -> items.size() == 5 && items.containsAll(keys))
+                .verifyComplete();
+
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(dynamoDbAsyncClient, times(2)).batchGetItem(captor.capture());
+        Assertions.assertEquals(ReturnConsumedCapacity.TOTAL, captor.getAllValues().get(0).returnConsumedCapacity());
+        Assertions.assertEquals(keys.subList(3, 5), captor.getAllValues().get(1).requestItems().get(TABLE_NAME).keys());
+        Assertions.assertEquals(2.5, meterRegistry.counter("pn.delayer.dynamodb.batchget.consumed.capacity", "table", TABLE_NAME).count());
+        Assertions.assertEquals(1, meterRegistry.counter("pn.delayer.dynamodb.batchget.retries", "table", TABLE_NAME).count());
+        Assertions.assertEquals(2.5, consumedCapacityAccumulator.report().provinces().get("RM").readCapacityUnits());
+        Assertions.assertEquals(5, consumedCapacityAccumulator.report().tables().get(TABLE_NAME).itemsRead());
+    }
+
+    @Test
+    void getItemsSplitsInBatchesOf100() {
+        when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder().build()));
+
+        StepVerifier.create(dynamoDbBatchGetter.getItems(TABLE_NAME, keys(150)))
+                .verifyComplete();
+
+        ArgumentCaptor<BatchGetItemRequest> captor = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(dynamoDbAsyncClient, times(2)).batchGetItem(captor.capture());
+        Assertions.assertEquals(List.of(100, 50), captor.getAllValues().stream()
+                .map(request -> request.requestItems().get(TABLE_NAME).keys().size())
+                .toList());
+    }
+
+    @Test
+    void getItemsRetriesThrottledBatch() {
+        List<Map<String, AttributeValue>> keys = keys(2);
+        when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(ProvisionedThroughputExceededException.builder().message("throttled").build()))
+                .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+                        .responses(Map.of(TABLE_NAME, keys))
+                        .build()));
+
+        StepVerifier.create(dynamoDbBatchGetter.getItems(TABLE_NAME, keys))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, meterRegistry.counter("pn.delayer.dynamodb.batchget.throttled", "table", TABLE_NAME).count());
+    }
+
+    @Test
+    void getItemsFailsAfterMaxAttempts() {
+        List<Map<String, AttributeValue>> keys = keys(2);
+        when(dynamoDbAsyncClient.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchGetItemResponse.builder()
+                        .unprocessedKeys(Map.of(TABLE_NAME, KeysAndAttributes.builder().keys(keys).build()))
+                        .build()));
+
+        StepVerifier.create(dynamoDbBatchGetter.getItems(TABLE_NAME, keys))
+                .expectError(PnInternalException.class)
+                .verify();
+
+        verify(dynamoDbAsyncClient, times(3)).batchGetItem(any(BatchGetItemRequest.class));
+        Assertions.assertEquals(2, meterRegistry.counter("pn.delayer.dynamodb.batchget.failed.keys", "table", TABLE_NAME).count());
+    }
+
+    private static List<Map<String, AttributeValue>> keys(int size) {
+        return IntStream.range(0, size)
+                .mapToObj(i -> Map.of(
+                        "pk", AttributeValue.builder().s("paId~RS~RM" + i).build(),
+                        "deliveryDate", AttributeValue.builder().s("2025-01-06").build()))
+                .toList();
+    }
+}
@@ -0,0 +1,155 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DynamoDbBatchWriterTest {
+
+    private static final String TABLE_NAME = "pn-DelayerPaperDelivery";
+
+    @Mock
+    private DynamoDbAsyncClient dynamoDbAsyncClient;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DynamoDbBatchWriter dynamoDbBatchWriter;
+
+    @BeforeEach
+    void setUp() {
+        PnDelayerConfigs config = new PnDelayerConfigs();
+        PnDelayerConfigs.Dao dao = new PnDelayerConfigs.Dao();
+        dao.setBatchWriteMaxConcurrency(2);
+        dao.setBatchWriteMaxAttempts(3);
+        dao.setBatchWriteBaseDelay(Duration.ofMillis(1));
+        dao.setBatchWriteMaxDelay(Duration.ofMillis(5));
+        config.setDao(dao);
+        meterRegistry = new SimpleMeterRegistry();
+        dynamoDbBatchWriter = new DynamoDbBatchWriter(dynamoDbAsyncClient, new DynamoDbConcurrencyLimiter(config, meterRegistry), new DynamoDbConsumedCapacityAccumulator(config), config, meterRegistry);
+    }
+
+    @Test
+    void putItemsSplitsInBatchesOf25() {
+        when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+
+        StepVerifier.create(dynamoDbBatchWriter.putItems(TABLE_NAME, items(60)))
+                .verifyComplete();
+
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(dynamoDbAsyncClient, times(3)).batchWriteItem(captor.capture());
+        Assertions.assertEquals(List.of(25, 25, 10), captor.getAllValues().stream()
+                .map(request -> request.requestItems().get(TABLE_NAME).size())
+                .sorted((a, b) -> b - a)
+                .toList());
+        Assertions.assertEquals(60, meterRegistry.counter("pn.delayer.dynamodb.batchwrite.written.items", "table", TABLE_NAME).count());
+    }
+
+    @Test
+    void deleteItemsSendsDeleteRequests() {
+        when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+
+        StepVerifier.create(dynamoDbBatchWriter.deleteItems(TABLE_NAME, items(3)))
+                .verifyComplete();
+
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(dynamoDbAsyncClient).batchWriteItem(captor.capture());
+        Assertions.assertTrue(captor.getValue().requestItems().get(TABLE_NAME).stream()
+                .allMatch(writeRequest -> writeRequest.deleteRequest() != null && writeRequest.putRequest() == null));
+    }
+
+    @Test
+    void putItemsCoalescesUnprocessedItems() {
+        List<Map<String, AttributeValue>> items = items(10);
+        List<WriteRequest> unprocessed = items.subList(0, 4).stream()
+                .map(item -> WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build())
+                .toList();
+        when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder()
+                        .unprocessedItems(Map.of(TABLE_NAME, unprocessed))
+                        .build()))
+                .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+
+        StepVerifier.create(dynamoDbBatchWriter.putItems(TABLE_NAME, items))
+                .verifyComplete();
+
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(dynamoDbAsyncClient, times(2)).batchWriteItem(captor.capture());
+        Assertions.assertEquals(unprocessed, captor.getAllValues().get(1).requestItems().get(TABLE_NAME));
+        Assertions.assertEquals(4, meterRegistry.counter("pn.delayer.dynamodb.batchwrite.unprocessed.items", "table", TABLE_NAME).count());
+        Assertions.assertEquals(1, meterRegistry.counter("pn.delayer.dynamodb.batchwrite.retries", "table", TABLE_NAME).count());
+    }
+
+    @Test
+    void putItemsRetriesThrottledBatch() {
+        when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(ProvisionedThroughputExceededException.builder().message("throttled").build()))
+                .thenReturn(CompletableFuture.completedFuture(BatchWriteItemResponse.builder().build()));
+
+        StepVerifier.create(dynamoDbBatchWriter.putItems(TABLE_NAME, items(5)))
+                .verifyComplete();
+
+        verify(dynamoDbAsyncClient, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+        Assertions.assertEquals(1, meterRegistry.counter("pn.delayer.dynamodb.batchwrite.throttled", "table", TABLE_NAME).count());
+        Assertions.assertEquals(5, meterRegistry.counter("pn.delayer.dynamodb.batchwrite.written.items", "table", TABLE_NAME).count());
+    }
+
+    @Test
+    void putItemsFailsAfterMaxAttempts() {
+        when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.failedFuture(ProvisionedThroughputExceededException.builder().message("throttled").build()));
+
+        StepVerifier.create(dynamoDbBatchWriter.putItems(TABLE_NAME, items(5)))
+                .expectError(PnInternalException.class)
+                .verify();
+
+        verify(dynamoDbAsyncClient, times(3)).batchWriteItem(any(BatchWriteItemRequest.class));
+        Assertions.assertEquals(5, meterRegistry.counter("pn.delayer.dynamodb.batchwrite.failed.items", "table", TABLE_NAME).count());
+    }
+
+    @Test
+    void putItemsPropagatesNonThrottlingErrors() {
+        when(dynamoDbAsyncClient.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(ResourceNotFoundException.builder().message("missing table").build()));
+
+        StepVerifier.create(dynamoDbBatchWriter.putItems(TABLE_NAME, items(5)))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+
+        verify(dynamoDbAsyncClient, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    void backoffIsCappedByMaxDelay() {
+        IntStream.rangeClosed(1, 30).forEach(attempt ->
+                Assertions.assertTrue(dynamoDbBatchWriter.backoff(attempt).toMillis() <= 5));
+    }
+
+    private List<Map<String, AttributeValue>> items(int size) {
+        return IntStream.range(0, size)
+                .mapToObj(i -> Map.of("pk", AttributeValue.builder().s("2025-01-06~EVALUATE_SENDER_LIMIT").build(),
+                        "sk", AttributeValue.builder().s("RM~2025-01-01~requestId" + i).build()))
+                .toList();
+    }
+}
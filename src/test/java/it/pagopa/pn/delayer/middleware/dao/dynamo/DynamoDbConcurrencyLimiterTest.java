@@ -0,0 +1,165 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class DynamoDbConcurrencyLimiterTest {
+
+    private static final String TABLE_NAME = "pn-DelayerPaperDelivery";
+
+    private PnDelayerConfigs config;
+    private SimpleMeterRegistry meterRegistry;
+    private DynamoDbConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        config = new PnDelayerConfigs();
+        config.getConcurrencyLimiter().setEnabled(true);
+        PnDelayerConfigs.ConcurrencyLimit defaults = config.getConcurrencyLimiter().getDefaults();
+        defaults.setInitialLimit(4);
+        defaults.setMinLimit(1);
+        defaults.setMaxLimit(5);
+        defaults.setBackoffRatio(0.5);
+        defaults.setLatencyThreshold(Duration.ofSeconds(10));
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new DynamoDbConcurrencyLimiter(config, meterRegistry);
+    }
+
+    @Test
+    void limitGrowsOnSuccessUpToMaxLimit() {
+        Flux.range(0, 100)
+                .concatMap(i -> limiter.execute(TABLE_NAME, () -> Mono.just(i)))
+                .blockLast();
+
+        Assertions.assertEquals(5, limitGauge(), 0.0001);
+        Assertions.assertEquals(0, inFlightGauge());
+    }
+
+    @Test
+    void limitIsCutOnThrottling() {
+        StepVerifier.create(limiter.execute(TABLE_NAME, () -> Mono.error(ProvisionedThroughputExceededException.builder().build())))
+                .expectError(ProvisionedThroughputExceededException.class)
+                .verify();
+
+        Assertions.assertEquals(2, limitGauge(), 0.0001);
+    }
+
+    @Test
+    void burstOfThrottlingInTheSameWindowCutsTheLimitOnce() {
+        List<Sinks.One<Integer>> responses = List.of(Sinks.one(), Sinks.one(), Sinks.one(), Sinks.one());
+
+        StepVerifier.create(Flux.fromIterable(responses)
+                        .flatMap(response -> limiter.execute(TABLE_NAME, response::asMono)))
+                .then(() -> responses.forEach(response -> response.tryEmitError(ProvisionedThroughputExceededException.builder().build())))
+                .expectError(ProvisionedThroughputExceededException.class)
+                .verify();
+        Assertions.assertEquals(2, limitGauge(), 0.0001);
+
+        StepVerifier.create(limiter.execute(TABLE_NAME, () -> Mono.error(ProvisionedThroughputExceededException.builder().build())))
+                .expectError(ProvisionedThroughputExceededException.class)
+                .verify();
+        Assertions.assertEquals(1, limitGauge(), 0.0001);
+    }
+
+    @Test
+    void singleSlowCallDoesNotCutTheLimit() {
+        config.getConcurrencyLimiter().getDefaults().setLatencyThreshold(Duration.ofMillis(20));
+        DynamoDbConcurrencyLimiter slowLimiter = new DynamoDbConcurrencyLimiter(config, meterRegistry);
+
+        StepVerifier.create(slowLimiter.execute(TABLE_NAME, () -> Mono.delay(Duration.ofMillis(100)).thenReturn(1)))
+                .expectNext(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(4.25, limitGauge(), 0.0001);
+    }
+
+    @Test
+    void sustainedSlowCallsCutTheLimit() {
+        config.getConcurrencyLimiter().getDefaults().setLatencyThreshold(Duration.ofMillis(20));
+        DynamoDbConcurrencyLimiter slowLimiter = new DynamoDbConcurrencyLimiter(config, meterRegistry);
+
+        Flux.range(0, 10)
+                .concatMap(i -> slowLimiter.execute(TABLE_NAME, () -> Mono.delay(Duration.ofMillis(60)).thenReturn(i)))
+                .blockLast();
+
+        Assertions.assertTrue(limitGauge() < 4);
+    }
+
+    @Test
+    void limitIsUnchangedOnOtherErrors() {
+        StepVerifier.create(limiter.execute(TABLE_NAME, () -> Mono.error(ResourceNotFoundException.builder().build())))
+                .expectError(ResourceNotFoundException.class)
+                .verify();
+
+        Assertions.assertEquals(4.25, limitGauge(), 0.0001);
+    }
+
+    @Test
+    void callsOverTheLimitWaitForAPermit() {
+        List<Sinks.One<Integer>> responses = List.of(Sinks.one(), Sinks.one(), Sinks.one(), Sinks.one(), Sinks.one());
+        AtomicInteger started = new AtomicInteger();
+
+        StepVerifier.create(Flux.fromIterable(responses)
+                        .flatMap(response -> limiter.execute(TABLE_NAME, () -> {
+                            started.incrementAndGet();
+                            return response.asMono();
+                        })))
+                .then(() -> {
+                    Assertions.assertEquals(4, started.get());
+                    Assertions.assertEquals(4, inFlightGauge());
+                    responses.getFirst().tryEmitValue(0);
+                })
+                .expectNext(0)
+                .then(() -> {
+                    Assertions.assertEquals(5, started.get());
+                    responses.subList(1, 5).forEach(response -> response.tryEmitValue(1));
+                })
+                .expectNext(1, 1, 1, 1)
+                .verifyComplete();
+
+        Assertions.assertEquals(0, inFlightGauge());
+    }
+
+    @Test
+    void cancelledCallReleasesItsPermit() {
+        StepVerifier.create(limiter.execute(TABLE_NAME, Mono::never))
+                .thenCancel()
+                .verify();
+
+        Assertions.assertEquals(0, inFlightGauge());
+        Assertions.assertEquals(4, limitGauge(), 0.0001);
+    }
+
+    @Test
+    void disabledLimiterDoesNotRegisterGauges() {
+        config.getConcurrencyLimiter().setEnabled(false);
+        DynamoDbConcurrencyLimiter disabled = new DynamoDbConcurrencyLimiter(config, new SimpleMeterRegistry());
+
+        StepVerifier.create(disabled.execute(TABLE_NAME, () -> Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+
+        Assertions.assertNull(meterRegistry.find("pn.delayer.dynamodb.concurrency.limit").gauge());
+    }
+
+    private double limitGauge() {
+        return meterRegistry.get("pn.delayer.dynamodb.concurrency.limit").tag("table", TABLE_NAME).gauge().value();
+    }
+
+    private double inFlightGauge() {
+        return meterRegistry.get("pn.delayer.dynamodb.concurrency.inflight").tag("table", TABLE_NAME).gauge().value();
+    }
+}
@@ -0,0 +1,86 @@
+package it.pagopa.pn.delayer.middleware.dao.dynamo;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.model.ConsumedCapacityReport;
+import it.pagopa.pn.delayer.model.ConsumedCapacityScope;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+import software.amazon.awssdk.services.dynamodb.model.ConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+import java.util.Collections;
+
+class DynamoDbConsumedCapacityAccumulatorTest {
+
+    private static final String PAPER_DELIVERY_TABLE = "pn-DelayerPaperDelivery";
+    private static final String USED_CAPACITY_TABLE = "pn-PaperDeliveryDriverUsedCapacities";
+
+    private DynamoDbConsumedCapacityAccumulator consumedCapacityAccumulator;
+
+    @BeforeEach
+    void setUp() {
+        PnDelayerConfigs config = new PnDelayerConfigs();
+        PnDelayerConfigs.Dao dao = new PnDelayerConfigs.Dao();
+        dao.setPaperDeliveryTableName(PAPER_DELIVERY_TABLE);
+        config.setDao(dao);
+        consumedCapacityAccumulator = new DynamoDbConsumedCapacityAccumulator(config);
+    }
+
+    @Test
+    void reportGroupsCapacityByTableStepAndProvince() {
+        query("RM", 2.0, 4);
+        query("NA", 1.0, 4);
+        update("RM", 3.0);
+        StepVerifier.create(consumedCapacityAccumulator.recordRead(Mono.just(queryResponse(0.5, 1)), false,
+                        response -> Collections.singletonList(response.consumedCapacity()), QueryResponse::count))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        ConsumedCapacityReport report = consumedCapacityAccumulator.report();
+
+        Assertions.assertEquals(3.5, report.tables().get(PAPER_DELIVERY_TABLE).readCapacityUnits());
+        Assertions.assertEquals(9, report.tables().get(PAPER_DELIVERY_TABLE).itemsRead());
+        Assertions.assertEquals(3.0, report.tables().get(USED_CAPACITY_TABLE).writeCapacityUnits());
+        Assertions.assertEquals(2.0, report.provinces().get("RM").readCapacityUnits());
+        Assertions.assertEquals(3.0, report.provinces().get("RM").writeCapacityUnits());
+        Assertions.assertEquals(1.0, report.provinces().get("NA").readCapacityUnits());
+        Assertions.assertEquals(0.5, report.provinces().get("-").readCapacityUnits());
+        Assertions.assertEquals(3.0, report.steps().get("EVALUATE_DRIVER_CAPACITY").readCapacityUnits());
+        Assertions.assertEquals(3, report.steps().get("EVALUATE_DRIVER_CAPACITY").requests());
+        Assertions.assertEquals(3.5 * 8192 / 9, report.bytesReadPerDelivery());
+    }
+
+    private void query(String province, double capacityUnits, int count) {
+        StepVerifier.create(consumedCapacityAccumulator.recordRead(Mono.just(queryResponse(capacityUnits, count)), false,
+                                response -> Collections.singletonList(response.consumedCapacity()), QueryResponse::count)
+                        .contextWrite(scope(province)))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private void update(String province, double capacityUnits) {
+        UpdateItemResponse response = UpdateItemResponse.builder()
+                .consumedCapacity(ConsumedCapacity.builder().tableName(USED_CAPACITY_TABLE).capacityUnits(capacityUnits).build())
+                .build();
+        StepVerifier.create(consumedCapacityAccumulator.recordWrite(Mono.just(response), UpdateItemResponse::consumedCapacity)
+                        .contextWrite(scope(province)))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private static QueryResponse queryResponse(double capacityUnits, int count) {
+        return QueryResponse.builder()
+                .count(count)
+                .consumedCapacity(ConsumedCapacity.builder().tableName(PAPER_DELIVERY_TABLE).capacityUnits(capacityUnits).build())
+                .build();
+    }
+
+    private static Context scope(String province) {
+        return Context.of(ConsumedCapacityScope.CONTEXT_KEY, new ConsumedCapacityScope("EVALUATE_DRIVER_CAPACITY", province));
+    }
+}
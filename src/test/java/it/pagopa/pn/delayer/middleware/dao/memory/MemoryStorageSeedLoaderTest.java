@@ -0,0 +1,113 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.pagopa.pn.commons.exceptions.PnInternalException;
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliverySenderLimit;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+class MemoryStorageSeedLoaderTest {
+
+    private static final LocalDate DELIVERY_WEEK = LocalDate.parse("2025-04-07");
+
+    @TempDir
+    Path seedDirectory;
+
+    private PnDelayerConfigs pnDelayerConfigs;
+    private PaperDeliveryMemoryDAOImpl paperDeliveryDAO;
+    private PaperDeliveryDriverCapacitiesMemoryDAOImpl paperDeliveryDriverCapacitiesDAO;
+    private PaperDeliverySenderLimitMemoryDAOImpl paperDeliverySenderLimitDAO;
+    private PaperDeliveryCounterMemoryDAOImpl paperDeliveryCounterDAO;
+    private MemoryStorageSeedLoader memoryStorageSeedLoader;
+
+    @BeforeEach
+    void setUp() {
+        pnDelayerConfigs = new PnDelayerConfigs();
+        paperDeliveryDAO = new PaperDeliveryMemoryDAOImpl();
+        paperDeliveryDriverCapacitiesDAO = new PaperDeliveryDriverCapacitiesMemoryDAOImpl();
+        paperDeliverySenderLimitDAO = new PaperDeliverySenderLimitMemoryDAOImpl();
+        paperDeliveryCounterDAO = new PaperDeliveryCounterMemoryDAOImpl(pnDelayerConfigs, new PaperDeliveryDriverUsedCapacitiesMemoryDAOImpl());
+        memoryStorageSeedLoader = new MemoryStorageSeedLoader(pnDelayerConfigs, new ObjectMapper(), paperDeliveryDAO,
+                paperDeliveryDriverCapacitiesDAO, paperDeliverySenderLimitDAO, paperDeliveryCounterDAO);
+    }
+
+    @Test
+    void loadSeedFiles() throws IOException {
+        Files.writeString(seedDirectory.resolve(MemoryStorageSeedLoader.PAPER_DELIVERIES_FILE), """
+                [
+                  {"pk": "2025-04-07~EVALUATE_SENDER_LIMIT", "sk": "RM~00100~2025-04-01T08:00:00Z~iun1", "iun": "iun1", "cap": "00100", "province": "RM", "productType": "AR", "attempt": 0},
+                  {"pk": "2025-04-07~EVALUATE_SENDER_LIMIT", "sk": "RM~00100~2025-04-01T09:00:00Z~iun2", "iun": "iun2", "cap": "00100", "province": "RM", "productType": "890", "attempt": 1}
+                ]
+                """);
+        Files.writeString(seedDirectory.resolve(MemoryStorageSeedLoader.DRIVER_CAPACITIES_FILE), """
+                [
+                  {"pk": "tender1~driver1~RM", "activationDateFrom": "2025-01-01T00:00:00Z", "tenderId": "tender1", "unifiedDeliveryDriver": "driver1",
+                   "geoKey": "RM", "capacity": 1000, "peakCapacity": 1200, "tenderIdGeoKey": "tender1~RM", "products": ["AR", "890"]}
+                ]
+                """);
+        Files.writeString(seedDirectory.resolve(MemoryStorageSeedLoader.SENDER_LIMITS_FILE), """
+                [
+                  {"pk": "paId1~AR~RM", "deliveryDate": "2025-04-07", "weeklyEstimate": 50, "monthlyEstimate": 200, "paId": "paId1", "productType": "AR", "province": "RM"}
+                ]
+                """);
+        Files.writeString(seedDirectory.resolve(MemoryStorageSeedLoader.COUNTERS_FILE), """
+                [
+                  {"pk": "2025-04-07", "sk": "SUM_ESTIMATES~AR~RM", "numberOfShipments": 300}
+                ]
+                """);
+        pnDelayerConfigs.getStorage().setSeedDirectory(seedDirectory.toString());
+
+        memoryStorageSeedLoader.load();
+
+        Page<PaperDelivery> page = paperDeliveryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, DELIVERY_WEEK, "RM~", Map.of(), 10).block();
+        Assertions.assertNotNull(page);
+        Assertions.assertEquals(List.of("iun1", "iun2"), page.items().stream().map(PaperDelivery::getIun).toList());
+        Assertions.assertEquals(1, page.items().get(1).getAttempt());
+
+        Assertions.assertEquals(1000, paperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities("tender1", "driver1", "RM", DELIVERY_WEEK).block());
+        Assertions.assertEquals(List.of(List.of("AR", "890")), paperDeliveryDriverCapacitiesDAO.retrieveUnifiedDeliveryDriversOnProvince("tender1", "RM", DELIVERY_WEEK).block()
+                .stream().map(PaperDeliveryDriverCapacity::getProducts).toList());
+
+        List<PaperDeliverySenderLimit> senderLimits = paperDeliverySenderLimitDAO.retrieveSendersLimit(List.of("paId1~AR~RM"), DELIVERY_WEEK).collectList().block();
+        Assertions.assertNotNull(senderLimits);
+        Assertions.assertEquals(50, senderLimits.getFirst().getWeeklyEstimate());
+
+        List<PaperDeliveryCounter> counters = paperDeliveryCounterDAO.getPaperDeliveryCounter("2025-04-07", "SUM_ESTIMATES~", null).block();
+        Assertions.assertNotNull(counters);
+        Assertions.assertEquals(300, counters.getFirst().getNumberOfShipments());
+    }
+
+    @Test
+    void missingSeedFilesLeaveTablesEmpty() {
+        pnDelayerConfigs.getStorage().setSeedDirectory(seedDirectory.toString());
+
+        memoryStorageSeedLoader.load();
+
+        Page<PaperDelivery> page = paperDeliveryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, DELIVERY_WEEK, "RM~", Map.of(), 10).block();
+        Assertions.assertNotNull(page);
+        Assertions.assertTrue(page.items().isEmpty());
+    }
+
+    @Test
+    void invalidSeedFileFailsStartup() throws IOException {
+        Files.writeString(seedDirectory.resolve(MemoryStorageSeedLoader.SENDER_LIMITS_FILE), "[{\"pk\": ");
+        pnDelayerConfigs.getStorage().setSeedDirectory(seedDirectory.toString());
+
+        Assertions.assertThrows(PnInternalException.class, memoryStorageSeedLoader::load);
+    }
+}
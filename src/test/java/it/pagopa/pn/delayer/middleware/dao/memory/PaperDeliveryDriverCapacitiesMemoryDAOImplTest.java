@@ -0,0 +1,65 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class PaperDeliveryDriverCapacitiesMemoryDAOImplTest {
+
+    private PaperDeliveryDriverCapacitiesMemoryDAOImpl paperDeliveryDriverCapacitiesMemoryDAO;
+
+    @BeforeEach
+    void setUp() {
+        paperDeliveryDriverCapacitiesMemoryDAO = new PaperDeliveryDriverCapacitiesMemoryDAOImpl();
+        paperDeliveryDriverCapacitiesMemoryDAO.putPaperDeliveryDriverCapacity(capacity("driver1", "2025-01-01T00:00:00Z", null, 10));
+        paperDeliveryDriverCapacitiesMemoryDAO.putPaperDeliveryDriverCapacity(capacity("driver1", "2025-03-01T00:00:00Z", null, 20));
+        paperDeliveryDriverCapacitiesMemoryDAO.putPaperDeliveryDriverCapacity(capacity("driver1", "2025-05-01T00:00:00Z", null, 30));
+        paperDeliveryDriverCapacitiesMemoryDAO.putPaperDeliveryDriverCapacity(capacity("driver2", "2025-01-01T00:00:00Z", "2025-02-01T00:00:00Z", 40));
+        paperDeliveryDriverCapacitiesMemoryDAO.putPaperDeliveryDriverCapacity(capacity("driver3", "2025-01-01T00:00:00Z", null, 50));
+    }
+
+    @Test
+    void getPaperDeliveryDriverCapacitiesReturnsTheLastActiveCapacity() {
+        StepVerifier.create(paperDeliveryDriverCapacitiesMemoryDAO.getPaperDeliveryDriverCapacities("tender1", "driver1", "RM", LocalDate.parse("2025-04-07")))
+                .expectNext(20)
+                .verifyComplete();
+        StepVerifier.create(paperDeliveryDriverCapacitiesMemoryDAO.getPaperDeliveryDriverCapacities("tender1", "driver2", "RM", LocalDate.parse("2025-04-07")))
+                .expectNext(0)
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveUnifiedDeliveryDriversOnProvinceUsesTheIndex() {
+        paperDeliveryDriverCapacitiesMemoryDAO.putPaperDeliveryDriverCapacity(capacity("driver3", "2025-01-01T00:00:00Z", "2025-02-01T00:00:00Z", 50));
+
+        StepVerifier.create(paperDeliveryDriverCapacitiesMemoryDAO.retrieveUnifiedDeliveryDriversOnProvince("tender1", "RM", LocalDate.parse("2025-04-07")))
+                .expectNextMatches(capacities -> capacities.stream()
+                        .collect(Collectors.toMap(PaperDeliveryDriverCapacity::getUnifiedDeliveryDriver, PaperDeliveryDriverCapacity::getCapacity))
+                        .equals(Map.of("driver1", 20)))
+                .verifyComplete();
+        StepVerifier.create(paperDeliveryDriverCapacitiesMemoryDAO.scanPaperDeliveryDriverCapacities("tender1", "driver1", 4))
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    private static PaperDeliveryDriverCapacity capacity(String unifiedDeliveryDriver, String activationDateFrom, String activationDateTo, int capacity) {
+        PaperDeliveryDriverCapacity paperDeliveryDriverCapacity = new PaperDeliveryDriverCapacity();
+        paperDeliveryDriverCapacity.setPk(PaperDeliveryDriverCapacity.buildKey("tender1", unifiedDeliveryDriver, "RM"));
+        paperDeliveryDriverCapacity.setTenderIdGeoKey(PaperDeliveryDriverCapacity.buildGsiKey("tender1", "RM"));
+        paperDeliveryDriverCapacity.setTenderId("tender1");
+        paperDeliveryDriverCapacity.setUnifiedDeliveryDriver(unifiedDeliveryDriver);
+        paperDeliveryDriverCapacity.setGeoKey("RM");
+        paperDeliveryDriverCapacity.setActivationDateFrom(Instant.parse(activationDateFrom));
+        if (activationDateTo != null) {
+            paperDeliveryDriverCapacity.setActivationDateTo(Instant.parse(activationDateTo));
+        }
+        paperDeliveryDriverCapacity.setCapacity(capacity);
+        return paperDeliveryDriverCapacity;
+    }
+}
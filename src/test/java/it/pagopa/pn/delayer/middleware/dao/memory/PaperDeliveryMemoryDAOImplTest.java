@@ -0,0 +1,74 @@
+package it.pagopa.pn.delayer.middleware.dao.memory;
+
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.model.SortKeyRange;
+import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+class PaperDeliveryMemoryDAOImplTest {
+
+    private static final LocalDate DELIVERY_WEEK = LocalDate.parse("2025-04-07");
+
+    private PaperDeliveryMemoryDAOImpl paperDeliveryMemoryDAO;
+
+    @BeforeEach
+    void setUp() {
+        paperDeliveryMemoryDAO = new PaperDeliveryMemoryDAOImpl();
+        paperDeliveryMemoryDAO.insertPaperDeliveries(List.of(
+                paperDelivery("driver1~RM~2025-04-01T10:00:00Z~iun3"),
+                paperDelivery("driver1~RM~2025-04-01T09:00:00Z~iun2"),
+                paperDelivery("driver1~RM~2025-04-01T08:00:00Z~iun1"),
+                paperDelivery("driver1~NA~2025-04-01T08:00:00Z~iun4"),
+                paperDelivery("driver2~RM~2025-04-01T08:00:00Z~iun5"))).block();
+    }
+
+    @Test
+    void retrievePaperDeliveriesPagesWithLastEvaluatedKey() {
+        Page<PaperDelivery> firstPage = paperDeliveryMemoryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, DELIVERY_WEEK, "driver1~RM", Map.of(), 2).block();
+        Assertions.assertNotNull(firstPage);
+        Assertions.assertEquals(List.of("iun1", "iun2"), firstPage.items().stream().map(PaperDelivery::getIun).toList());
+        Assertions.assertEquals("driver1~RM~2025-04-01T09:00:00Z~iun2", firstPage.lastEvaluatedKey().get(PaperDelivery.COL_SK).s());
+
+        Page<PaperDelivery> secondPage = paperDeliveryMemoryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, DELIVERY_WEEK, "driver1~RM", firstPage.lastEvaluatedKey(), 2).block();
+        Assertions.assertNotNull(secondPage);
+        Assertions.assertEquals(List.of("iun3"), secondPage.items().stream().map(PaperDelivery::getIun).toList());
+        Assertions.assertNull(secondPage.lastEvaluatedKey());
+    }
+
+    @Test
+    void retrievePaperDeliveriesInRangeAndProjection() {
+        StepVerifier.create(paperDeliveryMemoryDAO.retrievePaperDeliveriesInRange(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, DELIVERY_WEEK,
+                        new SortKeyRange("driver1~NA", "driver1~RM~2025-04-01T08:00:00Z~iun1"), Map.of(), 10))
+                .expectNextMatches(page -> page.items().stream().map(PaperDelivery::getIun).toList().equals(List.of("iun4", "iun1")))
+                .verifyComplete();
+
+        StepVerifier.create(paperDeliveryMemoryDAO.retrievePaperDeliveriesProjection(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, DELIVERY_WEEK,
+                        "driver2~", List.of(PaperDelivery.COL_CAP, PaperDelivery.COL_PRODUCT_TYPE), Map.of(), 10))
+                .expectNextMatches(page -> page.items().size() == 1
+                        && "00100".equals(page.items().getFirst().getCap())
+                        && page.items().getFirst().getIun() == null)
+                .verifyComplete();
+
+        StepVerifier.create(paperDeliveryMemoryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_RESIDUAL_CAPACITY, DELIVERY_WEEK, "driver1~RM", Map.of(), 10))
+                .expectNextMatches(page -> page.items().isEmpty())
+                .verifyComplete();
+    }
+
+    private static PaperDelivery paperDelivery(String sk) {
+        PaperDelivery paperDelivery = new PaperDelivery();
+        paperDelivery.setPk(String.join("~", DELIVERY_WEEK.toString(), WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY.name()));
+        paperDelivery.setSk(sk);
+        paperDelivery.setIun(sk.substring(sk.lastIndexOf('~') + 1));
+        paperDelivery.setCap("00100");
+        paperDelivery.setProductType("AR");
+        return paperDelivery;
+    }
+}
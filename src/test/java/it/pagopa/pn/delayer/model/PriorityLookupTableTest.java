@@ -0,0 +1,59 @@
+package it.pagopa.pn.delayer.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityLookupTableTest {
+
+    private static final Map<Integer, List<String>> PRIORITY_MAP = Map.of(
+            1, List.of("PRODUCT_RS.ATTEMPT_0", "PRODUCT_AR.ATTEMPT_1", "PRODUCT_890.ATTEMPT_1"),
+            2, List.of("PRODUCT_AR.ATTEMPT_0", "PRODUCT_890.ATTEMPT_0", "PRODUCT_AR.ATTEMPT_1"),
+            4, List.of("PRODUCT_RIR.ATTEMPT_0", "PRODUCT_XX.ATTEMPT_0"));
+
+    @Test
+    void priorityOf_returnsPriorityOfKnownProductTypes() {
+        PriorityLookupTable table = PriorityLookupTable.compile(PRIORITY_MAP);
+
+        assertEquals(1, table.priorityOf("RS", 0));
+        assertEquals(2, table.priorityOf("AR", 0));
+        assertEquals(1, table.priorityOf("890", 1));
+        assertEquals(4, table.priorityOf("RIR", 0));
+    }
+
+    @Test
+    void priorityOf_keyListedUnderMorePrioritiesGetsTheLowest() {
+        PriorityLookupTable table = PriorityLookupTable.compile(PRIORITY_MAP);
+
+        assertEquals(1, table.priorityOf("AR", 1));
+    }
+
+    @Test
+    void priorityOf_returnsDefaultPriorityForMissingKeys() {
+        PriorityLookupTable table = PriorityLookupTable.compile(PRIORITY_MAP);
+
+        assertEquals(PriorityLookupTable.DEFAULT_PRIORITY, table.priorityOf("RS", 1));
+        assertEquals(PriorityLookupTable.DEFAULT_PRIORITY, table.priorityOf("RIS", 0));
+        assertEquals(PriorityLookupTable.DEFAULT_PRIORITY, table.priorityOf("AR", 5));
+        assertEquals(PriorityLookupTable.DEFAULT_PRIORITY, table.priorityOf("AR", null));
+    }
+
+    @Test
+    void priorityOf_unknownProductTypeUsesFallback() {
+        PriorityLookupTable table = PriorityLookupTable.compile(PRIORITY_MAP);
+
+        assertEquals(4, table.priorityOf("XX", 0));
+        assertEquals(PriorityLookupTable.DEFAULT_PRIORITY, table.priorityOf("YY", 0));
+    }
+
+    @Test
+    void isCompiledFrom_comparesSourceMap() {
+        PriorityLookupTable table = PriorityLookupTable.compile(PRIORITY_MAP);
+
+        assertTrue(table.isCompiledFrom(Map.copyOf(PRIORITY_MAP)));
+        assertFalse(table.isCompiledFrom(Map.of(1, List.of("PRODUCT_RS.ATTEMPT_0"))));
+    }
+}
@@ -0,0 +1,58 @@
+package it.pagopa.pn.delayer.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UsedCapacityLedgerTest {
+
+    private static final LocalDate DELIVERY_WEEK = LocalDate.parse("2025-01-06");
+
+    @Test
+    void incrementsOf_sumsIncrementsIgnoringCase() {
+        UsedCapacityLedger ledger = new UsedCapacityLedger();
+        ledger.add(new IncrementUsedCapacityDto("driver1", "00184", 2, DELIVERY_WEEK, 5));
+        ledger.add(new IncrementUsedCapacityDto("DRIVER1", "00184", 3, DELIVERY_WEEK, 5));
+        ledger.add(new IncrementUsedCapacityDto("driver1", "00185", null, DELIVERY_WEEK, 5));
+
+        assertEquals(5, ledger.incrementsOf("driver1", "00184", DELIVERY_WEEK));
+        assertEquals(0, ledger.incrementsOf("driver1", "00185", DELIVERY_WEEK));
+        assertEquals(0, ledger.incrementsOf("driver1", "00184", DELIVERY_WEEK.plusWeeks(1)));
+        assertEquals(0, ledger.incrementsOf("driver2", "00184", DELIVERY_WEEK));
+    }
+
+    @Test
+    void aggregated_returnsOneIncrementPerKey() {
+        UsedCapacityLedger ledger = new UsedCapacityLedger();
+        ledger.add(new IncrementUsedCapacityDto("driver1", "00184", 2, DELIVERY_WEEK, 5));
+        ledger.add(new IncrementUsedCapacityDto("driver1", "00184", 3, DELIVERY_WEEK, 6));
+        ledger.add(new IncrementUsedCapacityDto("driver1", "RM", 5, DELIVERY_WEEK, 10));
+
+        List<IncrementUsedCapacityDto> aggregated = ledger.aggregated();
+
+        assertEquals(2, aggregated.size());
+        assertTrue(aggregated.contains(new IncrementUsedCapacityDto("driver1", "00184", 5, DELIVERY_WEEK, 6)));
+        assertTrue(aggregated.contains(new IncrementUsedCapacityDto("driver1", "RM", 5, DELIVERY_WEEK, 10)));
+    }
+
+    @Test
+    void add_isSafeUnderConcurrentIncrements() {
+        UsedCapacityLedger ledger = new UsedCapacityLedger();
+
+        IntStream.range(0, 10_000).parallel()
+                .forEach(i -> ledger.add(new IncrementUsedCapacityDto("driver1", "0018" + (i % 4), 1, DELIVERY_WEEK, 5)));
+
+        assertEquals(4, ledger.size());
+        assertEquals(2_500, ledger.incrementsOf("driver1", "00180", DELIVERY_WEEK));
+        assertEquals(10_000, ledger.aggregated().stream().mapToInt(IncrementUsedCapacityDto::numberOfDeliveries).sum());
+    }
+
+    @Test
+    void isEmpty_whenNoIncrements() {
+        assertTrue(new UsedCapacityLedger().isEmpty());
+    }
+}
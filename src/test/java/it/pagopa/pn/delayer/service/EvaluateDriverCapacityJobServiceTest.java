@@ -1,9 +1,13 @@
 package it.pagopa.pn.delayer.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import it.pagopa.pn.delayer.config.SsmParameterConsumerActivation;
 import it.pagopa.pn.delayer.middleware.dao.*;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
+import it.pagopa.pn.delayer.model.SortKeyRange;
+import it.pagopa.pn.delayer.utils.CpuStageScheduler;
 import it.pagopa.pn.delayer.utils.DeliveryDriverUtils;
 import it.pagopa.pn.delayer.utils.PaperDeliveryUtils;
 import it.pagopa.pn.delayer.utils.PnDelayerUtils;
@@ -27,6 +31,7 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import static it.pagopa.pn.delayer.model.WorkflowStepEnum.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,21 +50,26 @@ class EvaluateDriverCapacityJobServiceTest {
     @Mock
     private PaperDeliveryDAO paperDeliveryDAO;
 
+    @Mock
+    private SsmParameterConsumerActivation ssmParameterConsumerActivation;
+
     private EvaluateDriverCapacityJobService evaluateDr;
 
+    private PnDelayerConfigs pnDelayerConfigs;
+
     @BeforeEach
     void setUp() {
         PnDelayerConfigs.Dao dao = new PnDelayerConfigs.Dao();
         dao.setPaperDeliveryQueryLimit(5);
-        PnDelayerConfigs pnDelayerConfigs = new PnDelayerConfigs();
+        pnDelayerConfigs = new PnDelayerConfigs();
         pnDelayerConfigs.setPrintCounterTtlDuration(Duration.ofDays(7));
         pnDelayerConfigs.setDeliveryDateDayOfWeek(1);
         pnDelayerConfigs.setDao(dao);
         pnDelayerConfigs.setPrintCapacityWeeklyWorkingDays(7);
         pnDelayerConfigs.setPrintCapacity(List.of("1970-01-01;180000"));
 
-        PaperDeliveryUtils paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, pnDelayerConfigs, new PnDelayerUtils(pnDelayerConfigs, new PrintCapacityUtils(pnDelayerConfigs)), deliveryDriverUtils, paperDeliveryCounterDAO);
-        evaluateDr = new EvaluateDriverCapacityJobServiceImpl(paperDeliveryUtils);
+        PaperDeliveryUtils paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, pnDelayerConfigs, new PnDelayerUtils(pnDelayerConfigs, new PrintCapacityUtils(pnDelayerConfigs)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(pnDelayerConfigs));
+        evaluateDr = new EvaluateDriverCapacityJobServiceImpl(paperDeliveryUtils, pnDelayerConfigs, ssmParameterConsumerActivation);
     }
 
     @Test
@@ -125,6 +135,102 @@ class EvaluateDriverCapacityJobServiceTest {
         verify(paperDeliveryDAO, times(0)).insertPaperDeliveries(anyList());
     }
 
+    @Test
+    void startEvaluateDriverCapacityJob_batchCapacityResolution_resolvesAllCapsOfThePageAtOnce() {
+        String unifiedDeliveryDriver = "driver1";
+        String province = "RM";
+        LocalDate deliveryWeek = LocalDate.parse("2025-01-06");
+        String tenderId = "tender123";
+        pnDelayerConfigs.getCapacityResolution().setBatch(true);
+        List<PaperDelivery> deliveries = getPaperDeliveries(false);
+        when(deliveryDriverUtils.retrieveDeclaredAndUsedCapacity(eq(province), any(), any(), any())).thenReturn(Mono.just(Tuples.of(10, 0)));
+        when(deliveryDriverUtils.retrieveDeclaredAndUsedCapacities(Set.of("00185", "00184"), unifiedDeliveryDriver, tenderId, deliveryWeek))
+                .thenReturn(Mono.just(Map.of("00185", Tuples.of(5, 5), "00184", Tuples.of(5, 0))));
+
+        when(paperDeliveryDAO.retrievePaperDeliveries(eq(EVALUATE_DRIVER_CAPACITY), any(), eq(String.join("~", unifiedDeliveryDriver, province)), any(), eq(5)))
+                .thenReturn(Mono.just(Page.create(deliveries)));
+
+        ArgumentCaptor<List<PaperDelivery>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        when(paperDeliveryDAO.insertPaperDeliveries(argumentCaptor.capture())).thenReturn(Mono.empty());
+        ArgumentCaptor<List<IncrementUsedCapacityDto>> incrementUsedCapacityCaptor = ArgumentCaptor.forClass(List.class);
+        when(deliveryDriverUtils.updateCounters(incrementUsedCapacityCaptor.capture())).thenReturn(Mono.empty());
+
+        when(paperDeliveryCounterDAO.updatePrintCapacityCounter(any(), anyInt(), anyInt())).thenReturn(Mono.empty());
+        StepVerifier.create(evaluateDr.startEvaluateDriverCapacityJob(unifiedDeliveryDriver, province,  deliveryWeek, tenderId))
+                .verifyComplete();
+
+        List<List<PaperDelivery>> capturedDeliveries = argumentCaptor.getAllValues();
+        Assertions.assertEquals(1, capturedDeliveries.getFirst().size());
+        Assertions.assertEquals(1, capturedDeliveries.getLast().size());
+        verify(deliveryDriverUtils, times(1)).retrieveDeclaredAndUsedCapacity(eq(province), any(), any(), any());
+        verify(deliveryDriverUtils, never()).retrieveDeclaredAndUsedCapacity(eq("00185"), any(), any(), any());
+        verify(deliveryDriverUtils, never()).retrieveDeclaredAndUsedCapacity(eq("00184"), any(), any(), any());
+        verify(deliveryDriverUtils, times(1)).retrieveDeclaredAndUsedCapacities(any(), any(), any(), any());
+        Assertions.assertEquals(2, incrementUsedCapacityCaptor.getValue().size());
+    }
+
+    @Test
+    void startEvaluateDriverCapacityJob_priorityBuckets_grantsCapacityByPriorityAndSendsTheRestToNextWeek() {
+        String unifiedDeliveryDriver = "driver1";
+        String province = "RM";
+        LocalDate deliveryWeek = LocalDate.parse("2025-01-06");
+        String tenderId = "tender123";
+        pnDelayerConfigs.getDao().setPaperDeliveryReadPriorityBuckets(true);
+        pnDelayerConfigs.getCapacityResolution().setBatch(true);
+        pnDelayerConfigs.setPaperDeliveryPriorityParameterName("priority-param");
+        when(ssmParameterConsumerActivation.getParameterValue(eq("priority-param"), eq(Map.class)))
+                .thenReturn(Optional.of(Map.of("1", List.of("PRODUCT_RS.ATTEMPT_0"), "2", List.of("PRODUCT_AR.ATTEMPT_1"))));
+        when(deliveryDriverUtils.retrieveDeclaredAndUsedCapacity(eq(province), any(), any(), any())).thenReturn(Mono.just(Tuples.of(3, 0)));
+        when(deliveryDriverUtils.retrieveDeclaredAndUsedCapacities(any(), eq(unifiedDeliveryDriver), eq(tenderId), eq(deliveryWeek)))
+                .thenReturn(Mono.just(Map.of("00184", Tuples.of(100, 0), "00185", Tuples.of(100, 0))));
+
+        PaperDelivery secondPriorityFirst = priorityDelivery(2, "requestId3", "00184");
+        when(paperDeliveryDAO.retrievePaperDeliveriesInRange(eq(EVALUATE_DRIVER_CAPACITY), eq(deliveryWeek), eq(new SortKeyRange("driver1~RM~", "driver1~RM~2~")), any(), eq(5)))
+                .thenReturn(Mono.just(Page.create(List.of(priorityDelivery(1, "requestId1", "00184"), priorityDelivery(1, "requestId2", "00185")))));
+        when(paperDeliveryDAO.retrievePaperDeliveriesInRange(eq(EVALUATE_DRIVER_CAPACITY), eq(deliveryWeek), eq(new SortKeyRange("driver1~RM~2~", "driver1~RM~3~")), any(), eq(5)))
+                .thenReturn(Mono.just(Page.create(List.of(secondPriorityFirst, priorityDelivery(2, "requestId4", "00185")))));
+        // with synchronous pages the capacity is over before the last bucket is opened
+        lenient().when(paperDeliveryDAO.retrievePaperDeliveriesInRange(eq(EVALUATE_DRIVER_CAPACITY), eq(deliveryWeek), eq(new SortKeyRange("driver1~RM~3~", "driver1~RM~\uffff")), any(), eq(5)))
+                .thenReturn(Mono.just(Page.create(List.of(priorityDelivery(3, "requestId5", "00184")))));
+        Map<String, AttributeValue> lastProcessedKey = Map.of("pk", AttributeValue.builder().s(secondPriorityFirst.getPk()).build(),
+                "sk", AttributeValue.builder().s(secondPriorityFirst.getSk()).build());
+        when(paperDeliveryDAO.retrievePaperDeliveries(EVALUATE_DRIVER_CAPACITY, deliveryWeek, "driver1~RM", lastProcessedKey, 5))
+                .thenReturn(Mono.just(Page.create(List.of(priorityDelivery(2, "requestId4", "00185"), priorityDelivery(3, "requestId5", "00184")))));
+
+        ArgumentCaptor<List<PaperDelivery>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        when(paperDeliveryDAO.insertPaperDeliveries(argumentCaptor.capture())).thenReturn(Mono.empty());
+        when(deliveryDriverUtils.updateCounters(any())).thenReturn(Mono.empty());
+        when(paperDeliveryCounterDAO.updatePrintCapacityCounter(any(), eq(3), anyInt())).thenReturn(Mono.empty());
+
+        StepVerifier.create(evaluateDr.startEvaluateDriverCapacityJob(unifiedDeliveryDriver, province, deliveryWeek, tenderId))
+                .verifyComplete();
+
+        List<List<PaperDelivery>> capturedDeliveries = argumentCaptor.getAllValues();
+        Assertions.assertEquals(3, capturedDeliveries.size());
+        Assertions.assertEquals(Set.of("requestId1", "requestId2"), capturedDeliveries.get(0).stream().map(PaperDelivery::getRequestId).collect(Collectors.toSet()));
+        Assertions.assertEquals(List.of("requestId3"), capturedDeliveries.get(1).stream().map(PaperDelivery::getRequestId).toList());
+        Assertions.assertTrue(capturedDeliveries.get(1).getFirst().getPk().equalsIgnoreCase("2025-01-06~" + EVALUATE_PRINT_CAPACITY));
+        Assertions.assertEquals(List.of("requestId4", "requestId5"), capturedDeliveries.get(2).stream().map(PaperDelivery::getRequestId).toList());
+        Assertions.assertTrue(capturedDeliveries.get(2).getFirst().getPk().endsWith("2025-01-13~" + EVALUATE_SENDER_LIMIT));
+        verify(paperDeliveryDAO, never()).retrievePaperDeliveries(eq(EVALUATE_DRIVER_CAPACITY), any(), any(), eq(Map.of()), anyInt());
+    }
+
+    private static PaperDelivery priorityDelivery(int priority, String requestId, String cap) {
+        PaperDelivery paperDelivery = new PaperDelivery();
+        paperDelivery.setPk("2025-01-06~" + EVALUATE_DRIVER_CAPACITY);
+        paperDelivery.setSk(String.join("~", "driver1", "RM", String.valueOf(priority), "2025-01-01T00:00:00Z", requestId));
+        paperDelivery.setPriority(priority);
+        paperDelivery.setRequestId(requestId);
+        paperDelivery.setCreatedAt(Instant.now().toString());
+        paperDelivery.setNotificationSentAt("2025-01-01T00:00:00Z");
+        paperDelivery.setPrepareRequestDate("2025-01-02T00:00:00Z");
+        paperDelivery.setProductType("AR");
+        paperDelivery.setAttempt(0);
+        paperDelivery.setProvince("RM");
+        paperDelivery.setCap(cap);
+        return paperDelivery;
+    }
+
     @Test
     void startEvaluateDriverCapacityJob_NoCapCapacityForOneCap_WithoutLastEvaluatedKey() {
         String unifiedDeliveryDriver = "driver1";
@@ -233,7 +339,8 @@ class EvaluateDriverCapacityJobServiceTest {
         verify(deliveryDriverUtils, times(2)).retrieveDeclaredAndUsedCapacity( eq("00184"), any(), any(), any());
         verify(deliveryDriverUtils, times(1)).updateCounters(anyList());
         List<List<IncrementUsedCapacityDto>> incrementUsedCapacityCaptured = incrementUsedCapacityCaptor.getAllValues();
-        Assertions.assertEquals(3, incrementUsedCapacityCaptured.getFirst().size());
+        // one aggregated increment per geoKey: RM and 00184 (processed on both pages)
+        Assertions.assertEquals(2, incrementUsedCapacityCaptured.getFirst().size());
         Assertions.assertEquals(2, incrementUsedCapacityCaptured.getFirst().stream()
                 .filter(incrementUsedCapacityDto -> incrementUsedCapacityDto.geoKey().equalsIgnoreCase("RM"))
                 .findFirst()
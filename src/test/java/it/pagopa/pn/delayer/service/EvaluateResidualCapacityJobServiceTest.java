@@ -1,10 +1,12 @@
 package it.pagopa.pn.delayer.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.*;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
+import it.pagopa.pn.delayer.utils.CpuStageScheduler;
 import it.pagopa.pn.delayer.utils.DeliveryDriverUtils;
 import it.pagopa.pn.delayer.utils.PaperDeliveryUtils;
 import it.pagopa.pn.delayer.utils.PnDelayerUtils;
@@ -59,7 +61,7 @@ class EvaluateResidualCapacityJobServiceTest {
         pnDelayerConfigs.setPrintCapacityWeeklyWorkingDays(7);
         pnDelayerConfigs.setPrintCapacity(List.of("1970-01-01;180000"));
 
-        PaperDeliveryUtils paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, pnDelayerConfigs, new PnDelayerUtils(pnDelayerConfigs, new PrintCapacityUtils(pnDelayerConfigs)), deliveryDriverUtils, paperDeliveryCounterDAO);
+        PaperDeliveryUtils paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, pnDelayerConfigs, new PnDelayerUtils(pnDelayerConfigs, new PrintCapacityUtils(pnDelayerConfigs)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(pnDelayerConfigs));
         evaluateResidualCapacityJob = new EvaluateResidualCapacityJobServiceImpl(paperDeliveryUtils);
     }
 
@@ -239,7 +241,8 @@ class EvaluateResidualCapacityJobServiceTest {
         verify(deliveryDriverUtils, times(2)).retrieveDeclaredAndUsedCapacity( eq("00184"), any(), any(), any());
         verify(deliveryDriverUtils, times(1)).updateCounters(anyList());
         List<List<IncrementUsedCapacityDto>> incrementUsedCapacityCaptured = incrementUsedCapacityCaptor.getAllValues();
-        Assertions.assertEquals(3, incrementUsedCapacityCaptured.getFirst().size());
+        // one aggregated increment per geoKey: RM and 00184 (processed on both pages)
+        Assertions.assertEquals(2, incrementUsedCapacityCaptured.getFirst().size());
         Assertions.assertEquals(2, incrementUsedCapacityCaptured.getFirst().stream()
                 .filter(incrementUsedCapacityDto -> incrementUsedCapacityDto.geoKey().equalsIgnoreCase("RM"))
                 .findFirst()
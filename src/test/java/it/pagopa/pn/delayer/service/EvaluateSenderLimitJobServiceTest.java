@@ -1,5 +1,7 @@
 package it.pagopa.pn.delayer.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.pagopa.pn.delayer.cache.PaperDeliveryCounterSnapshotService;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.config.SsmParameterConsumerActivation;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
@@ -9,6 +11,7 @@ import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliverySenderLimit;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryUsedSenderLimit;
+import it.pagopa.pn.delayer.model.CarryOverCursor;
 import it.pagopa.pn.delayer.model.DriversTotalCapacity;
 import it.pagopa.pn.delayer.model.PaperChannelDeliveryDriver;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
@@ -60,6 +63,7 @@ class EvaluateSenderLimitJobServiceTest {
 
     private final String province = "RM";
     private final String tenderId = "TENDERID";
+    private PnDelayerConfigs serviceConfigs;
 
     @BeforeEach
     void setupMocks() {
@@ -70,15 +74,17 @@ class EvaluateSenderLimitJobServiceTest {
         PnDelayerConfigs.Dao daoConfig = new PnDelayerConfigs.Dao();
         daoConfig.setPaperDeliveryQueryLimit(50);
         pnDelayerConfigs.setDao(daoConfig);
+        serviceConfigs = pnDelayerConfigs;
 
         service = new EvaluateSenderLimitJobServiceImpl(
                 pnDelayerUtils,
                 pnDelayerConfigs,
-                new PaperDeliveryUtils(paperDeliveryDao, pnDelayerConfigs, pnDelayerUtils, deliveryDriverUtils, paperDeliveryCounterDAO),
+                new PaperDeliveryUtils(paperDeliveryDao, pnDelayerConfigs, pnDelayerUtils, deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(pnDelayerConfigs)),
                 deliveryDriverUtils,
                 ssmParameterConsumerActivation,
-                new SenderLimitUtils(paperDeliverySenderLimitDAO, pnDelayerUtils, paperDeliveryCounterDAO),
-                paperDeliverySenderLimitDAO
+                new SenderLimitUtils(paperDeliverySenderLimitDAO, pnDelayerUtils, new PaperDeliveryCounterSnapshotService(paperDeliveryCounterDAO, pnDelayerConfigs), pnDelayerConfigs, new CpuStageScheduler(pnDelayerConfigs)),
+                paperDeliverySenderLimitDAO,
+                new CpuStageScheduler(pnDelayerConfigs)
         );
 
         Map<String, List<String>> priorityMap = Map.of(
@@ -141,6 +147,38 @@ class EvaluateSenderLimitJobServiceTest {
         verify(paperDeliveryDao, times(1)).retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), any(), any(), any(), eq(50));
     }
 
+    @Test
+    void startSenderLimitJob_readsCarriedOverDeliveriesFirst() {
+        serviceConfigs.getCarryOver().setEnabled(true);
+        LocalDate deliveryWeek = LocalDate.parse("2025-01-13");
+        DriversTotalCapacity capacity = new DriversTotalCapacity(List.of("RS","AR"), 8, List.of("POSTE"));
+        when(deliveryDriverUtils.retrieveDriversCapacityOnProvince(any(), eq(tenderId), eq(province)))
+                .thenReturn(Mono.just(List.of(capacity)));
+
+        when(paperDeliveryCounterDAO.retrieveCarryOverCursors(deliveryWeek, province))
+                .thenReturn(Flux.just(new CarryOverCursor(deliveryWeek, province, WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, deliveryWeek.minusWeeks(1), "POSTE~RM", Map.of())));
+        when(paperDeliveryDao.retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY), eq(deliveryWeek.minusWeeks(1)), eq("POSTE~RM"), any(), eq(50)))
+                .thenReturn(Mono.just(Page.create(getPaperDeliveries(false))));
+        when(paperDeliveryDao.retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), eq(deliveryWeek), eq("RM~"), any(), eq(50)))
+                .thenReturn(Mono.just(Page.create(getPaperDeliveries(false))));
+        when(deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(anyList(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(paperDeliverySenderLimitDAO.retrieveSendersLimit(anyList(), any())).thenReturn(Flux.empty());
+        when(paperDeliveryDao.insertPaperDeliveries(anyList())).thenReturn(Mono.empty());
+
+        PaperDeliveryCounter paperDeliveryCounter = new PaperDeliveryCounter();
+        paperDeliveryCounter.setNumberOfShipments(100);
+        when(paperDeliveryCounterDAO.getPaperDeliveryCounter(anyString(), anyString(), anyInt()))
+                .thenReturn(Mono.just(List.of(paperDeliveryCounter)));
+
+        StepVerifier.create(service.startSenderLimitJob(province, tenderId, deliveryWeek))
+                .verifyComplete();
+
+        var inOrder = inOrder(paperDeliveryDao);
+        inOrder.verify(paperDeliveryDao).retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY), any(), any(), any(), eq(50));
+        inOrder.verify(paperDeliveryDao).retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), any(), any(), any(), eq(50));
+    }
+
     @Test
     void startSenderLimitJob_singleDriver_withLastEvaluatedKeyAndWithoutSenderLimit() {
 
@@ -339,6 +377,43 @@ class EvaluateSenderLimitJobServiceTest {
         verify(paperDeliveryDao, times(1)).retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), any(), any(), any(), eq(50));
     }
 
+    @Test
+    void startSenderLimitJob_multipleDriver_resolvesDriversUpfront() {
+        serviceConfigs.getDriverResolution().setUpfront(true);
+        DriversTotalCapacity capacity = new DriversTotalCapacity(List.of("RS"),10, List.of("POSTE", "FULMINE"));
+        when(deliveryDriverUtils.retrieveDriversCapacityOnProvince(any(), eq(tenderId), eq(province)))
+                .thenReturn(Mono.just(List.of(capacity)));
+
+        List<PaperDelivery> deliveries = new ArrayList<>();
+        deliveries.addAll(getPaperDeliveries(false));
+        deliveries.addAll(getPaperDeliveries(false));
+        Page<PaperDelivery> page = mock(Page.class);
+        when(page.items()).thenReturn(deliveries);
+        when(page.lastEvaluatedKey()).thenReturn(new HashMap<>());
+        when(paperDeliveryDao.retrievePaperDeliveriesProjection(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), any(), eq("RM~"), anyList(), any(), eq(50)))
+                .thenReturn(Mono.just(page));
+        when(paperDeliveryDao.retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), any(), any(), any(), eq(50)))
+                .thenReturn(Mono.just(page));
+        when(deliveryDriverUtils.resolveAndCacheUnifiedDeliveryDrivers(Set.of("00184~AR", "00185~RS"), tenderId)).thenReturn(Mono.empty());
+        when(deliveryDriverUtils.retrieveFromCache("00184~AR")).thenReturn(Optional.of("driver1"));
+        when(deliveryDriverUtils.retrieveFromCache("00185~RS")).thenReturn(Optional.of("driver2"));
+        when(deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(anyList(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(paperDeliveryDao.insertPaperDeliveries(anyList())).thenReturn(Mono.empty());
+
+        PaperDeliveryCounter paperDeliveryCounter = new PaperDeliveryCounter();
+        paperDeliveryCounter.setNumberOfShipments(100);
+        when(paperDeliveryCounterDAO.getPaperDeliveryCounter(anyString(), anyString(), anyInt()))
+                .thenReturn(Mono.just(List.of(paperDeliveryCounter)));
+        when(paperDeliverySenderLimitDAO.retrieveSendersLimit(anyList(), any())).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.startSenderLimitJob(province, tenderId, LocalDate.now()))
+                .verifyComplete();
+
+        verify(deliveryDriverUtils, times(1)).resolveAndCacheUnifiedDeliveryDrivers(Set.of("00184~AR", "00185~RS"), tenderId);
+        verify(deliveryDriverUtils, never()).retrieveUnifiedDeliveryDriversFromPaperChannel(anyList(), anyString());
+    }
+
     @Test
     void startSenderLimitJob_multiple_withLastEvaluatedKey() {
 
@@ -0,0 +1,37 @@
+package it.pagopa.pn.delayer.utils;
+
+import it.pagopa.pn.delayer.config.PnDelayerConfigs;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.concurrent.Queues;
+
+class CpuStageSchedulerTest {
+
+    @Test
+    void offloadDisabledKeepsCallerThread() {
+        CpuStageScheduler cpuStageScheduler = new CpuStageScheduler(new PnDelayerConfigs());
+
+        StepVerifier.create(cpuStageScheduler.offload(Mono.fromCallable(() -> "x")).map(unused -> Thread.currentThread().getName()))
+                .expectNext(Thread.currentThread().getName())
+                .verifyComplete();
+        Assertions.assertEquals(Queues.SMALL_BUFFER_SIZE, cpuStageScheduler.capGroupConcurrency());
+        Assertions.assertEquals(Queues.SMALL_BUFFER_SIZE, cpuStageScheduler.writeChunkConcurrency());
+    }
+
+    @Test
+    void offloadEnabledMovesOnParallelScheduler() {
+        PnDelayerConfigs configs = new PnDelayerConfigs();
+        configs.getScheduling().setCpuOffload(true);
+        configs.getScheduling().setParallelism(2);
+        configs.getScheduling().setCapGroupConcurrency(4);
+        CpuStageScheduler cpuStageScheduler = new CpuStageScheduler(configs);
+
+        StepVerifier.create(cpuStageScheduler.offload(Mono.fromCallable(() -> "x")).map(unused -> Thread.currentThread().getName()))
+                .expectNextMatches(threadName -> threadName.startsWith("pn-delayer-cpu"))
+                .verifyComplete();
+        Assertions.assertEquals(4, cpuStageScheduler.capGroupConcurrency());
+        cpuStageScheduler.destroy();
+    }
+}
@@ -1,7 +1,11 @@
 package it.pagopa.pn.delayer.utils;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.pagopa.pn.delayer.cache.CapProductTypeDriverCacheService;
+import it.pagopa.pn.delayer.cache.DeclaredCapacityCacheService;
+import it.pagopa.pn.delayer.cache.DeclaredCapacityIndexService;
+import it.pagopa.pn.delayer.cache.PaperDeliveryCounterSnapshotService;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverCapacitiesDAO;
@@ -9,18 +13,22 @@ import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDriverUsedCapacitiesDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryCounter;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverCapacity;
+import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDeliveryDriverUsedCapacities;
 import it.pagopa.pn.delayer.model.DeliveryDriverRequest;
 import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
 import it.pagopa.pn.delayer.model.PaperChannelDeliveryDriver;
+import it.pagopa.pn.delayer.model.PriorityLookupTable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import reactor.util.function.Tuples;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.lambda.LambdaAsyncClient;
 import software.amazon.awssdk.services.lambda.LambdaClient;
 import software.amazon.awssdk.services.lambda.model.InvokeRequest;
 import software.amazon.awssdk.services.lambda.model.InvokeResponse;
@@ -30,10 +38,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,6 +57,9 @@ class DeliveryDriverUtilsTest {
     @Mock
     private LambdaClient lambdaClient;
 
+    @Mock
+    private LambdaAsyncClient lambdaAsyncClient;
+
     @Mock
     private PnDelayerConfigs pnDelayerConfigs;
 
@@ -62,17 +78,24 @@ class DeliveryDriverUtilsTest {
     @Mock
     private PaperDeliveryCounterDAO paperDeliveryCounterDAO;
 
+    @Mock
+    private DeclaredCapacityCacheService declaredCapacityCacheService;
+
     @BeforeEach
     void setUp() {
         deliveryDriverUtils = new DeliveryDriverUtils(
                 lambdaClient,
+                lambdaAsyncClient,
                 new ObjectMapper(),
                 pnDelayerConfigs,
                 cacheService,
                 pnDelayerUtils,
                 paperDeliveryUsedCapacityDAO,
                 paperDeliveryDriverCapacitiesDAO,
-                paperDeliveryCounterDAO
+                new PaperDeliveryCounterSnapshotService(paperDeliveryCounterDAO, pnDelayerConfigs),
+                declaredCapacityCacheService,
+                new DeclaredCapacityIndexService(paperDeliveryDriverCapacitiesDAO, pnDelayerConfigs),
+                new SimpleMeterRegistry()
         );
     }
 
@@ -100,6 +123,97 @@ class DeliveryDriverUtilsTest {
         assertThrows(RuntimeException.class, () -> deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannel(deliveryDriverRequests, tenderId));
     }
 
+    @Test
+    void retrieveUnifiedDeliveryDriversFromPaperChannelAsync_singleInvocation() {
+        List<DeliveryDriverRequest> deliveryDriverRequests = List.of(new DeliveryDriverRequest("00100", "AR"), new DeliveryDriverRequest("00200", "AR"));
+        when(pnDelayerConfigs.getDriverResolution()).thenReturn(new PnDelayerConfigs.DriverResolution());
+        when(lambdaAsyncClient.invoke(any(InvokeRequest.class))).thenReturn(CompletableFuture.completedFuture(InvokeResponse.builder()
+                .payload(SdkBytes.fromUtf8String("{\"body\":[{\"unifiedDeliveryDriver\":\"driver1\"},{\"unifiedDeliveryDriver\":\"driver2\"}]}"))
+                .build()));
+
+        StepVerifier.create(deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannelAsync(deliveryDriverRequests, "tender1"))
+                .assertNext(result -> assertEquals(2, result.size()))
+                .verifyComplete();
+
+        verify(lambdaAsyncClient, times(1)).invoke(any(InvokeRequest.class));
+    }
+
+    @Test
+    void retrieveUnifiedDeliveryDriversFromPaperChannelAsync_splitsPayloadExceedingMaxSize() {
+        List<DeliveryDriverRequest> deliveryDriverRequests = List.of(new DeliveryDriverRequest("00100", "AR"),
+                new DeliveryDriverRequest("00200", "AR"), new DeliveryDriverRequest("00300", "AR"));
+        PnDelayerConfigs.DriverResolution driverResolution = new PnDelayerConfigs.DriverResolution();
+        driverResolution.setMaxPayloadBytes(1);
+        when(pnDelayerConfigs.getDriverResolution()).thenReturn(driverResolution);
+        when(lambdaAsyncClient.invoke(any(InvokeRequest.class))).thenAnswer(invocation -> CompletableFuture.completedFuture(InvokeResponse.builder()
+                .payload(SdkBytes.fromUtf8String("{\"body\":[{\"unifiedDeliveryDriver\":\"driver1\"}]}"))
+                .build()));
+
+        StepVerifier.create(deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannelAsync(deliveryDriverRequests, "tender1"))
+                .assertNext(result -> assertEquals(3, result.size()))
+                .verifyComplete();
+
+        verify(lambdaAsyncClient, times(3)).invoke(any(InvokeRequest.class));
+    }
+
+    @Test
+    void retrieveUnifiedDeliveryDriversFromPaperChannelAsync_propagatesInvocationError() {
+        when(pnDelayerConfigs.getDriverResolution()).thenReturn(new PnDelayerConfigs.DriverResolution());
+        when(lambdaAsyncClient.invoke(any(InvokeRequest.class))).thenReturn(CompletableFuture.failedFuture(new RuntimeException("Error invoking Lambda")));
+
+        StepVerifier.create(deliveryDriverUtils.retrieveUnifiedDeliveryDriversFromPaperChannelAsync(List.of(new DeliveryDriverRequest("geoKey", "AR")), "tender1"))
+                .expectError(RuntimeException.class)
+                .verify();
+    }
+
+    @Test
+    void resolveAndCacheUnifiedDeliveryDrivers_callsPaperChannelInChunksForKeysNotInCache() {
+        PnDelayerConfigs.DriverResolution driverResolution = new PnDelayerConfigs.DriverResolution();
+        driverResolution.setChunkSize(2);
+        when(pnDelayerConfigs.getDriverResolution()).thenReturn(driverResolution);
+        when(cacheService.getFromCache(anyString())).thenReturn(Optional.empty());
+        when(cacheService.getFromCache("00100~AR")).thenReturn(Optional.of("driver1"));
+        when(lambdaClient.invoke(any(InvokeRequest.class))).thenReturn(InvokeResponse.builder()
+                .payload(SdkBytes.fromUtf8String("{\"body\":[{\"geoKey\":\"00200\",\"product\":\"AR\",\"unifiedDeliveryDriver\":\"driver2\"}]}"))
+                .build());
+        when(pnDelayerUtils.groupByGeoKeyAndProduct(anyList())).thenReturn(Map.of("00200~AR", "driver2"));
+
+        StepVerifier.create(deliveryDriverUtils.resolveAndCacheUnifiedDeliveryDrivers(List.of("00100~AR", "00200~AR", "00300~AR", "00400~RS"), "tender1"))
+                .verifyComplete();
+
+        verify(lambdaClient, times(2)).invoke(any(InvokeRequest.class));
+        verify(cacheService, times(2)).addToCache("00200~AR", "driver2");
+    }
+
+    @Test
+    void resolveAndCacheUnifiedDeliveryDrivers_asyncInvocationsBoundedByConcurrency() {
+        PnDelayerConfigs.DriverResolution driverResolution = new PnDelayerConfigs.DriverResolution();
+        driverResolution.setChunkSize(2);
+        driverResolution.setConcurrency(2);
+        driverResolution.setAsyncInvocation(true);
+        driverResolution.setMaxPayloadBytes(1);
+        when(pnDelayerConfigs.getDriverResolution()).thenReturn(driverResolution);
+        when(cacheService.getFromCache(anyString())).thenReturn(Optional.empty());
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(lambdaAsyncClient.invoke(any(InvokeRequest.class))).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return InvokeResponse.builder()
+                        .payload(SdkBytes.fromUtf8String("{\"body\":[{\"unifiedDeliveryDriver\":\"driver1\"}]}"))
+                        .build();
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        });
+        when(pnDelayerUtils.groupByGeoKeyAndProduct(anyList())).thenReturn(Map.of());
+
+        StepVerifier.create(deliveryDriverUtils.resolveAndCacheUnifiedDeliveryDrivers(List.of("00100~AR", "00200~AR", "00300~AR", "00400~AR", "00500~AR", "00600~AR"), "tender1"))
+                .verifyComplete();
+
+        verify(lambdaAsyncClient, times(6)).invoke(any(InvokeRequest.class));
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
     @Test
     void retrieveDeclaredAndUsedCapacity_handlesExistingUsedCapacity() {
         String geoKey = "geo1";
@@ -132,6 +246,36 @@ class DeliveryDriverUtilsTest {
                 .verifyComplete();
     }
 
+    @Test
+    void retrieveDeclaredAndUsedCapacities_batchGetsUsedCapacitiesAndResolvesMissesFromCache() {
+        LocalDate deliveryWeek = LocalDate.parse("2025-01-06");
+        PnDelayerConfigs.CapacityResolution capacityResolution = new PnDelayerConfigs.CapacityResolution();
+        capacityResolution.setBatchSize(2);
+        when(pnDelayerConfigs.getCapacityResolution()).thenReturn(capacityResolution);
+        PaperDeliveryDriverUsedCapacities usedCapacity = new PaperDeliveryDriverUsedCapacities();
+        usedCapacity.setGeoKey("00100");
+        usedCapacity.setDeclaredCapacity(100);
+        usedCapacity.setUsedCapacity(50);
+        when(paperDeliveryUsedCapacityDAO.batchGetItem(List.of("driver1~00100", "driver1~00200"), deliveryWeek)).thenReturn(Flux.just(usedCapacity));
+        when(paperDeliveryUsedCapacityDAO.batchGetItem(List.of("driver1~00300"), deliveryWeek)).thenReturn(Flux.empty());
+        when(declaredCapacityCacheService.getFromCache("tender1", "driver1", "00200", deliveryWeek)).thenReturn(Optional.of(20));
+        when(declaredCapacityCacheService.getFromCache("tender1", "driver1", "00300", deliveryWeek)).thenReturn(Optional.empty());
+        when(paperDeliveryDriverCapacitiesDAO.getPaperDeliveryDriverCapacities("tender1", "driver1", "00300", deliveryWeek)).thenReturn(Mono.just(30));
+
+        StepVerifier.create(deliveryDriverUtils.retrieveDeclaredAndUsedCapacities(List.of("00100", "00200", "00300"), "driver1", "tender1", deliveryWeek))
+                .assertNext(capacities -> {
+                    assertEquals(3, capacities.size());
+                    assertEquals(Tuples.of(100, 50), capacities.get("00100"));
+                    assertEquals(Tuples.of(20, 0), capacities.get("00200"));
+                    assertEquals(Tuples.of(30, 0), capacities.get("00300"));
+                })
+                .verifyComplete();
+
+        verify(paperDeliveryDriverCapacitiesDAO, times(1)).getPaperDeliveryDriverCapacities(any(), any(), any(), any());
+        verify(declaredCapacityCacheService).addToCache("tender1", "driver1", "00300", deliveryWeek, 30);
+        verify(paperDeliveryUsedCapacityDAO, never()).get(any(), any(), any());
+    }
+
     @Test
     void retrieveDriversCapacityOnProvinceWithoutExclude() {
         LocalDate deliveryDate = LocalDate.now();
@@ -247,7 +391,7 @@ class DeliveryDriverUtilsTest {
         );
 
         List<PaperDelivery> result = deliveryDriverUtils.assignUnifiedDeliveryDriverAndEnrichWithDriverAndPriority(
-                grouped, "tenderTest", priorityMap
+                grouped, "tenderTest", PriorityLookupTable.compile(priorityMap)
         );
 
         assertEquals(2, result.size());
@@ -266,7 +410,7 @@ class DeliveryDriverUtilsTest {
                 2, List.of("PRODUCT_AR.ATTEMPT_1","PRODUCT_890.ATTEMPT_1"),
                 3, List.of("PRODUCT_AR.ATTEMPT_0","PRODUCT_890.ATTEMPT_0"));
 
-        List<PaperDelivery> result = deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(paperDeliveries, "driver2", "tenderId", priorityMap);
+        List<PaperDelivery> result = deliveryDriverUtils.enrichWithPriorityAndUnifiedDeliveryDriver(paperDeliveries, "driver2", "tenderId", PriorityLookupTable.compile(priorityMap));
 
         assertEquals(3, result.size());
         assertEquals(2, result.get(0).getPriority());
@@ -1,16 +1,22 @@
 package it.pagopa.pn.delayer.utils;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryDAO;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
+import it.pagopa.pn.delayer.model.CarryOverCursor;
+import it.pagopa.pn.delayer.model.IncrementUsedCapacityDto;
+import it.pagopa.pn.delayer.model.JobCheckpoint;
 import it.pagopa.pn.delayer.model.SenderLimitJobProcessObjects;
+import it.pagopa.pn.delayer.model.SortKeyRange;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import reactor.util.function.Tuple2;
@@ -22,6 +28,7 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
@@ -46,7 +53,7 @@ public class PaperDeliveryUtilsTest {
         PnDelayerConfigs.Dao daoConfig = new PnDelayerConfigs.Dao();
         daoConfig.setPaperDeliveryQueryLimit(10);
         config.setDao(daoConfig);
-        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO);
+        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(config));
     }
 
 
@@ -97,6 +104,129 @@ public class PaperDeliveryUtilsTest {
     }
 
 
+    @Test
+    void evaluateCapacitiesAndProcessDeliveries_skipsCompletedJob() {
+        LocalDate deliveryWeek = LocalDate.now();
+        PnDelayerConfigs config = checkpointConfig();
+        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(config));
+        when(paperDeliveryCounterDAO.retrieveJobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek))
+                .thenReturn(Mono.just(new JobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek,
+                        JobCheckpoint.Phase.COMPLETED, Map.of(), 3, 20, 20, List.of(), 1)));
+
+        StepVerifier.create(paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek, "tender1"))
+                .verifyComplete();
+
+        verifyNoInteractions(deliveryDriverUtils, paperDeliveryDAO);
+        verify(paperDeliveryCounterDAO, never()).saveJobCheckpoint(any(), any());
+    }
+
+    @Test
+    void evaluateCapacitiesAndProcessDeliveries_completesJobWithFlushedCounters() {
+        LocalDate deliveryWeek = LocalDate.now();
+        PnDelayerConfigs config = checkpointConfig();
+        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(config));
+        when(paperDeliveryCounterDAO.retrieveJobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek))
+                .thenReturn(Mono.just(new JobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek,
+                        JobCheckpoint.Phase.NEXT_WEEK, Map.of(), 3, 20, 20, List.of(), 1)));
+        when(paperDeliveryCounterDAO.saveJobCheckpoint(any(), eq(config.getCheckpoint().getTtl()))).thenReturn(Mono.empty());
+
+        StepVerifier.create(paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek, "tender1"))
+                .verifyComplete();
+
+        verifyNoInteractions(deliveryDriverUtils, paperDeliveryDAO);
+        verify(paperDeliveryCounterDAO).saveJobCheckpoint(argThat(checkpoint -> checkpoint.phase() == JobCheckpoint.Phase.COMPLETED), any());
+    }
+
+    @Test
+    void evaluateCapacitiesAndProcessDeliveries_rerunsCompletedJob() {
+        LocalDate deliveryWeek = LocalDate.now();
+        PnDelayerConfigs config = checkpointConfig();
+        config.getCheckpoint().setRerunCompleted(true);
+        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(config));
+        when(paperDeliveryCounterDAO.retrieveJobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek))
+                .thenReturn(Mono.just(new JobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek,
+                        JobCheckpoint.Phase.COMPLETED, Map.of(), 3, 20, 20, List.of(), 1)));
+        when(deliveryDriverUtils.retrieveDeclaredAndUsedCapacity("RM", "driver1", "tender1", deliveryWeek)).thenReturn(Mono.empty());
+        when(paperDeliveryCounterDAO.saveJobCheckpoint(any(), eq(config.getCheckpoint().getTtl()))).thenReturn(Mono.empty());
+
+        StepVerifier.create(paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek, "tender1"))
+                .verifyComplete();
+
+        verify(deliveryDriverUtils).retrieveDeclaredAndUsedCapacity("RM", "driver1", "tender1", deliveryWeek);
+        verify(paperDeliveryCounterDAO).saveJobCheckpoint(argThat(checkpoint -> checkpoint.phase() == JobCheckpoint.Phase.COMPLETED), any());
+    }
+
+    @Test
+    void evaluateCapacitiesAndProcessDeliveries_resumesInterruptedFlush() {
+        LocalDate deliveryWeek = LocalDate.now();
+        PnDelayerConfigs config = checkpointConfig();
+        config.setPrintCapacity(List.of("1970-01-01;1000"));
+        config.setPrintCapacityWeeklyWorkingDays(5);
+        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(config));
+        List<IncrementUsedCapacityDto> usedCapacities = new ArrayList<>();
+        for (int i = 0; i < PaperDeliveryCounterDAO.MAX_CHECKPOINT_COUNTER_UPDATES + 2; i++) {
+            usedCapacities.add(new IncrementUsedCapacityDto("driver1", String.format("%05d", i), 1, deliveryWeek, 10));
+        }
+        when(paperDeliveryCounterDAO.retrieveJobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek))
+                .thenReturn(Mono.just(new JobCheckpoint(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek,
+                        JobCheckpoint.Phase.FLUSHING, Map.of(), 3, 100, 20, usedCapacities, 1)));
+        when(paperDeliveryCounterDAO.saveJobCheckpointWithCounters(any(), eq(config.getCheckpoint().getTtl()), anyInt(), any(), anyList())).thenReturn(Mono.empty());
+        when(paperDeliveryCounterDAO.saveJobCheckpoint(any(), eq(config.getCheckpoint().getTtl()))).thenReturn(Mono.empty());
+
+        StepVerifier.create(paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek, "tender1"))
+                .verifyComplete();
+
+        verifyNoInteractions(deliveryDriverUtils, paperDeliveryDAO);
+        verify(paperDeliveryCounterDAO).saveJobCheckpointWithCounters(argThat(checkpoint -> checkpoint.phase() == JobCheckpoint.Phase.NEXT_WEEK && checkpoint.flushedChunks() == 2),
+                any(), eq(0), eq(5000), argThat(chunk -> chunk.size() == 2 && chunk.getFirst().geoKey().equals(String.format("%05d", PaperDeliveryCounterDAO.MAX_CHECKPOINT_COUNTER_UPDATES))));
+        verify(paperDeliveryCounterDAO).saveJobCheckpoint(argThat(checkpoint -> checkpoint.phase() == JobCheckpoint.Phase.COMPLETED), any());
+    }
+
+    @Test
+    void evaluateCapacitiesAndProcessDeliveries_carriesOverWithoutCopyingDeliveries() {
+        LocalDate deliveryWeek = LocalDate.parse("2025-01-06");
+        PnDelayerConfigs config = checkpointConfig();
+        config.getCheckpoint().setEnabled(false);
+        config.getCarryOver().setEnabled(true);
+        paperDeliveryUtils = new PaperDeliveryUtils(paperDeliveryDAO, config, new PnDelayerUtils(config, new PrintCapacityUtils(config)), deliveryDriverUtils, paperDeliveryCounterDAO, new SimpleMeterRegistry(), new CpuStageScheduler(config));
+        when(deliveryDriverUtils.retrieveDeclaredAndUsedCapacity("RM", "driver1", "tender1", deliveryWeek)).thenReturn(Mono.just(Tuples.of(10, 10)));
+        when(paperDeliveryCounterDAO.saveCarryOverCursor(any(), eq(config.getCarryOver().getTtl()))).thenReturn(Mono.empty());
+
+        StepVerifier.create(paperDeliveryUtils.evaluateCapacitiesAndProcessDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, "driver1", "RM", deliveryWeek, "tender1"))
+                .verifyComplete();
+
+        verify(paperDeliveryCounterDAO).saveCarryOverCursor(new CarryOverCursor(LocalDate.parse("2025-01-13"), "RM", WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY,
+                deliveryWeek, "driver1~RM", Map.of()), config.getCarryOver().getTtl());
+        verifyNoInteractions(paperDeliveryDAO);
+    }
+
+    @Test
+    void retrieveCarriedOverPaperDeliveryPages_readsSourcePartitionFromStartKey() {
+        LocalDate deliveryWeek = LocalDate.parse("2025-01-13");
+        Map<String, AttributeValue> startKey = Map.of("sk", AttributeValue.builder().s("driver1~RM~3~2025-01-02T00:00:00Z~requestId1").build());
+        Map<String, AttributeValue> nextKey = Map.of("sk", AttributeValue.builder().s("driver1~RM~3~2025-01-03T00:00:00Z~requestId2").build());
+        when(paperDeliveryCounterDAO.retrieveCarryOverCursors(deliveryWeek, "RM"))
+                .thenReturn(Flux.just(new CarryOverCursor(deliveryWeek, "RM", WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, LocalDate.parse("2025-01-06"), "driver1~RM", startKey)));
+        when(paperDeliveryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, LocalDate.parse("2025-01-06"), "driver1~RM", startKey, 10))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00179", "RM", "senderPaId1", 0)), nextKey)));
+        when(paperDeliveryDAO.retrievePaperDeliveries(WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY, LocalDate.parse("2025-01-06"), "driver1~RM", nextKey, 10))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00178", "RM", "senderPaId1", 0)))));
+
+        StepVerifier.create(paperDeliveryUtils.retrieveCarriedOverPaperDeliveryPages(deliveryWeek, "RM", 10))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00179"))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00178"))
+                .verifyComplete();
+    }
+
+    private static PnDelayerConfigs checkpointConfig() {
+        PnDelayerConfigs config = new PnDelayerConfigs();
+        PnDelayerConfigs.Dao daoConfig = new PnDelayerConfigs.Dao();
+        daoConfig.setPaperDeliveryQueryLimit(10);
+        config.setDao(daoConfig);
+        config.getCheckpoint().setEnabled(true);
+        return config;
+    }
+
     @Test
     void retrievePaperDeliveries_handlesNoRecordsFound() {
         WorkflowStepEnum workflowStepEnum = WorkflowStepEnum.EVALUATE_DRIVER_CAPACITY;
@@ -112,6 +242,66 @@ public class PaperDeliveryUtilsTest {
                 .verifyComplete();
     }
 
+    @Test
+    void retrievePaperDeliveryPages_followsLastEvaluatedKey() {
+        LocalDate deliveryWeek = LocalDate.now();
+        Map<String, AttributeValue> firstKey = Map.of("pk", AttributeValue.builder().s("1").build());
+        Map<String, AttributeValue> secondKey = Map.of("pk", AttributeValue.builder().s("2").build());
+
+        when(paperDeliveryDAO.retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), eq(deliveryWeek), eq("RM~"), eq(Map.of()), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00179", "RM", "senderPaId1", 0)), firstKey)));
+        when(paperDeliveryDAO.retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), eq(deliveryWeek), eq("RM~"), eq(firstKey), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00178", "RM", "senderPaId1", 0)), secondKey)));
+        when(paperDeliveryDAO.retrievePaperDeliveries(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), eq(deliveryWeek), eq("RM~"), eq(secondKey), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of())));
+
+        StepVerifier.create(paperDeliveryUtils.retrievePaperDeliveryPages(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, "RM~", 10))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00179"))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00178"))
+                .verifyComplete();
+
+        verify(paperDeliveryDAO, times(3)).retrievePaperDeliveries(any(), any(), anyString(), any(), anyInt());
+    }
+
+    @Test
+    void retrievePaperDeliveryPages_mergesRangesInOrder() {
+        LocalDate deliveryWeek = LocalDate.now();
+        SortKeyRange firstRange = new SortKeyRange("RM~", "RM~2025-01-09");
+        SortKeyRange secondRange = new SortKeyRange("RM~2025-01-09", "RM~\uffff");
+        Map<String, AttributeValue> firstRangeKey = Map.of("pk", AttributeValue.builder().s("1").build());
+
+        when(paperDeliveryDAO.retrievePaperDeliveriesInRange(any(), any(), eq(firstRange), eq(Map.of()), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00001", "RM", "senderPaId1", 0)), firstRangeKey)));
+        when(paperDeliveryDAO.retrievePaperDeliveriesInRange(any(), any(), eq(firstRange), eq(firstRangeKey), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00002", "RM", "senderPaId1", 0)))));
+        when(paperDeliveryDAO.retrievePaperDeliveriesInRange(any(), any(), eq(secondRange), eq(Map.of()), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00003", "RM", "senderPaId1", 0)))));
+
+        StepVerifier.create(paperDeliveryUtils.retrievePaperDeliveryPages(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, List.of(firstRange, secondRange), 10, 1))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00001"))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00002"))
+                .expectNextMatches(page -> page.items().getFirst().getCap().equals("00003"))
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveDistinctCapProductTypeKeys_readsAllPagesWithProjection() {
+        LocalDate deliveryWeek = LocalDate.now();
+        Map<String, AttributeValue> firstKey = Map.of("pk", AttributeValue.builder().s("1").build());
+        List<String> projection = List.of(PaperDelivery.COL_CAP, PaperDelivery.COL_PRODUCT_TYPE);
+
+        when(paperDeliveryDAO.retrievePaperDeliveriesProjection(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), eq(deliveryWeek), eq("RM~"), eq(projection), eq(Map.of()), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00179", "RM", "senderPaId1", 0),
+                        createPaperDelivery("AR", "00178", "RM", "senderPaId1", 0)), firstKey)));
+        when(paperDeliveryDAO.retrievePaperDeliveriesProjection(eq(WorkflowStepEnum.EVALUATE_SENDER_LIMIT), eq(deliveryWeek), eq("RM~"), eq(projection), eq(firstKey), eq(10)))
+                .thenReturn(Mono.just(Page.create(List.of(createPaperDelivery("AR", "00179", "RM", "senderPaId2", 0),
+                        createPaperDelivery("RS", "00179", "RM", "senderPaId2", 0)))));
+
+        StepVerifier.create(paperDeliveryUtils.retrieveDistinctCapProductTypeKeys(WorkflowStepEnum.EVALUATE_SENDER_LIMIT, deliveryWeek, "RM~", 10))
+                .expectNext(Set.of("00179~AR", "00178~AR", "00179~RS"))
+                .verifyComplete();
+    }
+
     @Test
     void insertPaperDeliveries(){
         List<PaperDelivery> paperDeliveries = new ArrayList<>();
@@ -4,6 +4,7 @@ import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.dynamo.entity.PaperDelivery;
 import it.pagopa.pn.delayer.model.PaperChannelDeliveryDriver;
 import it.pagopa.pn.delayer.model.SenderLimitJobProcessObjects;
+import it.pagopa.pn.delayer.model.SortKeyRange;
 import it.pagopa.pn.delayer.model.WorkflowStepEnum;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +19,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static it.pagopa.pn.delayer.model.WorkflowStepEnum.EVALUATE_SENDER_LIMIT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -44,6 +46,37 @@ class PnDelayerUtilsTest {
         assertEquals(expectedDeliveryWeek, actualDeliveryWeek);
     }
 
+    @Test
+    void testSplitSortKeyRangeByDate() {
+        List<SortKeyRange> ranges = pnDelayerUtils.splitSortKeyRangeByDate("RM~", LocalDate.parse("2025-01-06"), LocalDate.parse("2025-01-13"), 3);
+
+        assertEquals(3, ranges.size());
+        assertEquals(new SortKeyRange("RM~", "RM~2025-01-09"), ranges.get(0));
+        assertEquals(new SortKeyRange("RM~2025-01-09", "RM~2025-01-12"), ranges.get(1));
+        assertEquals(new SortKeyRange("RM~2025-01-12", "RM~\uffff"), ranges.get(2));
+        String sortKey = "RM~2025-01-09T10:00:00Z~requestId";
+        assertEquals(1, ranges.stream().filter(range -> range.from().compareTo(sortKey) <= 0 && range.to().compareTo(sortKey) >= 0).count());
+    }
+
+    @Test
+    void testSplitSortKeyRangeByDateSingleSegment() {
+        List<SortKeyRange> ranges = pnDelayerUtils.splitSortKeyRangeByDate("RM~", LocalDate.parse("2025-01-06"), LocalDate.parse("2025-01-13"), 1);
+
+        assertEquals(List.of(new SortKeyRange("RM~", "RM~\uffff")), ranges);
+    }
+
+    @Test
+    void testSplitSortKeyRangeByPriority() {
+        List<SortKeyRange> ranges = pnDelayerUtils.splitSortKeyRangeByPriority("driver1~RM", Set.of(3, 1, 2));
+
+        assertEquals(List.of(new SortKeyRange("driver1~RM~", "driver1~RM~2~"),
+                new SortKeyRange("driver1~RM~2~", "driver1~RM~3~"),
+                new SortKeyRange("driver1~RM~3~", "driver1~RM~\uffff")), ranges);
+        String sortKey = "driver1~RM~2~2025-01-09T10:00:00Z~requestId";
+        assertEquals(1, ranges.stream().filter(range -> range.from().compareTo(sortKey) <= 0 && range.to().compareTo(sortKey) >= 0).count());
+        assertEquals(List.of(new SortKeyRange("driver1~RM~", "driver1~RM~\uffff")), pnDelayerUtils.splitSortKeyRangeByPriority("driver1~RM", Set.of()));
+    }
+
     @Test
     void testGroupByCap() {
         List<PaperDelivery> paperDeliveries = new ArrayList<>();
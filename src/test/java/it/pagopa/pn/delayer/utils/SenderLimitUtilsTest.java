@@ -1,5 +1,6 @@
 package it.pagopa.pn.delayer.utils;
 
+import it.pagopa.pn.delayer.cache.PaperDeliveryCounterSnapshotService;
 import it.pagopa.pn.delayer.config.PnDelayerConfigs;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliveryCounterDAO;
 import it.pagopa.pn.delayer.middleware.dao.PaperDeliverySenderLimitDAO;
@@ -45,7 +46,7 @@ public class SenderLimitUtilsTest {
     @BeforeEach
     void setUp() {
         PnDelayerConfigs pnDelayerConfigs = new PnDelayerConfigs();
-        senderLimitUtils = new SenderLimitUtils(paperDeliverySenderLimitDAO, new PnDelayerUtils(pnDelayerConfigs, new PrintCapacityUtils(pnDelayerConfigs)), paperDeliveryCounterDAO);
+        senderLimitUtils = new SenderLimitUtils(paperDeliverySenderLimitDAO, new PnDelayerUtils(pnDelayerConfigs, new PrintCapacityUtils(pnDelayerConfigs)), new PaperDeliveryCounterSnapshotService(paperDeliveryCounterDAO, pnDelayerConfigs), pnDelayerConfigs, new CpuStageScheduler(pnDelayerConfigs));
     }
 
     @Test